@@ -2,23 +2,26 @@ package com.example.dialertest;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.telecom.Call;
+import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 
-import com.example.dialertest.databinding.ActivityCallBinding;
+import com.example.dialertest.call.OngoingCall;
+import com.example.dialertest.lifecycle.ResourceScope;
 
-import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
-import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Predicate;
-import kotlin.collections.CollectionsKt;
 
 /**
  * Отображается при входящем звонке. Содержит логику для управления пользовательским интерфейсом
@@ -26,61 +29,124 @@ import kotlin.collections.CollectionsKt;
  */
 public class CallActivity extends AppCompatActivity {
 
-    private ActivityCallBinding binding;
+    /**
+     * Ключ идентификатора вызова в реестре CallService в интенте запуска
+     */
+    private static final String EXTRA_CALL_ID = "com.example.dialertest.CALL_ID";
 
     /**
-     * Контейнер для хранения нескольких Disposable объектов и управления ими. Disposable используется
-     * для привязки и отмены подписок на Observable, чтобы избежать утечек памяти. CompositeDisposable
-     * позволяет управлять несколькими Disposable объектами одновременно. В данном случае - объектами,
-     * связанными с подписками на состояние вызова (state) в объекте OngoingCall.
+     * Ключ времени onCallAdded в интенте запуска
      */
-    private CompositeDisposable disposables;
-    private String number;
-    private OngoingCall ongoingCall;
+    private static final String EXTRA_CALL_ADDED_AT = "com.example.dialertest.CALL_ADDED_AT";
 
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        binding = ActivityCallBinding.inflate(getLayoutInflater());
-        setContentView(binding.getRoot());
+    /**
+     * Тег строки журнала со временем до первого кадра, которую разбирает scripts/incoming-call-startup.sh
+     */
+    private static final String STARTUP_TAG = "CallStartup";
 
-        ongoingCall = new OngoingCall();
-        disposables = new CompositeDisposable();
+    /**
+     * Экран вызова. Обычно подготовлен заранее в CallService и уже подписан на состояние вызова
+     */
+    private CallScreen screen;
 
-        getWindow().addFlags(WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED
-                | WindowManager.LayoutParams.FLAG_DISMISS_KEYGUARD
-                | WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON
-                | WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON);
+    /**
+     * Подписки на состояние вызова (state) в объекте OngoingCall, живущие от onStart до onStop. Вызов хранится
+     * в статическом реестре CallService и переживает активность, поэтому неотменённая подписка удерживала бы её
+     */
+    private final ResourceScope startedScope = new ResourceScope("CallActivity.started");
 
-        number = Objects.requireNonNull(getIntent().getData()).getSchemeSpecificPart();
+    /**
+     * Ресурсы, живущие от onCreate до onDestroy: экран вызова и слушатель первого кадра
+     */
+    private final ResourceScope createdScope = new ResourceScope("CallActivity.created");
+    private OngoingCall ongoingCall;
 
-        binding.answerButton.setOnClickListener(view -> ongoingCall.answer());
-        binding.declineButton.setOnClickListener(view -> ongoingCall.hangup());
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        Trace.beginSection("CallActivity.onCreate");
+        try {
+            super.onCreate(savedInstanceState);
+
+            String callId = getIntent().getStringExtra(EXTRA_CALL_ID);
+            // Время onCallAdded относится только к первому созданию активности. При пересоздании (поворот,
+            // восстановление процесса) интент прежний, и замер первого кадра дал бы ложное огромное значение,
+            // а секция трассировки закрылась бы повторно. Поэтому время используется один раз и удаляется
+            long callAddedAt = getIntent().getLongExtra(EXTRA_CALL_ADDED_AT, -1L);
+            getIntent().removeExtra(EXTRA_CALL_ADDED_AT);
+            boolean firstCreation = savedInstanceState == null && callAddedAt >= 0;
+
+            screen = CallScreens.claim(callId);
+            if (screen == null) {
+                // Экран не готовился заранее (например, активность пересоздана), поэтому надуваем его сейчас.
+                // Вызов мог быть удалён из реестра до запуска активности
+                OngoingCall call = CallService.getRegistry().get(callId);
+                if (call == null) {
+                    finish();
+                    return;
+                }
+                Uri handle = getIntent().getData();
+                screen = CallScreen.inflate(this);
+                screen.bind(call, PhoneNumbers.format(this, handle == null ? null : handle.getSchemeSpecificPart()),
+                        firstCreation ? callAddedAt : SystemClock.elapsedRealtimeNanos());
+            }
+            ongoingCall = screen.call();
+
+            // Экран держит подписку на состояние вызова и ссылку на активность через контекст
+            createdScope.onRelease(screen::release);
+            screen.attachTo(this);
+            setContentView(screen.root());
+            if (firstCreation) {
+                // Если активность закроется до первого кадра, слушатель не должен остаться у дерева экрана.
+                // Наблюдатель берётся при освобождении: при присоединении View к окну он заменяется
+                screen.root().getViewTreeObserver().addOnPreDrawListener(firstFrameListener);
+                View root = screen.root();
+                createdScope.onRelease(() -> root.getViewTreeObserver().removeOnPreDrawListener(firstFrameListener));
+            }
+
+            getWindow().addFlags(WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED
+                    | WindowManager.LayoutParams.FLAG_DISMISS_KEYGUARD
+                    | WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON
+                    | WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON);
+        } finally {
+            Trace.endSection();
+        }
     }
 
+    /**
+     * Отмечает первый кадр экрана вызова: завершает секцию трассировки, начатую в onCallAdded,
+     * сообщает системе о полной отрисовке и пишет в журнал время от onCallAdded.
+     * Регистрируется только при первом создании активности для вызова
+     */
+    private final ViewTreeObserver.OnPreDrawListener firstFrameListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            screen.root().getViewTreeObserver().removeOnPreDrawListener(this);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(CallService.TRACE_INCOMING_CALL, ongoingCall.id().hashCode());
+            }
+            reportFullyDrawn();
+            long nanos = screen.nanosSinceCallAdded();
+            Metrics.CALL_ADDED_TO_UI.record(nanos);
+            Log.i(STARTUP_TAG, "first_frame_ms=" + nanos / 1_000_000);
+            return true;
+        }
+    };
+
     @Override
     protected void onStart() {
         super.onStart();
+        if (ongoingCall == null) {
+            return;
+        }
 
-        // Добавляем две подписки на BehaviorSubject OngoingCall.state. BehaviorSubject в RxJava является
-        // типом Observable, который хранит последнее отправленное значение и передает его новым подписчикам.
-
-        // В данной подписке каждый раз, когда происходит изменение состояния вызова, вызывается метод
-        // updateUi для обновления пользовательского интерфейса (UI) в соответствии с новым состоянием.
-        disposables.add(
-                OngoingCall.state
-                        .subscribe(new Consumer<Integer>() {
-                            @Override
-                            public void accept(Integer integer) {
-                                updateUi(integer);
-                            }
-                        }));
+        // Интерфейс обновляется подпиской экрана, созданной ещё в onCallAdded. Здесь остаётся только
+        // подписка на поток состояний вызова, завершающая активность.
 
         // В данной подписке используется метод filter для фильтрации состояния вызова и ожидается
         // состояние Call.STATE_DISCONNECTED. После этого вызов метода finish() для завершения активности
         // через 1 секунду после окончания вызова.
-        disposables.add(
-                OngoingCall.state
+        startedScope.add(
+                ongoingCall.state()
                         .filter(new Predicate<Integer>() {
                             @Override
                             public boolean test(Integer integer) {
@@ -97,43 +163,31 @@ public class CallActivity extends AppCompatActivity {
                         }));
     }
 
-    @SuppressLint("SetTextI18n")
-    private void updateUi(Integer state) {
-        binding.phoneNumberTextView.setText(number);
-
-        if (state != Call.STATE_RINGING) {
-            binding.answerButton.setVisibility(View.GONE);
-            binding.declineButton.setText(getString(R.string.end));
-        } else {
-            binding.answerButton.setVisibility(View.VISIBLE);
-            binding.declineButton.setText(getString(R.string.decline));
-        }
-
-        if (CollectionsKt.listOf(new Integer[]{
-                Call.STATE_DIALING,
-                Call.STATE_RINGING,
-                Call.STATE_ACTIVE}).contains(state)) {
-            binding.declineButton.setVisibility(View.VISIBLE);
-        } else
-            binding.declineButton.setVisibility(View.GONE);
-    }
-
     @Override
     protected void onStop() {
         super.onStop();
 
-        // Отписывает все подписки и очищает объект CompositeDisposable disposables. Это важно для
-        // предотвращения утечек памяти и корректного управления ресурсами в цикле жизни активности.
-        disposables.clear();
+        // Отписывает все подписки onStart. Область остаётся открытой для следующего onStart
+        startedScope.clear();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        startedScope.close();
+        createdScope.close();
     }
 
     /**
      * Используется для запуска активности CallActivity из других частей приложения
-     * и передачи объекта Call для обработки входящего звонка.
+     * и передачи объекта Call для обработки входящего звонка. Идентификатор вызова позволяет
+     * активности найти свой вызов в реестре, даже если одновременно идёт несколько вызовов.
      */
-    public static void start(Context context, Call call) {
+    public static void start(Context context, Call call, String callId, long callAddedAt) {
         Intent intent = new Intent(context, CallActivity.class)
                 .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
+                .putExtra(EXTRA_CALL_ID, callId)
+                .putExtra(EXTRA_CALL_ADDED_AT, callAddedAt)
 
                 // Поскольку метод getHandle возаращает номер телефона в виде URI,
                 // передаём его в интент с помощью метода setData().
@@ -0,0 +1,162 @@
+package com.example.dialertest;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.AttributeSet;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.dialertest.call.CallStates;
+import com.example.dialertest.call.OngoingCall;
+import com.example.dialertest.databinding.ActivityCallBinding;
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.textview.MaterialTextView;
+
+import io.reactivex.disposables.CompositeDisposable;
+
+/**
+ * Экран вызова, который можно надуть и подписать на состояние вызова ещё до создания CallActivity.
+ *
+ * Разметка надувается в MutableContextWrapper над контекстом приложения, а при показе базовый
+ * контекст заменяется на активность. Так экран готов к моменту onCallAdded, и активности остаётся
+ * только установить его в качестве содержимого.
+ *
+ * Все методы должны вызываться на главном потоке.
+ */
+final class CallScreen {
+
+    private final Context applicationContext;
+    private final MutableContextWrapper context;
+    private final ActivityCallBinding binding;
+
+    /**
+     * Подписка на состояние вызова. Живёт от привязки к вызову до освобождения экрана
+     */
+    private final CompositeDisposable disposables = new CompositeDisposable();
+
+    private OngoingCall call;
+
+    /**
+     * Время onCallAdded для вызова, к которому привязан экран. От него отсчитывается время до первого кадра
+     */
+    private long callAddedAt;
+
+    private CallScreen(Context applicationContext, MutableContextWrapper context, ActivityCallBinding binding) {
+        this.applicationContext = applicationContext;
+        this.context = context;
+        this.binding = binding;
+    }
+
+    /**
+     * Надувает разметку экрана вызова вне активности
+     */
+    static CallScreen inflate(Context context) {
+        Trace.beginSection("CallScreen.inflate");
+        try {
+            Context applicationContext = context.getApplicationContext();
+            MutableContextWrapper wrapper = new MutableContextWrapper(
+                    new ContextThemeWrapper(applicationContext, R.style.Theme_DialerTest));
+
+            // Вне AppCompatActivity фабрика AppCompat не подменяет виджеты, поэтому подменяем сами
+            LayoutInflater inflater = LayoutInflater.from(wrapper).cloneInContext(wrapper);
+            inflater.setFactory2(MATERIAL_WIDGETS);
+
+            return new CallScreen(applicationContext, wrapper, ActivityCallBinding.inflate(inflater));
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Привязывает экран к вызову: выводит номер, назначает кнопки и подписывается на состояние вызова
+     */
+    void bind(OngoingCall call, String number, long callAddedAt) {
+        this.call = call;
+        this.callAddedAt = callAddedAt;
+
+        binding.phoneNumberTextView.setText(number);
+        binding.answerButton.setOnClickListener(view -> call.answer());
+        binding.declineButton.setOnClickListener(view -> call.hangup());
+
+        // Первое состояние применяется сразу, чтобы экран был готов до первого кадра активности
+        render(call.currentState());
+        disposables.add(call.coalescedState(ChoreographerScheduler.main()).subscribe(this::render));
+    }
+
+    OngoingCall call() {
+        return call;
+    }
+
+    /**
+     * Время от onCallAdded в наносекундах
+     */
+    long nanosSinceCallAdded() {
+        return SystemClock.elapsedRealtimeNanos() - callAddedAt;
+    }
+
+    View root() {
+        return binding.getRoot();
+    }
+
+    /**
+     * Переносит экран в активность. После этого виджеты получают ресурсы и тему активности
+     */
+    void attachTo(Activity activity) {
+        context.setBaseContext(activity);
+        View root = binding.getRoot();
+        if (root.getParent() instanceof ViewGroup) {
+            ((ViewGroup) root.getParent()).removeView(root);
+        }
+    }
+
+    /**
+     * Отписывается от состояния вызова и отпускает активность, чтобы экран не удерживал её
+     */
+    void release() {
+        disposables.clear();
+        context.setBaseContext(applicationContext);
+    }
+
+    /**
+     * Обновляет кнопки по состоянию вызова. Наборы состояний проверяются битовыми масками,
+     * поэтому на обновление не выделяется память
+     */
+    private void render(int state) {
+        if (CallStates.isIn(state, CallStates.ANSWERABLE)) {
+            binding.answerButton.setVisibility(View.VISIBLE);
+            binding.declineButton.setText(R.string.decline);
+        } else {
+            binding.answerButton.setVisibility(View.GONE);
+            binding.declineButton.setText(R.string.end);
+        }
+
+        binding.declineButton.setVisibility(CallStates.isIn(state, CallStates.ENDABLE) ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Создаёт те же виджеты Material, что и AppCompatActivity для тегов разметки экрана вызова
+     */
+    private static final LayoutInflater.Factory2 MATERIAL_WIDGETS = new LayoutInflater.Factory2() {
+        @Override
+        public View onCreateView(View parent, String name, Context context, AttributeSet attrs) {
+            return onCreateView(name, context, attrs);
+        }
+
+        @Override
+        public View onCreateView(String name, Context context, AttributeSet attrs) {
+            switch (name) {
+                case "Button":
+                    return new MaterialButton(context, attrs);
+                case "TextView":
+                    return new MaterialTextView(context, attrs);
+                default:
+                    return null;
+            }
+        }
+    };
+}
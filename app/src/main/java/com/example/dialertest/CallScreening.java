@@ -0,0 +1,366 @@
+package com.example.dialertest;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.telephony.TelephonyManager;
+
+import android.util.Log;
+
+import com.example.dialertest.handling.VerdictRecorder;
+import com.example.dialertest.journal.DecisionJournal;
+import com.example.dialertest.reputation.CallHistory;
+import com.example.dialertest.reputation.ModelReputationScorer;
+import com.example.dialertest.reputation.ReputationModel;
+import com.example.dialertest.screening.ContactIndex;
+import com.example.dialertest.screening.FloodDetector;
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.ScreeningEnricher;
+import com.example.dialertest.screening.ScreeningPipeline;
+import com.example.dialertest.screening.ScreeningRules;
+import com.example.dialertest.screening.ScreeningRulesParser;
+import com.example.dialertest.screening.VerdictCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Единый на процесс конвейер проверки входящих звонков. Потоки конвейера живут дольше отдельного
+ * экземпляра MyCallScreeningService, поэтому дообогащение может завершиться и после ответа системе.
+ */
+public final class CallScreening {
+
+    private static final String TAG = "CallScreening";
+
+    /**
+     * Файл правил проверки в формате ScreeningRulesParser. Если его нет, действуют правила
+     * ScreeningRules.defaults(): номера из базы отклоняются, звонки волны пропускаются без звонка
+     */
+    private static final String RULES_FILE = "screening_rules.txt";
+
+    /**
+     * Файл модели репутации в формате ReputationModel. Пока его нет, номера оцениваются только по базе
+     */
+    private static final String MODEL_FILE = "reputation_model.txt";
+
+    /**
+     * История звонков для признаков репутации: не больше 4096 номеров за последнюю неделю
+     */
+    private static final int HISTORY_NUMBERS = 4096;
+
+    /**
+     * Время, за которое решение по звонку должно быть отправлено системе. Система ждёт ответа
+     * несколько секунд, бюджет оставляет большой запас на доставку ответа и показ окна
+     */
+    private static final long BUDGET_MILLIS = 500;
+
+    /**
+     * Журнал решений: сегменты по 256 КБ (около 8 тысяч решений), не больше 4 МБ на диске.
+     * Записи переносятся в файл раз в секунду, буфер вмещает 1024 ожидающих решения
+     */
+    private static final int JOURNAL_CAPACITY = 1024;
+    private static final long JOURNAL_SEGMENT_BYTES = 256 * 1024;
+    private static final long JOURNAL_MAX_BYTES = 4 * 1024 * 1024;
+    private static final long JOURNAL_FLUSH_MILLIS = 1000;
+
+    /**
+     * Кэш результатов повторных звонков: 512 номеров на 6 часов. Сохраняется в файл не чаще
+     * раза в 10 секунд и только после изменений
+     */
+    private static final String CACHE_FILE = "verdict_cache.bin";
+    private static final int CACHE_ENTRIES = 512;
+    private static final long CACHE_TTL_MILLIS = TimeUnit.HOURS.toMillis(6);
+    private static final long CACHE_SAVE_SECONDS = 10;
+
+    /**
+     * Волна звонков: 10 звонков за 10 минут из блока в тысячу номеров. Блок остаётся помеченным
+     * час после последнего превышения порога
+     */
+    private static final int FLOOD_BLOCK_DIGITS = 3;
+    private static final int FLOOD_THRESHOLD = 10;
+    private static final long FLOOD_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long FLOOD_HOSTILE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Задержка синхронизации контактов после уведомления об изменении. Редактирование контакта
+     * порождает серию уведомлений, и все они обрабатываются одной синхронизацией
+     */
+    private static final long CONTACTS_SYNC_DELAY_MILLIS = 500;
+
+    private static CallScreening instance;
+
+    private final ScreeningPipeline pipeline;
+    private final DecisionJournal journal;
+    private final VerdictRecorder recorder;
+    private final File rulesFile;
+    private final File modelFile;
+    private final File journalDirectory;
+    private final CallHistory history = new CallHistory(HISTORY_NUMBERS);
+    private final File cacheFile;
+    private final VerdictCache cache;
+    private final ExecutorService lookupExecutor;
+
+    /**
+     * Поток журнала: переносит решения в файл, а также читает и пишет остальные файлы конвейера,
+     * чтобы чтение с диска не задерживало проверку звонков на потоке lookupExecutor
+     */
+    private final ScheduledExecutorService journalExecutor;
+    private final ContactIndex contacts;
+    private final ScheduledExecutorService contactsExecutor;
+    private final AtomicBoolean contactsSyncPending = new AtomicBoolean();
+
+    /**
+     * Текущие правила. Заменяются целиком, поэтому проверка всегда видит согласованный набор
+     */
+    private volatile ScreeningRules rules = ScreeningRules.defaults();
+
+    /**
+     * Часовой пояс для часа звонка в правилах. TimeZone.getDefault() создаёт копию пояса при каждом вызове,
+     * поэтому пояс берётся один раз и заменяется при смене пояса в системе
+     */
+    private volatile TimeZone timeZone = TimeZone.getDefault();
+
+    /**
+     * Текущая модель репутации или null, если файла модели нет
+     */
+    private volatile ReputationModel model;
+
+    private CallScreening(Context context) {
+        lookupExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "screening-lookup"));
+        ExecutorService enrichmentExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "screening-enrichment"));
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "screening-deadline"));
+
+        SpamDatabaseManager spamDatabase = SpamDatabaseManager.getInstance(context);
+        List<ScreeningEnricher> enrichers =
+                Collections.singletonList(new ContactNameEnricher(context.getContentResolver()));
+        cache = new VerdictCache(CACHE_ENTRIES, CACHE_TTL_MILLIS, System::currentTimeMillis,
+                Metrics.VERDICT_CACHE_HIT, Metrics.VERDICT_CACHE_MISS, Metrics.VERDICT_CACHE_EVICTION);
+        contacts = new ContactIndex(new ContactsContractSource(context.getContentResolver()),
+                PhoneNumbers.getNormalizer(context));
+        contactsExecutor = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "screening-contacts"));
+        ModelReputationScorer reputation = new ModelReputationScorer(() -> model, history,
+                PhoneNumbers.getNormalizer(context).plan().countryCode(), ownNumber(context));
+        pipeline = new ScreeningPipeline.Builder(spamDatabase::get, PhoneNumbers.getNormalizer(context),
+                lookupExecutor, enrichmentExecutor, timer, TimeUnit.MILLISECONDS.toNanos(BUDGET_MILLIS))
+                .rules(() -> rules)
+                .timeZone(() -> timeZone)
+                .contacts(contacts)
+                .cache(cache)
+                .reputation(reputation)
+                .flood(new FloodDetector(FLOOD_BLOCK_DIGITS, FLOOD_THRESHOLD, FLOOD_WINDOW_MILLIS,
+                        FLOOD_HOSTILE_MILLIS, Metrics.FLOOD_FLAGGED))
+                .enrichers(enrichers)
+                .build();
+
+        journalExecutor = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "screening-journal"));
+        journalDirectory = new File(context.getFilesDir(), "journal");
+        journal = new DecisionJournal(journalDirectory, journalExecutor,
+                JOURNAL_CAPACITY, JOURNAL_SEGMENT_BYTES, JOURNAL_MAX_BYTES, JOURNAL_FLUSH_MILLIS);
+        recorder = new VerdictRecorder(Metrics.SCREENING_DECISION, Metrics.SCREENING_BLOCKED,
+                Metrics.SCREENING_ALLOWED, Metrics.SCREENING_FALLBACK, journal, history);
+
+        rulesFile = new File(context.getFilesDir(), RULES_FILE);
+        reloadRules();
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                timeZone = TimeZone.getDefault();
+            }
+        }, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+
+        // Кэш загружается и сохраняется на потоке журнала. Файл читается без блокировки кэша, поэтому
+        // звонки, пришедшие до конца загрузки, не ждут диска, а просто не находят записей. Загрузка
+        // ставится в очередь раньше чтения журнала: файл кэша намного меньше
+        cacheFile = new File(context.getFilesDir(), CACHE_FILE);
+        journalExecutor.execute(this::loadCache);
+        journalExecutor.scheduleWithFixedDelay(this::saveCache, CACHE_SAVE_SECONDS, CACHE_SAVE_SECONDS,
+                TimeUnit.SECONDS);
+
+        // История строится по журналу на потоке журнала, дальше пополняется после каждого решения.
+        // Пока журнал читается, звонки оцениваются по неполной истории
+        modelFile = new File(context.getFilesDir(), MODEL_FILE);
+        reloadModel();
+        journalExecutor.execute(this::loadHistory);
+
+        // Уведомления приходят на потоке Binder, сама синхронизация идёт на потоке контактов
+        try {
+            context.getContentResolver().registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true,
+                    new ContentObserver(null) {
+                        @Override
+                        public void onChange(boolean selfChange, Uri uri) {
+                            requestContactsSync();
+                        }
+                    });
+        } catch (SecurityException e) {
+            Log.w(TAG, "Нет доступа к контактам, изменения не отслеживаются", e);
+        }
+        requestContactsSync();
+    }
+
+    /**
+     * Запрашивает синхронизацию индекса контактов. Запросы, пришедшие до начала синхронизации,
+     * объединяются в один. Без разрешения READ_CONTACTS индекс остаётся пустым, и следующий
+     * запрос снова попробует прочитать все контакты
+     */
+    public void requestContactsSync() {
+        if (contactsSyncPending.compareAndSet(false, true)) {
+            contactsExecutor.schedule(this::syncContacts, CONTACTS_SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void syncContacts() {
+        contactsSyncPending.set(false);
+        long start = System.nanoTime();
+        try {
+            if (contacts.sync()) {
+                Log.i(TAG, "Индекс контактов обновлён: " + contacts.size() + " номеров за "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " мс");
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "Нет разрешения на чтение контактов");
+        }
+    }
+
+    /**
+     * Номер абонента для признака подмены номера. Без разрешения или без номера на SIM-карте
+     * признак не используется
+     */
+    @SuppressLint({"MissingPermission", "HardwareIds"})
+    private static long ownNumber(Context context) {
+        TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        try {
+            return telephonyManager == null
+                    ? NumberKeys.INVALID
+                    : PhoneNumbers.getNormalizer(context).normalize(telephonyManager.getLine1Number());
+        } catch (SecurityException e) {
+            Log.w(TAG, "Нет разрешения на чтение номера абонента");
+            return NumberKeys.INVALID;
+        }
+    }
+
+    private void loadHistory() {
+        try {
+            int decisions = history.readJournal(journalDirectory, System.currentTimeMillis());
+            Log.i(TAG, "История звонков загружена: " + decisions + " решений");
+        } catch (IOException e) {
+            Log.w(TAG, "История звонков не загружена", e);
+        }
+    }
+
+    private void loadCache() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+        try {
+            Log.i(TAG, "Загружено результатов из кэша: " + cache.load(cacheFile));
+        } catch (IOException e) {
+            Log.w(TAG, "Кэш результатов не загружен", e);
+            cacheFile.delete();
+        }
+    }
+
+    private void saveCache() {
+        if (!cache.isModified()) {
+            return;
+        }
+        try {
+            cache.save(cacheFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Кэш результатов не сохранён", e);
+        }
+    }
+
+    public static synchronized CallScreening getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallScreening(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public ScreeningPipeline pipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Перечитывает файл правил. Правила читаются и компилируются на потоке журнала и подставляются
+     * для следующих проверок, проверки до этого идут по прежним правилам. При ошибке в файле остаются прежние
+     */
+    public void reloadRules() {
+        journalExecutor.execute(() -> {
+            if (!rulesFile.exists()) {
+                rules = ScreeningRules.defaults();
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(rulesFile), Charset.forName("UTF-8")))) {
+                rules = ScreeningRulesParser.parse(reader);
+                Log.i(TAG, "Правила загружены: " + rules);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Не удалось загрузить правила из " + rulesFile, e);
+            }
+        });
+    }
+
+    /**
+     * Перечитывает файл модели репутации на потоке журнала и подставляет её для следующих проверок.
+     * При ошибке в файле остаётся прежняя модель
+     */
+    public void reloadModel() {
+        journalExecutor.execute(() -> {
+            if (!modelFile.exists()) {
+                model = null;
+                return;
+            }
+            try {
+                model = ReputationModel.load(modelFile);
+                Log.i(TAG, "Модель репутации загружена: " + model);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Не удалось загрузить модель из " + modelFile, e);
+            }
+        });
+    }
+
+    /**
+     * История звонков для признаков репутации. Пополняется после каждого решения
+     */
+    public CallHistory history() {
+        return history;
+    }
+
+    /**
+     * Учёт решений по входящим звонкам: метрики, журнал и история звонков
+     */
+    public VerdictRecorder recorder() {
+        return recorder;
+    }
+
+    /**
+     * Журнал решений о входящих звонках. Выгрузить его можно командой
+     * adb pull files/journal и утилитой DecisionJournalReader
+     */
+    public DecisionJournal journal() {
+        return journal;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.dialertest;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.Trace;
+
+import com.example.dialertest.call.OngoingCall;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Заранее подготовленные экраны вызова. Один запасной экран надувается, как только появляется
+ * сервис вызовов или проверки звонков, а в onCallAdded он привязывается к вызову и ждёт, пока его
+ * заберёт CallActivity. Хранится только контекст приложения, поэтому активности не удерживаются.
+ *
+ * Все методы должны вызываться на главном потоке.
+ */
+final class CallScreens {
+
+    /**
+     * Надутый, но ещё не привязанный к вызову экран
+     */
+    private static CallScreen spare;
+
+    /**
+     * Экраны, привязанные к вызовам, но ещё не показанные, по идентификатору вызова
+     */
+    private static final Map<String, CallScreen> prepared = new HashMap<>();
+
+    private static boolean prewarmScheduled;
+
+    private CallScreens() {
+    }
+
+    /**
+     * Надувает запасной экран, если его ещё нет
+     */
+    static void prewarm(Context context) {
+        if (spare == null) {
+            Trace.beginSection("CallScreens.prewarm");
+            try {
+                spare = CallScreen.inflate(context);
+            } finally {
+                Trace.endSection();
+            }
+        }
+    }
+
+    /**
+     * Надувает запасной экран, когда главный поток освободится, чтобы не задерживать текущую работу
+     */
+    static void prewarmWhenIdle(Context context) {
+        if (spare != null || prewarmScheduled) {
+            return;
+        }
+        prewarmScheduled = true;
+        Context applicationContext = context.getApplicationContext();
+        Looper.myQueue().addIdleHandler(() -> {
+            prewarmScheduled = false;
+            prewarm(applicationContext);
+            return false;
+        });
+    }
+
+    /**
+     * Привязывает запасной экран (или новый, если запасного нет) к вызову
+     * @param callAddedAt Время onCallAdded по SystemClock.elapsedRealtimeNanos()
+     */
+    static void prepare(Context context, OngoingCall call, String number, long callAddedAt) {
+        Trace.beginSection("CallScreens.prepare");
+        try {
+            CallScreen screen = spare != null ? spare : CallScreen.inflate(context);
+            spare = null;
+            screen.bind(call, number, callAddedAt);
+
+            CallScreen previous = prepared.put(call.id(), screen);
+            if (previous != null) {
+                previous.release();
+            }
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Забирает подготовленный для вызова экран
+     * @return Экран или null, если экран для вызова не готовился или уже забран
+     */
+    static CallScreen claim(String callId) {
+        return callId == null ? null : prepared.remove(callId);
+    }
+
+    /**
+     * Освобождает экран вызова, который так и не был показан, например при сбросе до запуска активности
+     */
+    static void discard(String callId) {
+        CallScreen screen = prepared.remove(callId);
+        if (screen != null) {
+            screen.release();
+        }
+    }
+}
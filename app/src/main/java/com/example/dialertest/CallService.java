@@ -1,22 +1,99 @@
 package com.example.dialertest;
 
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.telecom.Call;
 import android.telecom.InCallService;
 
+import com.example.dialertest.call.CallHandle;
+import com.example.dialertest.call.CallLifecycle;
+import com.example.dialertest.call.CallRegistry;
+import com.example.dialertest.call.OngoingCall;
+
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Класс InCallService предоставляет функциональность для управления вызовами в приложении
  */
 public class CallService extends InCallService {
+
+    /**
+     * Имя асинхронной секции трассировки от onCallAdded до первого кадра экрана вызова
+     */
+    static final String TRACE_INCOMING_CALL = "IncomingCall";
+
+    /**
+     * Реестр текущих вызовов процесса. Через него CallActivity находит свой вызов по идентификатору
+     */
+    private static final CallRegistry registry = new CallRegistry(Metrics.CALL_STATE_GAP);
+
+    /**
+     * Адаптеры вызовов, добавленных этим сервисом. Нужны, чтобы при удалении вызова найти его в реестре.
+     * Методы InCallService вызываются на главном потоке, поэтому синхронизация не нужна
+     */
+    private final Map<Call, TelecomCallHandle> handles = new HashMap<>();
+
+    /**
+     * Показ вызова: экран из CallScreens и CallActivity
+     */
+    private final CallLifecycle.Presenter presenter = new CallLifecycle.Presenter() {
+        @Override
+        public void show(CallHandle handle, OngoingCall ongoingCall, long addedAtNanos) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.beginAsyncSection(TRACE_INCOMING_CALL, ongoingCall.id().hashCode());
+            }
+            Call call = ((TelecomCallHandle) handle).call();
+            String number = PhoneNumbers.format(CallService.this, call.getDetails().getHandle() == null
+                    ? null
+                    : call.getDetails().getHandle().getSchemeSpecificPart());
+            CallScreens.prepare(CallService.this, ongoingCall, number, addedAtNanos);
+            CallActivity.start(CallService.this, call, ongoingCall.id(), addedAtNanos);
+        }
+
+        @Override
+        public void dismiss(CallHandle handle) {
+            CallScreens.discard(handle.id());
+        }
+    };
+
+    private final CallLifecycle lifecycle = new CallLifecycle(registry, presenter, Metrics.CALLS_ADDED);
+
+    public static CallRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Вызывается, когда система привязывается к сервису, то есть до первого onCallAdded.
+     * Экран вызова надувается здесь, чтобы не тратить на это время после появления вызова
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        CallScreens.prewarm(this);
+    }
+
     /**
      * Вызывается, когда новый вызов добавлен в систему
      */
     @Override
     public void onCallAdded(Call call) {
-        super.onCallAdded(call);
+        long addedAt = SystemClock.elapsedRealtimeNanos();
+        Trace.beginSection("CallService.onCallAdded");
+        try {
+            super.onCallAdded(call);
+
+            // Добавляем вызов в реестр, привязываем к нему заранее надутый экран и запускаем CallActivity
+            TelecomCallHandle handle = new TelecomCallHandle(call);
+            handles.put(call, handle);
+            lifecycle.callAdded(handle, addedAt);
 
-        // Создаём новый объект OngoingCall, устанавливаем ему вызов и запускаем CallActivity
-        new OngoingCall().setCall(call);
-        CallActivity.start(this, call);
+            // Запасной экран для следующего вызова (ожидание вызова, второй входящий)
+            CallScreens.prewarmWhenIdle(this);
+        } finally {
+            Trace.endSection();
+        }
     }
 
     /**
@@ -26,7 +103,24 @@ public class CallService extends InCallService {
     public void onCallRemoved(Call call) {
         super.onCallRemoved(call);
 
-        // Устанавливаем в качестве вызова значение null.
-        new OngoingCall().setCall(null);
+        // Удаляем вызов из реестра, при этом у него снимается регистрация колбэка
+        TelecomCallHandle handle = handles.remove(call);
+        if (handle != null) {
+            lifecycle.callRemoved(handle);
+        }
+    }
+
+    /**
+     * Вызывается, когда система отвязывает сервис. Обычно все вызовы к этому моменту уже удалены, но если
+     * привязка разорвана раньше, вызовы удаляются здесь: реестр статический и иначе удерживал бы вызовы,
+     * их колбэки и подготовленные экраны до конца процесса
+     */
+    @Override
+    public void onDestroy() {
+        for (TelecomCallHandle handle : handles.values()) {
+            lifecycle.callRemoved(handle);
+        }
+        handles.clear();
+        super.onDestroy();
     }
 }
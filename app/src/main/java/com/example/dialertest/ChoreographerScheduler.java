@@ -0,0 +1,94 @@
+package com.example.dialertest;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+
+/**
+ * Планировщик RxJava, выполняющий задачи на главном потоке в начале следующего кадра Choreographer.
+ * Используется вместе с FrameCoalescer, чтобы интерфейс обновлялся не чаще одного раза за кадр.
+ */
+final class ChoreographerScheduler extends Scheduler {
+
+    private static ChoreographerScheduler instance;
+
+    private final Choreographer choreographer;
+
+    private ChoreographerScheduler(Choreographer choreographer) {
+        this.choreographer = choreographer;
+    }
+
+    /**
+     * Возвращает планировщик главного потока. Должен вызываться на главном потоке, так как
+     * Choreographer привязан к потоку, на котором получен
+     */
+    static ChoreographerScheduler main() {
+        if (instance == null) {
+            instance = new ChoreographerScheduler(Choreographer.getInstance());
+        }
+        return instance;
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new FrameWorker();
+    }
+
+    private final class FrameWorker extends Worker {
+
+        private volatile boolean disposed;
+
+        @Override
+        public Disposable schedule(Runnable run, long delay, TimeUnit unit) {
+            if (disposed) {
+                return Disposables.disposed();
+            }
+            FrameTask task = new FrameTask(run);
+            // Колбэки Choreographer можно добавлять и удалять с любого потока
+            choreographer.postFrameCallbackDelayed(task, unit.toMillis(delay));
+            return task;
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+
+        private final class FrameTask implements Choreographer.FrameCallback, Disposable {
+
+            private final Runnable run;
+            private volatile boolean cancelled;
+
+            FrameTask(Runnable run) {
+                this.run = run;
+            }
+
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                if (!cancelled && !disposed) {
+                    run.run();
+                }
+            }
+
+            @Override
+            public void dispose() {
+                cancelled = true;
+                choreographer.removeFrameCallback(this);
+            }
+
+            @Override
+            public boolean isDisposed() {
+                return cancelled;
+            }
+        }
+    }
+}
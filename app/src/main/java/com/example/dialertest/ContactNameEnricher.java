@@ -0,0 +1,35 @@
+package com.example.dialertest;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+
+import com.example.dialertest.screening.ScreeningEnricher;
+import com.example.dialertest.screening.ScreeningResult;
+
+/**
+ * Дополняет результат проверки именем абонента из контактов пользователя
+ */
+public final class ContactNameEnricher implements ScreeningEnricher {
+
+    private static final String[] PROJECTION = {ContactsContract.PhoneLookup.DISPLAY_NAME};
+
+    private final ContentResolver contentResolver;
+
+    public ContactNameEnricher(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    @Override
+    public ScreeningResult enrich(ScreeningResult result) {
+        Uri uri = Uri.withAppendedPath(ContactsContract.PhoneLookup.CONTENT_FILTER_URI,
+                Uri.encode("+" + result.numberKey()));
+        try (Cursor cursor = contentResolver.query(uri, PROJECTION, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return result.withCallerName(cursor.getString(0));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.dialertest;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+
+import com.example.dialertest.screening.ContactSource;
+
+/**
+ * Читает номера контактов из ContactsContract. Изменённые контакты находятся по
+ * CONTACT_LAST_UPDATED_TIMESTAMP, удалённые - по таблице DeletedContacts, поэтому после первого
+ * чтения запросы возвращают только строки, изменившиеся с прошлой синхронизации.
+ */
+final class ContactsContractSource implements ContactSource {
+
+    private static final String[] CONTACT_PROJECTION = {
+            ContactsContract.Contacts._ID,
+            ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP
+    };
+
+    private static final String[] PHONE_PROJECTION = {
+            ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+            ContactsContract.CommonDataKinds.Phone.NUMBER
+    };
+
+    private static final String[] DELETED_PROJECTION = {
+            ContactsContract.DeletedContacts.CONTACT_ID,
+            ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP
+    };
+
+    private final ContentResolver contentResolver;
+
+    ContactsContractSource(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * @throws SecurityException Если нет разрешения READ_CONTACTS
+     */
+    @Override
+    public long readChanges(long since, Changes changes) {
+        String[] args = {String.valueOf(since)};
+        long latest = since;
+
+        try (Cursor cursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, CONTACT_PROJECTION,
+                ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " > ?", args, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                changes.contactChanged(cursor.getLong(0));
+                latest = Math.max(latest, cursor.getLong(1));
+            }
+        }
+
+        // Представление Data содержит столбцы контакта, поэтому номера отбираются по той же отметке
+        try (Cursor cursor = contentResolver.query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
+                PHONE_PROJECTION, ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " > ?", args, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                String number = cursor.getString(1);
+                if (number != null) {
+                    changes.phone(cursor.getLong(0), number);
+                }
+            }
+        }
+
+        // При первом чтении удалённые ранее контакты не нужны
+        if (since > 0) {
+            try (Cursor cursor = contentResolver.query(ContactsContract.DeletedContacts.CONTENT_URI,
+                    DELETED_PROJECTION, ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " > ?",
+                    args, null)) {
+                while (cursor != null && cursor.moveToNext()) {
+                    changes.contactDeleted(cursor.getLong(0));
+                    latest = Math.max(latest, cursor.getLong(1));
+                }
+            }
+        }
+        return latest;
+    }
+}
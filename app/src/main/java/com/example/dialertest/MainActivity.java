@@ -42,6 +42,7 @@ public class MainActivity extends AppCompatActivity {
 
         binding.defaultDialerButton.setOnClickListener(view -> offerReplacingDefaultDialer());
         binding.defaultAntiSpamButton.setOnClickListener(view -> offerReplacingDefaultSpamBlocker());
+        binding.metricsButton.setOnClickListener(view -> startActivity(new Intent(this, MetricsActivity.class)));
 
         requestOverlayPermission();
     }
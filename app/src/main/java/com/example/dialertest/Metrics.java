@@ -0,0 +1,58 @@
+package com.example.dialertest;
+
+import com.example.dialertest.metrics.Counter;
+import com.example.dialertest.metrics.LatencyHistogram;
+import com.example.dialertest.metrics.MetricsRegistry;
+
+/**
+ * Метрики процесса. Все метрики регистрируются заранее, поэтому запись в них на горячем пути
+ * не выделяет память. Просмотреть и выгрузить их можно на экране MetricsActivity.
+ */
+final class Metrics {
+
+    static final MetricsRegistry registry = new MetricsRegistry();
+
+    /**
+     * Время от начала проверки входящего звонка до готовности решения
+     */
+    static final LatencyHistogram SCREENING_DECISION = registry.histogram("screening.decision");
+    static final Counter SCREENING_BLOCKED = registry.counter("screening.blocked");
+    static final Counter SCREENING_ALLOWED = registry.counter("screening.allowed");
+    static final Counter SCREENING_FALLBACK = registry.counter("screening.fallback");
+
+    /**
+     * Обращения к кэшу результатов проверки повторных звонков
+     */
+    static final Counter VERDICT_CACHE_HIT = registry.counter("verdict_cache.hit");
+    static final Counter VERDICT_CACHE_MISS = registry.counter("verdict_cache.miss");
+    static final Counter VERDICT_CACHE_EVICTION = registry.counter("verdict_cache.eviction");
+
+    /**
+     * Блоки номеров, помеченные как источник волны звонков
+     */
+    static final Counter FLOOD_FLAGGED = registry.counter("flood.flagged");
+
+    /**
+     * Время добавления окна с информацией о звонке в WindowManager
+     */
+    static final LatencyHistogram OVERLAY_ATTACH = registry.histogram("overlay.attach");
+
+    /**
+     * Время от показа окна с информацией о звонке до его первого кадра
+     */
+    static final LatencyHistogram OVERLAY_FIRST_FRAME = registry.histogram("overlay.first_frame");
+
+    /**
+     * Время от CallService.onCallAdded до первого кадра экрана вызова
+     */
+    static final LatencyHistogram CALL_ADDED_TO_UI = registry.histogram("call.added_to_ui");
+    static final Counter CALLS_ADDED = registry.counter("call.added");
+
+    /**
+     * Промежутки между сменами состояния вызова
+     */
+    static final LatencyHistogram CALL_STATE_GAP = registry.histogram("call.state_gap");
+
+    private Metrics() {
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.dialertest;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.dialertest.databinding.ActivityMetricsBinding;
+import com.example.dialertest.metrics.MetricsSnapshot;
+
+/**
+ * Отладочный экран метрик: счётчики и перцентили задержек проверки звонков, показа окна
+ * и экрана вызова. Обновляется раз в секунду и позволяет выгрузить снимок в JSON.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final long REFRESH_MILLIS = 1000;
+
+    private ActivityMetricsBinding binding;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            binding.metricsTextView.setText(Metrics.registry.snapshot().toString());
+            handler.postDelayed(this, REFRESH_MILLIS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        binding = ActivityMetricsBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+
+        binding.exportButton.setOnClickListener(view -> export());
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refresh.run();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        handler.removeCallbacks(refresh);
+    }
+
+    /**
+     * Отправляет снимок метрик в формате JSON через системное меню «Поделиться»
+     */
+    private void export() {
+        MetricsSnapshot snapshot = Metrics.registry.snapshot();
+        Intent intent = new Intent(Intent.ACTION_SEND)
+                .setType("application/json")
+                .putExtra(Intent.EXTRA_TEXT, snapshot.toJson());
+        startActivity(Intent.createChooser(intent, getString(R.string.export_metrics)));
+    }
+}
@@ -1,130 +1,111 @@
 package com.example.dialertest;
 
-import android.content.Context;
-import android.graphics.PixelFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.telecom.Call;
 import android.telecom.CallScreeningService;
-import android.telephony.PhoneStateListener;
-import android.telephony.TelephonyManager;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.WindowManager;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 
+import com.example.dialertest.handling.OverlayMessages;
+import com.example.dialertest.handling.VerdictRecorder;
+import com.example.dialertest.screening.ScreeningAction;
+import com.example.dialertest.screening.ScreeningPipeline;
+import com.example.dialertest.screening.ScreeningResult;
+
 /**
  * Используется для возможности не допустить входящий звонок до пользователя
  */
 public class MyCallScreeningService extends CallScreeningService {
 
     /**
-     * WindowManager для отображения и скрытия диалогового окна с информацией о входящем звонке
+     * Конвейер проверки входящих звонков вне главного потока
      */
-    private WindowManager windowManager;
+    private ScreeningPipeline pipeline;
 
     /**
-     * Диалоговое окно с информацией о входящем звонке
+     * Учёт решений в метриках, журнале и истории звонков. Не выполняет ввод-вывод на потоке решения
      */
-    private View dialogView;
+    private VerdictRecorder recorder;
 
     /**
-     * Используется для скрытия диалогового окна, когда звонок принят или отклонён
+     * Используется для показа и обновления окна с информацией из фоновых потоков конвейера
      */
-    private final PhoneStateListener phoneStateListener = new PhoneStateListener() {
-        @Override
-        public void onCallStateChanged(int state, String phoneNumber) {
-            super.onCallStateChanged(state, phoneNumber);
-
-            switch (state) {
-                case TelephonyManager.CALL_STATE_IDLE:
-                    // Звонок завершен
-                case TelephonyManager.CALL_STATE_OFFHOOK:
-                    // Звонок принят или на удержании
-                    hideSpamDialog();
-                    break;
-                case TelephonyManager.CALL_STATE_RINGING:
-                    // Входящий звонок
-                    break;
-            }
-        }
-    };
-
-    @Override
-    public void onCreate() {
-        super.onCreate();
-
-        // Регистрация PhoneStateListener для отслеживания состояния вызова
-        TelephonyManager telephonyManager = (TelephonyManager) getSystemService(Context.TELEPHONY_SERVICE);
-        telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_CALL_STATE);
-    }
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     /**
-     * Вызывается при входящем звонке
+     * Диалоговое окно с информацией о входящем звонке. Создаётся заранее и переиспользуется.
+     * Окно само скрывается, когда звонок принят или завершён (для заблокированного звонка - по таймеру),
+     * и в это же время снимает свой слушатель, поэтому сервис, который система отвязывает сразу после ответа,
+     * ничего не регистрирует
      */
-    @Override
-    public void onScreenCall(@NonNull Call.Details details) {
-        CallResponse.Builder callResponseBuilder = new CallResponse.Builder();
-
-        // Удаляем префикс "tel" у URI и извлекаем телефонный номер
-        String phoneNumber = details.getHandle().getSchemeSpecificPart();
+    private SpamOverlay overlay;
 
-        // Проверяем, является ли номер нежелательным
-        boolean isSpam = checkIfNumberIsSpam(phoneNumber);
+    @Override
+    public void onCreate() {
+        super.onCreate();
 
-        if (isSpam) {
-            // Показываем диалоговое окно с информацией о нежелательном звонке
-            showSpamDialog("Звонок от номера " + phoneNumber + " является нежелательным.");
+        pipeline = CallScreening.getInstance(this).pipeline();
+        recorder = CallScreening.getInstance(this).recorder();
+        // Если разрешение на контакты выдано после запуска процесса, индекс построится сейчас
+        CallScreening.getInstance(this).requestContactsSync();
+        overlay = SpamOverlay.getInstance(this);
 
-            callResponseBuilder.setRejectCall(true);
-            callResponseBuilder.setDisallowCall(true);
-            callResponseBuilder.setSkipCallLog(false);
-        } else {
-            showSpamDialog("Отзывы: полезный звонок");
-        }
+        // Проверка звонка идёт раньше привязки CallService, поэтому экран вызова можно надуть уже сейчас
+        CallScreens.prewarmWhenIdle(this);
 
-        respondToCall(details, new CallResponse.Builder().build());
+        // Открытие базы только отображает файл в память, а применение дельт идёт в фоновом потоке
+        SpamDatabaseManager.getInstance(this).update();
     }
 
     /**
-     * Проверяет, является ли телефонный номер нежелательным
-     * @param phoneNumber Номер для проверки
-     * @return Истина, если номер является нежелательным, иначе - ложь
+     * Вызывается при входящем звонке. Проверка выполняется вне главного потока: решение отправляется
+     * системе, как только готов поиск по локальной базе (или по истечении бюджета времени),
+     * а окно с информацией обновляется по мере дообогащения результата.
      */
-    private boolean checkIfNumberIsSpam(String phoneNumber) {
-        // Здесь должно быть определение, является ли номер нежелательным, например, проверка в базе данных нежелательных номеров
-        return true;
-    }
+    @Override
+    public void onScreenCall(@NonNull Call.Details details) {
+        // Удаляем префикс "tel" у URI и извлекаем телефонный номер. Для скрытого номера handle отсутствует
+        String phoneNumber = details.getHandle() == null ? null : details.getHandle().getSchemeSpecificPart();
+        // Сообщения главному потоку не ссылаются на сервис: дообогащение может закончиться после его уничтожения
+        SpamOverlay overlay = this.overlay;
+
+        pipeline.screen(phoneNumber, new ScreeningPipeline.Callback() {
+            @Override
+            public void onVerdict(ScreeningResult result) {
+                // respondToCall можно вызывать из любого потока, окно же показывается только на главном
+                respondToCall(details, buildResponse(result));
+                recorder.record(result, System.currentTimeMillis());
+                // Текст собирается на потоке конвейера, главному потоку остаётся только показать окно
+                String message = OverlayMessages.build(result);
+                boolean blocked = result.isBlocked();
+                mainHandler.post(() -> overlay.show(message, blocked));
+            }
 
-    /**
-     * Отображает диалоговое окно с информацией о номере
-     * @param message Сообщение, содержащее информацию о номере: является он нежелательным или полезным
-     */
-    private void showSpamDialog(String message) {
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
-                PixelFormat.TRANSLUCENT);
-
-        windowManager = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
-        LayoutInflater inflater = (LayoutInflater) getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-        dialogView = inflater.inflate(R.layout.dialog_spam, null);
-
-        TextView textView = dialogView.findViewById(R.id.text_view);
-        textView.setText(message);
-
-        windowManager.addView(dialogView, params);
+            @Override
+            public void onEnriched(ScreeningResult result) {
+                String message = OverlayMessages.build(result);
+                boolean blocked = result.isBlocked();
+                mainHandler.post(() -> overlay.update(message, blocked));
+            }
+        });
     }
 
     /**
-     * Закрывает диалоговое окно с информацией о номере
+     * Формирует ответ системе по действию, выбранному правилами проверки
      */
-    private void hideSpamDialog() {
-        // Закрыть диалоговое окно при ответе на звонок
-        if (windowManager != null && dialogView != null) {
-            windowManager.removeViewImmediate(dialogView);
+    private static CallResponse buildResponse(ScreeningResult result) {
+        int action = result.action();
+        CallResponse.Builder callResponseBuilder = new CallResponse.Builder();
+        callResponseBuilder.setDisallowCall(ScreeningAction.has(action, ScreeningAction.DISALLOW));
+        callResponseBuilder.setRejectCall(ScreeningAction.has(action, ScreeningAction.REJECT));
+        callResponseBuilder.setSkipCallLog(ScreeningAction.has(action, ScreeningAction.SKIP_CALL_LOG));
+        callResponseBuilder.setSkipNotification(ScreeningAction.has(action, ScreeningAction.SKIP_NOTIFICATION));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // До Android 10 беззвучного режима нет, и звонок просто пропускается
+            callResponseBuilder.setSilenceCall(ScreeningAction.has(action, ScreeningAction.SILENCE));
         }
+        return callResponseBuilder.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package com.example.dialertest;
+
+import android.content.Context;
+import android.telephony.TelephonyManager;
+
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+
+/**
+ * Разбор и отображение номеров по плану нумерации страны, в которой зарегистрирована SIM-карта
+ */
+public final class PhoneNumbers {
+
+    private static PhoneNumberNormalizer normalizer;
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * Возвращает общий для процесса нормализатор номеров. Страна определяется по сети или SIM-карте,
+     * если её определить не удалось, используется план нумерации России
+     */
+    public static synchronized PhoneNumberNormalizer getNormalizer(Context context) {
+        if (normalizer == null) {
+            TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+            String region = null;
+            if (telephonyManager != null) {
+                region = telephonyManager.getNetworkCountryIso();
+                if (region == null || region.isEmpty()) {
+                    region = telephonyManager.getSimCountryIso();
+                }
+            }
+            normalizer = new PhoneNumberNormalizer(DialingPlan.forRegion(region, DialingPlan.RUSSIA));
+        }
+        return normalizer;
+    }
+
+    /**
+     * Форматирует номер для отображения. Нераспознанный номер (например, короткий сервисный)
+     * показывается как есть
+     */
+    public static String format(Context context, String number) {
+        long key = getNormalizer(context).normalize(number);
+        return key == NumberKeys.INVALID ? number : PhoneNumberNormalizer.format(key);
+    }
+}
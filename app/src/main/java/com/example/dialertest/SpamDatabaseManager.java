@@ -0,0 +1,147 @@
+package com.example.dialertest;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.dialertest.screening.FileSpamDeltaSource;
+import com.example.dialertest.screening.FilteredSpamDatabase;
+import com.example.dialertest.screening.SpamDatabase;
+import com.example.dialertest.screening.SpamDatabaseBuilder;
+import com.example.dialertest.screening.SpamDatabaseHolder;
+import com.example.dialertest.screening.SpamDatabaseUpdater;
+import com.example.dialertest.screening.SpamFeedConverter;
+import com.example.dialertest.screening.SpamFilterTier;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Единая на процесс база нежелательных номеров. Открывает файл базы, импортирует текстовую ленту
+ * при первом запуске и применяет дельты в фоновом потоке, не блокируя проверку звонков.
+ * Перед поиском по базе номер проверяется фильтром быстрого отказа.
+ */
+public final class SpamDatabaseManager {
+
+    private static final String TAG = "SpamDatabaseManager";
+
+    /**
+     * Имя файла базы нежелательных номеров во внутреннем хранилище приложения
+     */
+    private static final String SPAM_DATABASE_FILE = "spam.db";
+
+    /**
+     * Имя текстовой ленты нежелательных номеров, которая импортируется в базу, если базы ещё нет.
+     * Формат ленты описан в {@link SpamFeedConverter}.
+     */
+    private static final String SPAM_FEED_FILE = "spam_numbers.txt";
+
+    /**
+     * Каталог, в который загружаются дельты базы, см. {@link FileSpamDeltaSource}
+     */
+    private static final String DELTAS_DIRECTORY = "deltas";
+
+    /**
+     * Количество изменённых номеров, после которого слой дельт сливается с файлом базы
+     */
+    private static final int COMPACTION_THRESHOLD = 50_000;
+
+    /**
+     * Количество бит фильтра быстрого отказа на одну запись базы. Даёт около 1% ложноположительных ответов
+     */
+    private static final int FILTER_BITS_PER_KEY = 10;
+
+    private static SpamDatabaseManager instance;
+
+    private final File filesDir;
+    private final SpamDatabaseHolder holder;
+    private final SpamDatabaseUpdater updater;
+    private final SpamFilterTier filterTier;
+
+    /**
+     * Однопоточный исполнитель для импорта, применения дельт и уплотнения базы
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "spam-database"));
+
+    private SpamDatabaseManager(Context context) {
+        filesDir = context.getFilesDir();
+
+        // Файл базы только отображается в память, поэтому открытие не зависит от количества номеров
+        File databaseFile = new File(filesDir, SPAM_DATABASE_FILE);
+        SpamDatabaseHolder opened;
+        try {
+            opened = SpamDatabaseHolder.open(databaseFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Не удалось открыть базу нежелательных номеров", e);
+            opened = SpamDatabaseHolder.empty(databaseFile);
+        }
+        holder = opened;
+        updater = new SpamDatabaseUpdater(holder,
+                new FileSpamDeltaSource(new File(filesDir, DELTAS_DIRECTORY)), executor, COMPACTION_THRESHOLD);
+
+        filterTier = new SpamFilterTier(holder, executor, FILTER_BITS_PER_KEY);
+
+        File feedFile = new File(filesDir, SPAM_FEED_FILE);
+        if (!databaseFile.exists() && feedFile.exists()) {
+            executor.execute(() -> importSpamFeed(feedFile));
+        }
+    }
+
+    public static synchronized SpamDatabaseManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SpamDatabaseManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Текущая версия базы с фильтром быстрого отказа. Ссылку следует получать заново для каждой
+     * проверки номера: после смены версии базы фильтр перестраивается в фоне
+     */
+    public SpamDatabase get() {
+        return filterTier.get();
+    }
+
+    /**
+     * Фильтр быстрого отказа для текущей версии базы или null, если он ещё строится.
+     * Позволяет узнать размер фильтра и долю его ложноположительных ответов
+     */
+    public FilteredSpamDatabase filter() {
+        return filterTier.currentFilter();
+    }
+
+    /**
+     * Запускает в фоне применение загруженных дельт
+     */
+    public void update() {
+        executor.execute(() -> {
+            try {
+                updater.applyPendingDeltas();
+            } catch (IOException e) {
+                Log.e(TAG, "Не удалось применить дельты базы нежелательных номеров", e);
+            }
+        });
+    }
+
+    /**
+     * Преобразует текстовую ленту в файл базы и подменяет им текущую базу
+     * @param feedFile Текстовая лента нежелательных номеров
+     */
+    private void importSpamFeed(File feedFile) {
+        SpamDatabaseBuilder builder = new SpamDatabaseBuilder();
+        SpamFeedConverter converter = new SpamFeedConverter();
+        try (BufferedReader reader = new BufferedReader(new FileReader(feedFile))) {
+            converter.read(reader, builder);
+
+            File staged = holder.stagingFile();
+            builder.writeTo(staged, 1L);
+            holder.install(staged);
+        } catch (IOException e) {
+            Log.e(TAG, "Не удалось импортировать ленту нежелательных номеров", e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.dialertest;
+
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.telephony.PhoneStateListener;
+import android.telephony.TelephonyManager;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+import android.widget.TextView;
+
+import com.example.dialertest.call.CallStates;
+import com.example.dialertest.lifecycle.ResourceScope;
+
+import io.reactivex.Observable;
+
+/**
+ * Окно с информацией о входящем звонке, которое отображается поверх других приложений.
+ *
+ * Разметка R.layout.dialog_spam надувается один раз при создании объекта, а параметры окна
+ * создаются один раз и переиспользуются. При каждом звонке меняется только текст, а окно
+ * добавляется в WindowManager, только если оно ещё не показано. Поэтому при серии звонков
+ * окна не накапливаются, а показ не тратит время на надувание разметки.
+ *
+ * Окно живёт дольше сервиса проверки, поэтому само отслеживает конец звонка. Ресурсы окна
+ * (добавленный View и слушатель первого кадра) и ресурсы звонка, для которого оно показано,
+ * собраны в две области и освобождаются при скрытии окна. Время жизни окна всегда ограничено:
+ * заблокированный звонок не звонит и не меняет состояние телефона, поэтому для него окно - короткое
+ * уведомление с таймером, а для пропущенного звонка окно скрывается, когда звонок принят или
+ * завершён, и не позже {@link #RINGING_LIFETIME_MILLIS}.
+ *
+ * Все методы должны вызываться на главном потоке.
+ */
+public final class SpamOverlay {
+
+    /**
+     * Сколько показывается окно заблокированного звонка
+     */
+    static final long BLOCKED_NOTICE_MILLIS = 4_000L;
+
+    /**
+     * Наибольшее время показа окна пропущенного звонка. Нужно, если конец звонка не виден ни по состоянию
+     * телефона (например, при ожидании вызова телефон уже в состоянии OFFHOOK), ни по реестру вызовов
+     * (приложение назначено только для проверки звонков, но не приложением для звонков)
+     */
+    static final long RINGING_LIFETIME_MILLIS = 60_000L;
+
+    private static SpamOverlay instance;
+
+    private final WindowManager windowManager;
+    private final View view;
+    private final TextView textView;
+    private final WindowManager.LayoutParams params;
+
+    /**
+     * Показано ли окно сейчас. Отслеживается явно, потому что повторное добавление того же View
+     * в WindowManager приводит к исключению, а удаление непоказанного - к утечке или падению
+     */
+    private boolean attached;
+
+    /**
+     * Добавленное окно и слушатель его первого кадра
+     */
+    private final ResourceScope windowScope = new ResourceScope("SpamOverlay.window");
+
+    /**
+     * Ресурсы звонка, для которого показано окно: таймер, слушатель состояния телефона, подписка на реестр.
+     * Очищается при скрытии окна и при показе окна для следующего звонка
+     */
+    private final ResourceScope callScope = new ResourceScope("SpamOverlay.call");
+
+    private final TelephonyManager telephonyManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable hideTask = this::hide;
+
+    /**
+     * Окно показано для заблокированного звонка
+     */
+    private boolean blockedNotice;
+
+    /**
+     * Последнее известное состояние телефона. Окно скрывается только при его смене
+     */
+    private int lastCallState;
+
+    /**
+     * Время вызова {@link #show(CharSequence, boolean)}, от которого отсчитывается время до первого кадра окна
+     */
+    private long showRequestedAt;
+    private long lastTimeToFirstFrameNanos = -1;
+
+    private final ViewTreeObserver.OnPreDrawListener firstFrameListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            lastTimeToFirstFrameNanos = SystemClock.elapsedRealtimeNanos() - showRequestedAt;
+            Metrics.OVERLAY_FIRST_FRAME.record(lastTimeToFirstFrameNanos);
+            view.getViewTreeObserver().removeOnPreDrawListener(this);
+            return true;
+        }
+    };
+
+    /**
+     * Скрывает окно, когда звонок принят или завершён. Создаётся на главном потоке вместе с окном,
+     * поэтому и колбэки приходят на главный поток. Сразу после регистрации система сообщает текущее
+     * состояние, оно совпадает с {@link #lastCallState} и окно не скрывает
+     */
+    private final PhoneStateListener phoneStateListener = new PhoneStateListener() {
+        @Override
+        public void onCallStateChanged(int state, String phoneNumber) {
+            super.onCallStateChanged(state, phoneNumber);
+            int previous = lastCallState;
+            lastCallState = state;
+
+            switch (state) {
+                case TelephonyManager.CALL_STATE_IDLE:
+                    // Звонок завершен
+                    if (previous != TelephonyManager.CALL_STATE_IDLE) {
+                        hide();
+                    }
+                    break;
+                case TelephonyManager.CALL_STATE_OFFHOOK:
+                    // Звонок принят
+                    if (previous == TelephonyManager.CALL_STATE_RINGING) {
+                        hide();
+                    }
+                    break;
+                case TelephonyManager.CALL_STATE_RINGING:
+                    // Входящий звонок
+                    break;
+            }
+        }
+    };
+
+    private SpamOverlay(Context context) {
+        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+
+        // Окно живёт дольше отдельного сервиса, поэтому разметка надувается в контексте приложения с темой
+        Context themedContext = new ContextThemeWrapper(context, R.style.Theme_DialerTest);
+        view = LayoutInflater.from(themedContext).inflate(R.layout.dialog_spam, null);
+        textView = view.findViewById(R.id.text_view);
+
+        params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
+                PixelFormat.TRANSLUCENT);
+    }
+
+    /**
+     * Возвращает общее для процесса окно, при первом вызове надувая его разметку.
+     * Вызывается из MyCallScreeningService.onCreate, чтобы к первому звонку окно было готово
+     */
+    public static SpamOverlay getInstance(Context context) {
+        if (instance == null) {
+            instance = new SpamOverlay(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Показывает окно с сообщением для звонка или заменяет им окно предыдущего звонка
+     * @param blocked Звонок заблокирован: окно показывается на {@link #BLOCKED_NOTICE_MILLIS}.
+     *                Окно звонка, который ещё звонит, заблокированный звонок не заменяет
+     */
+    public void show(CharSequence message, boolean blocked) {
+        if (blocked && attached && !blockedNotice) {
+            return;
+        }
+        textView.setText(message);
+        callScope.clear();
+        blockedNotice = blocked;
+        attach();
+
+        handler.postDelayed(hideTask, blocked ? BLOCKED_NOTICE_MILLIS : RINGING_LIFETIME_MILLIS);
+        callScope.onRelease(() -> handler.removeCallbacks(hideTask));
+        if (blocked) {
+            return;
+        }
+
+        lastCallState = telephonyManager.getCallState();
+        telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_CALL_STATE);
+        callScope.onRelease(() -> telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_NONE));
+
+        // Если приложение назначено приложением для звонков, конец звонка виден и по реестру CallService.
+        // Колбэки вызовов приходят на главный поток, поэтому окно скрывается на нём же
+        callScope.add(CallService.getRegistry().activeCalls()
+                .switchMap(calls -> Observable.fromIterable(calls).flatMap(call -> call.state().skip(1)))
+                .filter(state -> state == CallStates.ACTIVE || state == CallStates.DISCONNECTED)
+                .subscribe(state -> hide()));
+    }
+
+    /**
+     * Обновляет текст окна, если оно показано для звонка того же вида. Скрытое окно не показывается заново
+     */
+    public void update(CharSequence message, boolean blocked) {
+        if (attached && blocked == blockedNotice) {
+            textView.setText(message);
+        }
+    }
+
+    /**
+     * Скрывает окно и освобождает ресурсы звонка. Для скрытого окна ничего не делает
+     */
+    public void hide() {
+        callScope.clear();
+        windowScope.clear();
+    }
+
+    private void attach() {
+        if (attached) {
+            return;
+        }
+        showRequestedAt = SystemClock.elapsedRealtimeNanos();
+        windowManager.addView(view, params);
+        Metrics.OVERLAY_ATTACH.record(SystemClock.elapsedRealtimeNanos() - showRequestedAt);
+        view.getViewTreeObserver().addOnPreDrawListener(firstFrameListener);
+        attached = true;
+        windowScope.onRelease(() -> {
+            view.getViewTreeObserver().removeOnPreDrawListener(firstFrameListener);
+            windowManager.removeViewImmediate(view);
+            attached = false;
+        });
+    }
+
+    public boolean isShown() {
+        return attached;
+    }
+
+    /**
+     * Время от последнего показа окна до его первого кадра в наносекундах или -1, если окно ещё не отрисовывалось
+     */
+    public long lastTimeToFirstFrameNanos() {
+        return lastTimeToFirstFrameNanos;
+    }
+}
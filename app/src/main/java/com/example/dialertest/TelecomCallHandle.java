@@ -0,0 +1,80 @@
+package com.example.dialertest;
+
+import android.telecom.Call;
+import android.telecom.VideoProfile;
+
+import com.example.dialertest.call.CallHandle;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Адаптер вызова системы телефонии Android к {@link CallHandle}. Идентификатор назначается при
+ * создании, так как у android.telecom.Call до API 30 нет публичного идентификатора.
+ */
+final class TelecomCallHandle implements CallHandle {
+
+    private static final AtomicLong nextId = new AtomicLong();
+
+    private final Call call;
+    private final String id;
+
+    /**
+     * Колбэки, зарегистрированные у вызова, по слушателям. Нужны, чтобы снять регистрацию того же колбэка
+     */
+    private final Map<Listener, Call.Callback> callbacks = new HashMap<>();
+
+    TelecomCallHandle(Call call) {
+        this.call = call;
+        this.id = Long.toString(nextId.incrementAndGet());
+    }
+
+    Call call() {
+        return call;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public int state() {
+        return call.getState();
+    }
+
+    @Override
+    public void answer() {
+        call.answer(VideoProfile.STATE_AUDIO_ONLY);
+    }
+
+    @Override
+    public void disconnect() {
+        call.disconnect();
+    }
+
+    @Override
+    public synchronized void registerListener(Listener listener) {
+        if (callbacks.containsKey(listener)) {
+            return;
+        }
+        Call.Callback callback = new Call.Callback() {
+            @Override
+            public void onStateChanged(Call call, int newState) {
+                super.onStateChanged(call, newState);
+                listener.onStateChanged(TelecomCallHandle.this, newState);
+            }
+        };
+        callbacks.put(listener, callback);
+        call.registerCallback(callback);
+    }
+
+    @Override
+    public synchronized void unregisterListener(Listener listener) {
+        Call.Callback callback = callbacks.remove(listener);
+        if (callback != null) {
+            call.unregisterCallback(callback);
+        }
+    }
+}
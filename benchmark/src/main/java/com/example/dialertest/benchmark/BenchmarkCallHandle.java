@@ -0,0 +1,58 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.call.CallHandle;
+import com.example.dialertest.call.CallStates;
+
+/**
+ * Вызов без системы телефонии с единственным слушателем
+ */
+final class BenchmarkCallHandle implements CallHandle {
+
+    private final String id;
+    private int state;
+    private Listener listener;
+
+    BenchmarkCallHandle(String id, int state) {
+        this.id = id;
+        this.state = state;
+    }
+
+    void setState(int newState) {
+        state = newState;
+        if (listener != null) {
+            listener.onStateChanged(this, newState);
+        }
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public int state() {
+        return state;
+    }
+
+    @Override
+    public void answer() {
+        setState(CallStates.ACTIVE);
+    }
+
+    @Override
+    public void disconnect() {
+        setState(CallStates.DISCONNECTED);
+    }
+
+    @Override
+    public void registerListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void unregisterListener(Listener listener) {
+        if (this.listener == listener) {
+            this.listener = null;
+        }
+    }
+}
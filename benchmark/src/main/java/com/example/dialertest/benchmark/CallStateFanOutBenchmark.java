@@ -0,0 +1,106 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.call.CallRegistry;
+import com.example.dialertest.call.CallStates;
+import com.example.dialertest.call.OngoingCall;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.TestScheduler;
+
+/**
+ * Раздача состояния одного вызова нескольким подписчикам (экран вызова, окно с информацией, уведомление):
+ * напрямую из {@link OngoingCall#state()} и через прореживание по кадрам. Для прореженного потока
+ * в измерение входит и выполнение кадра, в котором каждый подписчик получает значение
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallStateFanOutBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int subscribers;
+
+    @Param({"direct", "coalesced"})
+    public String stream;
+
+    private final CallRegistry registry = new CallRegistry();
+    private final TestScheduler frames = new TestScheduler();
+
+    private BenchmarkCallHandle call;
+    private OngoingCall ongoingCall;
+    private Disposable[] subscriptions;
+    private Disposable[] screens;
+    private long delivered;
+    private boolean active;
+    private final Consumer<Integer> sink = state -> delivered += state;
+
+    @Setup
+    public void setUp() {
+        call = new BenchmarkCallHandle("fan-out", CallStates.RINGING);
+        ongoingCall = registry.add(call);
+        subscriptions = new Disposable[subscribers];
+        screens = new Disposable[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions[i] = states().subscribe(sink);
+        }
+        frames.triggerActions();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Disposable subscription : subscriptions) {
+            subscription.dispose();
+        }
+        registry.remove(call);
+    }
+
+    private Observable<Integer> states() {
+        return stream.equals("direct") ? ongoingCall.state() : ongoingCall.coalescedState(frames);
+    }
+
+    /**
+     * Одна смена состояния, доставленная всем подписчикам
+     */
+    @Benchmark
+    public long stateChange() {
+        active = !active;
+        call.setState(active ? CallStates.ACTIVE : CallStates.HOLDING);
+        frames.triggerActions();
+        return delivered;
+    }
+
+    /**
+     * Подписка всех подписчиков с получением текущего состояния и отписка, как при открытии и закрытии экрана
+     */
+    @Benchmark
+    public long subscribeAndDispose() {
+        for (int i = 0; i < subscribers; i++) {
+            screens[i] = states().subscribe(sink);
+        }
+        frames.triggerActions();
+        for (int i = 0; i < subscribers; i++) {
+            screens[i].dispose();
+        }
+        return delivered;
+    }
+}
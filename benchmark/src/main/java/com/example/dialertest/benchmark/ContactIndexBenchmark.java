@@ -0,0 +1,124 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.screening.ContactIndex;
+import com.example.dialertest.screening.ContactSource;
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс контактов на 50 тысячах контактов: полное построение, синхронизация одного изменённого
+ * контакта и проверка номера при звонке
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactIndexBenchmark {
+
+    private static final String[] FORMATS = {"+7 (%s) %s-%s-%s", "8 %s %s %s %s", "+7%s%s%s%s"};
+
+    @Param({"50000"})
+    public int contacts;
+
+    private final PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer(DialingPlan.RUSSIA);
+
+    /**
+     * Контакты в памяти: у каждого от одного до трёх номеров в разных записях
+     */
+    private final class Source implements ContactSource {
+        String[][] phones;
+        long[] updatedAt;
+        long clock;
+
+        @Override
+        public long readChanges(long since, Changes changes) {
+            long latest = since;
+            for (int id = 0; id < phones.length; id++) {
+                if (updatedAt[id] > since) {
+                    changes.contactChanged(id);
+                    for (String phone : phones[id]) {
+                        changes.phone(id, phone);
+                    }
+                    latest = Math.max(latest, updatedAt[id]);
+                }
+            }
+            return latest;
+        }
+    }
+
+    private Source source;
+    private ContactIndex index;
+    private long[] hits;
+    private long[] misses;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(15);
+        source = new Source();
+        source.phones = new String[contacts][];
+        source.updatedAt = new long[contacts];
+        hits = new long[1024];
+        for (int id = 0; id < contacts; id++) {
+            source.phones[id] = new String[1 + random.nextInt(3)];
+            for (int i = 0; i < source.phones[id].length; i++) {
+                int number = random.nextInt(1_000_000_000);
+                String digits = String.format("%010d", 9_000_000_000L + number);
+                source.phones[id][i] = String.format(FORMATS[random.nextInt(FORMATS.length)],
+                        digits.substring(0, 3), digits.substring(3, 6), digits.substring(6, 8), digits.substring(8));
+                if (id < hits.length && i == 0) {
+                    hits[id] = 70_000_000_000L + 9_000_000_000L + number;
+                }
+            }
+            source.updatedAt[id] = ++source.clock;
+        }
+        misses = new long[1024];
+        for (int i = 0; i < misses.length; i++) {
+            misses[i] = 74_950_000_000L + random.nextInt(10_000_000);
+        }
+        index = new ContactIndex(source, normalizer);
+        index.sync();
+    }
+
+    @Benchmark
+    public ContactIndex fullSync() {
+        ContactIndex fresh = new ContactIndex(source, normalizer);
+        fresh.sync();
+        return fresh;
+    }
+
+    @Benchmark
+    public boolean incrementalSync() {
+        source.updatedAt[next++ % contacts] = ++source.clock;
+        return index.sync();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean containsHit() {
+        return index.contains(hits[next++ & (hits.length - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean containsMiss() {
+        return index.contains(misses[next++ & (misses.length - 1)]);
+    }
+}
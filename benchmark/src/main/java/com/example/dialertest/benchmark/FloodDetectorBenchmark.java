@@ -0,0 +1,61 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.metrics.MetricsRegistry;
+import com.example.dialertest.screening.FloodDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Учёт одного звонка в детекторе волн: звонки идут раз в 10 мс синтетического времени, поэтому
+ * интервалы окна постоянно сменяются, а каждый пятый звонок приходит из одного блока
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloodDetectorBenchmark {
+
+    private static final int CALLS = 1 << 16;
+
+    private FloodDetector detector;
+    private final long[] keys = new long[CALLS];
+    private long clock = 1_700_000_000_000L;
+
+    @Setup
+    public void setUp() {
+        detector = new FloodDetector(3, 20, TimeUnit.MINUTES.toMillis(8), TimeUnit.MINUTES.toMillis(30),
+                new MetricsRegistry().counter("flagged"));
+        Random random = new Random(42);
+        for (int i = 0; i < CALLS; i++) {
+            keys[i] = i % 5 == 0 ? 79005551000L + random.nextInt(1000) : 79000000000L + random.nextInt(1_000_000_000);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int observe() {
+        int hostile = 0;
+        for (int i = 0; i < CALLS; i++) {
+            clock += 10;
+            if (detector.observe(keys[i], clock)) {
+                hostile++;
+            }
+        }
+        return hostile;
+    }
+}
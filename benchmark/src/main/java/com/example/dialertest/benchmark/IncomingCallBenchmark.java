@@ -0,0 +1,85 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.call.CallRegistry;
+import com.example.dialertest.call.CallStates;
+import com.example.dialertest.call.OngoingCall;
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+/**
+ * Часть пути от onCallAdded до экрана вызова, не связанная с интерфейсом: добавление вызова в реестр,
+ * подписка на его состояние, приведение номера к единому виду и прореживание состояний по кадрам.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncomingCallBenchmark {
+
+    /**
+     * Смена состояний при установке исходящего соединения до ответа
+     */
+    private static final int[] SETUP_STATES = {
+            CallStates.NEW, CallStates.CONNECTING, CallStates.SELECT_PHONE_ACCOUNT, CallStates.CONNECTING,
+            CallStates.DIALING, CallStates.PULLING_CALL, CallStates.DIALING, CallStates.ACTIVE,
+    };
+
+    private final CallRegistry registry = new CallRegistry();
+    private final PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer(DialingPlan.RUSSIA);
+    private final TestScheduler frames = new TestScheduler();
+
+    private BenchmarkCallHandle churnCall;
+    private long nextId;
+
+    @Setup
+    public void setUp() {
+        churnCall = new BenchmarkCallHandle("churn", CallStates.NEW);
+        registry.add(churnCall).coalescedState(frames).subscribe();
+    }
+
+    /**
+     * То, что onCallAdded делает до запуска активности, и последующее удаление вызова
+     */
+    @Benchmark
+    public void callAddedToRemoved(Blackhole blackhole) {
+        BenchmarkCallHandle call = new BenchmarkCallHandle(Long.toString(nextId++), CallStates.RINGING);
+        OngoingCall ongoingCall = registry.add(call);
+        Disposable subscription = ongoingCall.coalescedState(Schedulers.trampoline()).subscribe(blackhole::consume);
+        blackhole.consume(normalizer.normalize("tel:+7 (495) 123-45-67"));
+
+        call.setState(CallStates.DISCONNECTED);
+        subscription.dispose();
+        registry.remove(call);
+    }
+
+    /**
+     * Восемь смен состояния за один кадр, после которых интерфейс получает одно значение
+     */
+    @Benchmark
+    public void setupChurnPerFrame() {
+        for (int state : SETUP_STATES) {
+            churnCall.setState(state);
+        }
+        frames.triggerActions();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.metrics.Counter;
+import com.example.dialertest.metrics.LatencyHistogram;
+import com.example.dialertest.metrics.MetricsRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость записи в метрики на горячем пути, в том числе при одновременной записи из нескольких потоков
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final LatencyHistogram histogram = registry.histogram("benchmark.latency");
+    private final Counter counter = registry.counter("benchmark.events");
+
+    @State(Scope.Thread)
+    public static class Values {
+        long next = 1_000_000L;
+
+        long nextValue() {
+            // Значения от 1 до ~4 мс, чтобы запись попадала в разные корзины
+            next = next * 6364136223846793005L + 1442695040888963407L;
+            return 1_000_000L + (next >>> 42);
+        }
+    }
+
+    @Benchmark
+    public void histogramRecord(Values values) {
+        histogram.record(values.nextValue());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void histogramRecordContended(Values values) {
+        histogram.record(values.nextValue());
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Сравнивает однопроходный {@link PhoneNumberNormalizer} с наивным разбором на регулярных выражениях
+ * и строковых операциях. Оба варианта получают одинаковый набор записей номеров.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizerBenchmark {
+
+    private static final String[] INPUTS = {
+            "+7 (495) 123-45-67",
+            "8 495 123 45 67",
+            "0074951234567",
+            "810 7 495 123-45-67",
+            "%2B7%20916%20123-45-67",
+            "4951234567",
+            "+44 20 7123 4567",
+            "+74951234567;ext=12",
+    };
+
+    private static final Pattern NON_DIGITS = Pattern.compile("[^0-9+]");
+    private static final Pattern PARAMETERS = Pattern.compile(";.*$");
+
+    private final PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer(DialingPlan.RUSSIA);
+    private int next;
+
+    private String nextInput() {
+        String input = INPUTS[next];
+        next = (next + 1) % INPUTS.length;
+        return input;
+    }
+
+    @Benchmark
+    public long normalizer() {
+        return normalizer.normalize(nextInput());
+    }
+
+    @Benchmark
+    public long regex() throws UnsupportedEncodingException {
+        return naiveNormalize(nextInput());
+    }
+
+    /**
+     * Типичная реализация "в лоб": декодирование URL, удаление параметров и форматирования
+     * регулярными выражениями, затем замена префиксов через substring
+     */
+    static long naiveNormalize(String raw) throws UnsupportedEncodingException {
+        String number = URLDecoder.decode(raw, "UTF-8");
+        number = PARAMETERS.matcher(number).replaceAll("");
+        number = NON_DIGITS.matcher(number).replaceAll("");
+        if (number.startsWith("+")) {
+            number = number.substring(1);
+        } else if (number.startsWith("810")) {
+            number = number.substring(3);
+        } else if (number.startsWith("00")) {
+            number = number.substring(2);
+        } else if (number.startsWith("8") && number.length() == 11) {
+            number = "7" + number.substring(1);
+        } else if (number.length() == 10) {
+            number = "7" + number;
+        }
+        if (number.isEmpty() || number.length() > NumberKeys.MAX_DIGITS || number.charAt(0) == '0') {
+            return NumberKeys.INVALID;
+        }
+        return Long.parseLong(number);
+    }
+}
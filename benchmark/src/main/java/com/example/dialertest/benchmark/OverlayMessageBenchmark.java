@@ -0,0 +1,126 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.handling.OverlayMessages;
+import com.example.dialertest.metrics.MetricsRegistry;
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.FloodDetector;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+import com.example.dialertest.screening.ScreeningPipeline;
+import com.example.dialertest.screening.ScreeningResult;
+import com.example.dialertest.screening.ScreeningRules;
+import com.example.dialertest.screening.SpamNumberIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение текста окна с информацией о звонке для нежелательного номера (с именем и без),
+ * звонка волны и обычного звонка. Сравнивается с прежней сборкой через сцепление строк
+ * и {@link PhoneNumberNormalizer#format(long)}. Результаты получены настоящим конвейером проверки
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlayMessageBenchmark {
+
+    private ScreeningResult[] results;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        ExecutorService lookupExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService enrichmentExecutor = Executors.newSingleThreadExecutor();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            SpamNumberIndex database = new SpamNumberIndex.Builder().addNumber(74951234567L).build();
+            PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer(DialingPlan.RUSSIA);
+            ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> database, normalizer,
+                    lookupExecutor, enrichmentExecutor, timer, TimeUnit.SECONDS.toNanos(5))
+                    .rules(ScreeningRules::defaults)
+                    .flood(new FloodDetector(3, 2, TimeUnit.MINUTES.toMillis(10), TimeUnit.HOURS.toMillis(1),
+                            new MetricsRegistry().counter("flagged")))
+                    .build();
+            ScreeningResult spam = screen(pipeline, "+7 495 123-45-67");
+            ScreeningResult useful = screen(pipeline, "+7 916 123-45-67");
+            // Второй звонок из того же блока номеров превышает порог волны
+            ScreeningResult flood = screen(pipeline, "+7 916 123-45-99");
+            results = new ScreeningResult[]{
+                    spam, spam.withCallerName("ООО Ромашка"), flood, useful, useful.withCallerName("Иван Петров"),
+            };
+        } finally {
+            lookupExecutor.shutdownNow();
+            enrichmentExecutor.shutdownNow();
+            timer.shutdownNow();
+        }
+    }
+
+    private static ScreeningResult screen(ScreeningPipeline pipeline, String number) throws InterruptedException {
+        BlockingQueue<ScreeningResult> verdicts = new ArrayBlockingQueue<>(1);
+        pipeline.screen(number, new ScreeningPipeline.Callback() {
+            @Override
+            public void onVerdict(ScreeningResult result) {
+                verdicts.add(result);
+            }
+
+            @Override
+            public void onEnriched(ScreeningResult result) {
+            }
+        });
+        return verdicts.take();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void overlayMessages(Blackhole blackhole) {
+        for (ScreeningResult result : results) {
+            blackhole.consume(OverlayMessages.build(result));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void concatenation(Blackhole blackhole) {
+        for (ScreeningResult result : results) {
+            blackhole.consume(concatenate(result));
+        }
+    }
+
+    /**
+     * Прежняя сборка текста в MyCallScreeningService
+     */
+    private static String concatenate(ScreeningResult result) {
+        if (result.isFallback()) {
+            return "Проверка номера не завершена";
+        }
+
+        String message;
+        if (result.isSpam()) {
+            message = "Звонок от номера " + PhoneNumberNormalizer.format(result.numberKey())
+                    + " является нежелательным.";
+        } else if (result.rule() == ScreeningResult.RULE_FLOOD) {
+            message = "Массовый обзвон: много звонков с похожих номеров";
+        } else {
+            message = "Отзывы: полезный звонок";
+        }
+        return result.callerName() == null ? message : result.callerName() + "\n" + message;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.reputation.CallHistory;
+import com.example.dialertest.reputation.ModelReputationScorer;
+import com.example.dialertest.reputation.ReputationFeatures;
+import com.example.dialertest.reputation.ReputationModel;
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.SpamDatabase;
+import com.example.dialertest.screening.SpamEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время оценки репутации одного звонка: только модель по готовым признакам и полная оценка
+ * с вычислением признаков номера и истории. Модели - линейная и ансамбль из ста деревьев глубины 4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReputationBenchmark {
+
+    private static final int CALLS = 1 << 16;
+    private static final int TREES = 100;
+    private static final int DEPTH = 4;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Param({"linear", "trees"})
+    public String model;
+
+    private ReputationModel compiled;
+    private ModelReputationScorer scorer;
+
+    private final long[] keys = new long[CALLS];
+    private final int[] entries = new int[CALLS];
+    private final int[] hours = new int[CALLS];
+    private final float[][] features = new float[CALLS][ReputationFeatures.COUNT];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        ReputationModel.Builder builder = new ReputationModel.Builder().bias(-3f);
+        for (int feature = 0; feature < ReputationFeatures.COUNT; feature++) {
+            builder.weight(feature, random.nextFloat() - 0.5f);
+        }
+        for (int i = 0; i < 200; i++) {
+            builder.prefix(7900 + random.nextInt(100), 4, random.nextFloat());
+        }
+        if (model.equals("trees")) {
+            for (int tree = 0; tree < TREES; tree++) {
+                builder.tree();
+                // Полное дерево: узел i ветвится на 2i+1 и 2i+2, последний уровень - листья
+                int inner = (1 << DEPTH) - 1;
+                for (int node = 0; node < inner; node++) {
+                    builder.node(random.nextInt(ReputationFeatures.COUNT), random.nextFloat() * 4f,
+                            2 * node + 1, 2 * node + 2);
+                }
+                for (int leaf = 0; leaf <= inner; leaf++) {
+                    builder.leaf(random.nextFloat() * 0.2f - 0.1f);
+                }
+            }
+        }
+        compiled = builder.build();
+
+        CallHistory history = new CallHistory(4096);
+        scorer = new ModelReputationScorer(() -> compiled, history, 7, 79001234567L);
+        for (int i = 0; i < CALLS; i++) {
+            keys[i] = 79000000000L + random.nextInt(1_000_000_000);
+            entries[i] = random.nextInt(10) == 0
+                    ? SpamEntry.pack(random.nextInt(6), random.nextInt(SpamEntry.MAX_SCORE + 1))
+                    : SpamDatabase.NOT_FOUND;
+            hours[i] = random.nextInt(24);
+            if (i % 16 == 0) {
+                history.record(NOW - random.nextInt(1_000_000_000), keys[i], random.nextBoolean());
+            }
+            scorer.fill(compiled, keys[i], entries[i], hours[i], NOW, features[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public float score() {
+        float sum = 0f;
+        for (int i = 0; i < CALLS; i++) {
+            sum += compiled.score(features[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public float featuresAndScore() {
+        float sum = 0f;
+        for (int i = 0; i < CALLS; i++) {
+            sum += scorer.score(keys[i], entries[i], hours[i], NOW);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.ScreeningRule;
+import com.example.dialertest.screening.ScreeningRules;
+import com.example.dialertest.screening.ScreeningRulesParser;
+import com.example.dialertest.screening.SpamDatabase;
+import com.example.dialertest.screening.SpamEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность правил проверки на миллионе синтетических звонков: скомпилированная
+ * таблица решений, перебор конъюнкций при большом числе условий и обход дерева условий для сравнения
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleEngineBenchmark {
+
+    private static final int CALLS = 1 << 20;
+
+    private static final String TYPICAL_RULES = ""
+            + "allow when contact\n"
+            + "block,skip-notification when hidden and hour=22-7\n"
+            + "reject,skip-log when prefix=+7900555 unless contact\n"
+            + "reject when category=fraud or score>=90\n"
+            + "silence when score>=0.7\n";
+
+    /**
+     * typical - пять правил из файла по умолчанию, prefixes - сорок правил-префиксов
+     */
+    @Param({"typical", "prefixes"})
+    public String rules;
+
+    private ScreeningRules compiled;
+    private List<ScreeningRule> tree;
+
+    private final long[] keys = new long[CALLS];
+    private final boolean[] contacts = new boolean[CALLS];
+    private final int[] entries = new int[CALLS];
+    private final int[] hours = new int[CALLS];
+
+    @Setup
+    public void setUp() {
+        String text = TYPICAL_RULES;
+        if (rules.equals("prefixes")) {
+            StringBuilder prefixes = new StringBuilder("allow when contact\n");
+            for (int i = 0; i < 40; i++) {
+                prefixes.append("block when prefix=+79").append(10 + i).append('\n');
+            }
+            text = prefixes.toString();
+        }
+        compiled = ScreeningRulesParser.parse(text);
+        tree = compiled.rules();
+
+        Random random = new Random(42);
+        for (int i = 0; i < CALLS; i++) {
+            keys[i] = random.nextInt(20) == 0 ? NumberKeys.INVALID : 79000000000L + random.nextInt(1_000_000_000);
+            contacts[i] = random.nextInt(4) == 0;
+            entries[i] = random.nextInt(10) == 0
+                    ? SpamEntry.pack(random.nextInt(6), random.nextInt(SpamEntry.MAX_SCORE + 1))
+                    : SpamDatabase.NOT_FOUND;
+            hours[i] = random.nextInt(24);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int compiled() {
+        int blocked = 0;
+        for (int i = 0; i < CALLS; i++) {
+            blocked += compiled.evaluate(keys[i], contacts[i], entries[i], hours[i]) & 1;
+        }
+        return blocked;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int conditionTree() {
+        int blocked = 0;
+        for (int i = 0; i < CALLS; i++) {
+            for (ScreeningRule rule : tree) {
+                if (rule.condition().matches(keys[i], contacts[i], entries[i], hours[i], Float.NaN, false)) {
+                    blocked += rule.action() & 1;
+                    break;
+                }
+            }
+        }
+        return blocked;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.dialertest.benchmark;
+
+import com.example.dialertest.screening.FilteredSpamDatabase;
+import com.example.dialertest.screening.MappedSpamDatabase;
+import com.example.dialertest.screening.SpamDatabase;
+import com.example.dialertest.screening.SpamDatabaseBuilder;
+import com.example.dialertest.screening.SpamEntry;
+import com.example.dialertest.screening.SpamNumberIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск номера в базе из 1 и 10 миллионов записей: индекс в памяти, файл, отображённый в память,
+ * и тот же файл за фильтром Блума с 10 битами на запись, как в приложении. Девять запросов из десяти -
+ * номера, которых в базе нет, как у обычных входящих звонков
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SpamLookupBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000000", "10000000"})
+    public int entries;
+
+    @Param({"index", "mapped", "filtered"})
+    public String database;
+
+    private SpamDatabase compiled;
+    private File file;
+    private final long[] keys = new long[LOOKUPS];
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        long[] numbers = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            numbers[i] = 79_000_000_000L + random.nextInt(1_000_000_000);
+        }
+
+        if (database.equals("index")) {
+            SpamNumberIndex.Builder builder = new SpamNumberIndex.Builder();
+            for (long number : numbers) {
+                builder.addNumber(number);
+            }
+            compiled = builder.build();
+        } else {
+            SpamDatabaseBuilder builder = new SpamDatabaseBuilder();
+            for (long number : numbers) {
+                builder.addNumber(number, SpamEntry.pack(random.nextInt(6), random.nextInt(SpamEntry.MAX_SCORE + 1)));
+            }
+            file = File.createTempFile("spam", ".db");
+            builder.writeTo(file, 1L);
+            compiled = MappedSpamDatabase.open(file);
+            if (database.equals("filtered")) {
+                compiled = FilteredSpamDatabase.build(compiled, 10);
+            }
+        }
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = i % 10 == 0 ? numbers[random.nextInt(entries)] : 79_000_000_000L + random.nextInt(1_000_000_000);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int find() {
+        int found = 0;
+        for (long key : keys) {
+            if (compiled.find(key) != SpamDatabase.NOT_FOUND) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
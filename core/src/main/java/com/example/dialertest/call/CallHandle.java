@@ -0,0 +1,33 @@
+package com.example.dialertest.call;
+
+/**
+ * Адаптер над вызовом системы телефонии. В приложении оборачивает android.telecom.Call,
+ * а в тестах заменяется поддельной реализацией, что позволяет проверять реестр вызовов на JVM.
+ */
+public interface CallHandle {
+
+    /**
+     * Слушатель изменений состояния вызова
+     */
+    interface Listener {
+        void onStateChanged(CallHandle call, int state);
+    }
+
+    /**
+     * Идентификатор вызова, уникальный в пределах процесса
+     */
+    String id();
+
+    /**
+     * Текущее состояние вызова, одно из значений {@link CallStates}
+     */
+    int state();
+
+    void answer();
+
+    void disconnect();
+
+    void registerListener(Listener listener);
+
+    void unregisterListener(Listener listener);
+}
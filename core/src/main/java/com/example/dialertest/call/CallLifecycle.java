@@ -0,0 +1,70 @@
+package com.example.dialertest.call;
+
+import com.example.dialertest.metrics.Counter;
+
+/**
+ * Появление и удаление вызовов: учёт в реестре и показ пользователю. В приложении вызывается
+ * из CallService, а в симуляторе звонков - из потока воспроизведения трассы, поэтому порядок
+ * действий у них один и тот же. Показ вызова зависит от платформы и вынесен в {@link Presenter}.
+ */
+public final class CallLifecycle {
+
+    /**
+     * Показ вызова пользователю
+     */
+    public interface Presenter {
+
+        /**
+         * Показывает вызов. Вызывается сразу после добавления вызова в реестр
+         * @param addedAtNanos Время появления вызова, по которому измеряется задержка до первого кадра
+         */
+        void show(CallHandle handle, OngoingCall call, long addedAtNanos);
+
+        /**
+         * Освобождает всё, что было подготовлено для показа вызова. Вызывается до удаления вызова из реестра
+         */
+        void dismiss(CallHandle handle);
+    }
+
+    private final CallRegistry registry;
+    private final Presenter presenter;
+    private final Counter callsAdded;
+
+    /**
+     * @param callsAdded Счётчик добавленных вызовов
+     */
+    public CallLifecycle(CallRegistry registry, Presenter presenter, Counter callsAdded) {
+        this.registry = registry;
+        this.presenter = presenter;
+        this.callsAdded = callsAdded;
+    }
+
+    public CallRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Добавляет вызов в реестр и показывает его. Если вызов с таким идентификатором уже есть,
+     * подготовленный для него показ сначала освобождается, а реестр заменяет прежний вызов
+     * @return Текущий вызов, соответствующий добавленному
+     */
+    public OngoingCall callAdded(CallHandle handle, long addedAtNanos) {
+        callsAdded.increment();
+        OngoingCall previous = registry.get(handle.id());
+        if (previous != null && previous.call() != handle) {
+            presenter.dismiss(previous.call());
+        }
+        OngoingCall call = registry.add(handle);
+        presenter.show(handle, call, addedAtNanos);
+        return call;
+    }
+
+    /**
+     * Убирает вызов с экрана и удаляет его из реестра
+     * @return Истина, если вызов был в реестре
+     */
+    public boolean callRemoved(CallHandle handle) {
+        presenter.dismiss(handle);
+        return registry.remove(handle);
+    }
+}
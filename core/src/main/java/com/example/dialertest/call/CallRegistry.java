@@ -0,0 +1,110 @@
+package com.example.dialertest.call;
+
+import com.example.dialertest.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.BehaviorSubject;
+
+/**
+ * Реестр текущих вызовов, в котором вызовы хранятся по идентификатору. Для каждого вызова есть свой
+ * поток состояний, а общий поток {@link #activeCalls()} выдаёт список всех вызовов при каждом
+ * добавлении или удалении.
+ *
+ * Поиск вызова по идентификатору не блокируется. Добавление и удаление синхронизированы между
+ * собой, чтобы список активных вызовов выдавался в том же порядке, в котором менялся реестр.
+ */
+public final class CallRegistry {
+
+    private final ConcurrentHashMap<String, OngoingCall> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Вызовы в порядке добавления. Изменяется только под блокировкой
+     */
+    private final List<OngoingCall> order = new ArrayList<>();
+
+    private final BehaviorSubject<List<OngoingCall>> activeCalls =
+            BehaviorSubject.createDefault(Collections.<OngoingCall>emptyList());
+
+    private final Object lock = new Object();
+
+    private final LatencyHistogram transitionGaps;
+
+    public CallRegistry() {
+        this(null);
+    }
+
+    /**
+     * @param transitionGaps Гистограмма, в которую записываются промежутки между сменами состояния
+     *                       каждого вызова, или null
+     */
+    public CallRegistry(LatencyHistogram transitionGaps) {
+        this.transitionGaps = transitionGaps;
+    }
+
+    /**
+     * Добавляет вызов в реестр и регистрирует у него колбэк. Если вызов с таким идентификатором уже
+     * есть, у прежнего вызова снимается регистрация колбэка, а его поток состояний завершается.
+     * @return Текущий вызов, соответствующий добавленному
+     */
+    public OngoingCall add(CallHandle call) {
+        OngoingCall ongoingCall = new OngoingCall(call, transitionGaps);
+        synchronized (lock) {
+            OngoingCall previous = calls.put(call.id(), ongoingCall);
+            if (previous != null) {
+                order.remove(previous);
+                previous.detach();
+            }
+            order.add(ongoingCall);
+            ongoingCall.attach();
+            publishLocked();
+        }
+        return ongoingCall;
+    }
+
+    /**
+     * Удаляет вызов из реестра, снимает регистрацию колбэка и завершает поток состояний вызова.
+     * Вызов с тем же идентификатором, но добавленный позже, не затрагивается.
+     * @return Истина, если вызов был в реестре
+     */
+    public boolean remove(CallHandle call) {
+        synchronized (lock) {
+            OngoingCall ongoingCall = calls.get(call.id());
+            if (ongoingCall == null || ongoingCall.call() != call) {
+                return false;
+            }
+            calls.remove(call.id());
+            order.remove(ongoingCall);
+            ongoingCall.detach();
+            publishLocked();
+            return true;
+        }
+    }
+
+    /**
+     * Возвращает вызов по идентификатору или null, если такого вызова нет
+     */
+    public OngoingCall get(String id) {
+        return id == null ? null : calls.get(id);
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * Поток списков активных вызовов в порядке их добавления. Новый подписчик сразу получает
+     * текущий список. Списки неизменяемые
+     */
+    public Observable<List<OngoingCall>> activeCalls() {
+        return activeCalls.hide();
+    }
+
+    private void publishLocked() {
+        activeCalls.onNext(Collections.unmodifiableList(new ArrayList<>(order)));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.dialertest.call;
+
+/**
+ * Состояния вызова. Значения совпадают с константами android.telecom.Call.STATE_*, чтобы ядро
+ * можно было использовать и тестировать на JVM без зависимости от Android.
+ */
+public final class CallStates {
+
+    public static final int NEW = 0;
+    public static final int DIALING = 1;
+    public static final int RINGING = 2;
+    public static final int HOLDING = 3;
+    public static final int ACTIVE = 4;
+    public static final int DISCONNECTED = 7;
+    public static final int SELECT_PHONE_ACCOUNT = 8;
+    public static final int CONNECTING = 9;
+    public static final int DISCONNECTING = 10;
+    public static final int PULLING_CALL = 11;
+    public static final int AUDIO_PROCESSING = 12;
+    public static final int SIMULATED_RINGING = 13;
+
+    /**
+     * Состояния, в которых показывается кнопка ответа
+     */
+    public static final int ANSWERABLE = mask(RINGING);
+
+    /**
+     * Состояния, в которых показывается кнопка отклонения или завершения вызова
+     */
+    public static final int ENDABLE = mask(DIALING) | mask(RINGING) | mask(ACTIVE);
+
+    private CallStates() {
+    }
+
+    /**
+     * Битовая маска состояния. Наборы состояний задаются объединением масок, что позволяет
+     * проверять принадлежность состояния набору без списков и упаковки чисел
+     */
+    public static int mask(int state) {
+        return state >= 0 && state < Integer.SIZE ? 1 << state : 0;
+    }
+
+    /**
+     * Проверяет, входит ли состояние в набор, заданный битовой маской
+     */
+    public static boolean isIn(int state, int mask) {
+        return (mask(state) & mask) != 0;
+    }
+}
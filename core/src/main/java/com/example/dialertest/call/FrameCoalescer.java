@@ -0,0 +1,142 @@
+package com.example.dialertest.call;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Прореживает поток состояний до одного значения за кадр. Значения из источника только запоминаются,
+ * а на планировщике кадров выполняется не более одной задачи за раз: она отдаёт подписчику последнее
+ * значение, если оно отличается от уже отданного. Промежуточные состояния, сменившиеся в пределах
+ * одного кадра, отбрасываются, поэтому медленный подписчик не накапливает очередь.
+ *
+ * В приложении планировщиком служит Choreographer, в тестах - TestScheduler. Завершение и ошибка
+ * доставляются через тот же планировщик после последнего значения.
+ */
+public final class FrameCoalescer extends Observable<Integer> {
+
+    private final ObservableSource<Integer> source;
+    private final Scheduler frameScheduler;
+
+    private FrameCoalescer(ObservableSource<Integer> source, Scheduler frameScheduler) {
+        this.source = source;
+        this.frameScheduler = frameScheduler;
+    }
+
+    public static Observable<Integer> coalesce(ObservableSource<Integer> source, Scheduler frameScheduler) {
+        return new FrameCoalescer(source, frameScheduler);
+    }
+
+    @Override
+    protected void subscribeActual(Observer<? super Integer> observer) {
+        source.subscribe(new CoalescingObserver(observer, frameScheduler.createWorker()));
+    }
+
+    /**
+     * Значение AtomicInteger - признак того, что задача кадра уже запланирована
+     */
+    private static final class CoalescingObserver extends AtomicInteger
+            implements Observer<Integer>, Disposable, Runnable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Observer<? super Integer> downstream;
+        private final Scheduler.Worker worker;
+
+        private Disposable upstream;
+
+        /**
+         * Последнее значение источника. Integer для состояний вызова берётся из кэша Integer.valueOf
+         */
+        private volatile Integer latest;
+
+        /**
+         * Последнее отданное подписчику значение. Используется только в задаче кадра
+         */
+        private Integer emitted;
+
+        private volatile boolean done;
+        private Throwable error;
+        private volatile boolean disposed;
+
+        CoalescingObserver(Observer<? super Integer> downstream, Scheduler.Worker worker) {
+            this.downstream = downstream;
+            this.worker = worker;
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstream = d;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(Integer value) {
+            latest = value;
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (!disposed && compareAndSet(0, 1)) {
+                worker.schedule(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            set(0);
+            if (disposed) {
+                return;
+            }
+
+            // Признак завершения читается до значения: если он уже выставлен, значение окончательное
+            boolean terminated = done;
+            Integer value = latest;
+            if (value != null && !value.equals(emitted)) {
+                emitted = value;
+                downstream.onNext(value);
+            }
+
+            if (terminated && !disposed) {
+                disposed = true;
+                worker.dispose();
+                if (error != null) {
+                    downstream.onError(error);
+                } else {
+                    downstream.onComplete();
+                }
+            }
+        }
+
+        @Override
+        public void dispose() {
+            if (!disposed) {
+                disposed = true;
+                upstream.dispose();
+                worker.dispose();
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+}
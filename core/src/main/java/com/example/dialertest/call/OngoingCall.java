@@ -0,0 +1,131 @@
+package com.example.dialertest.call;
+
+import com.example.dialertest.metrics.LatencyHistogram;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.subjects.BehaviorSubject;
+
+/**
+ * Текущий вызов. У каждого вызова свой поток состояний, поэтому второй входящий звонок, ожидание
+ * вызова или конференция не перезаписывают состояние первого. Экземпляры создаются и удаляются
+ * реестром {@link CallRegistry}.
+ */
+public final class OngoingCall {
+
+    private static final int NO_STATE = -1;
+
+    private final CallHandle call;
+
+    /**
+     * Гистограмма промежутков между сменами состояния или null, если они не измеряются
+     */
+    private final LatencyHistogram transitionGaps;
+
+    /**
+     * Время последней смены состояния по System.nanoTime()
+     */
+    private long lastTransitionAt;
+
+    /**
+     * Хранит последнее состояние вызова и передаёт его новым подписчикам. Состояние может приходить
+     * из разных потоков, поэтому значения передаются только под блокировкой объекта
+     */
+    private final BehaviorSubject<Integer> state = BehaviorSubject.create();
+
+    private volatile int currentState = NO_STATE;
+
+    /**
+     * Передаёт изменения состояния вызова в поток состояний
+     */
+    private final CallHandle.Listener listener = new CallHandle.Listener() {
+        @Override
+        public void onStateChanged(CallHandle call, int newState) {
+            publish(newState);
+        }
+    };
+
+    OngoingCall(CallHandle call, LatencyHistogram transitionGaps) {
+        this.call = call;
+        this.transitionGaps = transitionGaps;
+    }
+
+    public String id() {
+        return call.id();
+    }
+
+    CallHandle call() {
+        return call;
+    }
+
+    /**
+     * Поток состояний вызова. Новый подписчик сразу получает последнее состояние, повторы одного
+     * и того же состояния не передаются, а после удаления вызова из реестра поток завершается
+     */
+    public Observable<Integer> state() {
+        return state.hide();
+    }
+
+    /**
+     * Поток состояний для интерфейса: не больше одного значения за кадр планировщика frameScheduler
+     * @see FrameCoalescer
+     */
+    public Observable<Integer> coalescedState(Scheduler frameScheduler) {
+        return FrameCoalescer.coalesce(state, frameScheduler);
+    }
+
+    public int currentState() {
+        return currentState;
+    }
+
+    /**
+     * Метод ответа на вызов
+     */
+    public void answer() {
+        call.answer();
+    }
+
+    /**
+     * Метод завершения вызова
+     */
+    public void hangup() {
+        call.disconnect();
+    }
+
+    /**
+     * Регистрирует колбэк у вызова и передаёт в поток его текущее состояние. Колбэк регистрируется первым,
+     * а состояние читается под блокировкой, поэтому смена состояния во время регистрации не теряется:
+     * она либо уже видна в call.state(), либо придёт через колбэк после публикации
+     */
+    void attach() {
+        call.registerListener(listener);
+        synchronized (this) {
+            publish(call.state());
+        }
+    }
+
+    /**
+     * Снимает регистрацию колбэка и завершает поток состояний
+     */
+    void detach() {
+        call.unregisterListener(listener);
+        synchronized (this) {
+            state.onComplete();
+        }
+    }
+
+    private synchronized void publish(int newState) {
+        if (newState == currentState) {
+            return;
+        }
+        if (transitionGaps != null) {
+            long now = System.nanoTime();
+            if (lastTransitionAt != 0L) {
+                transitionGaps.record(now - lastTransitionAt);
+            }
+            lastTransitionAt = now;
+        }
+        currentState = newState;
+        state.onNext(newState);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.dialertest.handling;
+
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+import com.example.dialertest.screening.ScreeningResult;
+
+/**
+ * Текст окна с информацией о входящем звонке. Строится при решении и при каждом дополнении
+ * результата, поэтому постоянные сообщения не копируются, а сообщение с номером собирается
+ * в одном StringBuilder без промежуточных строк.
+ *
+ * Номер, которого нет в базе, может быть заблокирован пользовательским правилом (например, скрытый
+ * номер ночью). Для такого звонка выводится сообщение о правиле, а не отзыв о полезном звонке.
+ */
+public final class OverlayMessages {
+
+    static final String INCOMPLETE = "Проверка номера не завершена";
+    static final String FLOOD = "Массовый обзвон: много звонков с похожих номеров";
+    static final String USEFUL = "Отзывы: полезный звонок";
+    static final String BLOCKED_BY_RULE = "Звонок заблокирован по вашему правилу";
+
+    private static final String SPAM_PREFIX = "Звонок от номера ";
+    private static final String SPAM_SUFFIX = " является нежелательным.";
+
+    private OverlayMessages() {
+    }
+
+    /**
+     * Текст окна: имя звонящего, если оно известно, и строка о номере
+     */
+    public static String build(ScreeningResult result) {
+        if (result.isFallback()) {
+            return INCOMPLETE;
+        }
+        String name = result.callerName();
+        if (result.isSpam()) {
+            StringBuilder message = new StringBuilder((name == null ? 0 : name.length() + 1)
+                    + SPAM_PREFIX.length() + 16 + SPAM_SUFFIX.length());
+            if (name != null) {
+                message.append(name).append('\n');
+            }
+            message.append(SPAM_PREFIX);
+            return PhoneNumberNormalizer.formatTo(result.numberKey(), message).append(SPAM_SUFFIX).toString();
+        }
+        String message;
+        if (result.isBlocked()) {
+            message = BLOCKED_BY_RULE;
+        } else {
+            message = result.rule() == ScreeningResult.RULE_FLOOD ? FLOOD : USEFUL;
+        }
+        return name == null ? message : name + "\n" + message;
+    }
+}
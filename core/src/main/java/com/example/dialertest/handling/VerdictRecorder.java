@@ -0,0 +1,63 @@
+package com.example.dialertest.handling;
+
+import com.example.dialertest.journal.DecisionJournal;
+import com.example.dialertest.metrics.Counter;
+import com.example.dialertest.metrics.LatencyHistogram;
+import com.example.dialertest.reputation.CallHistory;
+import com.example.dialertest.screening.ScreeningResult;
+import com.example.dialertest.screening.SpamEntry;
+
+/**
+ * Учёт решения по входящему звонку: метрики, журнал решений и история звонков для признаков
+ * репутации. В приложении вызывается из MyCallScreeningService после ответа системе, в симуляторе
+ * звонков - из колбэка конвейера. Запись не выполняет ввод-вывод и не выделяет память.
+ */
+public final class VerdictRecorder {
+
+    private final LatencyHistogram decisions;
+    private final Counter blocked;
+    private final Counter allowed;
+    private final Counter fallback;
+    private final DecisionJournal journal;
+    private final CallHistory history;
+
+    /**
+     * @param decisions Гистограмма времени от начала проверки до готовности решения
+     * @param journal Журнал решений или null, если решения не журналируются
+     * @param history История звонков или null, если репутация не оценивается
+     */
+    public VerdictRecorder(LatencyHistogram decisions, Counter blocked, Counter allowed, Counter fallback,
+                           DecisionJournal journal, CallHistory history) {
+        this.decisions = decisions;
+        this.blocked = blocked;
+        this.allowed = allowed;
+        this.fallback = fallback;
+        this.journal = journal;
+        this.history = history;
+    }
+
+    /**
+     * Учитывает решение
+     * @param timeMillis Время решения по часам устройства, мс
+     */
+    public void record(ScreeningResult result, long timeMillis) {
+        decisions.record(result.verdictNanos());
+        if (result.isFallback()) {
+            fallback.increment();
+        } else if (result.isBlocked()) {
+            blocked.increment();
+        } else {
+            allowed.increment();
+        }
+
+        if (journal != null) {
+            int entry = result.isSpam() ? result.entry() : 0;
+            journal.record(timeMillis, result.numberKey(), result.action(), result.rule(),
+                    SpamEntry.category(entry), SpamEntry.score(entry), result.verdictNanos());
+        }
+        if (history != null) {
+            // Результат по умолчанию не содержит номера и в историю не попадает
+            history.record(timeMillis, result.numberKey(), result.isBlocked());
+        }
+    }
+}
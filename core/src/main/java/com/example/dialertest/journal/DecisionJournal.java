@@ -0,0 +1,242 @@
+package com.example.dialertest.journal;
+
+import com.example.dialertest.screening.ScreeningAction;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал решений о входящих звонках, в который записи только дописываются.
+ *
+ * {@link #record} не выполняет ввод-вывод: запись кладётся в кольцевой буфер без блокировок,
+ * а фоновая задача периодически переносит накопленные записи в файл пачками. Когда сегмент
+ * достигает предельного размера, начинается новый, а самые старые сегменты удаляются так, чтобы
+ * журнал занимал на диске не больше заданного объёма.
+ *
+ * При открытии журнала всегда начинается новый сегмент, поэтому оборванная при аварийном
+ * завершении запись остаётся только в конце прежнего сегмента и пропускается при чтении.
+ * Если запись в файл не удалась, пачка, уже забранная из буфера, остаётся в памяти и при
+ * следующей попытке пишется в новый сегмент раньше остальных записей.
+ * Записи читаются через {@link DecisionJournalReader}.
+ */
+public final class DecisionJournal implements Closeable {
+
+    /**
+     * Решения совпадают с флагами ScreeningAction: звонок пропущен или не допущен. Вместо них
+     * можно записывать полный набор флагов действия, например с отклонением и беззвучным режимом
+     */
+    public static final int VERDICT_ALLOW = ScreeningAction.ALLOW;
+    public static final int VERDICT_BLOCK = ScreeningAction.DISALLOW;
+
+    /**
+     * Сколько записей переносится в файл за одну операцию записи
+     */
+    private static final int BATCH_RECORDS = 256;
+
+    private final File directory;
+    private final ScheduledExecutorService executor;
+    private final DecisionRingBuffer buffer;
+    private final long segmentBytes;
+    private final int maxSegments;
+
+    /**
+     * Поля ниже используются только задачами в executor. Непрочитанный остаток batch - пачка,
+     * которую не удалось записать
+     */
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_RECORDS * JournalFormat.RECORD_SIZE);
+    private FileChannel channel;
+    private long segmentSequence;
+    private long segmentPosition;
+
+    private final ScheduledFuture<?> periodicFlush;
+    private volatile boolean closed;
+
+    /**
+     * @param directory Каталог сегментов журнала
+     * @param executor Однопоточный исполнитель, в котором записи переносятся в файл
+     * @param capacity Сколько записей может ожидать переноса. Лишние записи отбрасываются
+     * @param segmentBytes Предельный размер одного сегмента
+     * @param maxTotalBytes Предельный объём всех сегментов на диске, не меньше двух сегментов
+     * @param flushIntervalMillis Период переноса записей в файл
+     */
+    public DecisionJournal(File directory, ScheduledExecutorService executor, int capacity,
+                           long segmentBytes, long maxTotalBytes, long flushIntervalMillis) {
+        if (segmentBytes < JournalFormat.HEADER_SIZE + JournalFormat.RECORD_SIZE) {
+            throw new IllegalArgumentException("Слишком маленький сегмент: " + segmentBytes);
+        }
+        if (maxTotalBytes < 2 * segmentBytes) {
+            throw new IllegalArgumentException("Объём журнала должен вмещать хотя бы два сегмента");
+        }
+        this.directory = directory;
+        this.executor = executor;
+        this.buffer = new DecisionRingBuffer(capacity);
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxTotalBytes / segmentBytes);
+        batch.limit(0);
+        this.periodicFlush = executor.scheduleWithFixedDelay(this::drainQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Добавляет решение в журнал. Не выполняет ввод-вывод, не блокируется и не выделяет память
+     * @param timestampMillis Время решения, мс
+     * @param numberKey Ключ номера
+     * @param verdict {@link #VERDICT_ALLOW}, {@link #VERDICT_BLOCK} или флаги {@link ScreeningAction}
+     * @param rule Правило, по которому принято решение
+     * @param category Категория номера
+     * @param score Оценка номера
+     * @param latencyNanos Время принятия решения, нс
+     * @return Ложь, если буфер заполнен и запись отброшена
+     */
+    public boolean record(long timestampMillis, long numberKey, int verdict, int rule, int category, int score,
+                          long latencyNanos) {
+        return !closed && buffer.offer(timestampMillis, numberKey, verdict, rule, category, score, latencyNanos);
+    }
+
+    /**
+     * Переносит в файл все записи, добавленные до вызова
+     */
+    public Future<?> flush() {
+        return executor.submit(() -> {
+            drain();
+            return null;
+        });
+    }
+
+    /**
+     * Количество записей, отброшенных из-за переполнения буфера
+     */
+    public long droppedCount() {
+        return buffer.droppedCount();
+    }
+
+    public File directory() {
+        return directory;
+    }
+
+    /**
+     * Переносит оставшиеся записи в файл и закрывает текущий сегмент. Исполнитель не останавливается
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        periodicFlush.cancel(false);
+        try {
+            executor.submit(() -> {
+                try {
+                    drain();
+                } finally {
+                    closeSegment();
+                }
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Прервано закрытие журнала", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException("Не удалось закрыть журнал", e.getCause());
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (IOException e) {
+            // Забранная из буфера пачка остаётся в batch, а остальные записи - в буфере.
+            // Всё это будет перенесено при следующей попытке
+        }
+    }
+
+    private void drain() throws IOException {
+        if (batch.hasRemaining()) {
+            writeBatch();
+        }
+        while (buffer.size() > 0) {
+            if (channel == null || segmentPosition + JournalFormat.RECORD_SIZE > segmentBytes) {
+                openNextSegment();
+            }
+
+            // Пачка не должна выходить за предельный размер сегмента
+            long room = (segmentBytes - segmentPosition) / JournalFormat.RECORD_SIZE;
+            batch.clear();
+            batch.limit((int) Math.min(batch.capacity(), room * JournalFormat.RECORD_SIZE));
+            if (buffer.drainTo(batch) == 0) {
+                return;
+            }
+            batch.flip();
+            writeBatch();
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        if (channel == null || segmentPosition + batch.remaining() > segmentBytes) {
+            openNextSegment();
+        }
+        try {
+            while (batch.hasRemaining()) {
+                segmentPosition += channel.write(batch, segmentPosition);
+            }
+        } catch (IOException e) {
+            // Пачка повторяется с начала недописанной записи в новом сегменте, а оборванная запись
+            // остаётся в конце текущего и пропускается при чтении
+            batch.position(batch.position() - batch.position() % JournalFormat.RECORD_SIZE);
+            try {
+                closeSegment();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        closeSegment();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Не удалось создать каталог журнала " + directory);
+        }
+
+        File[] segments = JournalFormat.listSegments(directory);
+        if (segmentSequence == 0L && segments.length > 0) {
+            segmentSequence = JournalFormat.segmentSequence(segments[segments.length - 1].getName());
+        }
+        segmentSequence++;
+
+        // Вместе с новым сегментом на диске остаётся не больше maxSegments сегментов
+        for (int i = 0; i <= segments.length - maxSegments; i++) {
+            if (!segments[i].delete()) {
+                throw new IOException("Не удалось удалить сегмент " + segments[i]);
+            }
+        }
+
+        File file = new File(directory, JournalFormat.segmentName(segmentSequence));
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        ByteBuffer header = ByteBuffer.allocate(JournalFormat.HEADER_SIZE)
+                .putInt(JournalFormat.MAGIC)
+                .putShort(JournalFormat.FORMAT_VERSION)
+                .putShort((short) JournalFormat.RECORD_SIZE)
+                .putLong(System.currentTimeMillis());
+        header.flip();
+        segmentPosition = 0L;
+        while (header.hasRemaining()) {
+            segmentPosition += channel.write(header, segmentPosition);
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
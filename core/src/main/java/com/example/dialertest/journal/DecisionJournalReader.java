@@ -0,0 +1,191 @@
+package com.example.dialertest.journal;
+
+import com.example.dialertest.screening.ScreeningAction;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Читает журнал решений потоком, запись за записью, по всем сегментам в порядке записи.
+ * Память на запись не выделяется: поля текущей записи доступны через методы-аксессоры после
+ * успешного {@link #next()}.
+ *
+ * Сегменты с повреждённым заголовком пропускаются целиком, а оборванные записи в конце
+ * сегмента - по отдельности. Журнал можно читать, пока в него идёт запись: сегмент, удалённый
+ * до открытия, пропускается.
+ */
+public final class DecisionJournalReader implements Closeable {
+
+    private final File[] segments;
+    private final ByteBuffer buffer = ByteBuffer.allocate(256 * JournalFormat.RECORD_SIZE);
+
+    private int nextSegment;
+    private FileChannel channel;
+    private long position;
+
+    private long timestampMillis;
+    private long numberKey;
+    private long latencyNanos;
+    private int rule;
+    private int verdict;
+    private int category;
+    private int score;
+
+    public DecisionJournalReader(File directory) {
+        this.segments = JournalFormat.listSegments(directory);
+        buffer.limit(0);
+    }
+
+    /**
+     * Переходит к следующей записи
+     * @return Ложь, если записей больше нет
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (channel == null && !openNextSegment()) {
+                return false;
+            }
+            if (buffer.remaining() < JournalFormat.RECORD_SIZE && !fill()) {
+                closeSegment();
+                continue;
+            }
+
+            timestampMillis = buffer.getLong();
+            numberKey = buffer.getLong();
+            latencyNanos = buffer.getLong();
+            rule = buffer.getInt();
+            verdict = buffer.get() & 0xFF;
+            category = buffer.get() & 0xFF;
+            score = buffer.get() & 0xFF;
+            if (buffer.get() != JournalFormat.COMMIT) {
+                // Запись оборвана, дальше в этом сегменте ничего нет
+                closeSegment();
+                continue;
+            }
+            return true;
+        }
+    }
+
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    public long numberKey() {
+        return numberKey;
+    }
+
+    public long latencyNanos() {
+        return latencyNanos;
+    }
+
+    public int rule() {
+        return rule;
+    }
+
+    /**
+     * Флаги действия {@link ScreeningAction}, например {@link DecisionJournal#VERDICT_BLOCK}
+     */
+    public int verdict() {
+        return verdict;
+    }
+
+    public int category() {
+        return category;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+        nextSegment = segments.length;
+    }
+
+    private boolean openNextSegment() throws IOException {
+        while (nextSegment < segments.length) {
+            File file = segments[nextSegment++];
+            FileChannel candidate;
+            try {
+                candidate = new RandomAccessFile(file, "r").getChannel();
+            } catch (FileNotFoundException e) {
+                // Сегмент удалён при ротации
+                continue;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(JournalFormat.HEADER_SIZE);
+            readFully(candidate, header, 0L);
+            header.flip();
+            if (header.remaining() == JournalFormat.HEADER_SIZE
+                    && header.getInt() == JournalFormat.MAGIC
+                    && header.getShort() == JournalFormat.FORMAT_VERSION
+                    && header.getShort() == JournalFormat.RECORD_SIZE) {
+                channel = candidate;
+                position = JournalFormat.HEADER_SIZE;
+                buffer.clear().limit(0);
+                return true;
+            }
+            candidate.close();
+        }
+        return false;
+    }
+
+    /**
+     * Дочитывает сегмент в буфер
+     * @return Ложь, если в сегменте не осталось полной записи
+     */
+    private boolean fill() throws IOException {
+        buffer.compact();
+        position += readFully(channel, buffer, position);
+        buffer.flip();
+        return buffer.remaining() >= JournalFormat.RECORD_SIZE;
+    }
+
+    /**
+     * Читает из канала, пока буфер не заполнится или не кончится файл
+     * @return Количество прочитанных байт
+     */
+    private static long readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long total = 0L;
+        int read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer, position + total)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Выводит журнал в формате CSV для выгрузки и анализа.
+     * Использование: DecisionJournalReader каталог_журнала
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Использование: DecisionJournalReader каталог_журнала");
+            System.exit(1);
+        }
+        PrintStream out = System.out;
+        out.println("timestamp_ms,number,verdict,rule,category,score,latency_ns");
+        try (DecisionJournalReader reader = new DecisionJournalReader(new File(args[0]))) {
+            while (reader.next()) {
+                out.println(reader.timestampMillis() + "," + reader.numberKey() + ","
+                        + ScreeningAction.toString(reader.verdict()).replace(',', ' ') + ","
+                        + reader.rule() + "," + reader.category() + "," + reader.score() + ","
+                        + reader.latencyNanos());
+            }
+        }
+    }
+}
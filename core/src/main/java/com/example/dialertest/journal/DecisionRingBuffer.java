@@ -0,0 +1,137 @@
+package com.example.dialertest.journal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кольцевой буфер записей журнала без блокировок: много производителей, один потребитель.
+ *
+ * Поля записей хранятся в примитивных массивах. Производитель занимает номер ячейки через CAS
+ * по счётчику head, заполняет ячейку и публикует её, записывая в published номер записи + 1.
+ * Потребитель читает опубликованные ячейки по порядку и сдвигает tail. Если буфер заполнен,
+ * запись отбрасывается и учитывается в счётчике, поэтому производитель никогда не ждёт.
+ */
+final class DecisionRingBuffer {
+
+    private final int capacity;
+    private final int mask;
+
+    private final long[] timestamps;
+    private final long[] numberKeys;
+    private final long[] latencies;
+    private final int[] rules;
+
+    /**
+     * Решение, категория и оценка, упакованные в int: verdict << 16 | category << 8 | score
+     */
+    private final int[] outcomes;
+
+    /**
+     * Номер записи + 1 для каждой опубликованной ячейки
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Номер следующей записи, которую займёт производитель
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Номер следующей записи, которую прочитает потребитель
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity Вместимость, округляется вверх до степени двойки
+     */
+    DecisionRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Некорректная вместимость: " + capacity);
+        }
+        int rounded = 1;
+        while (rounded < capacity) {
+            rounded <<= 1;
+        }
+        this.capacity = rounded;
+        mask = rounded - 1;
+        timestamps = new long[this.capacity];
+        numberKeys = new long[this.capacity];
+        latencies = new long[this.capacity];
+        rules = new int[this.capacity];
+        outcomes = new int[this.capacity];
+        published = new AtomicLongArray(this.capacity);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Добавляет запись. Не выделяет память и не блокируется
+     * @return Ложь, если буфер заполнен и запись отброшена
+     */
+    boolean offer(long timestampMillis, long numberKey, int verdict, int rule, int category, int score,
+                  long latencyNanos) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail.get() >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        timestamps[slot] = timestampMillis;
+        numberKeys[slot] = numberKey;
+        latencies[slot] = latencyNanos;
+        rules[slot] = rule;
+        outcomes[slot] = (verdict & 0xFF) << 16 | (category & 0xFF) << 8 | (score & 0xFF);
+        published.lazySet(slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Переносит опубликованные записи в буфер в формате {@link JournalFormat}, пока в нём есть место.
+     * Вызывается только одним потоком-потребителем
+     * @return Количество перенесённых записей
+     */
+    int drainTo(ByteBuffer out) {
+        long sequence = tail.get();
+        int count = 0;
+        while (out.remaining() >= JournalFormat.RECORD_SIZE) {
+            int slot = (int) sequence & mask;
+            if (published.get(slot) != sequence + 1) {
+                break;
+            }
+            int outcome = outcomes[slot];
+            out.putLong(timestamps[slot])
+                    .putLong(numberKeys[slot])
+                    .putLong(latencies[slot])
+                    .putInt(rules[slot])
+                    .put((byte) (outcome >>> 16))
+                    .put((byte) (outcome >>> 8))
+                    .put((byte) outcome)
+                    .put(JournalFormat.COMMIT);
+            sequence++;
+            count++;
+        }
+        // Ячейки освобождаются только после того, как их содержимое прочитано
+        tail.lazySet(sequence);
+        return count;
+    }
+
+    /**
+     * Количество записей, ожидающих потребителя
+     */
+    int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    long droppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.dialertest.journal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Формат сегмента журнала решений. Журнал состоит из файлов-сегментов decisions-N.bin, где N -
+ * порядковый номер сегмента. В сегмент записи только дописываются, числа хранятся в порядке big-endian.
+ *
+ * <pre>
+ * Заголовок (16 байт):
+ *   0  int   MAGIC ("SPJL")
+ *   4  short версия формата
+ *   6  short размер записи
+ *   8  long  время создания сегмента, мс
+ * Записи (32 байта каждая):
+ *   0  long  время решения, мс
+ *   8  long  ключ номера
+ *  16  long  время принятия решения, нс
+ *  24  int   правило, по которому принято решение
+ *  28  byte  решение: флаги ScreeningAction
+ *  29  byte  категория
+ *  30  byte  оценка
+ *  31  byte  COMMIT - признак полностью записанной записи
+ * </pre>
+ *
+ * Запись, оборванная при аварийном завершении процесса, распознаётся по длине файла или по
+ * отсутствию признака COMMIT и пропускается при чтении.
+ */
+final class JournalFormat {
+
+    static final int MAGIC = 0x53504A4C;
+    static final short FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 32;
+    static final byte COMMIT = 0x5A;
+
+    static final String SEGMENT_PREFIX = "decisions-";
+    static final String SEGMENT_SUFFIX = ".bin";
+
+    private JournalFormat() {
+    }
+
+    /**
+     * Имя файла сегмента. Номер дополняется нулями, чтобы сегменты сортировались по имени
+     */
+    static String segmentName(long sequence) {
+        return String.format(Locale.ROOT, "%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Номер сегмента по имени файла или -1, если файл не является сегментом журнала
+     */
+    static long segmentSequence(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Сегменты журнала в каталоге в порядке записи
+     */
+    static File[] listSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> segmentSequence(name) >= 0);
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(segmentSequence(a.getName()), segmentSequence(b.getName())));
+        return files;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.dialertest.lifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Область жизни ресурсов компонента: подписок, слушателей, добавленных окон. Всё, что добавлено
+ * в область, освобождается вместе с ней в порядке, обратном добавлению, поэтому ресурс, созданный
+ * позже, освобождается раньше тех, от которых он зависит.
+ *
+ * {@link #clear()} освобождает ресурсы, но оставляет область открытой (например, в onStop),
+ * а {@link #close()} закрывает её навсегда (в onDestroy). Ресурс, добавленный в закрытую область,
+ * освобождается сразу: так колбэк, пришедший из фонового потока после уничтожения компонента,
+ * не оставляет за собой подписку или слушатель.
+ *
+ * Завершённые подписки удаляются из области при добавлении новых, поэтому долгоживущая область
+ * не растёт от подписок, которые создаются на каждый вызов. Методы потокобезопасны, ресурсы
+ * освобождаются вне блокировки на потоке, вызвавшем clear или close.
+ */
+public final class ResourceScope {
+
+    /**
+     * Ресурс, который нужно освободить вместе с областью
+     */
+    public interface Resource {
+        void release();
+    }
+
+    /**
+     * Размер, начиная с которого при добавлении удаляются завершённые подписки
+     */
+    private static final int PRUNE_THRESHOLD = 16;
+
+    private final String name;
+
+    /**
+     * Ресурсы в порядке добавления: Disposable или Resource
+     */
+    private List<Object> resources = new ArrayList<>(4);
+    private int pruneAt = PRUNE_THRESHOLD;
+    private boolean closed;
+
+    /**
+     * @param name Имя для отладки, например имя компонента
+     */
+    public ResourceScope(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Добавляет подписку. Если область закрыта, подписка сразу отменяется
+     * @return disposable
+     */
+    public <T extends Disposable> T add(T disposable) {
+        if (!addResource(disposable)) {
+            disposable.dispose();
+        }
+        return disposable;
+    }
+
+    /**
+     * Добавляет ресурс, который нужно освободить вместе с областью. Если область закрыта,
+     * ресурс сразу освобождается
+     * @return resource
+     */
+    public Resource onRelease(Resource resource) {
+        if (!addResource(resource)) {
+            resource.release();
+        }
+        return resource;
+    }
+
+    /**
+     * Убирает подписку из области, не отменяя её
+     * @return Истина, если подписка была в области
+     */
+    public synchronized boolean remove(Disposable disposable) {
+        return resources.remove(disposable);
+    }
+
+    /**
+     * Убирает ресурс из области, не освобождая его
+     * @return Истина, если ресурс был в области
+     */
+    public synchronized boolean remove(Resource resource) {
+        return resources.remove(resource);
+    }
+
+    /**
+     * Освобождает все ресурсы. Область остаётся открытой
+     */
+    public void clear() {
+        releaseAll(false);
+    }
+
+    /**
+     * Освобождает все ресурсы и закрывает область. Повторный вызов ничего не делает
+     */
+    public void close() {
+        releaseAll(true);
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Количество ресурсов в области, включая ещё не удалённые завершённые подписки
+     */
+    public synchronized int size() {
+        return resources.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + (closed ? " (закрыта)" : " (" + resources.size() + ")");
+    }
+
+    private synchronized boolean addResource(Object resource) {
+        if (closed) {
+            return false;
+        }
+        if (resources.size() >= pruneAt) {
+            pruneDisposed();
+            pruneAt = Math.max(PRUNE_THRESHOLD, resources.size() * 2);
+        }
+        resources.add(resource);
+        return true;
+    }
+
+    private void pruneDisposed() {
+        int kept = 0;
+        for (int i = 0; i < resources.size(); i++) {
+            Object resource = resources.get(i);
+            if (!(resource instanceof Disposable) || !((Disposable) resource).isDisposed()) {
+                resources.set(kept++, resource);
+            }
+        }
+        resources.subList(kept, resources.size()).clear();
+    }
+
+    /**
+     * Освобождает ресурсы в обратном порядке. Исключение одного ресурса не мешает освободить
+     * остальные и выбрасывается после них, остальные исключения добавляются к нему как подавленные
+     */
+    private void releaseAll(boolean close) {
+        List<Object> released;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = close;
+            released = resources;
+            resources = close ? new ArrayList<>(0) : new ArrayList<>(4);
+            pruneAt = PRUNE_THRESHOLD;
+        }
+
+        RuntimeException failure = null;
+        for (int i = released.size() - 1; i >= 0; i--) {
+            Object resource = released.get(i);
+            try {
+                if (resource instanceof Disposable) {
+                    ((Disposable) resource).dispose();
+                } else {
+                    ((Resource) resource).release();
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
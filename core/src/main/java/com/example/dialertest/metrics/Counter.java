@@ -0,0 +1,33 @@
+package com.example.dialertest.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчик событий. Увеличение не блокируется и не выделяет память даже при частых вызовах
+ * из нескольких потоков.
+ */
+public final class Counter {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
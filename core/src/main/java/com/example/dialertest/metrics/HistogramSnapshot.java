@@ -0,0 +1,57 @@
+package com.example.dialertest.metrics;
+
+/**
+ * Неизменяемый снимок {@link LatencyHistogram}. Значения в наносекундах
+ */
+public final class HistogramSnapshot {
+
+    private final String name;
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(String name, long[] counts, long count, long sum, long max) {
+        this.name = name;
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0L ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * Значение перцентиля: верхняя граница корзины, в которую попадает доля fraction всех значений,
+     * но не больше максимума
+     * @param fraction Доля от 0 до 1, например 0.99 для p99
+     */
+    public long percentile(double fraction) {
+        if (count == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(fraction * count));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.dialertest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек в наносекундах с логарифмически-линейными корзинами, как в HdrHistogram.
+ * Значения до 32 нс хранятся точно, а каждый следующий диапазон [2^m, 2^(m+1)) делится на 32 равные
+ * корзины, поэтому относительная погрешность не превышает 1/32 (около 3%) во всём диапазоне
+ * от наносекунд до получаса.
+ *
+ * {@link #record(long)} не блокируется и не выделяет память, поэтому гистограмму можно оставлять
+ * включённой в рабочей сборке. Снимок {@link #snapshot()} согласован по каждой корзине, но
+ * не атомарен целиком: записи, сделанные во время снятия, могут попасть в него частично.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Старший учитываемый разряд значения. Большие значения попадают в последнюю корзину
+     */
+    static final int MAX_MAGNITUDE = 40;
+
+    static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Учитывает значение. Отрицательные значения считаются нулём
+     */
+    public void record(long nanos) {
+        long value = nanos < 0L ? 0L : Math.min(nanos, MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Другой поток обновил максимум, пробуем снова
+        }
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new HistogramSnapshot(name, copy, total, sum.get(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (magnitude - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Наименьшее значение, попадающее в корзину
+     */
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int magnitude = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Наибольшее значение, попадающее в корзину
+     */
+    static long bucketUpperBound(int index) {
+        return index == BUCKET_COUNT - 1 ? MAX_VALUE : bucketLowerBound(index + 1) - 1;
+    }
+}
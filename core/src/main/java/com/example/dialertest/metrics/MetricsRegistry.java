@@ -0,0 +1,49 @@
+package com.example.dialertest.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Набор именованных счётчиков и гистограмм. Метрики создаются один раз при регистрации, а запись
+ * в них не обращается к реестру, поэтому на горячем пути нет ни поиска по имени, ни выделения памяти.
+ */
+public final class MetricsRegistry {
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Возвращает счётчик с указанным именем, создавая его при первом обращении
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Возвращает гистограмму с указанным именем, создавая её при первом обращении
+     */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Снимок всех метрик, упорядоченных по имени
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Counter counter : counters.values()) {
+            counterValues.put(counter.name(), counter.get());
+        }
+        Map<String, HistogramSnapshot> sorted = new TreeMap<>();
+        for (LatencyHistogram histogram : histograms.values()) {
+            sorted.put(histogram.name(), histogram.snapshot());
+        }
+        List<HistogramSnapshot> histogramSnapshots = new ArrayList<>(sorted.values());
+        return new MetricsSnapshot(System.currentTimeMillis(), counterValues, histogramSnapshots);
+    }
+}
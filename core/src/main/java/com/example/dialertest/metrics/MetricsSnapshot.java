@@ -0,0 +1,95 @@
+package com.example.dialertest.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Снимок всех метрик реестра с выгрузкой в JSON и в текст для отладочного экрана
+ */
+public final class MetricsSnapshot {
+
+    /**
+     * Перцентили, которые выводятся для каждой гистограммы
+     */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final long timestampMillis;
+    private final Map<String, Long> counters;
+    private final List<HistogramSnapshot> histograms;
+
+    MetricsSnapshot(long timestampMillis, Map<String, Long> counters, List<HistogramSnapshot> histograms) {
+        this.timestampMillis = timestampMillis;
+        this.counters = Collections.unmodifiableMap(counters);
+        this.histograms = Collections.unmodifiableList(histograms);
+    }
+
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    public Map<String, Long> counters() {
+        return counters;
+    }
+
+    public List<HistogramSnapshot> histograms() {
+        return histograms;
+    }
+
+    /**
+     * Выгрузка в JSON. Значения гистограмм в наносекундах
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"timestamp\":").append(timestampMillis).append(",\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(counter.getKey()).append("\":").append(counter.getValue());
+        }
+        json.append("},\"histograms\":{");
+        first = true;
+        for (HistogramSnapshot histogram : histograms) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(histogram.name()).append("\":{\"count\":").append(histogram.count())
+                    .append(",\"mean\":").append((long) histogram.mean());
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                json.append(",\"").append(PERCENTILE_NAMES[i]).append("\":").append(histogram.percentile(PERCENTILES[i]));
+            }
+            json.append(",\"max\":").append(histogram.max()).append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Текстовое представление: счётчики, затем гистограммы в миллисекундах
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(256);
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            text.append(counter.getKey()).append(": ").append(counter.getValue()).append('\n');
+        }
+        for (HistogramSnapshot histogram : histograms) {
+            text.append('\n').append(histogram.name()).append(" (").append(histogram.count()).append(")\n");
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                text.append("  ").append(PERCENTILE_NAMES[i]).append(": ")
+                        .append(millis(histogram.percentile(PERCENTILES[i]))).append('\n');
+            }
+            text.append("  max: ").append(millis(histogram.max())).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f мс", nanos / 1_000_000.0);
+    }
+}
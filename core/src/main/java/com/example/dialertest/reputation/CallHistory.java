@@ -0,0 +1,180 @@
+package com.example.dialertest.reputation;
+
+import com.example.dialertest.journal.DecisionJournalReader;
+import com.example.dialertest.screening.LongIntHashMap;
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.ScreeningAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Счётчики звонков по номерам за последние {@link #DAYS} суток для признаков репутации.
+ * Каждому номеру отведены {@link #DAYS} суточных ячеек в общих массивах int: ячейка суток
+ * d имеет индекс d % DAYS и обнуляется, когда в неё попадает звонок новых суток.
+ *
+ * Количество номеров ограничено. Когда места нет, вытесняется номер, звонивший раньше всех.
+ * Сутки считаются по UTC: признакам важна длина окна, а не граница календарного дня.
+ *
+ * Методы синхронизированы, но не выделяют память и выполняются за доли микросекунды.
+ */
+public final class CallHistory {
+
+    public static final int DAYS = 7;
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final int maxNumbers;
+    private final LongIntHashMap slots;
+    private final long[] slotKeys;
+    private final int[] lastDay;
+    private final int[] calls;
+    private final int[] blocked;
+    private int size;
+
+    /**
+     * @param maxNumbers Наибольшее количество номеров в истории
+     */
+    public CallHistory(int maxNumbers) {
+        if (maxNumbers <= 0) {
+            throw new IllegalArgumentException("Некорректный размер истории: " + maxNumbers);
+        }
+        this.maxNumbers = maxNumbers;
+        this.slots = new LongIntHashMap(maxNumbers);
+        this.slotKeys = new long[maxNumbers];
+        this.lastDay = new int[maxNumbers];
+        this.calls = new int[maxNumbers * DAYS];
+        this.blocked = new int[maxNumbers * DAYS];
+    }
+
+    /**
+     * Учитывает звонок
+     * @param timeMillis Время звонка, мс
+     * @param key Ключ номера. Некорректные ключи не учитываются
+     * @param wasBlocked Звонок не был допущен до пользователя
+     */
+    public synchronized void record(long timeMillis, long key, boolean wasBlocked) {
+        if (!NumberKeys.isValid(key)) {
+            return;
+        }
+        int day = day(timeMillis);
+        int slot = slots.get(key, -1);
+        if (slot < 0) {
+            slot = size < maxNumbers ? size++ : evictOldest();
+            slots.put(key, slot);
+            slotKeys[slot] = key;
+            lastDay[slot] = day;
+            Arrays.fill(calls, slot * DAYS, slot * DAYS + DAYS, 0);
+            Arrays.fill(blocked, slot * DAYS, slot * DAYS + DAYS, 0);
+        } else if (day > lastDay[slot]) {
+            // Обнуляются ячейки суток, в которые звонков не было
+            for (int d = Math.max(lastDay[slot] + 1, day - DAYS + 1); d <= day; d++) {
+                calls[slot * DAYS + d % DAYS] = 0;
+                blocked[slot * DAYS + d % DAYS] = 0;
+            }
+            lastDay[slot] = day;
+        } else if (day <= lastDay[slot] - DAYS) {
+            // Звонок старше окна: такое бывает только при чтении журнала не по порядку
+            return;
+        }
+        int bucket = slot * DAYS + day % DAYS;
+        calls[bucket]++;
+        if (wasBlocked) {
+            blocked[bucket]++;
+        }
+    }
+
+    /**
+     * Заполняет признаки истории {@link ReputationFeatures#CALLS_DAY}, {@link ReputationFeatures#CALLS_WEEK}
+     * и {@link ReputationFeatures#BLOCKED_RATIO}
+     * @param nowMillis Время текущего звонка, мс. Сам звонок ещё не учтён
+     */
+    public synchronized void fill(long key, long nowMillis, float[] features) {
+        int slot = slots.get(key, -1);
+        int today = day(nowMillis);
+        int callsDay = 0;
+        int callsWeek = 0;
+        int blockedWeek = 0;
+        if (slot >= 0) {
+            for (int i = 0; i < DAYS; i++) {
+                int day = lastDay[slot] - i;
+                if (day > today || day <= today - DAYS) {
+                    continue;
+                }
+                int bucket = slot * DAYS + day % DAYS;
+                callsWeek += calls[bucket];
+                blockedWeek += blocked[bucket];
+                if (day == today) {
+                    callsDay = calls[bucket];
+                }
+            }
+        }
+        features[ReputationFeatures.CALLS_DAY] = (float) Math.log1p(callsDay);
+        features[ReputationFeatures.CALLS_WEEK] = (float) Math.log1p(callsWeek);
+        features[ReputationFeatures.BLOCKED_RATIO] = callsWeek == 0 ? 0f : blockedWeek / (float) callsWeek;
+    }
+
+    /**
+     * Количество звонков с номера за {@link #DAYS} суток до указанного момента включительно
+     */
+    public synchronized int calls(long key, long nowMillis) {
+        int slot = slots.get(key, -1);
+        if (slot < 0) {
+            return 0;
+        }
+        int today = day(nowMillis);
+        int total = 0;
+        for (int i = 0; i < DAYS; i++) {
+            int day = lastDay[slot] - i;
+            if (day <= today && day > today - DAYS) {
+                total += calls[slot * DAYS + day % DAYS];
+            }
+        }
+        return total;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Учитывает звонки из журнала решений за последние {@link #DAYS} суток
+     * @param directory Каталог журнала {@link com.example.dialertest.journal.DecisionJournal}
+     * @return Количество учтённых записей
+     */
+    public int readJournal(File directory, long nowMillis) throws IOException {
+        long since = nowMillis - DAYS * MILLIS_PER_DAY;
+        int count = 0;
+        try (DecisionJournalReader reader = new DecisionJournalReader(directory)) {
+            while (reader.next()) {
+                if (reader.timestampMillis() > since && reader.timestampMillis() <= nowMillis) {
+                    record(reader.timestampMillis(), reader.numberKey(),
+                            ScreeningAction.has(reader.verdict(), ScreeningAction.DISALLOW));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Освобождает ячейки номера, звонившего раньше всех. Выполняется только при заполненной
+     * истории и просматривает её целиком
+     */
+    private int evictOldest() {
+        int oldest = 0;
+        for (int slot = 1; slot < size; slot++) {
+            if (lastDay[slot] < lastDay[oldest]) {
+                oldest = slot;
+            }
+        }
+        slots.remove(slotKeys[oldest]);
+        return oldest;
+    }
+
+    private static int day(long timeMillis) {
+        return (int) Math.floorDiv(timeMillis, MILLIS_PER_DAY);
+    }
+}
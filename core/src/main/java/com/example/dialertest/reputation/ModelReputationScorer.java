@@ -0,0 +1,62 @@
+package com.example.dialertest.reputation;
+
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.ReputationScorer;
+
+import java.util.function.Supplier;
+
+/**
+ * Оценка репутации по модели {@link ReputationModel}: признаки номера, времени звонка, записи базы
+ * и истории звонков {@link CallHistory}. Массив признаков свой у каждого потока, поэтому оценка
+ * не выделяет память и может вызываться из нескольких потоков.
+ */
+public final class ModelReputationScorer implements ReputationScorer {
+
+    private final Supplier<ReputationModel> model;
+    private final CallHistory history;
+    private final int countryCode;
+    private final long ownNumber;
+
+    private final ThreadLocal<float[]> features = new ThreadLocal<float[]>() {
+        @Override
+        protected float[] initialValue() {
+            return new float[ReputationFeatures.COUNT];
+        }
+    };
+
+    /**
+     * @param model Источник текущей версии модели. Пока модели нет (null), номер не оценивается
+     * @param history История звонков или null, если признаки истории не используются
+     * @param countryCode Код страны абонента
+     * @param ownNumber Ключ номера абонента или {@link NumberKeys#INVALID}, если он неизвестен
+     */
+    public ModelReputationScorer(Supplier<ReputationModel> model, CallHistory history, int countryCode,
+                                 long ownNumber) {
+        this.model = model;
+        this.history = history;
+        this.countryCode = countryCode;
+        this.ownNumber = ownNumber;
+    }
+
+    @Override
+    public float score(long key, int entry, int hour, long timeMillis) {
+        ReputationModel current = model.get();
+        if (current == null || !NumberKeys.isValid(key)) {
+            return Float.NaN;
+        }
+        float[] x = features.get();
+        fill(current, key, entry, hour, timeMillis, x);
+        return current.score(x);
+    }
+
+    /**
+     * Заполняет все признаки номера для указанной модели
+     */
+    public void fill(ReputationModel model, long key, int entry, int hour, long timeMillis, float[] features) {
+        ReputationFeatures.fill(key, entry, hour, countryCode, ownNumber, features);
+        features[ReputationFeatures.PREFIX_RISK] = model.prefixRisk(key);
+        if (history != null) {
+            history.fill(key, timeMillis, features);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.dialertest.reputation;
+
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+import com.example.dialertest.screening.SpamDatabase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Пакетная оценка номеров моделью репутации для проверки модели перед выкладкой.
+ *
+ * Читает CSV со строками «номер,час[,метка]», где метка 1 означает нежелательный звонок,
+ * а 0 - полезный, и выводит «номер,час,оценка[,метка]». В конце печатает в stderr среднее время
+ * оценки и, если метки заданы, точность и полноту при пороге 0.5 и площадь под ROC-кривой.
+ * Если указан каталог журнала решений, признаки истории берутся из него на текущий момент.
+ */
+public final class ReputationBatch {
+
+    private static final float THRESHOLD = 0.5f;
+
+    private ReputationBatch() {
+    }
+
+    /**
+     * Использование: ReputationBatch модель.txt звонки.csv [каталог_журнала]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Использование: ReputationBatch <модель.txt> <звонки.csv> [каталог_журнала]");
+            System.exit(2);
+        }
+
+        ReputationModel model = ReputationModel.load(new File(args[0]));
+        long now = System.currentTimeMillis();
+        CallHistory history = null;
+        if (args.length == 3) {
+            history = new CallHistory(1 << 16);
+            history.readJournal(new File(args[2]), now);
+        }
+        PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer(DialingPlan.RUSSIA);
+        ModelReputationScorer scorer = new ModelReputationScorer(() -> model, history,
+                normalizer.plan().countryCode(), NumberKeys.INVALID);
+
+        PrintStream out = System.out;
+        float[] features = new float[ReputationFeatures.COUNT];
+        float[] scores = new float[1024];
+        int[] labels = new int[1024];
+        int rows = 0;
+        int skipped = 0;
+        long nanos = 0L;
+        boolean labelled = true;
+
+        out.println("number,hour,score,label");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(args[1]), Charset.forName("UTF-8")))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                long key = normalizer.normalize(fields[0].trim());
+                int hour = fields.length > 1 ? parseHour(fields[1].trim()) : -1;
+                if (key == NumberKeys.INVALID || hour < 0) {
+                    skipped++;
+                    continue;
+                }
+                int label = fields.length > 2 ? parseLabel(fields[2].trim()) : -1;
+                labelled &= label >= 0;
+
+                long start = System.nanoTime();
+                scorer.fill(model, key, SpamDatabase.NOT_FOUND, hour, now, features);
+                float score = model.score(features);
+                nanos += System.nanoTime() - start;
+
+                if (rows == scores.length) {
+                    scores = Arrays.copyOf(scores, rows * 2);
+                    labels = Arrays.copyOf(labels, rows * 2);
+                }
+                scores[rows] = score;
+                labels[rows++] = label;
+                out.println("+" + key + "," + hour + "," + score + "," + (label < 0 ? "" : label));
+            }
+        }
+
+        System.err.println("Оценено номеров: " + rows + ", пропущено строк: " + skipped + ", модель: " + model);
+        if (rows == 0) {
+            return;
+        }
+        System.err.println("Среднее время оценки: " + nanos / rows + " нс");
+        if (labelled) {
+            printQuality(scores, labels, rows);
+        }
+    }
+
+    private static void printQuality(float[] scores, int[] labels, int rows) {
+        int truePositive = 0;
+        int falsePositive = 0;
+        int positives = 0;
+        for (int i = 0; i < rows; i++) {
+            positives += labels[i];
+            if (scores[i] >= THRESHOLD) {
+                if (labels[i] == 1) {
+                    truePositive++;
+                } else {
+                    falsePositive++;
+                }
+            }
+        }
+        int negatives = rows - positives;
+        System.err.println("Порог " + THRESHOLD + ": точность " + ratio(truePositive, truePositive + falsePositive)
+                + ", полнота " + ratio(truePositive, positives));
+        if (positives > 0 && negatives > 0) {
+            System.err.println("ROC AUC: " + auc(scores, labels, rows, positives, negatives));
+        }
+    }
+
+    /**
+     * Площадь под ROC-кривой через сумму рангов положительных примеров (статистика Манна-Уитни).
+     * Одинаковым оценкам достаётся средний ранг
+     */
+    private static double auc(float[] scores, int[] labels, int rows, int positives, int negatives) {
+        long[] order = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            // Оценка неотрицательна, поэтому порядок её битов совпадает с порядком значений
+            order[i] = (long) Float.floatToIntBits(scores[i]) << 32 | i;
+        }
+        Arrays.sort(order);
+        double rankSum = 0.0;
+        for (int i = 0; i < rows; ) {
+            int j = i;
+            while (j < rows && order[j] >>> 32 == order[i] >>> 32) {
+                j++;
+            }
+            double rank = (i + j + 1) / 2.0;
+            for (int k = i; k < j; k++) {
+                rankSum += labels[(int) order[k]] * rank;
+            }
+            i = j;
+        }
+        return (rankSum - positives * (positives + 1) / 2.0) / ((double) positives * negatives);
+    }
+
+    private static String ratio(int numerator, int denominator) {
+        return denominator == 0 ? "-" : String.format("%.3f", numerator / (double) denominator);
+    }
+
+    private static int parseHour(String value) {
+        try {
+            int hour = Integer.parseInt(value);
+            return hour >= 0 && hour < 24 ? hour : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int parseLabel(String value) {
+        return "1".equals(value) ? 1 : "0".equals(value) ? 0 : -1;
+    }
+}
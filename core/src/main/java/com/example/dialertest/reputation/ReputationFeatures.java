@@ -0,0 +1,202 @@
+package com.example.dialertest.reputation;
+
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.SpamDatabase;
+import com.example.dialertest.screening.SpamEntry;
+
+/**
+ * Признаки номера для модели репутации {@link ReputationModel}. Признаки хранятся в массиве
+ * float длиной {@link #COUNT}, индекс признака - одна из констант этого класса. Вычисление
+ * не выделяет память: массив передаётся вызывающим и переиспользуется.
+ */
+public final class ReputationFeatures {
+
+    /**
+     * Номер вне страны абонента
+     */
+    public static final int FOREIGN = 0;
+
+    /**
+     * Риск самого длинного совпавшего префикса из модели, 0 если префикс не задан
+     */
+    public static final int PREFIX_RISK = 1;
+
+    /**
+     * ln(1 + число звонков с номера за текущие сутки)
+     */
+    public static final int CALLS_DAY = 2;
+
+    /**
+     * ln(1 + число звонков с номера за 7 суток)
+     */
+    public static final int CALLS_WEEK = 3;
+
+    /**
+     * Доля звонков с номера за 7 суток, которые не были допущены до пользователя
+     */
+    public static final int BLOCKED_RATIO = 4;
+
+    /**
+     * Звонок ночью: с 22 до 6 часов
+     */
+    public static final int NIGHT = 5;
+
+    /**
+     * Час звонка на окружности: соседние часы 23 и 0 близки друг к другу
+     */
+    public static final int HOUR_SIN = 6;
+    public static final int HOUR_COS = 7;
+
+    /**
+     * Самая длинная серия последовательных цифр ("1234", "9876")
+     */
+    public static final int SEQUENTIAL_RUN = 8;
+
+    /**
+     * Самая длинная серия одинаковых цифр ("0000")
+     */
+    public static final int REPEATED_RUN = 9;
+
+    /**
+     * Количество различных цифр в номере
+     */
+    public static final int DISTINCT_DIGITS = 10;
+
+    /**
+     * Количество цифр в номере
+     */
+    public static final int LENGTH = 11;
+
+    /**
+     * Количество общих начальных цифр с номером абонента той же длины. Подменённые номера
+     * часто отличаются от номера абонента лишь последними цифрами
+     */
+    public static final int NEIGHBOR = 12;
+
+    /**
+     * Оценка номера в базе от 0 до 1, 0 если номера в базе нет
+     */
+    public static final int SPAM_SCORE = 13;
+
+    /**
+     * Номер найден в базе
+     */
+    public static final int IN_DATABASE = 14;
+
+    public static final int COUNT = 15;
+
+    private static final String[] NAMES = {
+            "foreign", "prefix_risk", "calls_1d", "calls_7d", "blocked_ratio", "night", "hour_sin", "hour_cos",
+            "sequential_run", "repeated_run", "distinct_digits", "length", "neighbor", "spam_score", "in_database"
+    };
+
+    private static final float[] HOUR_SIN_TABLE = new float[24];
+    private static final float[] HOUR_COS_TABLE = new float[24];
+
+    static final long[] POW10 = new long[NumberKeys.MAX_DIGITS + 1];
+
+    static {
+        for (int hour = 0; hour < 24; hour++) {
+            double angle = 2.0 * Math.PI * hour / 24.0;
+            HOUR_SIN_TABLE[hour] = (float) Math.sin(angle);
+            HOUR_COS_TABLE[hour] = (float) Math.cos(angle);
+        }
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private ReputationFeatures() {
+    }
+
+    public static String name(int feature) {
+        return NAMES[feature];
+    }
+
+    /**
+     * @return Индекс признака по имени или -1, если такого признака нет
+     */
+    public static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Заполняет признаки, которые зависят только от номера, времени звонка и записи базы.
+     * Признаки {@link #PREFIX_RISK} и истории звонков обнуляются
+     * @param countryCode Код страны абонента
+     * @param ownNumber Ключ номера абонента или {@link NumberKeys#INVALID}, если он неизвестен
+     */
+    public static void fill(long key, int entry, int hour, int countryCode, long ownNumber, float[] features) {
+        int digits = NumberKeys.digitCount(key);
+        int countryDigits = NumberKeys.digitCount(countryCode);
+        features[FOREIGN] = digits > countryDigits && key / POW10[digits - countryDigits] == countryCode ? 0f : 1f;
+        features[PREFIX_RISK] = 0f;
+        features[CALLS_DAY] = 0f;
+        features[CALLS_WEEK] = 0f;
+        features[BLOCKED_RATIO] = 0f;
+        features[NIGHT] = hour >= 22 || hour < 6 ? 1f : 0f;
+        features[HOUR_SIN] = HOUR_SIN_TABLE[hour];
+        features[HOUR_COS] = HOUR_COS_TABLE[hour];
+
+        // Цифры разбираются с конца: направление серии при этом не важно
+        int sequential = 1;
+        int sequentialRun = 1;
+        int step = 0;
+        int repeated = 1;
+        int repeatedRun = 1;
+        int seen = 0;
+        int previous = -1;
+        for (long rest = key; rest > 0; rest /= 10) {
+            int digit = (int) (rest % 10);
+            seen |= 1 << digit;
+            if (previous >= 0) {
+                int delta = previous - digit;
+                if (delta == 0) {
+                    repeatedRun = Math.max(repeatedRun, ++repeated);
+                    sequential = 1;
+                    step = 0;
+                } else {
+                    repeated = 1;
+                    if ((delta == 1 || delta == -1) && (step == 0 || step == delta)) {
+                        sequential++;
+                    } else {
+                        sequential = delta == 1 || delta == -1 ? 2 : 1;
+                    }
+                    step = delta == 1 || delta == -1 ? delta : 0;
+                    sequentialRun = Math.max(sequentialRun, sequential);
+                }
+            }
+            previous = digit;
+        }
+        features[SEQUENTIAL_RUN] = sequentialRun;
+        features[REPEATED_RUN] = repeatedRun;
+        features[DISTINCT_DIGITS] = Integer.bitCount(seen);
+        features[LENGTH] = digits;
+        features[NEIGHBOR] = sharedLeadingDigits(key, digits, ownNumber);
+
+        boolean found = entry != SpamDatabase.NOT_FOUND;
+        features[SPAM_SCORE] = found ? SpamEntry.score(entry) / (float) SpamEntry.MAX_SCORE : 0f;
+        features[IN_DATABASE] = found ? 1f : 0f;
+    }
+
+    /**
+     * Количество общих начальных цифр двух номеров одной длины. Для совпадающих номеров и номеров
+     * разной длины возвращает 0: звонок самому себе подменой не считается
+     */
+    static int sharedLeadingDigits(long key, int digits, long ownNumber) {
+        if (!NumberKeys.isValid(ownNumber) || key == ownNumber || NumberKeys.digitCount(ownNumber) != digits) {
+            return 0;
+        }
+        int dropped = 1;
+        while (key / POW10[dropped] != ownNumber / POW10[dropped]) {
+            dropped++;
+        }
+        return digits - dropped;
+    }
+}
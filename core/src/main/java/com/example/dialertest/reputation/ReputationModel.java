@@ -0,0 +1,411 @@
+package com.example.dialertest.reputation;
+
+import com.example.dialertest.screening.LongIntHashMap;
+import com.example.dialertest.screening.NumberKeys;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Модель репутации номера: логистическая регрессия по признакам {@link ReputationFeatures}
+ * с добавкой ансамбля решающих деревьев (градиентный бустинг). Оценка равна
+ * sigmoid(bias + w·x + сумма листьев деревьев).
+ *
+ * Все деревья хранятся в общих плоских массивах узлов, поэтому обход не разыменовывает объекты
+ * и не выделяет память. Объект неизменяемый и потокобезопасный.
+ *
+ * Текстовый формат модели, одна запись на строку:
+ * <pre>
+ * bias -3.2
+ * weight calls_1d 0.9
+ * prefix +7900555 1.5
+ * tree
+ * node 0 sequential_run 4 1 2
+ * leaf 1 -0.2
+ * leaf 2 0.7
+ * </pre>
+ * prefix задаёт риск префикса для признака prefix_risk (берётся самый длинный совпавший префикс).
+ * Строка tree начинает дерево, узлы которого нумеруются с 0 в порядке следования. Узел
+ * «node id признак порог левый правый» переходит к левому потомку, если признак меньше порога,
+ * иначе к правому. Номера потомков больше номера узла, поэтому циклов в дереве быть не может.
+ * Пустые строки и строки, начинающиеся с "#", пропускаются.
+ */
+public final class ReputationModel {
+
+    /**
+     * Признак листа в массиве признаков узлов
+     */
+    private static final int LEAF = -1;
+
+    private final float bias;
+    private final float[] weights;
+
+    private final int[] nodeFeature;
+    /**
+     * Порог узла или значение листа
+     */
+    private final float[] nodeValue;
+    private final int[] nodeLeft;
+    private final int[] nodeRight;
+    private final int[] treeRoots;
+
+    /**
+     * Номер риска по ключу «префикс * 16 + длина»
+     */
+    private final LongIntHashMap prefixes;
+    private final float[] prefixRisk;
+    /**
+     * Длины заданных префиксов по убыванию
+     */
+    private final int[] prefixLengths;
+
+    private ReputationModel(Builder builder) {
+        bias = builder.bias;
+        weights = builder.weights.clone();
+        nodeFeature = Arrays.copyOf(builder.nodeFeature, builder.nodeCount);
+        nodeValue = Arrays.copyOf(builder.nodeValue, builder.nodeCount);
+        nodeLeft = Arrays.copyOf(builder.nodeLeft, builder.nodeCount);
+        nodeRight = Arrays.copyOf(builder.nodeRight, builder.nodeCount);
+        treeRoots = Arrays.copyOf(builder.treeRoots, builder.treeCount);
+
+        prefixes = new LongIntHashMap(builder.prefixCount);
+        boolean[] lengths = new boolean[NumberKeys.MAX_DIGITS + 1];
+        int lengthCount = 0;
+        for (int i = 0; i < builder.prefixCount; i++) {
+            prefixes.put(builder.prefixKeys[i], i);
+            int length = (int) (builder.prefixKeys[i] & 15);
+            if (!lengths[length]) {
+                lengths[length] = true;
+                lengthCount++;
+            }
+        }
+        prefixRisk = Arrays.copyOf(builder.prefixRisk, builder.prefixCount);
+        prefixLengths = new int[lengthCount];
+        for (int length = NumberKeys.MAX_DIGITS, i = 0; length > 0; length--) {
+            if (lengths[length]) {
+                prefixLengths[i++] = length;
+            }
+        }
+    }
+
+    /**
+     * Оценка номера по признакам
+     * @param features Признаки длиной {@link ReputationFeatures#COUNT}
+     * @return Оценка от 0 (надёжный) до 1 (нежелательный)
+     */
+    public float score(float[] features) {
+        float z = bias;
+        for (int i = 0; i < ReputationFeatures.COUNT; i++) {
+            z += weights[i] * features[i];
+        }
+        for (int root : treeRoots) {
+            int node = root;
+            while (nodeFeature[node] != LEAF) {
+                node = features[nodeFeature[node]] < nodeValue[node] ? nodeLeft[node] : nodeRight[node];
+            }
+            z += nodeValue[node];
+        }
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    /**
+     * Риск самого длинного префикса модели, с которого начинается номер, или 0
+     */
+    public float prefixRisk(long key) {
+        if (prefixLengths.length == 0 || !NumberKeys.isValid(key)) {
+            return 0f;
+        }
+        int digits = NumberKeys.digitCount(key);
+        for (int length : prefixLengths) {
+            if (length <= digits) {
+                int index = prefixes.get(prefixKey(key / ReputationFeatures.POW10[digits - length], length), -1);
+                if (index >= 0) {
+                    return prefixRisk[index];
+                }
+            }
+        }
+        return 0f;
+    }
+
+    public int treeCount() {
+        return treeRoots.length;
+    }
+
+    public int nodeCount() {
+        return nodeFeature.length;
+    }
+
+    @Override
+    public String toString() {
+        return "ReputationModel{trees=" + treeRoots.length + ", nodes=" + nodeFeature.length
+                + ", prefixes=" + prefixRisk.length + "}";
+    }
+
+    private static long prefixKey(long prefix, int length) {
+        return prefix << 4 | length;
+    }
+
+    public static ReputationModel load(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), Charset.forName("UTF-8")))) {
+            return parse(reader);
+        }
+    }
+
+    public static ReputationModel parse(String text) {
+        try {
+            return parse(new BufferedReader(new StringReader(text)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Разбирает модель в текстовом формате
+     * @throws IllegalArgumentException Если строка не соответствует формату; сообщение содержит номер строки
+     */
+    public static ReputationModel parse(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            try {
+                parseLine(builder, tokens);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Строка " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        try {
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void parseLine(Builder builder, String[] tokens) {
+        switch (tokens[0]) {
+            case "bias":
+                expectTokens(tokens, 2);
+                builder.bias(parseFloat(tokens[1]));
+                break;
+            case "weight":
+                expectTokens(tokens, 3);
+                builder.weight(feature(tokens[1]), parseFloat(tokens[2]));
+                break;
+            case "prefix": {
+                expectTokens(tokens, 3);
+                String digits = tokens[1].startsWith("+") ? tokens[1].substring(1) : tokens[1];
+                long prefix = NumberKeys.fromDigits(digits);
+                if (prefix == NumberKeys.INVALID || digits.isEmpty() || digits.charAt(0) == '0') {
+                    throw new IllegalArgumentException("некорректный префикс " + tokens[1]);
+                }
+                builder.prefix(prefix, NumberKeys.digitCount(prefix), parseFloat(tokens[2]));
+                break;
+            }
+            case "tree":
+                expectTokens(tokens, 1);
+                builder.tree();
+                break;
+            case "node":
+                expectTokens(tokens, 6);
+                expectNodeId(builder, tokens[1]);
+                builder.node(feature(tokens[2]), parseFloat(tokens[3]), parseInt(tokens[4]), parseInt(tokens[5]));
+                break;
+            case "leaf":
+                expectTokens(tokens, 3);
+                expectNodeId(builder, tokens[1]);
+                builder.leaf(parseFloat(tokens[2]));
+                break;
+            default:
+                throw new IllegalArgumentException("неизвестная запись " + tokens[0]);
+        }
+    }
+
+    private static void expectTokens(String[] tokens, int count) {
+        if (tokens.length != count) {
+            throw new IllegalArgumentException("у записи " + tokens[0] + " должно быть полей: " + (count - 1));
+        }
+    }
+
+    private static void expectNodeId(Builder builder, String token) {
+        if (parseInt(token) != builder.nextNodeId()) {
+            throw new IllegalArgumentException("ожидался узел " + builder.nextNodeId() + ", а не " + token);
+        }
+    }
+
+    private static int feature(String name) {
+        int feature = ReputationFeatures.indexOf(name);
+        if (feature < 0) {
+            throw new IllegalArgumentException("неизвестный признак " + name);
+        }
+        return feature;
+    }
+
+    private static float parseFloat(String token) {
+        try {
+            float value = Float.parseFloat(token);
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                throw new IllegalArgumentException("некорректное число " + token);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректное число " + token);
+        }
+    }
+
+    private static int parseInt(String token) {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректный номер узла " + token);
+        }
+    }
+
+    /**
+     * Собирает модель в примитивных массивах. Узлы дерева добавляются по порядку, номера
+     * потомков отсчитываются от корня текущего дерева
+     */
+    public static final class Builder {
+
+        private float bias;
+        private final float[] weights = new float[ReputationFeatures.COUNT];
+
+        private int[] nodeFeature = new int[16];
+        private float[] nodeValue = new float[16];
+        private int[] nodeLeft = new int[16];
+        private int[] nodeRight = new int[16];
+        private int nodeCount;
+        private int[] treeRoots = new int[4];
+        private int treeCount;
+
+        private long[] prefixKeys = new long[4];
+        private float[] prefixRisk = new float[4];
+        private int prefixCount;
+
+        public Builder bias(float bias) {
+            this.bias = bias;
+            return this;
+        }
+
+        public Builder weight(int feature, float weight) {
+            weights[feature] = weight;
+            return this;
+        }
+
+        /**
+         * Задаёт риск префикса для признака {@link ReputationFeatures#PREFIX_RISK}
+         * @throws IllegalArgumentException Если префикс не совпадает с указанной длиной
+         */
+        public Builder prefix(long prefix, int length, float risk) {
+            if (length < 1 || length > NumberKeys.MAX_DIGITS || !NumberKeys.isValid(prefix)
+                    || NumberKeys.digitCount(prefix) != length) {
+                throw new IllegalArgumentException("некорректный префикс " + prefix + "/" + length);
+            }
+            if (prefixCount == prefixKeys.length) {
+                prefixKeys = Arrays.copyOf(prefixKeys, prefixCount * 2);
+                prefixRisk = Arrays.copyOf(prefixRisk, prefixCount * 2);
+            }
+            prefixKeys[prefixCount] = prefixKey(prefix, length);
+            prefixRisk[prefixCount++] = risk;
+            return this;
+        }
+
+        /**
+         * Начинает новое дерево
+         * @throws IllegalArgumentException Если предыдущее дерево не завершено
+         */
+        public Builder tree() {
+            checkTree();
+            if (treeCount == treeRoots.length) {
+                treeRoots = Arrays.copyOf(treeRoots, treeCount * 2);
+            }
+            treeRoots[treeCount++] = nodeCount;
+            return this;
+        }
+
+        /**
+         * Добавляет узел ветвления текущего дерева
+         * @param left Номер узла, если признак меньше порога
+         * @param right Номер узла в остальных случаях
+         */
+        public Builder node(int feature, float threshold, int left, int right) {
+            int id = nextNodeId();
+            if (left <= id || right <= id) {
+                throw new IllegalArgumentException("потомки узла " + id + " должны идти после него");
+            }
+            add(feature, threshold, left, right);
+            return this;
+        }
+
+        public Builder leaf(float value) {
+            add(LEAF, value, 0, 0);
+            return this;
+        }
+
+        /**
+         * Номер следующего узла в текущем дереве
+         * @throws IllegalArgumentException Если дерево не начато
+         */
+        int nextNodeId() {
+            if (treeCount == 0) {
+                throw new IllegalArgumentException("узел вне дерева");
+            }
+            return nodeCount - treeRoots[treeCount - 1];
+        }
+
+        private void add(int feature, float value, int left, int right) {
+            nextNodeId();
+            int root = treeRoots[treeCount - 1];
+            if (nodeCount == nodeFeature.length) {
+                int capacity = nodeCount * 2;
+                nodeFeature = Arrays.copyOf(nodeFeature, capacity);
+                nodeValue = Arrays.copyOf(nodeValue, capacity);
+                nodeLeft = Arrays.copyOf(nodeLeft, capacity);
+                nodeRight = Arrays.copyOf(nodeRight, capacity);
+            }
+            nodeFeature[nodeCount] = feature;
+            nodeValue[nodeCount] = value;
+            nodeLeft[nodeCount] = root + left;
+            nodeRight[nodeCount] = root + right;
+            nodeCount++;
+        }
+
+        /**
+         * Проверяет, что в текущем дереве есть узлы и все потомки существуют
+         */
+        private void checkTree() {
+            if (treeCount == 0) {
+                return;
+            }
+            int root = treeRoots[treeCount - 1];
+            if (root == nodeCount) {
+                throw new IllegalArgumentException("пустое дерево");
+            }
+            for (int node = root; node < nodeCount; node++) {
+                if (nodeFeature[node] != LEAF && (nodeLeft[node] >= nodeCount || nodeRight[node] >= nodeCount)) {
+                    throw new IllegalArgumentException("у узла " + (node - root) + " нет потомка");
+                }
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException Если последнее дерево не завершено
+         */
+        public ReputationModel build() {
+            checkTree();
+            return new ReputationModel(this);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.dialertest.screening;
+
+/**
+ * Блочный фильтр Блума над long-ключами. Все биты одного ключа лежат в блоке из восьми long
+ * (64 байта - одна строка кеша процессора), поэтому проверка стоит не больше одного промаха кеша.
+ * Ложноотрицательных ответов не бывает: если фильтр говорит "нет", ключа точно нет в наборе.
+ *
+ * Заполнение не потокобезопасно, но после построения фильтр можно читать из любого количества потоков.
+ */
+public final class BloomFilter {
+
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * 64;
+    private static final int MAX_HASHES = 7;
+
+    private final long[] words;
+    private final int blockMask;
+    private final int hashCount;
+
+    /**
+     * @param expectedKeys Ожидаемое количество ключей
+     * @param bitsPerKey Количество бит на ключ. 10 бит дают около 1% ложноположительных ответов
+     */
+    public BloomFilter(int expectedKeys, int bitsPerKey) {
+        if (bitsPerKey < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один бит на ключ");
+        }
+        long bits = Math.max(BITS_PER_BLOCK, (long) expectedKeys * bitsPerKey);
+        int blocks = Integer.highestOneBit((int) Math.min(1 << 30, (bits + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK));
+        if ((long) blocks * BITS_PER_BLOCK < bits && blocks < (1 << 30)) {
+            blocks <<= 1;
+        }
+        words = new long[blocks * WORDS_PER_BLOCK];
+        blockMask = blocks - 1;
+        hashCount = Math.max(1, Math.min(MAX_HASHES, (int) Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    public void put(long key) {
+        long hash = LongIntHashMap.mix(key);
+        int base = ((int) (hash >>> 32) & blockMask) * WORDS_PER_BLOCK;
+        // Позиции битов внутри блока берутся из второго хеша по 9 бит на каждую
+        long positions = LongIntHashMap.mix(hash + 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++, positions >>>= 9) {
+            int bit = (int) positions & (BITS_PER_BLOCK - 1);
+            words[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return Ложь, если ключа точно нет в наборе; истина, если он может там быть
+     */
+    public boolean mightContain(long key) {
+        long hash = LongIntHashMap.mix(key);
+        int base = ((int) (hash >>> 32) & blockMask) * WORDS_PER_BLOCK;
+        long positions = LongIntHashMap.mix(hash + 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++, positions >>>= 9) {
+            int bit = (int) positions & (BITS_PER_BLOCK - 1);
+            if ((words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Размер фильтра в байтах
+     */
+    public int sizeInBytes() {
+        return words.length * 8;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.dialertest.screening;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * Индекс номеров из контактов пользователя. Номера контактов не проверяются по базе нежелательных
+ * номеров, а запрос к контактам при каждом звонке слишком медленный, если их тысячи. Поэтому номера
+ * один раз читаются из {@link ContactSource}, приводятся к ключам и хранятся в памяти, а потом
+ * индекс обновляется только по изменённым и удалённым контактам.
+ *
+ * Проверка номера не блокируется и не выделяет память: она читает неизменяемый снимок хеш-таблицы,
+ * который заменяется целиком после каждой синхронизации. Синхронизация выполняется на одном
+ * фоновом потоке и сериализуется внутренней блокировкой.
+ */
+public final class ContactIndex implements LongPredicate {
+
+    private static final long[] NO_NUMBERS = new long[0];
+
+    private final ContactSource source;
+    private final PhoneNumberNormalizer normalizer;
+
+    private final Object syncLock = new Object();
+
+    /**
+     * Номера каждого контакта, чтобы при изменении или удалении контакта убрать его прежние номера
+     */
+    private final Map<Long, long[]> numbersByContact = new HashMap<>();
+
+    /**
+     * Количество контактов с каждым номером: один номер может быть записан у нескольких контактов
+     */
+    private final LongIntHashMap references = new LongIntHashMap(64);
+
+    private long since;
+
+    private volatile LongIntHashMap snapshot = new LongIntHashMap(0);
+
+    public ContactIndex(ContactSource source, PhoneNumberNormalizer normalizer) {
+        this.source = source;
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * Истина, если номер записан хотя бы у одного контакта
+     */
+    public boolean contains(long key) {
+        return NumberKeys.isValid(key) && snapshot.containsKey(key);
+    }
+
+    @Override
+    public boolean test(long key) {
+        return contains(key);
+    }
+
+    /**
+     * Количество различных номеров в индексе
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Читает изменения контактов с прошлой синхронизации, при первом вызове - все контакты
+     * @return Истина, если набор номеров изменился
+     */
+    public boolean sync() {
+        synchronized (syncLock) {
+            Collector collector = new Collector();
+            since = source.readChanges(since, collector);
+            boolean changed = collector.apply();
+            if (changed) {
+                publish();
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Перечитывает все контакты заново, например после выдачи разрешения на чтение контактов
+     */
+    public boolean rebuild() {
+        synchronized (syncLock) {
+            boolean hadNumbers = references.size() > 0;
+            numbersByContact.clear();
+            references.clear();
+            since = 0L;
+            Collector collector = new Collector();
+            since = source.readChanges(since, collector);
+            boolean changed = collector.apply() || hadNumbers;
+            publish();
+            return changed;
+        }
+    }
+
+    private void publish() {
+        LongIntHashMap next = new LongIntHashMap(references.size());
+        for (int slot = 0; slot < references.capacity(); slot++) {
+            long key = references.keyAt(slot);
+            if (key != 0L) {
+                next.put(key, 1);
+            }
+        }
+        snapshot = next;
+    }
+
+    private boolean release(long contactId) {
+        long[] numbers = numbersByContact.remove(contactId);
+        if (numbers == null) {
+            return false;
+        }
+        for (long key : numbers) {
+            int count = references.get(key, 0);
+            if (count <= 1) {
+                references.remove(key);
+            } else {
+                references.put(key, count - 1);
+            }
+        }
+        return numbers.length > 0;
+    }
+
+    /**
+     * Накапливает номера изменённых контактов, чтобы применить их после чтения всего пакета изменений
+     */
+    private final class Collector implements ContactSource.Changes {
+
+        private final Map<Long, long[]> changed = new HashMap<>();
+        private final Map<Long, Integer> counts = new HashMap<>();
+        private boolean modified;
+
+        @Override
+        public void contactChanged(long contactId) {
+            changed.put(contactId, NO_NUMBERS);
+            counts.put(contactId, 0);
+        }
+
+        @Override
+        public void phone(long contactId, CharSequence number) {
+            long key = normalizer.normalize(number);
+            if (key == NumberKeys.INVALID) {
+                return;
+            }
+            long[] numbers = changed.get(contactId);
+            if (numbers == null) {
+                // Контакт изменился между чтением списка контактов и чтением номеров
+                contactChanged(contactId);
+                numbers = NO_NUMBERS;
+            }
+            int count = counts.get(contactId);
+            if (count == numbers.length) {
+                numbers = Arrays.copyOf(numbers, Math.max(2, count * 2));
+                changed.put(contactId, numbers);
+            }
+            numbers[count] = key;
+            counts.put(contactId, count + 1);
+        }
+
+        @Override
+        public void contactDeleted(long contactId) {
+            changed.remove(contactId);
+            counts.remove(contactId);
+            modified |= release(contactId);
+        }
+
+        boolean apply() {
+            for (Map.Entry<Long, long[]> entry : changed.entrySet()) {
+                long contactId = entry.getKey();
+                long[] numbers = Arrays.copyOf(entry.getValue(), counts.get(contactId));
+                long[] previous = numbersByContact.get(contactId);
+                if (previous != null && Arrays.equals(previous, numbers)) {
+                    continue;
+                }
+                modified |= release(contactId);
+                numbersByContact.put(contactId, numbers);
+                for (long key : numbers) {
+                    references.put(key, references.get(key, 0) + 1);
+                }
+                modified |= numbers.length > 0;
+            }
+            return modified;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.dialertest.screening;
+
+/**
+ * Источник номеров из контактов пользователя для {@link ContactIndex}. Изменения читаются
+ * по отметке времени, поэтому после первого полного чтения передаются только изменённые
+ * и удалённые контакты.
+ */
+public interface ContactSource {
+
+    /**
+     * Получатель изменений. Для каждого изменённого контакта сначала вызывается contactChanged,
+     * затем phone для каждого его номера
+     */
+    interface Changes {
+
+        /**
+         * Контакт добавлен или изменён: прежние номера контакта заменяются переданными после этого вызова
+         */
+        void contactChanged(long contactId);
+
+        void phone(long contactId, CharSequence number);
+
+        void contactDeleted(long contactId);
+    }
+
+    /**
+     * Передаёт контакты, изменённые или удалённые после отметки времени
+     * @param since Отметка, возвращённая предыдущим вызовом, или 0 для чтения всех контактов
+     * @return Отметка, с которой продолжить следующее чтение
+     */
+    long readChanges(long since, Changes changes);
+}
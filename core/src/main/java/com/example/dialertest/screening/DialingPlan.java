@@ -0,0 +1,83 @@
+package com.example.dialertest.screening;
+
+import java.util.Locale;
+
+/**
+ * План нумерации страны: код страны, префикс выхода на междугороднюю связь внутри страны
+ * (trunk prefix, "8" в России, "0" в Европе) и префиксы выхода на международную связь.
+ * Используется {@link PhoneNumberNormalizer} для приведения национальных записей номера к E.164.
+ */
+public final class DialingPlan {
+
+    public static final DialingPlan RUSSIA = new DialingPlan("RU", 7, 8, 1, new int[]{810, 0}, new int[]{3, 2}, 10, 10);
+    public static final DialingPlan KAZAKHSTAN = new DialingPlan("KZ", 7, 8, 1, new int[]{810, 0}, new int[]{3, 2}, 10, 10);
+    public static final DialingPlan BELARUS = new DialingPlan("BY", 375, 80, 2, new int[]{810, 0}, new int[]{3, 2}, 9, 9);
+    public static final DialingPlan UKRAINE = new DialingPlan("UA", 380, 0, 1, new int[]{0}, new int[]{2}, 9, 9);
+    public static final DialingPlan USA = new DialingPlan("US", 1, 1, 1, new int[]{11}, new int[]{3}, 10, 10);
+    public static final DialingPlan UNITED_KINGDOM = new DialingPlan("GB", 44, 0, 1, new int[]{0}, new int[]{2}, 9, 10);
+    public static final DialingPlan GERMANY = new DialingPlan("DE", 49, 0, 1, new int[]{0}, new int[]{2}, 6, 11);
+
+    private static final DialingPlan[] PLANS = {
+            RUSSIA, KAZAKHSTAN, BELARUS, UKRAINE, USA, UNITED_KINGDOM, GERMANY
+    };
+
+    final String region;
+    final int countryCode;
+    final int countryCodeDigits;
+
+    /**
+     * Префиксы хранятся числами вместе с количеством цифр, чтобы сравнивать их с первыми
+     * цифрами номера без создания строк. Ведущие нули ("00", "011") учитываются длиной
+     */
+    final int trunkPrefix;
+    final int trunkPrefixDigits;
+    final int[] internationalPrefixes;
+    final int[] internationalPrefixDigits;
+
+    final int minNationalDigits;
+    final int maxNationalDigits;
+
+    /**
+     * @param internationalPrefixes Префиксы выхода на международную связь, от длинных к коротким
+     */
+    public DialingPlan(String region, int countryCode, int trunkPrefix, int trunkPrefixDigits,
+                       int[] internationalPrefixes, int[] internationalPrefixDigits,
+                       int minNationalDigits, int maxNationalDigits) {
+        if (internationalPrefixes.length != internationalPrefixDigits.length) {
+            throw new IllegalArgumentException("Для каждого международного префикса нужна его длина");
+        }
+        this.region = region;
+        this.countryCode = countryCode;
+        this.countryCodeDigits = NumberKeys.digitCount(countryCode);
+        this.trunkPrefix = trunkPrefix;
+        this.trunkPrefixDigits = trunkPrefixDigits;
+        this.internationalPrefixes = internationalPrefixes.clone();
+        this.internationalPrefixDigits = internationalPrefixDigits.clone();
+        this.minNationalDigits = minNationalDigits;
+        this.maxNationalDigits = maxNationalDigits;
+    }
+
+    /**
+     * Возвращает план нумерации по двухбуквенному коду страны (ISO 3166-1)
+     * @param fallback План, который возвращается для неизвестной страны
+     */
+    public static DialingPlan forRegion(String region, DialingPlan fallback) {
+        if (region != null) {
+            String upper = region.toUpperCase(Locale.ROOT);
+            for (DialingPlan plan : PLANS) {
+                if (plan.region.equals(upper)) {
+                    return plan;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    public String region() {
+        return region;
+    }
+
+    public int countryCode() {
+        return countryCode;
+    }
+}
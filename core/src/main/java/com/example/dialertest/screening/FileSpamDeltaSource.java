@@ -0,0 +1,62 @@
+package com.example.dialertest.screening;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Берёт дельты из локального каталога. Дельта для версии N лежит в файле "delta-N.bin".
+ * Дельты, вошедшие в основной файл при уплотнении, удаляются через {@link #prune(long)},
+ * поэтому каталог не растёт с каждым обновлением.
+ */
+public final class FileSpamDeltaSource implements SpamDeltaSource {
+
+    private static final String PREFIX = "delta-";
+    private static final String SUFFIX = ".bin";
+
+    private final File directory;
+
+    public FileSpamDeltaSource(File directory) {
+        this.directory = directory;
+    }
+
+    public static String fileName(long fromVersion) {
+        return PREFIX + fromVersion + SUFFIX;
+    }
+
+    @Override
+    public InputStream open(long fromVersion) throws IOException {
+        File file = new File(directory, fileName(fromVersion));
+        return file.exists() ? new FileInputStream(file) : null;
+    }
+
+    @Override
+    public void prune(long baseVersion) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            long fromVersion = fromVersion(file.getName());
+            // Файл, который не удалось удалить, будет удалён при следующем уплотнении
+            if (fromVersion >= 0 && fromVersion < baseVersion) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Версия, к которой применяется дельта, по имени файла или -1, если это не файл дельты
+     */
+    private static long fromVersion(String name) {
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX) || name.length() <= PREFIX.length() + SUFFIX.length()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.dialertest.screening;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Быстрый отказ перед поиском по базе. Большинство входящих звонков - не спам, поэтому ответ
+ * "номера точно нет в базе" выдаётся {@link BloomFilter} из памяти процесса, не обращаясь
+ * к отображённому файлу. В фильтр попадают и отдельные номера, и правила-префиксы.
+ *
+ * Фильтр строится для конкретного экземпляра базы и не знает о её последующих изменениях,
+ * поэтому при каждой смене версии базы его нужно построить заново, см. {@link SpamFilterTier}.
+ */
+public final class FilteredSpamDatabase implements SpamDatabase {
+
+    /**
+     * Количество случайных отсутствующих в базе номеров, на которых измеряется доля ложноположительных ответов
+     */
+    private static final int MEASUREMENT_PROBES = 100_000;
+
+    private final SpamDatabase delegate;
+    private final BloomFilter filter;
+    private final double measuredFalsePositiveRate;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    private FilteredSpamDatabase(SpamDatabase delegate, BloomFilter filter, double measuredFalsePositiveRate) {
+        this.delegate = delegate;
+        this.filter = filter;
+        this.measuredFalsePositiveRate = measuredFalsePositiveRate;
+    }
+
+    /**
+     * Строит фильтр по всем номерам и префиксам базы и измеряет долю его ложноположительных ответов
+     * @param bitsPerKey Количество бит фильтра на одну запись
+     */
+    public static FilteredSpamDatabase build(SpamDatabase database, int bitsPerKey) {
+        BloomFilter filter = new BloomFilter(database.size() + database.prefixRuleCount(), bitsPerKey);
+        if (database instanceof LayeredSpamDatabase) {
+            LayeredSpamDatabase layered = (LayeredSpamDatabase) database;
+            putAll(filter, layered.base());
+            // Удалённые слоем номера остаются в фильтре, что даёт лишь лишний ложноположительный ответ
+            SpamDeltaOverlay overlay = layered.overlay();
+            for (int i = 0; i < overlay.numberCount(); i++) {
+                filter.put(overlay.numberAt(i));
+            }
+            for (int i = 0; i < overlay.prefixCount(); i++) {
+                filter.put(overlay.prefixSortKeyAt(i));
+            }
+        } else if (database instanceof SortedSpamDatabase) {
+            putAll(filter, (SortedSpamDatabase) database);
+        } else {
+            throw new IllegalArgumentException("Невозможно перебрать записи базы " + database.getClass());
+        }
+
+        return new FilteredSpamDatabase(database, filter, measure(filter, database));
+    }
+
+    private static void putAll(BloomFilter filter, SortedSpamDatabase database) {
+        for (int i = 0; i < database.size(); i++) {
+            filter.put(database.numberAt(i));
+        }
+        for (int i = 0; i < database.prefixRuleCount(); i++) {
+            filter.put(NumberKeys.prefixSortKey(database.prefixAt(i), database.prefixLengthAt(i)));
+        }
+    }
+
+    /**
+     * Проверяет фильтр на случайных 11-значных номерах, которых нет в базе
+     */
+    private static double measure(BloomFilter filter, SpamDatabase database) {
+        Random random = new Random(database.version());
+        int probes = 0;
+        int positives = 0;
+        for (int i = 0; i < MEASUREMENT_PROBES; i++) {
+            long key = NumberKeys.POW10[10] + (long) (random.nextDouble() * 9 * NumberKeys.POW10[10]);
+            if (database.findNumber(key) != NOT_FOUND) {
+                continue;
+            }
+            probes++;
+            if (filter.mightContain(key)) {
+                positives++;
+            }
+        }
+        return probes == 0 ? 0.0 : (double) positives / probes;
+    }
+
+    public SpamDatabase delegate() {
+        return delegate;
+    }
+
+    @Override
+    public long version() {
+        return delegate.version();
+    }
+
+    @Override
+    public int findNumber(long key) {
+        if (!filter.mightContain(key)) {
+            rejected.incrementAndGet();
+            return NOT_FOUND;
+        }
+        int entry = delegate.findNumber(key);
+        if (entry == NOT_FOUND) {
+            falsePositives.incrementAndGet();
+        }
+        return entry;
+    }
+
+    @Override
+    public int findPrefixRule(long prefix, int length) {
+        return filter.mightContain(NumberKeys.prefixSortKey(prefix, length))
+                ? delegate.findPrefixRule(prefix, length)
+                : NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int prefixRuleCount() {
+        return delegate.prefixRuleCount();
+    }
+
+    /**
+     * Доля ложноположительных ответов фильтра, измеренная при построении
+     */
+    public double measuredFalsePositiveRate() {
+        return measuredFalsePositiveRate;
+    }
+
+    /**
+     * Доля ложноположительных ответов на реальных номерах: среди номеров, которых нет в базе,
+     * доля тех, которые фильтр всё же пропустил к поиску
+     */
+    public double observedFalsePositiveRate() {
+        long passed = falsePositives.get();
+        long total = passed + rejected.get();
+        return total == 0 ? 0.0 : (double) passed / total;
+    }
+
+    /**
+     * Количество номеров, отсечённых фильтром без обращения к базе
+     */
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    public int filterSizeInBytes() {
+        return filter.sizeInBytes();
+    }
+}
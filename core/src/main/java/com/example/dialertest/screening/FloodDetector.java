@@ -0,0 +1,223 @@
+package com.example.dialertest.screening;
+
+import com.example.dialertest.metrics.Counter;
+
+import java.util.Arrays;
+
+/**
+ * Обнаружение волн звонков (массовых обзвонов) с блоков соседних номеров. Во время волны номера
+ * каждый раз новые и в базе их ещё нет, но все они начинаются с одного префикса, например
+ * +7 900 555 1xxx. Детектор считает звонки по блокам номеров (номер без последних цифр)
+ * в скользящем окне и помечает блок как источник волны, когда число звонков из него за окно
+ * достигает порога. Пометка держится заданное время после последнего превышения.
+ *
+ * Счётчики блоков хранятся в count-min sketch: {@link #DEPTH} строк по {@link #WIDTH} счётчиков
+ * на каждый из {@link #BUCKETS} временных интервалов окна. Память фиксирована и не зависит от
+ * числа блоков, а оценка числа звонков может быть только завышена, и то лишь при коллизиях во всех
+ * строках сразу. Окно сдвигается интервалами: оценка покрывает от (BUCKETS - 1) до BUCKETS
+ * интервалов, поэтому порог срабатывает не позже, чем при точном скользящем окне.
+ *
+ * Методы синхронизированы и не выделяют память.
+ */
+public final class FloodDetector {
+
+    static final int DEPTH = 4;
+    static final int WIDTH = 1024;
+    static final int BUCKETS = 8;
+
+    /**
+     * Наибольшее количество одновременно помеченных блоков
+     */
+    static final int MAX_HOSTILE = 64;
+
+    private final int blockDigits;
+    private final int threshold;
+    private final long bucketMillis;
+    private final long hostileMillis;
+    private final Counter flagged;
+
+    /**
+     * Счётчики: строка, столбец, интервал. Интервалы одного счётчика лежат рядом, поэтому оценка
+     * за окно читает по одной строке кэша процессора на строку sketch
+     */
+    private final int[] counts = new int[BUCKETS * DEPTH * WIDTH];
+
+    /**
+     * Номер интервала, счётчики которого лежат в ячейке, или -1 для пустой ячейки
+     */
+    private final long[] bucketEpochs = new long[BUCKETS];
+
+    private final long[] hostileBlocks = new long[MAX_HOSTILE];
+    private final long[] hostileUntil = new long[MAX_HOSTILE];
+
+    /**
+     * @param blockDigits Количество последних цифр номера, которые отбрасываются: 3 - блок из тысячи номеров
+     * @param threshold Количество звонков из блока за окно, с которого блок считается источником волны
+     * @param windowMillis Длина окна, мс
+     * @param hostileMillis Сколько блок остаётся помеченным после последнего превышения порога, мс
+     * @param flagged Счётчик новых пометок блоков
+     */
+    public FloodDetector(int blockDigits, int threshold, long windowMillis, long hostileMillis, Counter flagged) {
+        if (blockDigits < 1 || blockDigits >= NumberKeys.MAX_DIGITS || threshold < 1
+                || windowMillis < BUCKETS || hostileMillis < 0) {
+            throw new IllegalArgumentException("Некорректные параметры обнаружения волн: " + blockDigits + ", "
+                    + threshold + ", " + windowMillis + ", " + hostileMillis);
+        }
+        this.blockDigits = blockDigits;
+        this.threshold = threshold;
+        this.bucketMillis = windowMillis / BUCKETS;
+        this.hostileMillis = hostileMillis;
+        this.flagged = flagged;
+        Arrays.fill(bucketEpochs, -1L);
+    }
+
+    /**
+     * Учитывает звонок и проверяет блок номера
+     * @param key Ключ номера. Некорректные и слишком короткие номера не учитываются
+     * @param timeMillis Время звонка, мс. Время не должно идти назад больше, чем на длину окна
+     * @return Истина, если блок номера помечен как источник волны с учётом этого звонка
+     */
+    public synchronized boolean observe(long key, long timeMillis) {
+        if (!NumberKeys.isValid(key) || NumberKeys.digitCount(key) <= blockDigits) {
+            return false;
+        }
+        long block = key / NumberKeys.POW10[blockDigits];
+        long epoch = Math.floorDiv(timeMillis, bucketMillis);
+        int bucket = bucket(epoch);
+        if (bucket < 0) {
+            return isHostileBlock(block, timeMillis);
+        }
+
+        // Консервативное обновление: увеличиваются только минимальные счётчики блока. Оценка
+        // остаётся верхней границей, но коллизии завышают её меньше
+        long hash = LongIntHashMap.mix(block);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counts[index(row, column(h1, h2, row), bucket)]);
+        }
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(row, column(h1, h2, row), bucket);
+            if (counts[index] == min) {
+                counts[index]++;
+            }
+        }
+
+        if (estimate(h1, h2, epoch) >= threshold) {
+            flag(block, timeMillis + hostileMillis);
+            return true;
+        }
+        return isHostileBlock(block, timeMillis);
+    }
+
+    /**
+     * Проверяет, помечен ли блок номера, не учитывая звонок
+     */
+    public synchronized boolean isHostile(long key, long timeMillis) {
+        return NumberKeys.isValid(key) && NumberKeys.digitCount(key) > blockDigits
+                && isHostileBlock(key / NumberKeys.POW10[blockDigits], timeMillis);
+    }
+
+    /**
+     * Оценка числа звонков из блока номера за окно, сверху
+     */
+    public synchronized int estimate(long key, long timeMillis) {
+        if (!NumberKeys.isValid(key) || NumberKeys.digitCount(key) <= blockDigits) {
+            return 0;
+        }
+        long hash = LongIntHashMap.mix(key / NumberKeys.POW10[blockDigits]);
+        return estimate((int) hash, (int) (hash >>> 32) | 1, Math.floorDiv(timeMillis, bucketMillis));
+    }
+
+    /**
+     * Количество помеченных сейчас блоков
+     */
+    public synchronized int hostileCount(long timeMillis) {
+        int count = 0;
+        for (int i = 0; i < MAX_HOSTILE; i++) {
+            if (hostileUntil[i] > timeMillis) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Ячейка интервала. Ячейка с устаревшим интервалом очищается
+     * @return Ячейка или -1, если интервал старше окна
+     */
+    private int bucket(long epoch) {
+        int bucket = (int) Math.floorMod(epoch, (long) BUCKETS);
+        if (bucketEpochs[bucket] == epoch) {
+            return bucket;
+        }
+        if (bucketEpochs[bucket] > epoch) {
+            return -1;
+        }
+        for (int index = bucket; index < counts.length; index += BUCKETS) {
+            counts[index] = 0;
+        }
+        bucketEpochs[bucket] = epoch;
+        return bucket;
+    }
+
+    private int estimate(int h1, int h2, long epoch) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int base = index(row, column(h1, h2, row), 0);
+            int sum = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long age = epoch - bucketEpochs[bucket];
+                if (bucketEpochs[bucket] >= 0 && age >= 0 && age < BUCKETS) {
+                    sum += counts[base + bucket];
+                }
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    private static int index(int row, int column, int bucket) {
+        return (row * WIDTH + column) * BUCKETS + bucket;
+    }
+
+    /**
+     * Столбец строки по двум половинам хеша (схема Кирша-Митценмахера)
+     */
+    private static int column(int h1, int h2, int row) {
+        return (h1 + row * h2) & (WIDTH - 1);
+    }
+
+    private boolean isHostileBlock(long block, long timeMillis) {
+        for (int i = 0; i < MAX_HOSTILE; i++) {
+            if (hostileBlocks[i] == block && hostileUntil[i] > timeMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Помечает блок до указанного времени. Если мест нет, вытесняется пометка, истекающая раньше всех
+     */
+    private void flag(long block, long until) {
+        int target = 0;
+        for (int i = 0; i < MAX_HOSTILE; i++) {
+            if (hostileBlocks[i] == block) {
+                if (hostileUntil[i] <= until - hostileMillis) {
+                    // Пометка уже истекла, блок помечается заново
+                    flagged.increment();
+                }
+                hostileUntil[i] = Math.max(hostileUntil[i], until);
+                return;
+            }
+            if (hostileUntil[i] < hostileUntil[target]) {
+                target = i;
+            }
+        }
+        hostileBlocks[target] = block;
+        hostileUntil[target] = until;
+        flagged.increment();
+    }
+}
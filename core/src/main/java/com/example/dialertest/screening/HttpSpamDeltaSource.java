@@ -0,0 +1,39 @@
+package com.example.dialertest.screening;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Загружает дельты по HTTP запросом "GET адрес?from=N". Сервер отвечает кодом 200 и дельтой
+ * либо кодом 204 или 404, если обновлений для этой версии нет.
+ */
+public final class HttpSpamDeltaSource implements SpamDeltaSource {
+
+    private static final int TIMEOUT_MILLIS = 15_000;
+
+    private final String url;
+
+    public HttpSpamDeltaSource(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public InputStream open(long fromVersion) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url + "?from=" + fromVersion).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        int code = connection.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NO_CONTENT || code == HttpURLConnection.HTTP_NOT_FOUND) {
+            connection.disconnect();
+            return null;
+        }
+        if (code != HttpURLConnection.HTTP_OK) {
+            connection.disconnect();
+            throw new IOException("Сервер обновлений вернул код " + code);
+        }
+        return connection.getInputStream();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.dialertest.screening;
+
+/**
+ * База, состоящая из основного файла и слоя применённых дельт. Поиск сначала проверяет
+ * небольшой слой в куче, а затем основной файл. Так дельты вступают в силу сразу,
+ * без перестроения основного файла, которое выполняется позже при уплотнении.
+ */
+public final class LayeredSpamDatabase implements SpamDatabase {
+
+    private final SortedSpamDatabase base;
+    private final SpamDeltaOverlay overlay;
+    private final long version;
+    private final int size;
+    private final int prefixRuleCount;
+
+    public LayeredSpamDatabase(SortedSpamDatabase base, SpamDeltaOverlay overlay, long version) {
+        this.base = base;
+        this.overlay = overlay;
+        this.version = version;
+
+        // Точное количество записей: записи основного файла плюс добавленные и минус удалённые слоем
+        int numbers = base.size();
+        for (int i = 0; i < overlay.numberCount(); i++) {
+            numbers += delta(overlay.numberEntryAt(i), base.findNumber(overlay.numberAt(i)));
+        }
+        int prefixes = base.prefixRuleCount();
+        for (int i = 0; i < overlay.prefixCount(); i++) {
+            long sortKey = overlay.prefixSortKeyAt(i);
+            prefixes += delta(overlay.prefixEntryAt(i), base.findPrefixRule(
+                    NumberKeys.prefixFromSortKey(sortKey), NumberKeys.lengthFromSortKey(sortKey)));
+        }
+        size = numbers;
+        prefixRuleCount = prefixes;
+    }
+
+    private static int delta(int overlayEntry, int baseEntry) {
+        boolean inOverlay = overlayEntry != SpamDeltaOverlay.TOMBSTONE;
+        boolean inBase = baseEntry != NOT_FOUND;
+        return inOverlay == inBase ? 0 : inOverlay ? 1 : -1;
+    }
+
+    public SortedSpamDatabase base() {
+        return base;
+    }
+
+    public SpamDeltaOverlay overlay() {
+        return overlay;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public int findNumber(long key) {
+        int entry = overlay.findNumber(key);
+        if (entry == SpamDeltaOverlay.TOMBSTONE) {
+            return NOT_FOUND;
+        }
+        return entry != NOT_FOUND ? entry : base.findNumber(key);
+    }
+
+    @Override
+    public int findPrefixRule(long prefix, int length) {
+        int entry = overlay.findPrefixRule(prefix, length);
+        if (entry == SpamDeltaOverlay.TOMBSTONE) {
+            return NOT_FOUND;
+        }
+        return entry != NOT_FOUND ? entry : base.findPrefixRule(prefix, length);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int prefixRuleCount() {
+        return prefixRuleCount;
+    }
+}
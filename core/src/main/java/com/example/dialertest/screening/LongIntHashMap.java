@@ -0,0 +1,154 @@
+package com.example.dialertest.screening;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица с открытой адресацией из long в int без упаковки ключей и значений в объекты.
+ * Ключ 0 зарезервирован под пустую ячейку, что не мешает хранить ключи номеров: они всегда положительны.
+ *
+ * Не потокобезопасна.
+ */
+public final class LongIntHashMap {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Перемешивание битов ключа (финализатор MurmurHash3), чтобы последовательные номера
+     * не попадали в соседние ячейки
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private int slot(long key) {
+        int slot = (int) mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int get(long key, int defaultValue) {
+        int slot = slot(key);
+        return keys[slot] == EMPTY ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return key != EMPTY && keys[slot(key)] == key;
+    }
+
+    /**
+     * Записывает значение по ключу
+     * @throws IllegalArgumentException Если ключ равен 0
+     */
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Ключ 0 зарезервирован");
+        }
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            if (size == resizeThreshold) {
+                rehash(keys.length * 2);
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Удаляет ключ, сдвигая следующие элементы цепочки, чтобы не оставлять удалённых ячеек
+     * @return Истина, если ключ был в таблице
+     */
+    public boolean remove(long key) {
+        if (key == EMPTY) {
+            return false;
+        }
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            return false;
+        }
+
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int ideal = (int) mix(keys[next]) & mask;
+            // Элемент можно перенести в пустую ячейку, если она лежит между его идеальной позицией и текущей
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Количество ячеек таблицы. Вместе с {@link #keyAt(int)} и {@link #valueAt(int)} позволяет
+     * обойти все элементы без создания итератора
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Ключ в ячейке или 0, если ячейка пуста
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
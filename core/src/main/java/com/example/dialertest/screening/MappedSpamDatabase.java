@@ -0,0 +1,222 @@
+package com.example.dialertest.screening;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.example.dialertest.screening.SpamDatabaseFormat.*;
+
+/**
+ * База нежелательных номеров, отображённая в память через {@link FileChannel#map}. При открытии
+ * проверяются заголовок, границы секций и каталог префиксов, а сами данные не разбираются
+ * и не копируются в кучу. Поэтому повреждённый файл отклоняется при открытии (и подмена базы
+ * не происходит), а не приводит к исключению при поиске на потоке проверки. Поиск
+ * выполняется двоичным поиском прямо по отображённым страницам файла, которые система
+ * подгружает по требованию.
+ *
+ * Отображение остаётся действительным и после закрытия канала, и после замены файла на диске,
+ * поэтому начатые поиски безопасно завершаются даже во время подмены базы.
+ */
+public final class MappedSpamDatabase implements SortedSpamDatabase {
+
+    private final long version;
+    private final long createdAt;
+    private final int numberCount;
+    private final int prefixCount;
+
+    private final LongBuffer numbers;
+    private final ByteBuffer numberEntries;
+    private final LongBuffer prefixes;
+    private final ByteBuffer prefixEntries;
+
+    /**
+     * Начало группы префиксов каждой длины. Копируется в кучу, так как занимает всего 17 чисел
+     */
+    private final int[] directory = new int[DIRECTORY_SIZE];
+
+    private MappedSpamDatabase(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(OFFSET_MAGIC) != MAGIC) {
+            throw new IOException("Файл не является базой нежелательных номеров");
+        }
+        if (buffer.getShort(OFFSET_FORMAT_VERSION) != FORMAT_VERSION) {
+            throw new IOException("Неподдерживаемая версия формата: " + buffer.getShort(OFFSET_FORMAT_VERSION));
+        }
+        if (buffer.getInt(OFFSET_HEADER_CRC) != headerCrc(buffer)) {
+            throw new IOException("Заголовок базы повреждён");
+        }
+        if (buffer.getLong(OFFSET_FILE_LENGTH) != buffer.capacity()) {
+            throw new IOException("Файл базы обрезан: ожидалось " + buffer.getLong(OFFSET_FILE_LENGTH)
+                    + " байт, получено " + buffer.capacity());
+        }
+
+        version = buffer.getLong(OFFSET_DATA_VERSION);
+        createdAt = buffer.getLong(OFFSET_CREATED_AT);
+        numberCount = buffer.getInt(OFFSET_NUMBER_COUNT);
+        prefixCount = buffer.getInt(OFFSET_PREFIX_COUNT);
+
+        // Длины считаются в long, чтобы огромное количество записей не переполнило int и не прошло проверку границ
+        numbers = slice(buffer, buffer.getInt(OFFSET_NUMBERS), 8L * numberCount).asLongBuffer();
+        numberEntries = slice(buffer, buffer.getInt(OFFSET_NUMBER_ENTRIES), 2L * numberCount);
+        prefixes = slice(buffer, buffer.getInt(OFFSET_PREFIXES), 8L * prefixCount).asLongBuffer();
+        prefixEntries = slice(buffer, buffer.getInt(OFFSET_PREFIX_ENTRIES), 2L * prefixCount);
+
+        ByteBuffer directoryBuffer = slice(buffer, buffer.getInt(OFFSET_PREFIX_DIRECTORY), 4L * DIRECTORY_SIZE);
+        for (int i = 0; i < DIRECTORY_SIZE; i++) {
+            directory[i] = directoryBuffer.getInt(4 * i);
+        }
+        checkDirectory(directory, prefixCount);
+    }
+
+    /**
+     * Каталог не покрыт контрольной суммой заголовка, а его значения используются как индексы
+     * при поиске, поэтому группы должны идти подряд от нуля до количества префиксов
+     */
+    private static void checkDirectory(int[] directory, int prefixCount) throws IOException {
+        if (directory[0] != 0 || directory[DIRECTORY_SIZE - 1] != prefixCount) {
+            throw new IOException("Каталог префиксов повреждён: " + directory[0] + ".."
+                    + directory[DIRECTORY_SIZE - 1] + " при " + prefixCount + " префиксах");
+        }
+        for (int i = 1; i < DIRECTORY_SIZE; i++) {
+            if (directory[i] < directory[i - 1]) {
+                throw new IOException("Каталог префиксов повреждён: группа " + i + " начинается раньше предыдущей");
+            }
+        }
+    }
+
+    /**
+     * Отображает файл базы в память
+     * @throws IOException Если файл не читается или не соответствует формату
+     */
+    public static MappedSpamDatabase open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedSpamDatabase(buffer);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, long length) throws IOException {
+        if (offset < HEADER_SIZE || length < 0 || offset + length > buffer.capacity()) {
+            throw new IOException("Секция выходит за границы файла: " + offset + "+" + length);
+        }
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.limit((int) (offset + length)).position(offset);
+        return duplicate.slice();
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Время создания файла базы, мс
+     */
+    public long createdAt() {
+        return createdAt;
+    }
+
+    @Override
+    public int findNumber(long key) {
+        int index = binarySearch(numbers, 0, numberCount, key);
+        return index >= 0 ? entry(numberEntries, index) : NOT_FOUND;
+    }
+
+    @Override
+    public int findPrefixRule(long prefix, int length) {
+        if (length < 1 || length > NumberKeys.MAX_DIGITS) {
+            return NOT_FOUND;
+        }
+        int from = directory[length];
+        int to = directory[length + 1];
+        // Пустые группы отсекаются без обращения к отображённым страницам
+        if (from == to) {
+            return NOT_FOUND;
+        }
+        int index = binarySearch(prefixes, from, to, prefix);
+        return index >= 0 ? entry(prefixEntries, index) : NOT_FOUND;
+    }
+
+    /**
+     * Возвращает ключ отдельного номера по его порядковому номеру в отсортированной секции
+     */
+    @Override
+    public long numberAt(int index) {
+        return numbers.get(index);
+    }
+
+    /**
+     * Возвращает запись отдельного номера по его порядковому номеру в отсортированной секции
+     */
+    @Override
+    public int numberEntryAt(int index) {
+        return entry(numberEntries, index);
+    }
+
+    /**
+     * Возвращает цифры правила-префикса по его порядковому номеру. Префиксы упорядочены по длине, затем по значению
+     */
+    @Override
+    public long prefixAt(int index) {
+        return prefixes.get(index);
+    }
+
+    /**
+     * Возвращает длину правила-префикса по его порядковому номеру
+     */
+    @Override
+    public int prefixLengthAt(int index) {
+        int length = 1;
+        while (directory[length + 1] <= index) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Возвращает запись правила-префикса по его порядковому номеру
+     */
+    @Override
+    public int prefixEntryAt(int index) {
+        return entry(prefixEntries, index);
+    }
+
+    @Override
+    public int size() {
+        return numberCount;
+    }
+
+    @Override
+    public int prefixRuleCount() {
+        return prefixCount;
+    }
+
+    private static int entry(ByteBuffer entries, int index) {
+        return (entries.get(2 * index) & 0xFF) << 8 | (entries.get(2 * index + 1) & 0xFF);
+    }
+
+    /**
+     * Двоичный поиск по абсолютным индексам. Не меняет позицию буфера, поэтому безопасен
+     * для одновременного вызова из нескольких потоков.
+     */
+    private static int binarySearch(LongBuffer keys, int from, int to, long key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = keys.get(mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
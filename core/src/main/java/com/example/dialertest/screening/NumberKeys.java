@@ -0,0 +1,102 @@
+package com.example.dialertest.screening;
+
+/**
+ * Вспомогательные методы для работы с ключами номеров. Ключ - это номер в формате E.164
+ * (до 15 цифр без знака "+"), упакованный в примитивный long. Так как номер в E.164 никогда
+ * не начинается с нуля, ключ однозначно восстанавливается в строку цифр.
+ */
+public final class NumberKeys {
+
+    /**
+     * Значение, обозначающее некорректный или отсутствующий номер
+     */
+    public static final long INVALID = -1L;
+
+    /**
+     * Максимальное количество цифр в номере по стандарту E.164
+     */
+    public static final int MAX_DIGITS = 15;
+
+    /**
+     * Степени десяти от 10^0 до 10^15. Используются для отсечения хвоста номера при проверке префиксов
+     */
+    static final long[] POW10 = new long[MAX_DIGITS + 1];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private NumberKeys() {
+    }
+
+    /**
+     * Собирает ключ из цифр строки, пропуская пробелы, скобки, дефисы и ведущий "+".
+     * Не создаёт промежуточных объектов.
+     * @param number Номер в произвольном формате
+     * @return Ключ номера или {@link #INVALID}, если номер пустой, слишком длинный или
+     * содержит посторонние символы
+     */
+    public static long fromDigits(CharSequence number) {
+        if (number == null) {
+            return INVALID;
+        }
+
+        long key = 0L;
+        int digits = 0;
+        for (int i = 0, length = number.length(); i < length; i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                // Ведущие нули в E.164 не допускаются
+                if (digits == 0 && c == '0') {
+                    return INVALID;
+                }
+                if (++digits > MAX_DIGITS) {
+                    return INVALID;
+                }
+                key = key * 10L + (c - '0');
+            } else if (c == '+' && digits == 0) {
+                continue;
+            } else if (c != ' ' && c != '-' && c != '(' && c != ')' && c != '.') {
+                return INVALID;
+            }
+        }
+        return digits == 0 ? INVALID : key;
+    }
+
+    /**
+     * Возвращает количество цифр в ключе
+     */
+    public static int digitCount(long key) {
+        int digits = 1;
+        while (digits < MAX_DIGITS && key >= POW10[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Ключ сортировки правила-префикса "длина * 10^15 + префикс". Упорядочивает префиксы
+     * сначала по длине, а затем по значению, как в секции префиксов файла базы
+     */
+    static long prefixSortKey(long prefix, int length) {
+        return length * POW10[MAX_DIGITS] + prefix;
+    }
+
+    static long prefixFromSortKey(long sortKey) {
+        return sortKey % POW10[MAX_DIGITS];
+    }
+
+    static int lengthFromSortKey(long sortKey) {
+        return (int) (sortKey / POW10[MAX_DIGITS]);
+    }
+
+    /**
+     * Проверяет, что значение является корректным ключом номера
+     */
+    public static boolean isValid(long key) {
+        return key > 0L && key < POW10[MAX_DIGITS];
+    }
+}
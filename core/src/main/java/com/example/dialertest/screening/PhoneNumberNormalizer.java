@@ -0,0 +1,207 @@
+package com.example.dialertest.screening;
+
+/**
+ * Приводит номер в произвольной записи к ключу E.164 (см. {@link NumberKeys}) за один проход
+ * по символам, без промежуточных строк, регулярных выражений и упаковки чисел.
+ *
+ * Понимает записи вида "+7 (495) 123-45-67", "8 495 123 45 67", "00749...", "810749...",
+ * "4951234567", схему "tel:", URL-кодирование ("%2B7%20495...") и отбрасывает параметры
+ * после ";" (например, ";ext=12"). Национальные записи разбираются по {@link DialingPlan}
+ * страны абонента.
+ *
+ * Объект неизменяемый и потокобезопасный.
+ */
+public final class PhoneNumberNormalizer {
+
+    /**
+     * С учётом международного префикса ("810") запись может содержать больше 15 цифр
+     */
+    private static final int MAX_RAW_DIGITS = 18;
+
+    private static final long[] POW10 = new long[MAX_RAW_DIGITS + 1];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i <= MAX_RAW_DIGITS; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private final DialingPlan plan;
+
+    public PhoneNumberNormalizer(DialingPlan plan) {
+        this.plan = plan;
+    }
+
+    public DialingPlan plan() {
+        return plan;
+    }
+
+    /**
+     * @return Ключ номера или {@link NumberKeys#INVALID}, если запись не распознана
+     */
+    public long normalize(CharSequence raw) {
+        return raw == null ? NumberKeys.INVALID : normalize(raw, 0, raw.length());
+    }
+
+    /**
+     * Разбирает часть последовательности символов [start, end)
+     * @return Ключ номера или {@link NumberKeys#INVALID}, если запись не распознана
+     */
+    public long normalize(CharSequence raw, int start, int end) {
+        int i = start;
+        if (end - i >= 4 && isScheme(raw, i)) {
+            i += 4;
+        }
+
+        long digits = 0L;
+        int count = 0;
+        boolean plus = false;
+        for (; i < end; i++) {
+            int c = raw.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= end) {
+                    return NumberKeys.INVALID;
+                }
+                int high = Character.digit(raw.charAt(i + 1), 16);
+                int low = Character.digit(raw.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    return NumberKeys.INVALID;
+                }
+                c = high << 4 | low;
+                i += 2;
+            }
+
+            if (c >= '0' && c <= '9') {
+                if (++count > MAX_RAW_DIGITS) {
+                    return NumberKeys.INVALID;
+                }
+                digits = digits * 10L + (c - '0');
+            } else if (c == '+') {
+                if (plus || count > 0) {
+                    return NumberKeys.INVALID;
+                }
+                plus = true;
+            } else if (c == ';' || c == ',') {
+                // Параметры номера и паузы набора не относятся к самому номеру
+                break;
+            } else if (c != ' ' && c != '-' && c != '(' && c != ')' && c != '.' && c != '/') {
+                return NumberKeys.INVALID;
+            }
+        }
+
+        if (count == 0) {
+            return NumberKeys.INVALID;
+        }
+        if (plus) {
+            return e164(digits, count);
+        }
+
+        // Международный префикс: "00 7 495...", "810 7 495..."
+        for (int p = 0; p < plan.internationalPrefixes.length; p++) {
+            int prefixDigits = plan.internationalPrefixDigits[p];
+            if (count > prefixDigits && startsWith(digits, count, plan.internationalPrefixes[p], prefixDigits)) {
+                return e164(digits % POW10[count - prefixDigits], count - prefixDigits);
+            }
+        }
+
+        // Междугородний префикс: "8 495 123-45-67"
+        int national = count - plan.trunkPrefixDigits;
+        if (isNationalLength(national) && startsWith(digits, count, plan.trunkPrefix, plan.trunkPrefixDigits)) {
+            return withCountryCode(digits % POW10[national], national);
+        }
+
+        // Номер без префиксов: "495 123-45-67"
+        if (isNationalLength(count)) {
+            return withCountryCode(digits, count);
+        }
+
+        // Номер с кодом страны, но без "+": "7 495 123-45-67"
+        national = count - plan.countryCodeDigits;
+        if (isNationalLength(national) && startsWith(digits, count, plan.countryCode, plan.countryCodeDigits)) {
+            return e164(digits, count);
+        }
+        return NumberKeys.INVALID;
+    }
+
+    private boolean isNationalLength(int digits) {
+        return digits >= plan.minNationalDigits && digits <= plan.maxNationalDigits;
+    }
+
+    private long withCountryCode(long national, int digits) {
+        // Национальный номер не может начинаться с нуля
+        if (national < POW10[digits - 1]) {
+            return NumberKeys.INVALID;
+        }
+        return e164(plan.countryCode * POW10[digits] + national, plan.countryCodeDigits + digits);
+    }
+
+    /**
+     * Проверяет, что цифры образуют корректный номер E.164: не длиннее 15 цифр и без ведущего нуля
+     */
+    private static long e164(long digits, int count) {
+        if (count > NumberKeys.MAX_DIGITS || digits < POW10[count - 1]) {
+            return NumberKeys.INVALID;
+        }
+        return digits;
+    }
+
+    /**
+     * Сравнивает первые цифры записи с префиксом. Ведущие нули записи учитываются через общее
+     * количество цифр, поэтому префикс "00" (значение 0, длина 2) находится корректно
+     */
+    private static boolean startsWith(long digits, int count, int prefix, int prefixDigits) {
+        return count >= prefixDigits && digits / POW10[count - prefixDigits] == prefix;
+    }
+
+    private static boolean isScheme(CharSequence raw, int i) {
+        return (raw.charAt(i) | 0x20) == 't' && (raw.charAt(i + 1) | 0x20) == 'e'
+                && (raw.charAt(i + 2) | 0x20) == 'l' && raw.charAt(i + 3) == ':';
+    }
+
+    /**
+     * Форматирует ключ номера для отображения: "+7 495 123-45-67" для российских и казахстанских
+     * номеров, "+1 212 555-0123" для номеров NANP, "+4930123456" для остальных
+     */
+    public static String format(long key) {
+        return NumberKeys.isValid(key) ? formatTo(key, new StringBuilder(16)).toString() : "";
+    }
+
+    /**
+     * Дописывает отформатированный номер, как {@link #format(long)}, без промежуточных строк.
+     * Для некорректного ключа ничего не дописывает
+     * @return out
+     */
+    public static StringBuilder formatTo(long key, StringBuilder out) {
+        if (!NumberKeys.isValid(key)) {
+            return out;
+        }
+        int length = NumberKeys.digitCount(key);
+        int first = digitAt(key, length, 0);
+        out.append('+');
+        if (length == 11 && (first == 7 || first == 1)) {
+            appendDigits(key, length, 0, 1, out).append(' ');
+            appendDigits(key, length, 1, 4, out).append(' ');
+            appendDigits(key, length, 4, 7, out).append('-');
+            if (first == 7) {
+                appendDigits(key, length, 7, 9, out).append('-');
+                appendDigits(key, length, 9, 11, out);
+            } else {
+                appendDigits(key, length, 7, 11, out);
+            }
+            return out;
+        }
+        return appendDigits(key, length, 0, length, out);
+    }
+
+    private static int digitAt(long key, int length, int index) {
+        return (int) (key / NumberKeys.POW10[length - 1 - index] % 10);
+    }
+
+    private static StringBuilder appendDigits(long key, int length, int from, int to, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            out.append((char) ('0' + digitAt(key, length, i)));
+        }
+        return out;
+    }
+}
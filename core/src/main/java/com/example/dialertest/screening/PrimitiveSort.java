@@ -0,0 +1,71 @@
+package com.example.dialertest.screening;
+
+/**
+ * Сортировка параллельных примитивных массивов по long-ключу без упаковки в объекты
+ */
+final class PrimitiveSort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private PrimitiveSort() {
+    }
+
+    /**
+     * Сортирует первые count элементов массива keys по возрастанию, переставляя элементы values вместе с ними
+     */
+    static void sort(long[] keys, int[] values, int count) {
+        quickSort(keys, values, 0, count - 1);
+    }
+
+    private static void quickSort(long[] keys, int[] values, int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            int mid = (low + high) >>> 1;
+            // Медиана трёх защищает от квадратичного времени на уже отсортированных данных
+            if (keys[mid] < keys[low]) swap(keys, values, mid, low);
+            if (keys[high] < keys[low]) swap(keys, values, high, low);
+            if (keys[high] < keys[mid]) swap(keys, values, high, mid);
+            long pivot = keys[mid];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+
+            // Рекурсия по меньшей части ограничивает глубину стека логарифмом
+            if (j - low < high - i) {
+                quickSort(keys, values, low, j);
+                low = i;
+            } else {
+                quickSort(keys, values, i, high);
+                high = j;
+            }
+        }
+
+        for (int i = low + 1; i <= high; i++) {
+            long key = keys[i];
+            int value = values[i];
+            int j = i - 1;
+            while (j >= low && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(long[] keys, int[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
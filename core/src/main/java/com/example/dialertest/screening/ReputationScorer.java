@@ -0,0 +1,17 @@
+package com.example.dialertest.screening;
+
+/**
+ * Оценка репутации номера по локальным признакам. Вызывается на потоке проверки до принятия
+ * решения, поэтому должна укладываться в доли миллисекунды и не обращаться к диску или сети.
+ */
+public interface ReputationScorer {
+
+    /**
+     * @param key Ключ номера
+     * @param entry Запись базы {@link SpamEntry} или {@link SpamDatabase#NOT_FOUND}
+     * @param hour Час звонка по местному времени от 0 до 23
+     * @param timeMillis Время звонка, мс
+     * @return Оценка от 0 (надёжный) до 1 (нежелательный) или NaN, если оценить номер нечем
+     */
+    float score(long key, int entry, int hour, long timeMillis);
+}
@@ -0,0 +1,275 @@
+package com.example.dialertest.screening;
+
+import java.util.Arrays;
+
+/**
+ * Условие правила проверки звонков. Условия строятся из простых признаков звонка (скрытый номер,
+ * контакт, префикс, оценка, время суток) и логических связок. Сами по себе условия только описывают
+ * правило; для проверки звонков они компилируются в {@link ScreeningRules}.
+ */
+public final class RuleCondition {
+
+    static final int HIDDEN = 1;
+    static final int CONTACT = 2;
+    static final int SPAM = 3;
+    static final int SCORE_AT_LEAST = 4;
+    static final int CATEGORY = 5;
+    static final int HOURS = 6;
+    static final int PREFIX = 7;
+    static final int REPUTATION_AT_LEAST = 8;
+    static final int FLOOD = 9;
+    static final int NOT = 10;
+    static final int ALL_OF = 11;
+    static final int ANY_OF = 12;
+
+    private static final RuleCondition[] NO_CHILDREN = new RuleCondition[0];
+    private static final RuleCondition ALWAYS = new RuleCondition(ALL_OF, 0L, 0, NO_CHILDREN);
+
+    final int kind;
+
+    /**
+     * Цифры префикса, порог оценки, категория или начальный час - в зависимости от вида условия
+     */
+    final long value;
+
+    /**
+     * Длина префикса или конечный час
+     */
+    final int argument;
+
+    final RuleCondition[] children;
+
+    private RuleCondition(int kind, long value, int argument, RuleCondition[] children) {
+        this.kind = kind;
+        this.value = value;
+        this.argument = argument;
+        this.children = children;
+    }
+
+    private static RuleCondition atom(int kind, long value, int argument) {
+        return new RuleCondition(kind, value, argument, NO_CHILDREN);
+    }
+
+    /**
+     * Условие, которое выполняется для любого звонка
+     */
+    public static RuleCondition always() {
+        return ALWAYS;
+    }
+
+    /**
+     * Номер скрыт или не распознан
+     */
+    public static RuleCondition hidden() {
+        return atom(HIDDEN, 0L, 0);
+    }
+
+    /**
+     * Номер есть в контактах или в списке разрешённых
+     */
+    public static RuleCondition contact() {
+        return atom(CONTACT, 0L, 0);
+    }
+
+    /**
+     * Номер найден в базе нежелательных номеров
+     */
+    public static RuleCondition spam() {
+        return atom(SPAM, 0L, 0);
+    }
+
+    /**
+     * Номер найден в базе с оценкой не ниже порога
+     * @param score Порог от 0 до {@link SpamEntry#MAX_SCORE}
+     */
+    public static RuleCondition scoreAtLeast(int score) {
+        if (score < 0 || score > SpamEntry.MAX_SCORE) {
+            throw new IllegalArgumentException("Некорректный порог оценки: " + score);
+        }
+        return atom(SCORE_AT_LEAST, score, 0);
+    }
+
+    /**
+     * Номер найден в базе с указанной категорией
+     */
+    public static RuleCondition category(int category) {
+        if (category < 0 || category > 0xFF) {
+            throw new IllegalArgumentException("Некорректная категория: " + category);
+        }
+        return atom(CATEGORY, category, 0);
+    }
+
+    /**
+     * Звонок поступил в промежутке часов [from, to). Промежуток может переходить через полночь,
+     * например hours(22, 7) - с 22:00 до 6:59
+     */
+    public static RuleCondition hours(int from, int to) {
+        if (from < 0 || from > 23 || to < 0 || to > 24 || from == to) {
+            throw new IllegalArgumentException("Некорректный промежуток часов: " + from + "-" + to);
+        }
+        return atom(HOURS, from, to);
+    }
+
+    /**
+     * Номер начинается с префикса, например prefix(7900555, 7) для +7-900-555
+     */
+    public static RuleCondition prefix(long prefix, int length) {
+        if (length < 1 || length > NumberKeys.MAX_DIGITS || !NumberKeys.isValid(prefix)
+                || NumberKeys.digitCount(prefix) != length) {
+            throw new IllegalArgumentException("Некорректный префикс: " + prefix + "/" + length);
+        }
+        return atom(PREFIX, prefix, length);
+    }
+
+    /**
+     * Оценка репутации номера не ниже порога. Неизвестная оценка не проходит ни один порог
+     * @param percent Порог в процентах от 0 до 100
+     */
+    public static RuleCondition reputationAtLeast(int percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Некорректный порог репутации: " + percent);
+        }
+        return atom(REPUTATION_AT_LEAST, percent, 0);
+    }
+
+    /**
+     * Номер из блока, с которого сейчас идёт волна звонков (см. {@link FloodDetector})
+     */
+    public static RuleCondition flood() {
+        return atom(FLOOD, 0L, 0);
+    }
+
+    public static RuleCondition not(RuleCondition condition) {
+        return new RuleCondition(NOT, 0L, 0, new RuleCondition[]{condition});
+    }
+
+    public static RuleCondition allOf(RuleCondition... conditions) {
+        return conditions.length == 1 ? conditions[0] : new RuleCondition(ALL_OF, 0L, 0, conditions.clone());
+    }
+
+    public static RuleCondition anyOf(RuleCondition... conditions) {
+        return conditions.length == 1 ? conditions[0] : new RuleCondition(ANY_OF, 0L, 0, conditions.clone());
+    }
+
+    boolean isAtom() {
+        return kind < NOT;
+    }
+
+    /**
+     * Проверяет условие для звонка, обходя дерево условия. Используется для простых признаков
+     * при компиляции и как эталон в тестах; скомпилированные правила вычисляются без обхода дерева
+     * @param key Ключ номера или {@link NumberKeys#INVALID}
+     * @param contact Номер есть в контактах
+     * @param entry Запись базы {@link SpamEntry} или {@link SpamDatabase#NOT_FOUND}
+     * @param hour Час звонка от 0 до 23
+     * @param reputation Оценка репутации от 0 до 1 или NaN
+     * @param flood Номер из блока, помеченного как источник волны звонков
+     */
+    public boolean matches(long key, boolean contact, int entry, int hour, float reputation, boolean flood) {
+        switch (kind) {
+            case HIDDEN:
+                return !NumberKeys.isValid(key);
+            case CONTACT:
+                return contact;
+            case SPAM:
+                return entry != SpamDatabase.NOT_FOUND;
+            case SCORE_AT_LEAST:
+                return entry != SpamDatabase.NOT_FOUND && SpamEntry.score(entry) >= value;
+            case CATEGORY:
+                return entry != SpamDatabase.NOT_FOUND && SpamEntry.category(entry) == value;
+            case HOURS:
+                return value < argument
+                        ? hour >= value && hour < argument
+                        : hour >= value || hour < argument;
+            case PREFIX: {
+                if (!NumberKeys.isValid(key)) {
+                    return false;
+                }
+                int digits = NumberKeys.digitCount(key);
+                return digits >= argument && key / NumberKeys.POW10[digits - argument] == value;
+            }
+            case REPUTATION_AT_LEAST:
+                return reputation * 100f >= value;
+            case FLOOD:
+                return flood;
+            case NOT:
+                return !children[0].matches(key, contact, entry, hour, reputation, flood);
+            case ALL_OF:
+                for (RuleCondition child : children) {
+                    if (!child.matches(key, contact, entry, hour, reputation, flood)) {
+                        return false;
+                    }
+                }
+                return true;
+            case ANY_OF:
+                for (RuleCondition child : children) {
+                    if (child.matches(key, contact, entry, hour, reputation, flood)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                throw new IllegalStateException("Неизвестный вид условия: " + kind);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RuleCondition)) {
+            return false;
+        }
+        RuleCondition other = (RuleCondition) o;
+        return kind == other.kind && value == other.value && argument == other.argument
+                && Arrays.equals(children, other.children);
+    }
+
+    @Override
+    public int hashCode() {
+        return (kind * 31 + Long.hashCode(value)) * 31 + argument + Arrays.hashCode(children);
+    }
+
+    /**
+     * Условие в синтаксисе {@link ScreeningRulesParser}
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case HIDDEN:
+                return "hidden";
+            case CONTACT:
+                return "contact";
+            case SPAM:
+                return "spam";
+            case SCORE_AT_LEAST:
+                return "score>=" + value;
+            case CATEGORY:
+                return "category=" + SpamEntry.categoryName((int) value);
+            case HOURS:
+                return "hour=" + value + "-" + argument;
+            case PREFIX:
+                return "prefix=+" + value;
+            case REPUTATION_AT_LEAST:
+                return "reputation>=" + value;
+            case FLOOD:
+                return "flood";
+            case NOT:
+                return "not " + children[0];
+            default: {
+                if (children.length == 0) {
+                    return "always";
+                }
+                StringBuilder text = new StringBuilder("(");
+                for (int i = 0; i < children.length; i++) {
+                    if (i > 0) {
+                        text.append(kind == ALL_OF ? " and " : " or ");
+                    }
+                    text.append(children[i]);
+                }
+                return text.append(')').toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.dialertest.screening;
+
+/**
+ * Действие над входящим звонком в виде набора битовых флагов. Флаги соответствуют методам
+ * CallScreeningService.CallResponse.Builder. Флаги REJECT, SKIP_CALL_LOG и SKIP_NOTIFICATION
+ * имеют смысл только вместе с DISALLOW, поэтому всегда устанавливаются вместе с ним.
+ */
+public final class ScreeningAction {
+
+    /**
+     * Пропустить звонок к пользователю
+     */
+    public static final int ALLOW = 0;
+
+    /**
+     * Не допустить звонок до пользователя: setDisallowCall
+     */
+    public static final int DISALLOW = 1;
+
+    /**
+     * Отклонить звонок, как если бы пользователь нажал «Отклонить»: setRejectCall
+     */
+    public static final int REJECT = 1 << 1;
+
+    /**
+     * Пропустить звонок, но без звонка и вибрации: setSilenceCall
+     */
+    public static final int SILENCE = 1 << 2;
+
+    /**
+     * Не записывать звонок в журнал вызовов: setSkipCallLog
+     */
+    public static final int SKIP_CALL_LOG = 1 << 3;
+
+    /**
+     * Не показывать уведомление о пропущенном звонке: setSkipNotification
+     */
+    public static final int SKIP_NOTIFICATION = 1 << 4;
+
+    static final int ALL = DISALLOW | REJECT | SILENCE | SKIP_CALL_LOG | SKIP_NOTIFICATION;
+
+    private ScreeningAction() {
+    }
+
+    public static boolean has(int action, int flag) {
+        return (action & flag) == flag;
+    }
+
+    /**
+     * Проверяет согласованность флагов
+     * @throws IllegalArgumentException Если флаги противоречат друг другу
+     */
+    static int validate(int action) {
+        if ((action & ~ALL) != 0) {
+            throw new IllegalArgumentException("Неизвестные флаги действия: " + action);
+        }
+        if ((action & (REJECT | SKIP_CALL_LOG | SKIP_NOTIFICATION)) != 0 && (action & DISALLOW) == 0) {
+            throw new IllegalArgumentException("Отклонение и пропуск журнала возможны только вместе с запретом звонка");
+        }
+        if ((action & SILENCE) != 0 && (action & DISALLOW) != 0) {
+            throw new IllegalArgumentException("Беззвучный режим применим только к пропущенному звонку");
+        }
+        return action;
+    }
+
+    public static String toString(int action) {
+        if (action == ALLOW) {
+            return "allow";
+        }
+        StringBuilder text = new StringBuilder();
+        if (has(action, REJECT)) {
+            text.append("reject");
+        } else if (has(action, DISALLOW)) {
+            text.append("block");
+        } else if (has(action, SILENCE)) {
+            text.append("silence");
+        }
+        if (has(action, SKIP_CALL_LOG)) {
+            text.append(",skip-log");
+        }
+        if (has(action, SKIP_NOTIFICATION)) {
+            text.append(",skip-notification");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.dialertest.screening;
+
+/**
+ * Медленная стадия проверки звонка, которая выполняется уже после отправки решения:
+ * поиск имени абонента, запрос репутации номера и т. п.
+ */
+public interface ScreeningEnricher {
+
+    /**
+     * @param result Результат предыдущих стадий
+     * @return Дополненный результат или тот же объект, если дополнить нечем
+     */
+    ScreeningResult enrich(ScreeningResult result) throws Exception;
+}
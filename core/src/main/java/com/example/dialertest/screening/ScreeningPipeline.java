@@ -0,0 +1,309 @@
+package com.example.dialertest.screening;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Проверка входящего звонка вне главного потока с жёстким бюджетом времени.
+ *
+ * Быстрая стадия (разбор номера, поиск в локальной базе, оценка репутации {@link ReputationScorer}
+ * и применение правил {@link ScreeningRules}) выполняется на исполнителе проверок. Её решение
+ * передаётся в {@link Callback#onVerdict}, как только оно готово. Если решение не готово
+ * к истечению бюджета, в onVerdict передаётся результат по умолчанию (звонок пропускается),
+ * чтобы система получила ответ до своего тайм-аута. В обоих случаях onVerdict
+ * вызывается ровно один раз.
+ *
+ * После решения на отдельном исполнителе выполняются медленные стадии {@link ScreeningEnricher}.
+ * Каждое изменение результата передаётся в {@link Callback#onEnriched}. Опоздавшее решение
+ * быстрой стадии тоже приходит через onEnriched и может, например, обновить окно с информацией.
+ *
+ * Если задан {@link VerdictCache}, повторный звонок с номера берёт из него запись базы и уже
+ * дополненный результат, а медленные стадии для него не выполняются.
+ *
+ * Если задан {@link FloodDetector}, в него попадает каждый звонок не из контактов, а правила
+ * получают признак волны звонков с блока номера.
+ */
+public final class ScreeningPipeline {
+
+    /**
+     * Получатель результатов проверки. Методы вызываются на фоновых потоках
+     */
+    public interface Callback {
+
+        /**
+         * Решение по звонку. Вызывается ровно один раз, не позже истечения бюджета
+         */
+        void onVerdict(ScreeningResult result);
+
+        /**
+         * Дополненный результат. Может вызываться несколько раз после onVerdict
+         */
+        void onEnriched(ScreeningResult result);
+    }
+
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final Supplier<SpamDatabase> database;
+    private final Supplier<ScreeningRules> rules;
+    private final Supplier<TimeZone> timeZone;
+    private final LongPredicate contacts;
+    private final VerdictCache cache;
+    private final ReputationScorer reputation;
+    private final FloodDetector flood;
+    private final PhoneNumberNormalizer normalizer;
+    private final Executor lookupExecutor;
+    private final Executor enrichmentExecutor;
+    private final ScheduledExecutorService timer;
+    private final long budgetNanos;
+    private final List<ScreeningEnricher> enrichers;
+
+    /**
+     * Создаёт конвейер, который отклоняет все номера из базы ({@link ScreeningRules#rejectSpam()})
+     */
+    public ScreeningPipeline(Supplier<SpamDatabase> database, PhoneNumberNormalizer normalizer,
+                             Executor lookupExecutor, Executor enrichmentExecutor,
+                             ScheduledExecutorService timer, long budgetNanos,
+                             List<ScreeningEnricher> enrichers) {
+        this(new Builder(database, normalizer, lookupExecutor, enrichmentExecutor, timer, budgetNanos)
+                .enrichers(enrichers));
+    }
+
+    private ScreeningPipeline(Builder builder) {
+        this.database = builder.database;
+        this.rules = builder.rules;
+        this.timeZone = builder.timeZone;
+        this.contacts = builder.contacts;
+        this.cache = builder.cache;
+        this.reputation = builder.reputation;
+        this.flood = builder.flood;
+        this.normalizer = builder.normalizer;
+        this.lookupExecutor = builder.lookupExecutor;
+        this.enrichmentExecutor = builder.enrichmentExecutor;
+        this.timer = builder.timer;
+        this.budgetNanos = builder.budgetNanos;
+        this.enrichers = builder.enrichers;
+    }
+
+    /**
+     * Собирает конвейер. Обязательные части передаются в конструктор, остальные по умолчанию
+     * отключены: правила отклоняют номера из базы, контактов и кэша нет, оценка репутации
+     * берётся из базы, волны звонков не отслеживаются, часовой пояс - пояс по умолчанию на момент сборки
+     */
+    public static final class Builder {
+
+        private final Supplier<SpamDatabase> database;
+        private final PhoneNumberNormalizer normalizer;
+        private final Executor lookupExecutor;
+        private final Executor enrichmentExecutor;
+        private final ScheduledExecutorService timer;
+        private final long budgetNanos;
+
+        private Supplier<ScreeningRules> rules = ScreeningRules::rejectSpam;
+        private Supplier<TimeZone> timeZone;
+        private LongPredicate contacts = key -> false;
+        private VerdictCache cache;
+        private ReputationScorer reputation;
+        private FloodDetector flood;
+        private List<ScreeningEnricher> enrichers = Collections.emptyList();
+
+        /**
+         * @param database Источник текущей версии базы
+         * @param lookupExecutor Исполнитель быстрой стадии
+         * @param enrichmentExecutor Исполнитель медленных стадий
+         * @param timer Планировщик срабатывания бюджета
+         * @param budgetNanos Время, за которое решение должно быть отправлено
+         */
+        public Builder(Supplier<SpamDatabase> database, PhoneNumberNormalizer normalizer,
+                       Executor lookupExecutor, Executor enrichmentExecutor,
+                       ScheduledExecutorService timer, long budgetNanos) {
+            this.database = database;
+            this.normalizer = normalizer;
+            this.lookupExecutor = lookupExecutor;
+            this.enrichmentExecutor = enrichmentExecutor;
+            this.timer = timer;
+            this.budgetNanos = budgetNanos;
+            TimeZone defaultZone = TimeZone.getDefault();
+            this.timeZone = () -> defaultZone;
+        }
+
+        /**
+         * Источник текущей версии правил
+         */
+        public Builder rules(Supplier<ScreeningRules> rules) {
+            this.rules = rules;
+            return this;
+        }
+
+        /**
+         * Источник текущего часового пояса для часа звонка. TimeZone.getDefault() при каждом вызове
+         * возвращает новую копию пояса, поэтому источник должен отдавать заранее полученный пояс
+         * и заменять его только при смене пояса
+         */
+        public Builder timeZone(Supplier<TimeZone> timeZone) {
+            this.timeZone = timeZone;
+            return this;
+        }
+
+        /**
+         * Проверка наличия номера в контактах по его ключу. Номера из контактов не ищутся в базе
+         */
+        public Builder contacts(LongPredicate contacts) {
+            this.contacts = contacts;
+            return this;
+        }
+
+        /**
+         * Кэш результатов для повторных звонков
+         */
+        public Builder cache(VerdictCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Оценка репутации номера по локальным признакам
+         */
+        public Builder reputation(ReputationScorer reputation) {
+            this.reputation = reputation;
+            return this;
+        }
+
+        /**
+         * Обнаружение волн звонков с блоков соседних номеров
+         */
+        public Builder flood(FloodDetector flood) {
+            this.flood = flood;
+            return this;
+        }
+
+        public Builder enrichers(List<ScreeningEnricher> enrichers) {
+            this.enrichers = enrichers;
+            return this;
+        }
+
+        public ScreeningPipeline build() {
+            return new ScreeningPipeline(this);
+        }
+    }
+
+    /**
+     * Запускает проверку звонка и сразу возвращает управление
+     * @param handle Номер в том виде, в котором его передала система, или null для скрытого номера
+     */
+    public void screen(CharSequence handle, Callback callback) {
+        long start = System.nanoTime();
+        AtomicBoolean responded = new AtomicBoolean();
+
+        ScheduledFuture<?> deadline = timer.schedule(() -> {
+            if (responded.compareAndSet(false, true)) {
+                callback.onVerdict(ScreeningResult.fallback(System.nanoTime() - start));
+            }
+        }, budgetNanos, TimeUnit.NANOSECONDS);
+
+        lookupExecutor.execute(() -> {
+            ScreeningResult result = lookup(handle, start);
+            if (responded.compareAndSet(false, true)) {
+                deadline.cancel(false);
+                callback.onVerdict(result);
+            } else {
+                callback.onEnriched(result);
+            }
+            // Результат из кэша уже дополнен при первом звонке с этого номера
+            if (!enrichers.isEmpty() && result.numberKey() != NumberKeys.INVALID && !result.isCached()) {
+                enrichmentExecutor.execute(() -> enrich(result, callback));
+            }
+        });
+    }
+
+    private ScreeningResult lookup(CharSequence handle, long start) {
+        long normalizeStart = System.nanoTime();
+        long key = normalizer.normalize(handle);
+        long lookupStart = System.nanoTime();
+        long now = System.currentTimeMillis();
+        SpamDatabase snapshot = database.get();
+        long version = snapshot.version();
+        // Номера из контактов не ищутся ни в кэше, ни в базе и не учитываются в волнах звонков
+        boolean contact = NumberKeys.isValid(key) && contacts.test(key);
+        boolean flooding = flood != null && NumberKeys.isValid(key) && !contact && flood.observe(key, now);
+        ScreeningResult cached = cache != null && NumberKeys.isValid(key) && !contact
+                ? cache.get(key, version)
+                : null;
+        int rule = ScreeningResult.RULE_NONE;
+        int entry = SpamDatabase.NOT_FOUND;
+        if (contact) {
+            rule = ScreeningResult.RULE_CONTACT;
+        } else if (cached != null) {
+            // Волна звонков к моменту повторного звонка могла закончиться
+            rule = cached.rule() == ScreeningResult.RULE_FLOOD ? ScreeningResult.RULE_NONE : cached.rule();
+            entry = cached.entry();
+        } else if (NumberKeys.isValid(key)) {
+            // Тот же порядок, что и в SpamDatabase.find, но так известно, какое правило сработало
+            rule = ScreeningResult.RULE_NUMBER;
+            entry = snapshot.findNumber(key);
+            if (entry == SpamDatabase.NOT_FOUND) {
+                entry = snapshot.findPrefix(key);
+                rule = entry == SpamDatabase.NOT_FOUND ? ScreeningResult.RULE_NONE : ScreeningResult.RULE_PREFIX;
+            }
+        }
+        if (flooding && rule == ScreeningResult.RULE_NONE) {
+            rule = ScreeningResult.RULE_FLOOD;
+        }
+        int hour = localHour(now);
+        float score = Float.NaN;
+        if (reputation != null && NumberKeys.isValid(key) && !contact) {
+            score = reputation.score(key, entry, hour, now);
+        }
+        if (Float.isNaN(score) && entry != SpamDatabase.NOT_FOUND) {
+            score = SpamEntry.score(entry) / (float) SpamEntry.MAX_SCORE;
+        }
+        int decision = rules.get().evaluate(key, contact, entry, hour, score, flooding);
+        long end = System.nanoTime();
+
+        if (cached != null) {
+            return new ScreeningResult(key, entry, rule, decision, false, true, cached.callerName(), score,
+                    normalizeStart - start, lookupStart - normalizeStart, end - lookupStart, end - start, 0L);
+        }
+        ScreeningResult result = new ScreeningResult(key, entry, rule, decision, false, false, null, score,
+                normalizeStart - start, lookupStart - normalizeStart, end - lookupStart, end - start, 0L);
+        if (cache != null && !contact) {
+            cache.put(key, version, result);
+        }
+        return result;
+    }
+
+    /**
+     * Час по местному времени с учётом перехода на летнее время
+     */
+    private int localHour(long millis) {
+        long local = millis + timeZone.get().getOffset(millis);
+        return (int) Math.floorMod(Math.floorDiv(local, MILLIS_PER_HOUR), 24L);
+    }
+
+    private void enrich(ScreeningResult result, Callback callback) {
+        for (ScreeningEnricher enricher : enrichers) {
+            long stageStart = System.nanoTime();
+            ScreeningResult enriched;
+            try {
+                enriched = enricher.enrich(result);
+            } catch (Exception e) {
+                // Сбой медленной стадии не должен влиять на уже отправленное решение
+                continue;
+            }
+            if (enriched != result) {
+                result = enriched.withEnrichmentNanos(result.enrichmentNanos() + System.nanoTime() - stageStart);
+                if (cache != null) {
+                    cache.update(result.numberKey(), result);
+                }
+                callback.onEnriched(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.dialertest.screening;
+
+/**
+ * Результат проверки входящего звонка. Неизменяемый: каждая стадия дообогащения создаёт новый
+ * экземпляр через методы with*, поэтому результат можно безопасно передавать между потоками.
+ *
+ * Содержит время каждой стадии проверки в наносекундах.
+ */
+public final class ScreeningResult {
+
+    /**
+     * Номер не найден ни в списке, ни среди правил-префиксов
+     */
+    public static final int RULE_NONE = 0;
+
+    /**
+     * Номер найден в списке отдельных номеров
+     */
+    public static final int RULE_NUMBER = 1;
+
+    /**
+     * Номер попал под правило-префикс
+     */
+    public static final int RULE_PREFIX = 2;
+
+    /**
+     * Проверка не уложилась в отведённое время, звонок пропущен по умолчанию
+     */
+    public static final int RULE_FALLBACK = 3;
+
+    /**
+     * Номер есть в контактах пользователя и не проверялся по базе
+     */
+    public static final int RULE_CONTACT = 4;
+
+    /**
+     * Номера нет в базе, но с его блока номеров сейчас идёт волна звонков
+     */
+    public static final int RULE_FLOOD = 5;
+
+    /**
+     * Решение без сработавшего правила: звонок пропускается
+     */
+    private static final int FALLBACK_DECISION = ScreeningRules.decision(ScreeningRules.NO_RULE, ScreeningAction.ALLOW);
+
+    private final long numberKey;
+    private final int entry;
+    private final int rule;
+    private final int decision;
+    private final boolean fallback;
+    private final boolean cached;
+    private final String callerName;
+    private final float reputation;
+
+    private final long queueNanos;
+    private final long normalizeNanos;
+    private final long lookupNanos;
+    private final long verdictNanos;
+    private final long enrichmentNanos;
+
+    ScreeningResult(long numberKey, int entry, int rule, int decision, boolean fallback, boolean cached,
+                    String callerName, float reputation, long queueNanos, long normalizeNanos, long lookupNanos, long verdictNanos,
+                    long enrichmentNanos) {
+        this.numberKey = numberKey;
+        this.entry = entry;
+        this.rule = rule;
+        this.decision = decision;
+        this.fallback = fallback;
+        this.cached = cached;
+        this.callerName = callerName;
+        this.reputation = reputation;
+        this.queueNanos = queueNanos;
+        this.normalizeNanos = normalizeNanos;
+        this.lookupNanos = lookupNanos;
+        this.verdictNanos = verdictNanos;
+        this.enrichmentNanos = enrichmentNanos;
+    }
+
+    /**
+     * Результат по умолчанию, который отправляется, если проверка не уложилась в отведённое время:
+     * звонок пропускается без применения правил
+     */
+    static ScreeningResult fallback(long verdictNanos) {
+        return new ScreeningResult(NumberKeys.INVALID, SpamDatabase.NOT_FOUND, RULE_FALLBACK, FALLBACK_DECISION, true,
+                false, null, Float.NaN, 0L, 0L, 0L, verdictNanos, 0L);
+    }
+
+    /**
+     * Ключ номера или {@link NumberKeys#INVALID}, если номер скрыт, не распознан
+     * или проверка не уложилась в отведённое время
+     */
+    public long numberKey() {
+        return numberKey;
+    }
+
+    /**
+     * Запись базы нежелательных номеров {@link SpamEntry} или {@link SpamDatabase#NOT_FOUND}
+     */
+    public int entry() {
+        return entry;
+    }
+
+    /**
+     * Правило, по которому принято решение: одно из значений RULE_*
+     */
+    public int rule() {
+        return rule;
+    }
+
+    /**
+     * Действие над звонком по правилам проверки: набор флагов {@link ScreeningAction}
+     */
+    public int action() {
+        return ScreeningRules.action(decision);
+    }
+
+    /**
+     * Номер сработавшего правила проверки или {@link ScreeningRules#NO_RULE}
+     */
+    public int ruleIndex() {
+        return ScreeningRules.ruleIndex(decision);
+    }
+
+    /**
+     * Истина, если звонок не допускается до пользователя
+     */
+    public boolean isBlocked() {
+        return ScreeningAction.has(action(), ScreeningAction.DISALLOW);
+    }
+
+    public boolean isSpam() {
+        return entry != SpamDatabase.NOT_FOUND;
+    }
+
+    /**
+     * Истина, если это результат по умолчанию, отправленный по истечении отведённого времени
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * Истина, если запись базы и дообогащение взяты из {@link VerdictCache}, а не получены заново
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Имя абонента, если его удалось определить при дообогащении
+     */
+    public String callerName() {
+        return callerName;
+    }
+
+    /**
+     * Оценка репутации номера от 0 (надёжный) до 1 (нежелательный) или NaN, если она неизвестна
+     */
+    public float reputation() {
+        return reputation;
+    }
+
+    /**
+     * Время ожидания в очереди до начала проверки
+     */
+    public long queueNanos() {
+        return queueNanos;
+    }
+
+    public long normalizeNanos() {
+        return normalizeNanos;
+    }
+
+    public long lookupNanos() {
+        return lookupNanos;
+    }
+
+    /**
+     * Время от начала проверки до готовности решения
+     */
+    public long verdictNanos() {
+        return verdictNanos;
+    }
+
+    /**
+     * Суммарное время всех завершённых стадий дообогащения
+     */
+    public long enrichmentNanos() {
+        return enrichmentNanos;
+    }
+
+    public ScreeningResult withCallerName(String callerName) {
+        return new ScreeningResult(numberKey, entry, rule, decision, fallback, cached, callerName, reputation,
+                queueNanos, normalizeNanos, lookupNanos, verdictNanos, enrichmentNanos);
+    }
+
+    public ScreeningResult withReputation(float reputation) {
+        return new ScreeningResult(numberKey, entry, rule, decision, fallback, cached, callerName, reputation,
+                queueNanos, normalizeNanos, lookupNanos, verdictNanos, enrichmentNanos);
+    }
+
+    ScreeningResult withEnrichmentNanos(long enrichmentNanos) {
+        return new ScreeningResult(numberKey, entry, rule, decision, fallback, cached, callerName, reputation,
+                queueNanos, normalizeNanos, lookupNanos, verdictNanos, enrichmentNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "ScreeningResult{number=" + numberKey + ", spam=" + isSpam()
+                + ", action=" + ScreeningAction.toString(action()) + ", rule=" + ruleIndex() + ", fallback=" + fallback + ", cached=" + cached
+                + ", queue=" + queueNanos / 1000 + "us, normalize=" + normalizeNanos / 1000
+                + "us, lookup=" + lookupNanos / 1000 + "us, verdict=" + verdictNanos / 1000
+                + "us, enrichment=" + enrichmentNanos / 1000 + "us}";
+    }
+}
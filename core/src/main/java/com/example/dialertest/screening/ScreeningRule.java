@@ -0,0 +1,42 @@
+package com.example.dialertest.screening;
+
+/**
+ * Правило проверки звонков: если звонок удовлетворяет условию, к нему применяется действие
+ * {@link ScreeningAction}. Правила проверяются по порядку, срабатывает первое подходящее.
+ */
+public final class ScreeningRule {
+
+    private final String name;
+    private final RuleCondition condition;
+    private final int action;
+
+    /**
+     * @param name Имя правила для журнала, например исходная строка файла правил
+     * @throws IllegalArgumentException Если флаги действия противоречат друг другу
+     */
+    public ScreeningRule(String name, RuleCondition condition, int action) {
+        if (condition == null) {
+            throw new NullPointerException("condition");
+        }
+        this.name = name;
+        this.condition = condition;
+        this.action = ScreeningAction.validate(action);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public RuleCondition condition() {
+        return condition;
+    }
+
+    public int action() {
+        return action;
+    }
+
+    @Override
+    public String toString() {
+        return ScreeningAction.toString(action) + " when " + condition;
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.dialertest.screening;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Скомпилированный набор правил проверки звонков.
+ *
+ * При компиляции каждое различное простое условие (скрытый номер, префикс, часы и т.п.) получает
+ * свой бит, а условие каждого правила раскрывается в дизъюнкцию конъюнкций этих битов (маска
+ * проверяемых битов и их ожидаемые значения). Если простых условий не больше {@link #TABLE_ATOMS},
+ * для всех возможных сочетаний битов заранее вычисляется решение первого подходящего правила,
+ * и проверка звонка сводится к вычислению битов и одному обращению к таблице. Иначе конъюнкции
+ * перебираются по порядку правил, каждая проверяется одной операцией над масками.
+ *
+ * Решение возвращается одним int: действие в младших восьми битах и номер правила выше них.
+ * Проверка не выделяет память; объект неизменяемый и может использоваться из нескольких потоков.
+ */
+public final class ScreeningRules {
+
+    /**
+     * Номер правила в решении, принятом по умолчанию
+     */
+    public static final int NO_RULE = -1;
+
+    /**
+     * Наибольшее число простых условий, для которого строится таблица решений (2^12 элементов, 16 КБ)
+     */
+    static final int TABLE_ATOMS = 12;
+
+    /**
+     * Наибольшее число различных простых условий во всём наборе правил
+     */
+    static final int MAX_ATOMS = 64;
+
+    /**
+     * Наибольшее число конъюнкций, в которое может раскрыться условие одного правила
+     */
+    static final int MAX_TERMS_PER_RULE = 1024;
+
+    private static final ScreeningRules ALLOW_ALL =
+            compile(Collections.<ScreeningRule>emptyList(), ScreeningAction.ALLOW);
+
+    private static final ScreeningRules REJECT_SPAM = compile(Collections.singletonList(
+            new ScreeningRule("reject when spam", RuleCondition.spam(), ScreeningAction.DISALLOW | ScreeningAction.REJECT)),
+            ScreeningAction.ALLOW);
+
+    private static final ScreeningRules DEFAULTS = compile(Arrays.asList(
+            new ScreeningRule("reject when spam", RuleCondition.spam(),
+                    ScreeningAction.DISALLOW | ScreeningAction.REJECT),
+            new ScreeningRule("silence when flood", RuleCondition.flood(), ScreeningAction.SILENCE)),
+            ScreeningAction.ALLOW);
+
+    private final List<ScreeningRule> rules;
+    private final int defaultDecision;
+
+    /**
+     * Простые условия в виде параллельных массивов: вид, значение и аргумент
+     */
+    private final int[] atomKinds;
+    private final long[] atomValues;
+    private final int[] atomArguments;
+
+    /**
+     * Конъюнкции всех правил в порядке правил
+     */
+    private final long[] termMasks;
+    private final long[] termValues;
+    private final int[] termDecisions;
+
+    /**
+     * Решение для каждого сочетания битов простых условий или null, если условий слишком много
+     */
+    private final int[] table;
+
+    private ScreeningRules(List<ScreeningRule> rules, int defaultDecision, List<RuleCondition> atoms,
+                           long[] termMasks, long[] termValues, int[] termDecisions) {
+        this.rules = rules;
+        this.defaultDecision = defaultDecision;
+        this.termMasks = termMasks;
+        this.termValues = termValues;
+        this.termDecisions = termDecisions;
+
+        atomKinds = new int[atoms.size()];
+        atomValues = new long[atoms.size()];
+        atomArguments = new int[atoms.size()];
+        for (int i = 0; i < atoms.size(); i++) {
+            atomKinds[i] = atoms.get(i).kind;
+            atomValues[i] = atoms.get(i).value;
+            atomArguments[i] = atoms.get(i).argument;
+        }
+
+        if (atoms.size() <= TABLE_ATOMS) {
+            table = new int[1 << atoms.size()];
+            for (int facts = 0; facts < table.length; facts++) {
+                table[facts] = scan(facts);
+            }
+        } else {
+            table = null;
+        }
+    }
+
+    /**
+     * Набор без правил, пропускающий все звонки
+     */
+    public static ScreeningRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Набор из одного правила, отклоняющего все номера из базы. Так звонки проверялись до появления правил
+     */
+    public static ScreeningRules rejectSpam() {
+        return REJECT_SPAM;
+    }
+
+    /**
+     * Правила без файла правил: номера из базы отклоняются, а звонки с блоков номеров, с которых
+     * идёт волна звонков, пропускаются без звонка. Такой звонок остаётся в журнале вызовов,
+     * поэтому случайно попавший в волну номер не теряется
+     */
+    public static ScreeningRules defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Компилирует правила
+     * @param rules Правила в порядке приоритета
+     * @param defaultAction Действие, если ни одно правило не сработало
+     * @throws IllegalArgumentException Если правила содержат больше {@link #MAX_ATOMS} различных
+     * простых условий или условие правила раскрывается в слишком много конъюнкций
+     */
+    public static ScreeningRules compile(List<ScreeningRule> rules, int defaultAction) {
+        List<RuleCondition> atoms = new ArrayList<>();
+        List<long[]> terms = new ArrayList<>();
+        List<Integer> decisions = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            ScreeningRule rule = rules.get(i);
+            for (long[] term : expand(rule.condition(), false, atoms)) {
+                terms.add(term);
+                decisions.add(decision(i, rule.action()));
+            }
+        }
+
+        long[] termMasks = new long[terms.size()];
+        long[] termValues = new long[terms.size()];
+        int[] termDecisions = new int[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            termMasks[i] = terms.get(i)[0];
+            termValues[i] = terms.get(i)[1];
+            termDecisions[i] = decisions.get(i);
+        }
+        return new ScreeningRules(Collections.unmodifiableList(new ArrayList<>(rules)),
+                decision(NO_RULE, ScreeningAction.validate(defaultAction)), atoms,
+                termMasks, termValues, termDecisions);
+    }
+
+    /**
+     * Раскрывает условие в список конъюнкций вида {маска, значения}
+     * @param negate Раскрыть отрицание условия
+     */
+    private static List<long[]> expand(RuleCondition condition, boolean negate, List<RuleCondition> atoms) {
+        if (condition.isAtom()) {
+            long bit = 1L << atomIndex(condition, atoms);
+            return Collections.singletonList(new long[]{bit, negate ? 0L : bit});
+        }
+        if (condition.kind == RuleCondition.NOT) {
+            return expand(condition.children[0], !negate, atoms);
+        }
+
+        // По законам де Моргана отрицание «или» - это «и» отрицаний, и наоборот
+        boolean conjunction = (condition.kind == RuleCondition.ALL_OF) != negate;
+        List<long[]> result;
+        if (conjunction) {
+            result = Collections.singletonList(new long[]{0L, 0L});
+            for (RuleCondition child : condition.children) {
+                result = multiply(result, expand(child, negate, atoms));
+            }
+        } else {
+            result = new ArrayList<>();
+            for (RuleCondition child : condition.children) {
+                result.addAll(expand(child, negate, atoms));
+                checkTerms(result.size());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Конъюнкция двух дизъюнкций. Противоречивые конъюнкции (бит должен быть и 0, и 1) отбрасываются
+     */
+    private static List<long[]> multiply(List<long[]> left, List<long[]> right) {
+        List<long[]> result = new ArrayList<>(left.size() * right.size());
+        for (long[] a : left) {
+            for (long[] b : right) {
+                if ((a[0] & b[0] & (a[1] ^ b[1])) == 0) {
+                    result.add(new long[]{a[0] | b[0], a[1] | b[1]});
+                    checkTerms(result.size());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void checkTerms(int count) {
+        if (count > MAX_TERMS_PER_RULE) {
+            throw new IllegalArgumentException("Условие правила слишком сложное: больше "
+                    + MAX_TERMS_PER_RULE + " вариантов");
+        }
+    }
+
+    private static int atomIndex(RuleCondition atom, List<RuleCondition> atoms) {
+        int index = atoms.indexOf(atom);
+        if (index < 0) {
+            if (atoms.size() == MAX_ATOMS) {
+                throw new IllegalArgumentException("Больше " + MAX_ATOMS + " различных условий в правилах");
+            }
+            index = atoms.size();
+            atoms.add(atom);
+        }
+        return index;
+    }
+
+    static int decision(int ruleIndex, int action) {
+        return (ruleIndex + 1) << 8 | action;
+    }
+
+    /**
+     * Действие {@link ScreeningAction} из решения
+     */
+    public static int action(int decision) {
+        return decision & 0xFF;
+    }
+
+    /**
+     * Номер сработавшего правила из решения или {@link #NO_RULE}
+     */
+    public static int ruleIndex(int decision) {
+        return (decision >>> 8) - 1;
+    }
+
+    /**
+     * Принимает решение по звонку
+     * @param key Ключ номера или {@link NumberKeys#INVALID} для скрытого или нераспознанного номера
+     * @param contact Номер есть в контактах
+     * @param entry Запись базы {@link SpamEntry} или {@link SpamDatabase#NOT_FOUND}
+     * @param hour Час звонка по местному времени от 0 до 23
+     * @param reputation Оценка репутации от 0 до 1 или NaN, если она неизвестна
+     * @param flood Номер из блока, помеченного {@link FloodDetector} как источник волны звонков
+     * @return Решение, из которого действие и правило извлекаются методами {@link #action(int)}
+     * и {@link #ruleIndex(int)}
+     */
+    public int evaluate(long key, boolean contact, int entry, int hour, float reputation, boolean flood) {
+        long facts = facts(key, contact, entry, hour, reputation, flood);
+        return table != null ? table[(int) facts] : scan(facts);
+    }
+
+    /**
+     * Принимает решение по звонку без оценки репутации и без учёта волн звонков
+     */
+    public int evaluate(long key, boolean contact, int entry, int hour) {
+        return evaluate(key, contact, entry, hour, Float.NaN, false);
+    }
+
+    private int scan(long facts) {
+        for (int i = 0; i < termMasks.length; i++) {
+            if ((facts & termMasks[i]) == termValues[i]) {
+                return termDecisions[i];
+            }
+        }
+        return defaultDecision;
+    }
+
+    /**
+     * Вычисляет биты всех простых условий для звонка
+     */
+    private long facts(long key, boolean contact, int entry, int hour, float reputation, boolean flood) {
+        boolean valid = NumberKeys.isValid(key);
+        int digits = valid ? NumberKeys.digitCount(key) : 0;
+        boolean found = entry != SpamDatabase.NOT_FOUND;
+        // Префиксы одной длины обычно идут подряд, и деление выполняется один раз на группу
+        int prefixLength = -1;
+        long prefix = 0L;
+
+        long facts = 0L;
+        for (int i = 0; i < atomKinds.length; i++) {
+            boolean fact;
+            long value = atomValues[i];
+            int argument = atomArguments[i];
+            switch (atomKinds[i]) {
+                case RuleCondition.HIDDEN:
+                    fact = !valid;
+                    break;
+                case RuleCondition.CONTACT:
+                    fact = contact;
+                    break;
+                case RuleCondition.SPAM:
+                    fact = found;
+                    break;
+                case RuleCondition.SCORE_AT_LEAST:
+                    fact = found && SpamEntry.score(entry) >= value;
+                    break;
+                case RuleCondition.CATEGORY:
+                    fact = found && SpamEntry.category(entry) == value;
+                    break;
+                case RuleCondition.HOURS:
+                    fact = value < argument
+                            ? hour >= value && hour < argument
+                            : hour >= value || hour < argument;
+                    break;
+                case RuleCondition.PREFIX:
+                    if (digits < argument) {
+                        fact = false;
+                        break;
+                    }
+                    if (argument != prefixLength) {
+                        prefixLength = argument;
+                        prefix = key / NumberKeys.POW10[digits - argument];
+                    }
+                    fact = prefix == value;
+                    break;
+                case RuleCondition.REPUTATION_AT_LEAST:
+                    // Сравнение с NaN ложно, поэтому неизвестная оценка не проходит порог
+                    fact = reputation * 100f >= value;
+                    break;
+                case RuleCondition.FLOOD:
+                    fact = flood;
+                    break;
+                default:
+                    throw new IllegalStateException("Неизвестный вид условия: " + atomKinds[i]);
+            }
+            if (fact) {
+                facts |= 1L << i;
+            }
+        }
+        return facts;
+    }
+
+    public List<ScreeningRule> rules() {
+        return rules;
+    }
+
+    /**
+     * Количество различных простых условий во всех правилах
+     */
+    public int atomCount() {
+        return atomKinds.length;
+    }
+
+    /**
+     * Истина, если решения вычислены заранее для всех сочетаний условий
+     */
+    public boolean isTabulated() {
+        return table != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ScreeningRules{rules=" + rules.size() + ", atoms=" + atomKinds.length
+                + ", terms=" + termMasks.length + ", tabulated=" + (table != null)
+                + ", default=" + ScreeningAction.toString(action(defaultDecision)) + "}";
+    }
+}
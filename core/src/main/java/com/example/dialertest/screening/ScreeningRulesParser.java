@@ -0,0 +1,295 @@
+package com.example.dialertest.screening;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбирает текстовый файл правил проверки звонков. Каждая строка задаёт одно правило:
+ * <pre>действие[,skip-log][,skip-notification] [when условие] [unless условие]</pre>
+ * где действие - allow, block (не допустить звонок), reject (отклонить) или silence (пропустить
+ * без звонка). Условие состоит из простых условий, связанных and, or, not и скобками:
+ * <ul>
+ *     <li>hidden - номер скрыт или не распознан;</li>
+ *     <li>contact - номер есть в контактах;</li>
+ *     <li>spam - номер найден в базе;</li>
+ *     <li>score&gt;=70 или score&gt;=0.7 - оценка номера в базе не ниже порога;</li>
+ *     <li>category=fraud - категория номера в базе (имя или код из {@link SpamEntry});</li>
+ *     <li>hour=22-7 - час звонка в промежутке [22, 7), промежуток может переходить через полночь;</li>
+ *     <li>prefix=+7900555 - номер начинается с префикса;</li>
+ *     <li>reputation&gt;=0.8 или reputation&gt;=80 - оценка репутации по локальным признакам не ниже порога;</li>
+ *     <li>flood - с блока номеров, к которому относится номер, сейчас идёт волна звонков.</li>
+ * </ul>
+ * Строка «default действие» задаёт действие, если ни одно правило не сработало (по умолчанию allow).
+ * Пустые строки и строки, начинающиеся с "#", пропускаются. Например:
+ * <pre>
+ * allow when contact
+ * block,skip-notification when hidden and hour=22-7
+ * reject when prefix=+7900555 unless contact
+ * silence when score>=0.7
+ * </pre>
+ */
+public final class ScreeningRulesParser {
+
+    private final List<String> tokens = new ArrayList<>();
+    private int position;
+    private int lineNumber;
+
+    private ScreeningRulesParser() {
+    }
+
+    /**
+     * Разбирает и компилирует правила
+     * @throws IllegalArgumentException Если строка не соответствует формату; сообщение содержит номер строки
+     */
+    public static ScreeningRules parse(BufferedReader reader) throws IOException {
+        ScreeningRulesParser parser = new ScreeningRulesParser();
+        List<ScreeningRule> rules = new ArrayList<>();
+        int defaultAction = ScreeningAction.ALLOW;
+        boolean hasDefault = false;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            parser.lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            parser.tokenize(line);
+            if (parser.peek("default")) {
+                if (hasDefault) {
+                    throw parser.error("действие по умолчанию уже задано");
+                }
+                parser.position++;
+                defaultAction = parser.parseAction();
+                parser.expectEnd();
+                hasDefault = true;
+            } else {
+                rules.add(parser.parseRule(line));
+            }
+        }
+        try {
+            return ScreeningRules.compile(rules, defaultAction);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Правила не скомпилированы: " + e.getMessage(), e);
+        }
+    }
+
+    public static ScreeningRules parse(String text) {
+        try {
+            return parse(new BufferedReader(new StringReader(text)));
+        } catch (IOException e) {
+            // StringReader не бросает IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ScreeningRule parseRule(String line) {
+        int action = parseAction();
+        RuleCondition condition = RuleCondition.always();
+        if (peek("when")) {
+            position++;
+            condition = parseOr();
+        }
+        if (peek("unless")) {
+            position++;
+            condition = RuleCondition.allOf(condition, RuleCondition.not(parseOr()));
+        }
+        expectEnd();
+        try {
+            return new ScreeningRule(line, condition, action);
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private int parseAction() {
+        String[] parts = next("действие").split(",", -1);
+        int action;
+        switch (parts[0]) {
+            case "allow":
+                action = ScreeningAction.ALLOW;
+                break;
+            case "block":
+                action = ScreeningAction.DISALLOW;
+                break;
+            case "reject":
+                action = ScreeningAction.DISALLOW | ScreeningAction.REJECT;
+                break;
+            case "silence":
+                action = ScreeningAction.SILENCE;
+                break;
+            default:
+                throw error("неизвестное действие \"" + parts[0] + "\"");
+        }
+        for (int i = 1; i < parts.length; i++) {
+            switch (parts[i]) {
+                case "skip-log":
+                    action |= ScreeningAction.SKIP_CALL_LOG;
+                    break;
+                case "skip-notification":
+                    action |= ScreeningAction.SKIP_NOTIFICATION;
+                    break;
+                default:
+                    throw error("неизвестный флаг \"" + parts[i] + "\"");
+            }
+        }
+        try {
+            return ScreeningAction.validate(action);
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private RuleCondition parseOr() {
+        List<RuleCondition> terms = new ArrayList<>();
+        terms.add(parseAnd());
+        while (peek("or")) {
+            position++;
+            terms.add(parseAnd());
+        }
+        return RuleCondition.anyOf(terms.toArray(new RuleCondition[0]));
+    }
+
+    private RuleCondition parseAnd() {
+        List<RuleCondition> factors = new ArrayList<>();
+        factors.add(parseUnary());
+        while (peek("and")) {
+            position++;
+            factors.add(parseUnary());
+        }
+        return RuleCondition.allOf(factors.toArray(new RuleCondition[0]));
+    }
+
+    private RuleCondition parseUnary() {
+        String token = next("условие");
+        if (token.equals("not")) {
+            return RuleCondition.not(parseUnary());
+        }
+        if (token.equals("(")) {
+            RuleCondition condition = parseOr();
+            if (!")".equals(next("\")\""))) {
+                throw error("ожидалась \")\"");
+            }
+            return condition;
+        }
+        return parseAtom(token);
+    }
+
+    private RuleCondition parseAtom(String token) {
+        RuleCondition atom;
+        try {
+            atom = atom(token);
+        } catch (NumberFormatException e) {
+            throw error("некорректное число в \"" + token + "\"");
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage() + " в \"" + token + "\"");
+        }
+        if (atom == null) {
+            throw error("неизвестное условие \"" + token + "\"");
+        }
+        return atom;
+    }
+
+    /**
+     * @return Простое условие или null, если слово не является условием
+     */
+    private static RuleCondition atom(String token) {
+        switch (token) {
+            case "hidden":
+                return RuleCondition.hidden();
+            case "contact":
+                return RuleCondition.contact();
+            case "spam":
+                return RuleCondition.spam();
+            case "flood":
+                return RuleCondition.flood();
+            case "always":
+                return RuleCondition.always();
+            default:
+                break;
+        }
+        if (token.startsWith("score>=")) {
+            String value = token.substring("score>=".length());
+            // Дробный порог задаётся в долях единицы, как оценка репутации в ScreeningResult
+            return RuleCondition.scoreAtLeast(value.indexOf('.') >= 0
+                    ? Math.round(Float.parseFloat(value) * SpamEntry.MAX_SCORE)
+                    : Integer.parseInt(value));
+        }
+        if (token.startsWith("reputation>=")) {
+            String value = token.substring("reputation>=".length());
+            return RuleCondition.reputationAtLeast(value.indexOf('.') >= 0
+                    ? Math.round(Float.parseFloat(value) * 100)
+                    : Integer.parseInt(value));
+        }
+        if (token.startsWith("category=")) {
+            int category = SpamEntry.parseCategory(token.substring("category=".length()));
+            if (category < 0) {
+                throw new IllegalArgumentException("Неизвестная категория");
+            }
+            return RuleCondition.category(category);
+        }
+        if (token.startsWith("hour=")) {
+            String value = token.substring("hour=".length());
+            int dash = value.indexOf('-');
+            if (dash < 0) {
+                int hour = Integer.parseInt(value);
+                return RuleCondition.hours(hour, hour + 1);
+            }
+            return RuleCondition.hours(Integer.parseInt(value.substring(0, dash)),
+                    Integer.parseInt(value.substring(dash + 1)));
+        }
+        if (token.startsWith("prefix=")) {
+            long prefix = NumberKeys.fromDigits(token.substring("prefix=".length()));
+            if (prefix == NumberKeys.INVALID) {
+                throw new IllegalArgumentException("Некорректный префикс");
+            }
+            return RuleCondition.prefix(prefix, NumberKeys.digitCount(prefix));
+        }
+        return null;
+    }
+
+    private void tokenize(String line) {
+        tokens.clear();
+        position = 0;
+        for (String word : line.split("\\s+")) {
+            int start = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (c == '(' || c == ')') {
+                    if (i > start) {
+                        tokens.add(word.substring(start, i));
+                    }
+                    tokens.add(String.valueOf(c));
+                    start = i + 1;
+                }
+            }
+            if (start < word.length()) {
+                tokens.add(word.substring(start));
+            }
+        }
+    }
+
+    private boolean peek(String token) {
+        return position < tokens.size() && tokens.get(position).equals(token);
+    }
+
+    private String next(String expected) {
+        if (position == tokens.size()) {
+            throw error("ожидалось " + expected);
+        }
+        return tokens.get(position++);
+    }
+
+    private void expectEnd() {
+        if (position < tokens.size()) {
+            throw error("лишний текст \"" + tokens.get(position) + "\"");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Строка " + lineNumber + ": " + message);
+    }
+}
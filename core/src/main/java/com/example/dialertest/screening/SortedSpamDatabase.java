@@ -0,0 +1,19 @@
+package com.example.dialertest.screening;
+
+/**
+ * База, записи которой можно перебрать по порядку без создания итераторов. Отдельные номера
+ * упорядочены по возрастанию, префиксы - по длине, а затем по значению.
+ * Нужна для уплотнения базы и построения производных индексов.
+ */
+public interface SortedSpamDatabase extends SpamDatabase {
+
+    long numberAt(int index);
+
+    int numberEntryAt(int index);
+
+    long prefixAt(int index);
+
+    int prefixLengthAt(int index);
+
+    int prefixEntryAt(int index);
+}
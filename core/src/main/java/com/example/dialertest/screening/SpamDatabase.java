@@ -0,0 +1,81 @@
+package com.example.dialertest.screening;
+
+/**
+ * База нежелательных номеров. Для каждого номера хранит категорию и оценку нежелательности.
+ * Реализации должны допускать одновременный поиск из нескольких потоков.
+ */
+public interface SpamDatabase {
+
+    /**
+     * Результат поиска, если номер не найден ни среди отдельных номеров, ни среди префиксов
+     */
+    int NOT_FOUND = -1;
+
+    /**
+     * Версия данных. Растёт с каждым обновлением базы
+     */
+    long version();
+
+    /**
+     * Ищет номер только среди отдельных номеров
+     * @return Упакованная запись {@link SpamEntry} или {@link #NOT_FOUND}
+     */
+    int findNumber(long key);
+
+    /**
+     * Ищет правило-префикс с точно такими цифрами и длиной
+     * @return Упакованная запись {@link SpamEntry} или {@link #NOT_FOUND}
+     */
+    int findPrefixRule(long prefix, int length);
+
+    /**
+     * Количество отдельных номеров
+     */
+    int size();
+
+    /**
+     * Количество правил-префиксов
+     */
+    int prefixRuleCount();
+
+    /**
+     * Ищет номер среди отдельных номеров, а затем среди правил-префиксов, начиная с самого короткого
+     * @param key Ключ номера, см. {@link NumberKeys}
+     * @return Упакованная запись {@link SpamEntry} или {@link #NOT_FOUND}
+     */
+    default int find(long key) {
+        if (!NumberKeys.isValid(key)) {
+            return NOT_FOUND;
+        }
+
+        int entry = findNumber(key);
+        return entry != NOT_FOUND ? entry : findPrefix(key);
+    }
+
+    /**
+     * Ищет самое короткое правило-префикс, под которое попадает номер
+     * @param key Ключ номера, см. {@link NumberKeys}
+     * @return Упакованная запись {@link SpamEntry} или {@link #NOT_FOUND}
+     */
+    default int findPrefix(long key) {
+        if (!NumberKeys.isValid(key) || prefixRuleCount() == 0) {
+            return NOT_FOUND;
+        }
+
+        int digits = NumberKeys.digitCount(key);
+        for (int length = 1; length <= digits; length++) {
+            int entry = findPrefixRule(key / NumberKeys.POW10[digits - length], length);
+            if (entry != NOT_FOUND) {
+                return entry;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Проверяет, является ли номер нежелательным
+     */
+    default boolean isSpam(long key) {
+        return find(key) != NOT_FOUND;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.dialertest.screening;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Собирает записи базы нежелательных номеров в примитивных массивах и записывает их в файл
+ * формата {@link SpamDatabaseFormat}. Повторяющиеся номера объединяются, при этом остаётся
+ * запись с наибольшей оценкой.
+ */
+public final class SpamDatabaseBuilder {
+
+    private long[] numbers = new long[1024];
+    private int[] numberEntries = new int[1024];
+    private int numberCount;
+
+    /**
+     * Префиксы хранятся с ключом сортировки {@link NumberKeys#prefixSortKey},
+     * чтобы одна сортировка упорядочила их сначала по длине, а затем по значению
+     */
+    private long[] prefixes = new long[16];
+    private int[] prefixEntries = new int[16];
+    private int prefixCount;
+
+    /**
+     * Добавляет отдельный номер
+     * @param key Ключ номера, см. {@link NumberKeys}
+     * @param entry Запись {@link SpamEntry}
+     */
+    public SpamDatabaseBuilder addNumber(long key, int entry) {
+        if (!NumberKeys.isValid(key)) {
+            throw new IllegalArgumentException("Некорректный номер: " + key);
+        }
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, numberCount * 2);
+            numberEntries = Arrays.copyOf(numberEntries, numberCount * 2);
+        }
+        numbers[numberCount] = key;
+        numberEntries[numberCount] = entry;
+        numberCount++;
+        return this;
+    }
+
+    /**
+     * Добавляет правило-префикс
+     * @param prefix Цифры префикса, например 7800 для блока +7-800-xxx
+     * @param entry Запись {@link SpamEntry}
+     */
+    public SpamDatabaseBuilder addPrefix(long prefix, int entry) {
+        if (!NumberKeys.isValid(prefix)) {
+            throw new IllegalArgumentException("Некорректный префикс: " + prefix);
+        }
+        if (prefixCount == prefixes.length) {
+            prefixes = Arrays.copyOf(prefixes, prefixCount * 2);
+            prefixEntries = Arrays.copyOf(prefixEntries, prefixCount * 2);
+        }
+        prefixes[prefixCount] = NumberKeys.prefixSortKey(prefix, NumberKeys.digitCount(prefix));
+        prefixEntries[prefixCount] = entry;
+        prefixCount++;
+        return this;
+    }
+
+    public int numberCount() {
+        return numberCount;
+    }
+
+    public int prefixCount() {
+        return prefixCount;
+    }
+
+    /**
+     * Сортирует записи и записывает их в файл
+     * @param file Файл назначения. Перезаписывается целиком
+     * @param version Версия данных, которая будет записана в заголовок
+     */
+    public void writeTo(File file, long version) throws IOException {
+        PrimitiveSort.sort(numbers, numberEntries, numberCount);
+        numberCount = mergeDuplicates(numbers, numberEntries, numberCount);
+        PrimitiveSort.sort(prefixes, prefixEntries, prefixCount);
+        prefixCount = mergeDuplicates(prefixes, prefixEntries, prefixCount);
+
+        try (SpamDatabaseWriter writer = new SpamDatabaseWriter(file, version, numberCount, prefixCount)) {
+            for (int i = 0; i < numberCount; i++) {
+                writer.addNumber(numbers[i], numberEntries[i]);
+            }
+            for (int i = 0; i < prefixCount; i++) {
+                writer.addPrefix(NumberKeys.prefixFromSortKey(prefixes[i]),
+                        NumberKeys.lengthFromSortKey(prefixes[i]), prefixEntries[i]);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Удаляет повторы из отсортированных массивов, оставляя запись с наибольшей оценкой
+     * @return Количество оставшихся записей
+     */
+    private static int mergeDuplicates(long[] keys, int[] entries, int count) {
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique > 0 && keys[unique - 1] == keys[i]) {
+                if (SpamEntry.score(entries[i]) > SpamEntry.score(entries[unique - 1])) {
+                    entries[unique - 1] = entries[i];
+                }
+            } else {
+                keys[unique] = keys[i];
+                entries[unique] = entries[i];
+                unique++;
+            }
+        }
+        return unique;
+    }
+}
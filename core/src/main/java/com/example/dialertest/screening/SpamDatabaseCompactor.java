@@ -0,0 +1,97 @@
+package com.example.dialertest.screening;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Уплотнение базы: сливает основной файл и слой дельт в новый файл. Оба источника уже
+ * отсортированы, поэтому слияние идёт потоком за два прохода (подсчёт записей и запись)
+ * и не требует загружать основной файл в кучу.
+ */
+final class SpamDatabaseCompactor {
+
+    private SpamDatabaseCompactor() {
+    }
+
+    static void compact(SortedSpamDatabase base, SpamDeltaOverlay overlay, File output, long version)
+            throws IOException {
+        int numberCount = mergeNumbers(base, overlay, null);
+        int prefixCount = mergePrefixes(base, overlay, null);
+        try (SpamDatabaseWriter writer = new SpamDatabaseWriter(output, version, numberCount, prefixCount)) {
+            mergeNumbers(base, overlay, writer);
+            mergePrefixes(base, overlay, writer);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Сливает отдельные номера. Запись слоя заменяет запись основного файла, надгробие удаляет её
+     * @param writer Куда записывать результат или null, если нужно только посчитать записи
+     * @return Количество записей в результате
+     */
+    private static int mergeNumbers(SortedSpamDatabase base, SpamDeltaOverlay overlay,
+                                    SpamDatabaseWriter writer) throws IOException {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < base.size() || j < overlay.numberCount()) {
+            long baseKey = i < base.size() ? base.numberAt(i) : Long.MAX_VALUE;
+            long overlayKey = j < overlay.numberCount() ? overlay.numberAt(j) : Long.MAX_VALUE;
+
+            long key;
+            int entry;
+            if (overlayKey <= baseKey) {
+                key = overlayKey;
+                entry = overlay.numberEntryAt(j++);
+                if (overlayKey == baseKey) {
+                    i++;
+                }
+            } else {
+                key = baseKey;
+                entry = base.numberEntryAt(i++);
+            }
+
+            if (entry != SpamDeltaOverlay.TOMBSTONE) {
+                if (writer != null) {
+                    writer.addNumber(key, entry);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int mergePrefixes(SortedSpamDatabase base, SpamDeltaOverlay overlay,
+                                     SpamDatabaseWriter writer) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < base.prefixRuleCount() || j < overlay.prefixCount()) {
+            long baseKey = i < base.prefixRuleCount()
+                    ? NumberKeys.prefixSortKey(base.prefixAt(i), base.prefixLengthAt(i))
+                    : Long.MAX_VALUE;
+            long overlayKey = j < overlay.prefixCount() ? overlay.prefixSortKeyAt(j) : Long.MAX_VALUE;
+
+            long key;
+            int entry;
+            if (overlayKey <= baseKey) {
+                key = overlayKey;
+                entry = overlay.prefixEntryAt(j++);
+                if (overlayKey == baseKey) {
+                    i++;
+                }
+            } else {
+                key = baseKey;
+                entry = base.prefixEntryAt(i++);
+            }
+
+            if (entry != SpamDeltaOverlay.TOMBSTONE) {
+                if (writer != null) {
+                    writer.addPrefix(NumberKeys.prefixFromSortKey(key), NumberKeys.lengthFromSortKey(key), entry);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+}
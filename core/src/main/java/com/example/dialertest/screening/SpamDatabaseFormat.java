@@ -0,0 +1,74 @@
+package com.example.dialertest.screening;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный формат файла базы нежелательных номеров. Все числа записываются в порядке big-endian,
+ * секции выровнены по 8 байтам, поэтому файл можно отобразить в память и искать в нём без разбора.
+ *
+ * <pre>
+ * Заголовок (64 байта):
+ *   0  int   MAGIC ("SPDB")
+ *   4  short версия формата
+ *   6  short флаги (зарезервировано)
+ *   8  long  версия данных
+ *  16  long  время создания, мс
+ *  24  int   количество отдельных номеров N
+ *  28  int   количество префиксов P
+ *  32  int   смещение секции номеров:     long[N], отсортированы по возрастанию
+ *  36  int   смещение записей номеров:    (byte категория, byte оценка)[N]
+ *  40  int   смещение каталога префиксов: int[16 + 1], начало группы префиксов каждой длины
+ *  44  int   смещение секции префиксов:   long[P], отсортированы по длине, затем по значению
+ *  48  int   смещение записей префиксов:  (byte категория, byte оценка)[P]
+ *  52  int   CRC32 байтов заголовка 0..51
+ *  56  long  полная длина файла
+ * </pre>
+ */
+final class SpamDatabaseFormat {
+
+    static final int MAGIC = 0x53504442;
+    static final short FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_FORMAT_VERSION = 4;
+    static final int OFFSET_DATA_VERSION = 8;
+    static final int OFFSET_CREATED_AT = 16;
+    static final int OFFSET_NUMBER_COUNT = 24;
+    static final int OFFSET_PREFIX_COUNT = 28;
+    static final int OFFSET_NUMBERS = 32;
+    static final int OFFSET_NUMBER_ENTRIES = 36;
+    static final int OFFSET_PREFIX_DIRECTORY = 40;
+    static final int OFFSET_PREFIXES = 44;
+    static final int OFFSET_PREFIX_ENTRIES = 48;
+    static final int OFFSET_HEADER_CRC = 52;
+    static final int OFFSET_FILE_LENGTH = 56;
+
+    /**
+     * Количество элементов каталога префиксов: начало группы для длин 0..15 и общий конец
+     */
+    static final int DIRECTORY_SIZE = NumberKeys.MAX_DIGITS + 2;
+
+    private SpamDatabaseFormat() {
+    }
+
+    static int align8(long offset) {
+        long aligned = (offset + 7) & ~7L;
+        if (aligned > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Файл базы не может быть больше 2 ГБ");
+        }
+        return (int) aligned;
+    }
+
+    /**
+     * Считает CRC32 первых байтов заголовка, не изменяя позицию буфера
+     */
+    static int headerCrc(ByteBuffer header) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < OFFSET_HEADER_CRC; i++) {
+            crc.update(header.get(i));
+        }
+        return (int) crc.getValue();
+    }
+}
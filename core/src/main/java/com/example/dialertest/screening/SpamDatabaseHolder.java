@@ -0,0 +1,92 @@
+package com.example.dialertest.screening;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Хранит текущую базу нежелательных номеров и атомарно подменяет её новой версией.
+ *
+ * Новая база сначала записывается во временный файл рядом с рабочим, затем открывается
+ * и проверяется, после чего файл переименовывается поверх рабочего (на одной файловой системе
+ * это атомарная операция), а ссылка на базу переключается одной записью. Поиск, начатый
+ * до переключения, продолжает работать со старым отображением файла и корректно завершается.
+ */
+public final class SpamDatabaseHolder {
+
+    private static final String STAGING_SUFFIX = ".new";
+
+    private final File file;
+    private final AtomicReference<SpamDatabase> current;
+
+    private SpamDatabaseHolder(File file, SpamDatabase database) {
+        this.file = file;
+        this.current = new AtomicReference<>(database);
+    }
+
+    /**
+     * Открывает базу из файла. Если файла ещё нет, используется пустая база
+     * @throws IOException Если файл существует, но повреждён или не читается
+     */
+    public static SpamDatabaseHolder open(File file) throws IOException {
+        SpamDatabase database = file.exists() ? MappedSpamDatabase.open(file) : SpamNumberIndex.empty();
+        return new SpamDatabaseHolder(file, database);
+    }
+
+    /**
+     * Создаёт хранилище с пустой базой. Используется, если рабочий файл не удалось открыть
+     */
+    public static SpamDatabaseHolder empty(File file) {
+        return new SpamDatabaseHolder(file, SpamNumberIndex.empty());
+    }
+
+    /**
+     * Текущая база. Ссылку следует получать заново для каждой проверки номера
+     */
+    public SpamDatabase get() {
+        return current.get();
+    }
+
+    /**
+     * Временный файл, в который следует записывать новую версию базы перед вызовом {@link #install(File)}
+     */
+    public File stagingFile() {
+        return new File(file.getPath() + STAGING_SUFFIX);
+    }
+
+    /**
+     * Проверяет подготовленный файл, переименовывает его поверх рабочего и переключает на него поиск
+     * @param staged Полностью записанный файл новой базы в том же каталоге, что и рабочий
+     * @return Новая база
+     * @throws IOException Если файл повреждён или его не удалось переименовать.
+     * В этом случае продолжает использоваться прежняя база
+     */
+    public synchronized SpamDatabase install(File staged) throws IOException {
+        return install(staged, null);
+    }
+
+    /**
+     * Подменяет базу, только если текущая база всё ещё равна ожидаемой
+     * @param expected Ожидаемая текущая база или null, чтобы подменить базу безусловно
+     * @return Новая база или null, если текущая база уже была заменена
+     */
+    synchronized SpamDatabase install(File staged, SpamDatabase expected) throws IOException {
+        MappedSpamDatabase database = MappedSpamDatabase.open(staged);
+        if (expected != null && current.get() != expected) {
+            return null;
+        }
+        if (!staged.renameTo(file)) {
+            throw new IOException("Не удалось заменить " + file + " файлом " + staged);
+        }
+        current.set(database);
+        return database;
+    }
+
+    /**
+     * Публикует базу, не связанную с новым файлом, например основной файл со слоем дельт
+     * @return Ложь, если текущая база уже была заменена
+     */
+    synchronized boolean publish(SpamDatabase expected, SpamDatabase updated) {
+        return current.compareAndSet(expected, updated);
+    }
+}
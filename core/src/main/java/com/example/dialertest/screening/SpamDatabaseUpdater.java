@@ -0,0 +1,148 @@
+package com.example.dialertest.screening;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Применяет дельты к базе нежелательных номеров в фоне.
+ *
+ * Каждая дельта читается потоком и сливается с небольшим слоем изменений в куче, после чего
+ * новая {@link LayeredSpamDatabase} публикуется в {@link SpamDatabaseHolder} одной атомарной
+ * записью. Основной файл при этом не перестраивается. Когда слой разрастается больше порога,
+ * выполняется уплотнение: основной файл и слой сливаются в новый файл, который подменяет рабочий,
+ * а вошедшие в него дельты удаляются из источника.
+ *
+ * Все операции выполняются на переданном однопоточном исполнителе, поэтому проверка
+ * входящих звонков никогда их не ждёт. Слой хранится только в памяти: после перезапуска
+ * процесса версия базы равна версии основного файла, и недостающие дельты запрашиваются заново.
+ */
+public final class SpamDatabaseUpdater {
+
+    /**
+     * Ограничение количества дельт за одно обновление, чтобы неисправный источник не зациклил обновление
+     */
+    private static final int MAX_DELTAS_PER_UPDATE = 1000;
+
+    private final SpamDatabaseHolder holder;
+    private final SpamDeltaSource source;
+    private final ExecutorService executor;
+    private final int compactionThreshold;
+
+    /**
+     * @param executor Однопоточный исполнитель для фоновых операций
+     * @param compactionThreshold Размер слоя изменений, после которого выполняется уплотнение
+     */
+    public SpamDatabaseUpdater(SpamDatabaseHolder holder, SpamDeltaSource source,
+                               ExecutorService executor, int compactionThreshold) {
+        this.holder = holder;
+        this.source = source;
+        this.executor = executor;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Запускает в фоне применение всех доступных дельт
+     * @return Версия базы после обновления
+     */
+    public Future<Long> update() {
+        return executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+                return applyPendingDeltas();
+            }
+        });
+    }
+
+    /**
+     * Запускает в фоне уплотнение базы, если в ней есть непримененные к файлу изменения
+     */
+    public Future<Long> compact() {
+        return executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+                compactNow();
+                return holder.get().version();
+            }
+        });
+    }
+
+    /**
+     * Применяет все доступные дельты в текущем потоке. Не следует вызывать на главном потоке
+     * и одновременно с другими операциями этого объекта
+     * @return Версия базы после обновления
+     */
+    public long applyPendingDeltas() throws IOException {
+        SpamDatabase base = holder.get();
+        if (!(base instanceof LayeredSpamDatabase)) {
+            // Процесс мог завершиться между подменой файла и удалением дельт
+            source.prune(base.version());
+        }
+        for (int i = 0; i < MAX_DELTAS_PER_UPDATE; i++) {
+            InputStream stream = source.open(holder.get().version());
+            if (stream == null) {
+                break;
+            }
+            try (SpamDeltaReader delta = new SpamDeltaReader(stream)) {
+                apply(delta);
+            }
+        }
+
+        SpamDatabase current = holder.get();
+        if (current instanceof LayeredSpamDatabase
+                && ((LayeredSpamDatabase) current).overlay().size() >= compactionThreshold) {
+            compactNow();
+        }
+        return holder.get().version();
+    }
+
+    /**
+     * Применяет одну дельту к текущей базе
+     * @throws IOException Если дельта повреждена или предназначена для другой версии базы
+     */
+    void apply(SpamDeltaReader delta) throws IOException {
+        SpamDatabase current = holder.get();
+        if (delta.baseVersion() != current.version()) {
+            throw new IOException("Дельта для версии " + delta.baseVersion()
+                    + " не подходит к базе версии " + current.version());
+        }
+
+        SortedSpamDatabase base;
+        SpamDeltaOverlay overlay;
+        if (current instanceof LayeredSpamDatabase) {
+            base = ((LayeredSpamDatabase) current).base();
+            overlay = ((LayeredSpamDatabase) current).overlay();
+        } else {
+            base = (SortedSpamDatabase) current;
+            overlay = SpamDeltaOverlay.EMPTY;
+        }
+
+        SpamDatabase updated = new LayeredSpamDatabase(base, overlay.apply(delta, base), delta.targetVersion());
+        if (!holder.publish(current, updated)) {
+            throw new IOException("База была заменена во время применения дельты");
+        }
+    }
+
+    /**
+     * Сливает слой изменений с основным файлом и подменяет им рабочий файл. Ограничения те же,
+     * что и у {@link #applyPendingDeltas()}
+     */
+    public void compactNow() throws IOException {
+        SpamDatabase current = holder.get();
+        if (!(current instanceof LayeredSpamDatabase)) {
+            return;
+        }
+
+        LayeredSpamDatabase layered = (LayeredSpamDatabase) current;
+        File staged = holder.stagingFile();
+        SpamDatabaseCompactor.compact(layered.base(), layered.overlay(), staged, layered.version());
+        if (holder.install(staged, current) == null) {
+            staged.delete();
+            throw new IOException("База была заменена во время уплотнения");
+        }
+        source.prune(layered.version());
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.dialertest.screening;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.example.dialertest.screening.SpamDatabaseFormat.*;
+
+/**
+ * Потоково записывает файл базы в формате {@link SpamDatabaseFormat}. Номера передаются по одному
+ * в порядке возрастания, поэтому запись не требует держать всю базу в памяти: секции номеров
+ * и их записей заполняются через два независимых буфера по заранее вычисленным смещениям.
+ */
+final class SpamDatabaseWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileOutputStream output;
+    private final FileChannel channel;
+    private final long version;
+    private final int numberCount;
+    private final int prefixCount;
+
+    private final int numbersOffset;
+    private final int numberEntriesOffset;
+    private final int directoryOffset;
+    private final int prefixesOffset;
+    private final int prefixEntriesOffset;
+    private final int fileLength;
+
+    private final ByteBuffer numbersBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer entriesBuffer = ByteBuffer.allocate(BUFFER_SIZE / 4);
+    private long numbersPosition;
+    private long entriesPosition;
+
+    private int writtenNumbers;
+    private long lastNumber = Long.MIN_VALUE;
+
+    private final long[] prefixes;
+    private final int[] prefixEntries;
+    private final int[] directory = new int[DIRECTORY_SIZE];
+    private int writtenPrefixes;
+    private int lastPrefixLength;
+    private long lastPrefix = Long.MIN_VALUE;
+
+    SpamDatabaseWriter(File file, long version, int numberCount, int prefixCount) throws IOException {
+        if (numberCount < 0 || prefixCount < 0) {
+            throw new IllegalArgumentException("Количество записей не может быть отрицательным");
+        }
+        this.version = version;
+        this.numberCount = numberCount;
+        this.prefixCount = prefixCount;
+
+        numbersOffset = HEADER_SIZE;
+        numberEntriesOffset = align8(numbersOffset + 8L * numberCount);
+        directoryOffset = align8(numberEntriesOffset + 2L * numberCount);
+        prefixesOffset = align8(directoryOffset + 4L * DIRECTORY_SIZE);
+        prefixEntriesOffset = align8(prefixesOffset + 8L * prefixCount);
+        fileLength = align8(prefixEntriesOffset + 2L * prefixCount);
+
+        prefixes = new long[prefixCount];
+        prefixEntries = new int[prefixCount];
+        numbersPosition = numbersOffset;
+        entriesPosition = numberEntriesOffset;
+
+        output = new FileOutputStream(file);
+        channel = output.getChannel();
+    }
+
+    /**
+     * Добавляет отдельный номер. Номера должны идти строго по возрастанию
+     */
+    void addNumber(long key, int entry) throws IOException {
+        if (writtenNumbers == numberCount) {
+            throw new IllegalStateException("Передано больше номеров, чем объявлено: " + numberCount);
+        }
+        if (key <= lastNumber || !NumberKeys.isValid(key)) {
+            throw new IllegalArgumentException("Номера должны быть корректными и идти по возрастанию: " + key);
+        }
+        if (!numbersBuffer.hasRemaining()) {
+            numbersPosition = flush(numbersBuffer, numbersPosition);
+        }
+        if (!entriesBuffer.hasRemaining()) {
+            entriesPosition = flush(entriesBuffer, entriesPosition);
+        }
+        numbersBuffer.putLong(key);
+        entriesBuffer.put((byte) SpamEntry.category(entry)).put((byte) SpamEntry.score(entry));
+        lastNumber = key;
+        writtenNumbers++;
+    }
+
+    /**
+     * Добавляет правило-префикс. Префиксы должны идти по возрастанию длины, а внутри одной длины - по значению
+     */
+    void addPrefix(long prefix, int length, int entry) {
+        if (writtenPrefixes == prefixCount) {
+            throw new IllegalStateException("Передано больше префиксов, чем объявлено: " + prefixCount);
+        }
+        if (length < lastPrefixLength || (length == lastPrefixLength && prefix <= lastPrefix)
+                || NumberKeys.digitCount(prefix) != length) {
+            throw new IllegalArgumentException("Префиксы должны быть корректными и упорядоченными: " + prefix);
+        }
+        // Группы всех длин до текущей включительно начинаются не раньше текущей позиции
+        for (int l = lastPrefixLength + 1; l <= length; l++) {
+            directory[l] = writtenPrefixes;
+        }
+        prefixes[writtenPrefixes] = prefix;
+        prefixEntries[writtenPrefixes] = entry;
+        writtenPrefixes++;
+        lastPrefixLength = length;
+        lastPrefix = prefix;
+    }
+
+    /**
+     * Дописывает каталог префиксов и заголовок и сбрасывает файл на диск
+     */
+    void finish() throws IOException {
+        if (writtenNumbers != numberCount || writtenPrefixes != prefixCount) {
+            throw new IllegalStateException("Записано " + writtenNumbers + "/" + numberCount
+                    + " номеров и " + writtenPrefixes + "/" + prefixCount + " префиксов");
+        }
+        numbersPosition = flush(numbersBuffer, numbersPosition);
+        entriesPosition = flush(entriesBuffer, entriesPosition);
+
+        for (int l = lastPrefixLength + 1; l < DIRECTORY_SIZE; l++) {
+            directory[l] = writtenPrefixes;
+        }
+        ByteBuffer section = ByteBuffer.allocate(fileLength - directoryOffset);
+        for (int start : directory) {
+            section.putInt(start);
+        }
+        section.position(prefixesOffset - directoryOffset);
+        for (int i = 0; i < prefixCount; i++) {
+            section.putLong(prefixes[i]);
+        }
+        section.position(prefixEntriesOffset - directoryOffset);
+        for (int i = 0; i < prefixCount; i++) {
+            section.put((byte) SpamEntry.category(prefixEntries[i])).put((byte) SpamEntry.score(prefixEntries[i]));
+        }
+        section.position(section.capacity());
+        flush(section, directoryOffset);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(OFFSET_MAGIC, MAGIC)
+                .putShort(OFFSET_FORMAT_VERSION, FORMAT_VERSION)
+                .putLong(OFFSET_DATA_VERSION, version)
+                .putLong(OFFSET_CREATED_AT, System.currentTimeMillis())
+                .putInt(OFFSET_NUMBER_COUNT, numberCount)
+                .putInt(OFFSET_PREFIX_COUNT, prefixCount)
+                .putInt(OFFSET_NUMBERS, numbersOffset)
+                .putInt(OFFSET_NUMBER_ENTRIES, numberEntriesOffset)
+                .putInt(OFFSET_PREFIX_DIRECTORY, directoryOffset)
+                .putInt(OFFSET_PREFIXES, prefixesOffset)
+                .putInt(OFFSET_PREFIX_ENTRIES, prefixEntriesOffset)
+                .putLong(OFFSET_FILE_LENGTH, fileLength);
+        header.putInt(OFFSET_HEADER_CRC, headerCrc(header));
+        header.position(HEADER_SIZE);
+        flush(header, 0);
+
+        channel.force(true);
+    }
+
+    private long flush(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
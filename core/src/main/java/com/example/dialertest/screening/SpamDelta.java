@@ -0,0 +1,53 @@
+package com.example.dialertest.screening;
+
+/**
+ * Формат файла изменений (дельты) базы нежелательных номеров. Дельта переводит базу из версии
+ * baseVersion в версию targetVersion и читается потоком, запись за записью. Числа записываются
+ * в порядке big-endian.
+ *
+ * <pre>
+ * Заголовок (28 байт):
+ *   0  int   MAGIC ("SPDL")
+ *   4  short версия формата
+ *   6  short зарезервировано
+ *   8  long  исходная версия базы
+ *  16  long  версия базы после применения
+ *  24  int   количество записей
+ * Записи (12 байт каждая):
+ *   0  byte  операция: OP_ADD, OP_REMOVE или OP_SET_SCORE
+ *   1  byte  длина префикса или 0 для отдельного номера
+ *   2  byte  категория
+ *   3  byte  оценка
+ *   4  long  ключ номера или цифры префикса
+ * Завершение:
+ *      int   CRC32 заголовка и всех записей
+ * </pre>
+ *
+ * Записи применяются по порядку, поэтому для одного номера побеждает последняя.
+ */
+public final class SpamDelta {
+
+    static final int MAGIC = 0x5350444C;
+    static final short FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 28;
+    static final int RECORD_SIZE = 12;
+
+    /**
+     * Добавить номер или префикс либо заменить его запись целиком
+     */
+    public static final int OP_ADD = 1;
+
+    /**
+     * Удалить номер или префикс
+     */
+    public static final int OP_REMOVE = 2;
+
+    /**
+     * Изменить оценку существующего номера или префикса, сохранив категорию.
+     * Для отсутствующих в базе номеров игнорируется.
+     */
+    public static final int OP_SET_SCORE = 3;
+
+    private SpamDelta() {
+    }
+}
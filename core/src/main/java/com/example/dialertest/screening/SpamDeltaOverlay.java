@@ -0,0 +1,157 @@
+package com.example.dialertest.screening;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Неизменяемый слой изменений поверх основного файла базы. Хранит добавленные, изменённые
+ * и удалённые номера в отсортированных примитивных массивах. Удалённые записи помечаются
+ * значением {@link #TOMBSTONE}, чтобы скрыть номер, оставшийся в основном файле.
+ *
+ * Применение дельты создаёт новый слой и не меняет текущий, поэтому поиск по текущему слою
+ * не требует синхронизации.
+ */
+public final class SpamDeltaOverlay {
+
+    /**
+     * Запись-надгробие: номер удалён, даже если он есть в основном файле
+     */
+    public static final int TOMBSTONE = -2;
+
+    public static final SpamDeltaOverlay EMPTY =
+            new SpamDeltaOverlay(new long[0], new int[0], new long[0], new int[0]);
+
+    private final long[] numbers;
+    private final int[] numberEntries;
+
+    /**
+     * Ключи сортировки префиксов, см. {@link NumberKeys#prefixSortKey}
+     */
+    private final long[] prefixes;
+    private final int[] prefixEntries;
+
+    private SpamDeltaOverlay(long[] numbers, int[] numberEntries, long[] prefixes, int[] prefixEntries) {
+        this.numbers = numbers;
+        this.numberEntries = numberEntries;
+        this.prefixes = prefixes;
+        this.prefixEntries = prefixEntries;
+    }
+
+    /**
+     * Ищет номер в слое
+     * @return Запись, {@link #TOMBSTONE} для удалённого номера или {@link SpamDatabase#NOT_FOUND},
+     * если слой не затрагивает номер
+     */
+    public int findNumber(long key) {
+        int index = Arrays.binarySearch(numbers, key);
+        return index >= 0 ? numberEntries[index] : SpamDatabase.NOT_FOUND;
+    }
+
+    /**
+     * Ищет правило-префикс в слое. Возвращаемые значения такие же, как у {@link #findNumber(long)}
+     */
+    public int findPrefixRule(long prefix, int length) {
+        if (prefixes.length == 0) {
+            return SpamDatabase.NOT_FOUND;
+        }
+        int index = Arrays.binarySearch(prefixes, NumberKeys.prefixSortKey(prefix, length));
+        return index >= 0 ? prefixEntries[index] : SpamDatabase.NOT_FOUND;
+    }
+
+    /**
+     * Количество номеров и префиксов, затронутых слоем, включая удалённые
+     */
+    public int size() {
+        return numbers.length + prefixes.length;
+    }
+
+    int numberCount() {
+        return numbers.length;
+    }
+
+    long numberAt(int index) {
+        return numbers[index];
+    }
+
+    int numberEntryAt(int index) {
+        return numberEntries[index];
+    }
+
+    int prefixCount() {
+        return prefixes.length;
+    }
+
+    long prefixSortKeyAt(int index) {
+        return prefixes[index];
+    }
+
+    int prefixEntryAt(int index) {
+        return prefixEntries[index];
+    }
+
+    /**
+     * Применяет дельту и возвращает новый слой. Текущий слой не изменяется
+     * @param delta Дельта, заголовок которой уже прочитан
+     * @param base База, поверх которой лежит слой. Нужна, чтобы изменить оценку номера,
+     * который есть только в основном файле
+     * @throws IOException Если дельта повреждена. В этом случае ни одна её запись не применяется
+     */
+    public SpamDeltaOverlay apply(SpamDeltaReader delta, SpamDatabase base) throws IOException {
+        LongIntHashMap numberMap = toMap(numbers, numberEntries, delta.recordCount());
+        LongIntHashMap prefixMap = toMap(prefixes, prefixEntries, 0);
+
+        while (delta.next()) {
+            boolean isPrefix = delta.length() != 0;
+            LongIntHashMap map = isPrefix ? prefixMap : numberMap;
+            long key = isPrefix ? NumberKeys.prefixSortKey(delta.key(), delta.length()) : delta.key();
+
+            switch (delta.op()) {
+                case SpamDelta.OP_ADD:
+                    map.put(key, delta.entry());
+                    break;
+                case SpamDelta.OP_REMOVE:
+                    map.put(key, TOMBSTONE);
+                    break;
+                case SpamDelta.OP_SET_SCORE:
+                    int current = map.get(key, SpamDatabase.NOT_FOUND);
+                    if (current == SpamDatabase.NOT_FOUND) {
+                        current = isPrefix
+                                ? base.findPrefixRule(delta.key(), delta.length())
+                                : base.findNumber(delta.key());
+                    }
+                    if (current >= 0) {
+                        map.put(key, SpamEntry.pack(SpamEntry.category(current), SpamEntry.score(delta.entry())));
+                    }
+                    break;
+            }
+        }
+
+        long[] newNumbers = new long[numberMap.size()];
+        int[] newNumberEntries = new int[numberMap.size()];
+        fromMap(numberMap, newNumbers, newNumberEntries);
+        long[] newPrefixes = new long[prefixMap.size()];
+        int[] newPrefixEntries = new int[prefixMap.size()];
+        fromMap(prefixMap, newPrefixes, newPrefixEntries);
+        return new SpamDeltaOverlay(newNumbers, newNumberEntries, newPrefixes, newPrefixEntries);
+    }
+
+    private static LongIntHashMap toMap(long[] keys, int[] entries, int extra) {
+        LongIntHashMap map = new LongIntHashMap(keys.length + extra);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], entries[i]);
+        }
+        return map;
+    }
+
+    private static void fromMap(LongIntHashMap map, long[] keys, int[] entries) {
+        int count = 0;
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.keyAt(slot) != 0L) {
+                keys[count] = map.keyAt(slot);
+                entries[count] = map.valueAt(slot);
+                count++;
+            }
+        }
+        PrimitiveSort.sort(keys, entries, count);
+    }
+}
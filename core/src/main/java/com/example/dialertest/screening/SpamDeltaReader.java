@@ -0,0 +1,126 @@
+package com.example.dialertest.screening;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Потоково читает дельту в формате {@link SpamDelta}. Работает как курсор: после каждого успешного
+ * вызова {@link #next()} поля текущей записи доступны через методы op, key, length и entry,
+ * поэтому чтение не создаёт объектов на каждую запись.
+ */
+public final class SpamDeltaReader implements Closeable {
+
+    private final CheckedInputStream checked;
+    private final DataInputStream input;
+    private final long baseVersion;
+    private final long targetVersion;
+    private final int recordCount;
+
+    private int read;
+    private boolean finished;
+    private int op;
+    private int length;
+    private int entry;
+    private long key;
+
+    /**
+     * Читает и проверяет заголовок дельты
+     * @throws IOException Если поток не является дельтой
+     */
+    public SpamDeltaReader(InputStream stream) throws IOException {
+        checked = new CheckedInputStream(new BufferedInputStream(stream), new CRC32());
+        input = new DataInputStream(checked);
+
+        if (input.readInt() != SpamDelta.MAGIC) {
+            throw new IOException("Поток не является дельтой базы нежелательных номеров");
+        }
+        short formatVersion = input.readShort();
+        if (formatVersion != SpamDelta.FORMAT_VERSION) {
+            throw new IOException("Неподдерживаемая версия формата дельты: " + formatVersion);
+        }
+        input.readShort();
+        baseVersion = input.readLong();
+        targetVersion = input.readLong();
+        recordCount = input.readInt();
+        if (recordCount < 0 || targetVersion <= baseVersion) {
+            throw new IOException("Некорректный заголовок дельты: " + baseVersion + " -> " + targetVersion);
+        }
+    }
+
+    public long baseVersion() {
+        return baseVersion;
+    }
+
+    public long targetVersion() {
+        return targetVersion;
+    }
+
+    public int recordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Переходит к следующей записи. После последней записи проверяет контрольную сумму
+     * @return Ложь, если записи закончились
+     * @throws IOException Если поток оборван, запись некорректна или не совпала контрольная сумма
+     */
+    public boolean next() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (read == recordCount) {
+            int expected = (int) checked.getChecksum().getValue();
+            if (input.readInt() != expected) {
+                throw new IOException("Контрольная сумма дельты не совпадает");
+            }
+            finished = true;
+            return false;
+        }
+
+        op = input.readUnsignedByte();
+        length = input.readUnsignedByte();
+        int category = input.readUnsignedByte();
+        int score = input.readUnsignedByte();
+        key = input.readLong();
+        read++;
+
+        if (op < SpamDelta.OP_ADD || op > SpamDelta.OP_SET_SCORE || score > SpamEntry.MAX_SCORE
+                || !NumberKeys.isValid(key) || (length != 0 && NumberKeys.digitCount(key) != length)) {
+            throw new IOException("Некорректная запись дельты №" + read);
+        }
+        entry = SpamEntry.pack(category, score);
+        return true;
+    }
+
+    public int op() {
+        return op;
+    }
+
+    /**
+     * Ключ номера или цифры префикса текущей записи
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Длина префикса текущей записи или 0, если запись относится к отдельному номеру
+     */
+    public int length() {
+        return length;
+    }
+
+    public int entry() {
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
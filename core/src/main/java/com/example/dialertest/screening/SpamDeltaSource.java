@@ -0,0 +1,26 @@
+package com.example.dialertest.screening;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Источник дельт базы нежелательных номеров: локальный каталог, HTTP-сервер и т. п.
+ */
+public interface SpamDeltaSource {
+
+    /**
+     * Открывает дельту, которая применяется к базе указанной версии
+     * @param fromVersion Текущая версия базы
+     * @return Поток с дельтой в формате {@link SpamDelta} или null, если обновлений нет
+     */
+    InputStream open(long fromVersion) throws IOException;
+
+    /**
+     * Удаляет сохранённые дельты, которые уже вошли в основной файл, то есть дельты от версий
+     * меньше указанной. Дельта от самой этой версии ещё не применена и остаётся.
+     * Источник без локальных файлов ничего не делает
+     * @param baseVersion Версия основного файла базы
+     */
+    default void prune(long baseVersion) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.dialertest.screening;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Записывает дельту в формате {@link SpamDelta}. Используется сервером обновлений и тестами.
+ */
+public final class SpamDeltaWriter implements Closeable {
+
+    private final CheckedOutputStream checked;
+    private final DataOutputStream output;
+    private final int recordCount;
+    private int written;
+
+    /**
+     * @param recordCount Количество записей, которое будет передано методами add, remove и setScore
+     */
+    public SpamDeltaWriter(OutputStream stream, long baseVersion, long targetVersion, int recordCount)
+            throws IOException {
+        checked = new CheckedOutputStream(new BufferedOutputStream(stream), new CRC32());
+        output = new DataOutputStream(checked);
+        this.recordCount = recordCount;
+
+        output.writeInt(SpamDelta.MAGIC);
+        output.writeShort(SpamDelta.FORMAT_VERSION);
+        output.writeShort(0);
+        output.writeLong(baseVersion);
+        output.writeLong(targetVersion);
+        output.writeInt(recordCount);
+    }
+
+    public SpamDeltaWriter add(long key, int entry) throws IOException {
+        return record(SpamDelta.OP_ADD, key, 0, entry);
+    }
+
+    public SpamDeltaWriter addPrefix(long prefix, int entry) throws IOException {
+        return record(SpamDelta.OP_ADD, prefix, NumberKeys.digitCount(prefix), entry);
+    }
+
+    public SpamDeltaWriter remove(long key) throws IOException {
+        return record(SpamDelta.OP_REMOVE, key, 0, 0);
+    }
+
+    public SpamDeltaWriter removePrefix(long prefix) throws IOException {
+        return record(SpamDelta.OP_REMOVE, prefix, NumberKeys.digitCount(prefix), 0);
+    }
+
+    public SpamDeltaWriter setScore(long key, int score) throws IOException {
+        return record(SpamDelta.OP_SET_SCORE, key, 0, SpamEntry.pack(SpamEntry.CATEGORY_UNKNOWN, score));
+    }
+
+    private SpamDeltaWriter record(int op, long key, int length, int entry) throws IOException {
+        if (written == recordCount) {
+            throw new IllegalStateException("Передано больше записей, чем объявлено: " + recordCount);
+        }
+        if (!NumberKeys.isValid(key)) {
+            throw new IllegalArgumentException("Некорректный номер: " + key);
+        }
+        output.writeByte(op);
+        output.writeByte(length);
+        output.writeByte(SpamEntry.category(entry));
+        output.writeByte(SpamEntry.score(entry));
+        output.writeLong(key);
+        written++;
+        return this;
+    }
+
+    /**
+     * Дописывает контрольную сумму и закрывает поток
+     * @throws IllegalStateException Если передано меньше записей, чем объявлено
+     */
+    @Override
+    public void close() throws IOException {
+        if (written != recordCount) {
+            output.close();
+            throw new IllegalStateException("Записано " + written + " из " + recordCount + " записей");
+        }
+        output.flush();
+        output.writeInt((int) checked.getChecksum().getValue());
+        output.close();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.dialertest.screening;
+
+/**
+ * Упаковка записи базы нежелательных номеров в int: категория в старшем байте,
+ * оценка нежелательности (0..100) в младшем. Позволяет возвращать результат поиска без создания объектов.
+ */
+public final class SpamEntry {
+
+    public static final int CATEGORY_UNKNOWN = 0;
+    public static final int CATEGORY_TELEMARKETING = 1;
+    public static final int CATEGORY_FRAUD = 2;
+    public static final int CATEGORY_ROBOCALL = 3;
+    public static final int CATEGORY_DEBT_COLLECTOR = 4;
+    public static final int CATEGORY_SURVEY = 5;
+
+    /**
+     * Максимальная оценка нежелательности
+     */
+    public static final int MAX_SCORE = 100;
+
+    private static final String[] CATEGORY_NAMES = {
+            "unknown", "telemarketing", "fraud", "robocall", "debt_collector", "survey"
+    };
+
+    private SpamEntry() {
+    }
+
+    /**
+     * Упаковывает категорию и оценку в одно значение
+     * @throws IllegalArgumentException Если категория или оценка вне допустимого диапазона
+     */
+    public static int pack(int category, int score) {
+        if (category < 0 || category > 0xFF || score < 0 || score > MAX_SCORE) {
+            throw new IllegalArgumentException("Некорректная запись: " + category + "/" + score);
+        }
+        return category << 8 | score;
+    }
+
+    public static int category(int entry) {
+        return entry >>> 8 & 0xFF;
+    }
+
+    public static int score(int entry) {
+        return entry & 0xFF;
+    }
+
+    /**
+     * Возвращает код категории по её имени или номеру
+     * @return Код категории или -1, если категория не распознана
+     */
+    public static int parseCategory(String value) {
+        for (int i = 0; i < CATEGORY_NAMES.length; i++) {
+            if (CATEGORY_NAMES[i].equalsIgnoreCase(value)) {
+                return i;
+            }
+        }
+        try {
+            int category = Integer.parseInt(value);
+            return category >= 0 && category <= 0xFF ? category : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public static String categoryName(int category) {
+        return category < CATEGORY_NAMES.length ? CATEGORY_NAMES[category] : String.valueOf(category);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.dialertest.screening;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Преобразует текстовую ленту нежелательных номеров в файл базы. Каждая строка ленты имеет вид
+ * <pre>номер[,категория[,оценка]]</pre>
+ * где номер - номер в E.164 или префикс со звёздочкой на конце ("+7800*"), категория - имя
+ * или код из {@link SpamEntry}, оценка - число от 0 до 100. Пустые строки и строки, начинающиеся
+ * с "#", пропускаются. По умолчанию категория неизвестна, а оценка максимальна.
+ */
+public final class SpamFeedConverter {
+
+    private int skippedLines;
+
+    /**
+     * Читает ленту и добавляет распознанные записи в сборщик
+     * @return Количество добавленных записей
+     */
+    public int read(BufferedReader feed, SpamDatabaseBuilder builder) throws IOException {
+        int added = 0;
+        String line;
+        while ((line = feed.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (addLine(line, builder)) {
+                added++;
+            } else {
+                skippedLines++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Количество строк, которые не удалось распознать
+     */
+    public int skippedLines() {
+        return skippedLines;
+    }
+
+    private static boolean addLine(String line, SpamDatabaseBuilder builder) {
+        String[] fields = line.split(",", -1);
+        if (fields.length > 3) {
+            return false;
+        }
+
+        String number = fields[0].trim();
+        boolean isPrefix = number.endsWith("*");
+        long key = NumberKeys.fromDigits(isPrefix ? number.substring(0, number.length() - 1) : number);
+        if (key == NumberKeys.INVALID) {
+            return false;
+        }
+
+        int category = fields.length > 1 ? SpamEntry.parseCategory(fields[1].trim()) : SpamEntry.CATEGORY_UNKNOWN;
+        int score;
+        try {
+            score = fields.length > 2 ? Integer.parseInt(fields[2].trim()) : SpamEntry.MAX_SCORE;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (category < 0 || score < 0 || score > SpamEntry.MAX_SCORE) {
+            return false;
+        }
+
+        int entry = SpamEntry.pack(category, score);
+        if (isPrefix) {
+            builder.addPrefix(key, entry);
+        } else {
+            builder.addNumber(key, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Консольный запуск: {@code SpamFeedConverter <лента.csv> <база.db> <версия>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Использование: SpamFeedConverter <лента.csv> <база.db> <версия>");
+            System.exit(2);
+        }
+
+        SpamDatabaseBuilder builder = new SpamDatabaseBuilder();
+        SpamFeedConverter converter = new SpamFeedConverter();
+        try (BufferedReader feed = new BufferedReader(new InputStreamReader(
+                new FileInputStream(args[0]), Charset.forName("UTF-8")))) {
+            converter.read(feed, builder);
+        }
+        builder.writeTo(new File(args[1]), Long.parseLong(args[2]));
+        System.out.println("Номеров: " + builder.numberCount() + ", префиксов: " + builder.prefixCount()
+                + ", пропущено строк: " + converter.skippedLines());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.dialertest.screening;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Поддерживает фильтр быстрого отказа в актуальном состоянии. При каждом обращении сравнивает
+ * базу, для которой построен фильтр, с текущей базой в {@link SpamDatabaseHolder}. Если база
+ * сменилась (применена дельта, выполнено уплотнение, установлен новый файл), новый фильтр
+ * строится в фоне, а до его готовности поиск идёт напрямую по базе без фильтра.
+ */
+public final class SpamFilterTier {
+
+    private final SpamDatabaseHolder holder;
+    private final Executor executor;
+    private final int bitsPerKey;
+
+    private final AtomicReference<FilteredSpamDatabase> filtered = new AtomicReference<>();
+
+    /**
+     * База, для которой уже запущено построение фильтра. Защищает от повторного запуска
+     */
+    private final AtomicReference<SpamDatabase> building = new AtomicReference<>();
+
+    /**
+     * @param executor Исполнитель для построения фильтра в фоне
+     * @param bitsPerKey Количество бит фильтра на одну запись базы
+     */
+    public SpamFilterTier(SpamDatabaseHolder holder, Executor executor, int bitsPerKey) {
+        this.holder = holder;
+        this.executor = executor;
+        this.bitsPerKey = bitsPerKey;
+    }
+
+    /**
+     * Текущая база с фильтром, если он уже построен, иначе сама текущая база
+     */
+    public SpamDatabase get() {
+        SpamDatabase current = holder.get();
+        FilteredSpamDatabase filter = filtered.get();
+        if (filter != null && filter.delegate() == current) {
+            return filter;
+        }
+        rebuild(current);
+        return current;
+    }
+
+    /**
+     * Фильтр для текущей базы или null, если он ещё строится
+     */
+    public FilteredSpamDatabase currentFilter() {
+        FilteredSpamDatabase filter = filtered.get();
+        return filter != null && filter.delegate() == holder.get() ? filter : null;
+    }
+
+    private void rebuild(SpamDatabase database) {
+        SpamDatabase previous = building.get();
+        if (previous == database || !building.compareAndSet(previous, database)) {
+            return;
+        }
+        executor.execute(() -> {
+            // Пока задача ждала в очереди, база могла смениться ещё раз
+            if (holder.get() == database) {
+                filtered.set(FilteredSpamDatabase.build(database, bitsPerKey));
+            } else {
+                building.compareAndSet(database, null);
+            }
+        });
+    }
+}
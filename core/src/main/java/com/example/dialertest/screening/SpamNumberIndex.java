@@ -0,0 +1,279 @@
+package com.example.dialertest.screening;
+
+import java.util.Arrays;
+
+/**
+ * Индекс нежелательных номеров в памяти. Хранит отдельные номера в виде отсортированного массива
+ * long-ключей и правила-префиксы (например, весь блок +7-800-xxx), сгруппированные по длине префикса.
+ * Поиск номера - это двоичный поиск по массиву, поиск префикса - не более 15 двоичных поисков
+ * по непустым группам. Ни на один запрос не выделяется память.
+ *
+ * Объект неизменяемый, поэтому один экземпляр можно безопасно использовать из нескольких потоков.
+ * Категории и оценки не хранятся: все найденные номера считаются нежелательными с максимальной оценкой.
+ */
+public final class SpamNumberIndex implements SortedSpamDatabase {
+
+    private static final int DEFAULT_ENTRY = SpamEntry.pack(SpamEntry.CATEGORY_UNKNOWN, SpamEntry.MAX_SCORE);
+
+    private static final long[] NO_KEYS = new long[0];
+
+    private static final SpamNumberIndex EMPTY = new Builder().build();
+
+    /**
+     * Отсортированные ключи отдельных номеров без повторов
+     */
+    private final long[] numbers;
+
+    /**
+     * Отсортированные префиксы, где индекс массива - количество цифр в префиксе
+     */
+    private final long[][] prefixesByLength;
+
+    /**
+     * Длины префиксов, для которых есть хотя бы одно правило. Позволяет не перебирать пустые группы
+     */
+    private final int[] prefixLengths;
+
+    private final int prefixCount;
+
+    private SpamNumberIndex(long[] numbers, long[][] prefixesByLength) {
+        this.numbers = numbers;
+        this.prefixesByLength = prefixesByLength;
+
+        int lengths = 0;
+        int count = 0;
+        for (long[] prefixes : prefixesByLength) {
+            if (prefixes.length > 0) {
+                lengths++;
+                count += prefixes.length;
+            }
+        }
+        prefixLengths = new int[lengths];
+        for (int length = 0, i = 0; length < prefixesByLength.length; length++) {
+            if (prefixesByLength[length].length > 0) {
+                prefixLengths[i++] = length;
+            }
+        }
+        prefixCount = count;
+    }
+
+    /**
+     * Возвращает пустой индекс, в котором нет ни одного номера
+     */
+    public static SpamNumberIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Проверяет, является ли номер нежелательным
+     * @param number Номер в произвольном формате, например "+7 (800) 555-35-35"
+     * @return Истина, если номер есть в списке или попадает под одно из правил-префиксов
+     */
+    public boolean isSpam(CharSequence number) {
+        return isSpam(NumberKeys.fromDigits(number));
+    }
+
+    @Override
+    public long version() {
+        return 0L;
+    }
+
+    @Override
+    public int find(long key) {
+        return isSpam(key) ? DEFAULT_ENTRY : NOT_FOUND;
+    }
+
+    @Override
+    public int findNumber(long key) {
+        return contains(key) ? DEFAULT_ENTRY : NOT_FOUND;
+    }
+
+    @Override
+    public int findPrefixRule(long prefix, int length) {
+        return length >= 1 && length <= NumberKeys.MAX_DIGITS
+                && Arrays.binarySearch(prefixesByLength[length], prefix) >= 0 ? DEFAULT_ENTRY : NOT_FOUND;
+    }
+
+    /**
+     * Проверяет, является ли номер с указанным ключом нежелательным
+     */
+    @Override
+    public boolean isSpam(long key) {
+        return NumberKeys.isValid(key) && (contains(key) || matchesPrefix(key));
+    }
+
+    /**
+     * Проверяет наличие номера в списке отдельных номеров
+     */
+    public boolean contains(long key) {
+        return Arrays.binarySearch(numbers, key) >= 0;
+    }
+
+    /**
+     * Проверяет, попадает ли номер под одно из правил-префиксов
+     */
+    public boolean matchesPrefix(long key) {
+        int digits = NumberKeys.digitCount(key);
+        for (int length : prefixLengths) {
+            // Префикс не может быть длиннее самого номера
+            if (length > digits) {
+                break;
+            }
+            long prefix = key / NumberKeys.POW10[digits - length];
+            if (Arrays.binarySearch(prefixesByLength[length], prefix) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long numberAt(int index) {
+        return numbers[index];
+    }
+
+    @Override
+    public int numberEntryAt(int index) {
+        return DEFAULT_ENTRY;
+    }
+
+    @Override
+    public long prefixAt(int index) {
+        int length = prefixLengthAt(index);
+        int start = 0;
+        for (int l : prefixLengths) {
+            if (l == length) {
+                break;
+            }
+            start += prefixesByLength[l].length;
+        }
+        return prefixesByLength[length][index - start];
+    }
+
+    @Override
+    public int prefixLengthAt(int index) {
+        for (int length : prefixLengths) {
+            if (index < prefixesByLength[length].length) {
+                return length;
+            }
+            index -= prefixesByLength[length].length;
+        }
+        throw new IndexOutOfBoundsException("Нет префикса с индексом " + index);
+    }
+
+    @Override
+    public int prefixEntryAt(int index) {
+        return DEFAULT_ENTRY;
+    }
+
+    /**
+     * Количество отдельных номеров в индексе
+     */
+    @Override
+    public int size() {
+        return numbers.length;
+    }
+
+    /**
+     * Количество правил-префиксов в индексе
+     */
+    @Override
+    public int prefixRuleCount() {
+        return prefixCount;
+    }
+
+    /**
+     * Собирает индекс из отдельных номеров и префиксов. Данные накапливаются в примитивных массивах,
+     * а при вызове {@link #build()} сортируются и очищаются от повторов.
+     */
+    public static final class Builder {
+
+        private long[] numbers = new long[16];
+        private int numberCount;
+
+        private final long[][] prefixes = new long[NumberKeys.MAX_DIGITS + 1][];
+        private final int[] prefixCounts = new int[NumberKeys.MAX_DIGITS + 1];
+
+        /**
+         * Добавляет отдельный номер
+         * @throws IllegalArgumentException Если ключ не является корректным номером
+         */
+        public Builder addNumber(long key) {
+            if (!NumberKeys.isValid(key)) {
+                throw new IllegalArgumentException("Некорректный номер: " + key);
+            }
+            if (numberCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, numberCount * 2);
+            }
+            numbers[numberCount++] = key;
+            return this;
+        }
+
+        /**
+         * Добавляет правило-префикс. Например, префикс 7800 длиной 4 блокирует все номера +7-800-xxx.
+         * @param prefix Цифры префикса
+         * @param length Количество цифр в префиксе
+         * @throws IllegalArgumentException Если префикс не совпадает с указанной длиной
+         */
+        public Builder addPrefix(long prefix, int length) {
+            if (length < 1 || length > NumberKeys.MAX_DIGITS || !NumberKeys.isValid(prefix)
+                    || NumberKeys.digitCount(prefix) != length) {
+                throw new IllegalArgumentException("Некорректный префикс: " + prefix + "/" + length);
+            }
+            long[] group = prefixes[length];
+            if (group == null) {
+                group = prefixes[length] = new long[4];
+            } else if (prefixCounts[length] == group.length) {
+                group = prefixes[length] = Arrays.copyOf(group, group.length * 2);
+            }
+            group[prefixCounts[length]++] = prefix;
+            return this;
+        }
+
+        /**
+         * Добавляет запись в текстовом виде: номер ("+7 495 123-45-67") или префикс со звёздочкой
+         * на конце ("+7800*")
+         * @return Истина, если запись распознана и добавлена
+         */
+        public boolean add(CharSequence entry) {
+            int end = entry.length();
+            while (end > 0 && entry.charAt(end - 1) == ' ') {
+                end--;
+            }
+            boolean isPrefix = end > 0 && entry.charAt(end - 1) == '*';
+            long key = NumberKeys.fromDigits(entry.subSequence(0, isPrefix ? end - 1 : end));
+            if (key == NumberKeys.INVALID) {
+                return false;
+            }
+            if (isPrefix) {
+                addPrefix(key, NumberKeys.digitCount(key));
+            } else {
+                addNumber(key);
+            }
+            return true;
+        }
+
+        public SpamNumberIndex build() {
+            long[][] sortedPrefixes = new long[prefixes.length][];
+            for (int length = 0; length < prefixes.length; length++) {
+                sortedPrefixes[length] = prefixes[length] == null
+                        ? NO_KEYS
+                        : sortedUnique(prefixes[length], prefixCounts[length]);
+            }
+            return new SpamNumberIndex(sortedUnique(numbers, numberCount), sortedPrefixes);
+        }
+
+        private static long[] sortedUnique(long[] keys, int count) {
+            long[] sorted = Arrays.copyOf(keys, count);
+            Arrays.sort(sorted);
+
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.dialertest.screening;
+
+import com.example.dialertest.metrics.Counter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Кэш результатов проверки для повторных звонков. Нежелательные номера обычно звонят сериями,
+ * а обычные абоненты - регулярно, поэтому повторный звонок обходится без поиска по базе и без
+ * медленных стадий дообогащения. Правила проверки к результату из кэша применяются заново:
+ * они зависят от времени звонка и контактов.
+ *
+ * Записи ищутся по ключу номера через {@link LongIntHashMap} без упаковки ключей и хранятся
+ * в массивах фиксированного размера. Порядок использования ведётся двусвязным списком на
+ * индексах массивов: при переполнении вытесняется запись, к которой дольше всего не обращались.
+ * Запись старше заданного срока жизни считается отсутствующей. При смене версии базы кэш
+ * очищается целиком, так как любой номер мог попасть в базу или исчезнуть из неё.
+ *
+ * Кэш сохраняется в файл и загружается при следующем запуске процесса, поэтому первый звонок
+ * после перезапуска тоже обходится без поиска. Время записей - по часам реального времени,
+ * чтобы срок жизни учитывал время, когда процесса не было.
+ *
+ * Все методы синхронизированы: кэш читается на потоке проверки, а дополняется на потоке дообогащения.
+ * Сохранение и загрузка держат блокировку кэша только на время копирования записей, а ввод-вывод
+ * выполняют без неё, чтобы проверка звонка не ждала диска.
+ */
+public final class VerdictCache {
+
+    /**
+     * Сигнатура файла кэша "SPVC"
+     */
+    private static final int MAGIC = 0x53505643;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int NONE = -1;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    /**
+     * Ключ номера - индекс записи в массивах
+     */
+    private final LongIntHashMap slots;
+
+    private final long[] keys;
+    private final ScreeningResult[] results;
+    private final long[] storedAt;
+
+    /**
+     * Список записей от недавно использованной к давно использованной
+     */
+    private final int[] newer;
+    private final int[] older;
+    private int newest = NONE;
+    private int oldest = NONE;
+
+    /**
+     * Стек свободных индексов
+     */
+    private final int[] free;
+    private int freeCount;
+
+    private long databaseVersion;
+    private long modifications;
+    private long savedModifications;
+
+    /**
+     * Упорядочивает сохранения между собой: они пишут один и тот же временный файл
+     */
+    private final Object saveLock = new Object();
+
+    /**
+     * @param maxEntries Наибольшее количество записей
+     * @param ttlMillis Срок жизни записи, мс
+     * @param clock Часы реального времени, мс
+     * @param hits Счётчик найденных записей
+     * @param misses Счётчик отсутствующих и устаревших записей
+     * @param evictions Счётчик записей, удалённых из-за переполнения, срока жизни или смены версии базы
+     */
+    public VerdictCache(int maxEntries, long ttlMillis, LongSupplier clock,
+                        Counter hits, Counter misses, Counter evictions) {
+        if (maxEntries < 1 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Некорректные параметры кэша: " + maxEntries + ", " + ttlMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+
+        slots = new LongIntHashMap(maxEntries);
+        keys = new long[maxEntries];
+        results = new ScreeningResult[maxEntries];
+        storedAt = new long[maxEntries];
+        newer = new int[maxEntries];
+        older = new int[maxEntries];
+        free = new int[maxEntries];
+        resetSlots();
+    }
+
+    /**
+     * Ищет результат проверки номера
+     * @param key Ключ номера
+     * @param databaseVersion Версия базы, по которой будет проверяться номер
+     * @return Сохранённый результат или null, если его нет или он устарел
+     */
+    public synchronized ScreeningResult get(long key, long databaseVersion) {
+        checkVersion(databaseVersion);
+        int slot = slots.get(key, NONE);
+        if (slot == NONE) {
+            misses.increment();
+            return null;
+        }
+        if (isExpired(slot, clock.getAsLong())) {
+            remove(slot);
+            evictions.increment();
+            misses.increment();
+            return null;
+        }
+        moveToNewest(slot);
+        hits.increment();
+        return results[slot];
+    }
+
+    /**
+     * Сохраняет результат проверки номера, вытесняя самую давно использованную запись при переполнении
+     */
+    public synchronized void put(long key, long databaseVersion, ScreeningResult result) {
+        if (!NumberKeys.isValid(key)) {
+            return;
+        }
+        checkVersion(databaseVersion);
+        int slot = slots.get(key, NONE);
+        if (slot == NONE) {
+            if (freeCount == 0) {
+                remove(oldest);
+                evictions.increment();
+            }
+            slot = free[--freeCount];
+            keys[slot] = key;
+            slots.put(key, slot);
+            linkNewest(slot);
+        } else {
+            moveToNewest(slot);
+        }
+        results[slot] = result;
+        storedAt[slot] = clock.getAsLong();
+        modifications++;
+    }
+
+    /**
+     * Заменяет результат дополненным, если номер ещё в кэше. Срок жизни записи не продлевается
+     */
+    public synchronized void update(long key, ScreeningResult result) {
+        int slot = slots.get(key, NONE);
+        if (slot != NONE) {
+            results[slot] = result;
+            modifications++;
+        }
+    }
+
+    /**
+     * Удаляет все записи
+     */
+    public synchronized void clear() {
+        if (size() > 0) {
+            evictions.add(size());
+            resetSlots();
+            modifications++;
+        }
+    }
+
+    public synchronized int size() {
+        return maxEntries - freeCount;
+    }
+
+    /**
+     * Истина, если кэш изменился после последнего сохранения или загрузки
+     */
+    public synchronized boolean isModified() {
+        return modifications != savedModifications;
+    }
+
+    /**
+     * Записывает кэш во временный файл и переименовывает его поверх указанного, поэтому
+     * при аварийном завершении остаётся прежний файл. Записи идут от давно использованной
+     * к недавно использованной, чтобы загрузка восстановила порядок вытеснения.
+     * Под блокировкой кэша записи только копируются в массивы, запись на диск идёт без неё
+     */
+    public void save(File file) throws IOException {
+        synchronized (saveLock) {
+            long version;
+            long snapshotModifications;
+            long[] savedKeys;
+            long[] savedTimes;
+            ScreeningResult[] savedResults;
+            synchronized (this) {
+                version = databaseVersion;
+                snapshotModifications = modifications;
+                int count = size();
+                savedKeys = new long[count];
+                savedTimes = new long[count];
+                savedResults = new ScreeningResult[count];
+                int i = 0;
+                for (int slot = oldest; slot != NONE; slot = newer[slot]) {
+                    savedKeys[i] = keys[slot];
+                    savedTimes[i] = storedAt[slot];
+                    savedResults[i] = results[slot];
+                    i++;
+                }
+            }
+
+            File staged = new File(file.getPath() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(staged)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(version);
+                output.writeInt(savedKeys.length);
+                for (int i = 0; i < savedKeys.length; i++) {
+                    ScreeningResult result = savedResults[i];
+                    output.writeLong(savedKeys[i]);
+                    output.writeLong(savedTimes[i]);
+                    output.writeInt(result.entry());
+                    output.writeByte(result.rule());
+                    output.writeFloat(result.reputation());
+                    output.writeBoolean(result.callerName() != null);
+                    if (result.callerName() != null) {
+                        output.writeUTF(result.callerName());
+                    }
+                }
+            }
+            if (!staged.renameTo(file)) {
+                staged.delete();
+                throw new IOException("Не удалось заменить " + file + " файлом " + staged);
+            }
+            synchronized (this) {
+                // Изменения, сделанные во время записи, останутся несохранёнными
+                savedModifications = snapshotModifications;
+            }
+        }
+    }
+
+    /**
+     * Заменяет содержимое кэша записями из файла, пропуская устаревшие. Файл читается без блокировки
+     * кэша, а записи подставляются разом после чтения
+     * @return Количество загруженных записей
+     * @throws IOException Если файл повреждён; кэш в этом случае остаётся пустым
+     */
+    public int load(File file) throws IOException {
+        long version;
+        ArrayList<ScreeningResult> loaded = new ArrayList<>();
+        long[] loadedTimes = new long[16];
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                throw new IOException("Неизвестный формат кэша " + file);
+            }
+            version = input.readLong();
+            int count = input.readInt();
+            if (count < 0) {
+                throw new IOException("Некорректное количество записей в " + file);
+            }
+            long now = clock.getAsLong();
+            for (int i = 0; i < count; i++) {
+                long key = input.readLong();
+                long time = input.readLong();
+                int entry = input.readInt();
+                int rule = input.readByte();
+                float reputation = input.readFloat();
+                String callerName = input.readBoolean() ? input.readUTF() : null;
+                if (!NumberKeys.isValid(key) || now - time >= ttlMillis || now < time) {
+                    continue;
+                }
+                if (loaded.size() == loadedTimes.length) {
+                    loadedTimes = Arrays.copyOf(loadedTimes, loadedTimes.length * 2);
+                }
+                loadedTimes[loaded.size()] = time;
+                loaded.add(new ScreeningResult(key, entry, rule,
+                        ScreeningRules.decision(ScreeningRules.NO_RULE, ScreeningAction.ALLOW), false, true,
+                        callerName, reputation, 0L, 0L, 0L, 0L, 0L));
+            }
+        } catch (EOFException e) {
+            reset();
+            throw new IOException("Файл кэша обрезан: " + file, e);
+        } catch (IOException e) {
+            reset();
+            throw e;
+        }
+
+        synchronized (this) {
+            resetSlots();
+            for (int i = 0; i < loaded.size(); i++) {
+                long key = loaded.get(i).numberKey();
+                put(key, version, loaded.get(i));
+                storedAt[slots.get(key, NONE)] = loadedTimes[i];
+            }
+            databaseVersion = version;
+            savedModifications = modifications;
+            return size();
+        }
+    }
+
+    private synchronized void reset() {
+        resetSlots();
+    }
+
+    private void checkVersion(long version) {
+        if (version != databaseVersion) {
+            clear();
+            databaseVersion = version;
+        }
+    }
+
+    private boolean isExpired(int slot, long now) {
+        // Часы могли быть переведены назад, тогда возраст записи неизвестен
+        return now - storedAt[slot] >= ttlMillis || now < storedAt[slot];
+    }
+
+    private void remove(int slot) {
+        slots.remove(keys[slot]);
+        unlink(slot);
+        results[slot] = null;
+        free[freeCount++] = slot;
+        modifications++;
+    }
+
+    private void moveToNewest(int slot) {
+        if (slot != newest) {
+            unlink(slot);
+            linkNewest(slot);
+        }
+    }
+
+    private void linkNewest(int slot) {
+        older[slot] = newest;
+        newer[slot] = NONE;
+        if (newest != NONE) {
+            newer[newest] = slot;
+        } else {
+            oldest = slot;
+        }
+        newest = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = older[slot];
+        int after = newer[slot];
+        if (before != NONE) {
+            newer[before] = after;
+        } else {
+            oldest = after;
+        }
+        if (after != NONE) {
+            older[after] = before;
+        } else {
+            newest = before;
+        }
+    }
+
+    private void resetSlots() {
+        slots.clear();
+        Arrays.fill(results, null);
+        newest = NONE;
+        oldest = NONE;
+        for (int i = 0; i < maxEntries; i++) {
+            free[i] = maxEntries - 1 - i;
+        }
+        freeCount = maxEntries;
+    }
+}
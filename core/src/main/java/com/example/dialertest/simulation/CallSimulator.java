@@ -0,0 +1,450 @@
+package com.example.dialertest.simulation;
+
+import com.example.dialertest.call.CallHandle;
+import com.example.dialertest.call.CallLifecycle;
+import com.example.dialertest.call.CallRegistry;
+import com.example.dialertest.call.CallStates;
+import com.example.dialertest.call.OngoingCall;
+import com.example.dialertest.handling.VerdictRecorder;
+import com.example.dialertest.journal.DecisionJournal;
+import com.example.dialertest.metrics.Counter;
+import com.example.dialertest.metrics.LatencyHistogram;
+import com.example.dialertest.metrics.MetricsRegistry;
+import com.example.dialertest.reputation.CallHistory;
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.FloodDetector;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+import com.example.dialertest.screening.ScreeningPipeline;
+import com.example.dialertest.screening.ScreeningResult;
+import com.example.dialertest.screening.ScreeningRules;
+import com.example.dialertest.screening.SpamNumberIndex;
+import com.example.dialertest.screening.VerdictCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Симулятор обработки звонков на JVM. Воспроизводит трассу {@link CallTrace} через те же части, что
+ * работают в приложении: конвейер проверки, учёт решений {@link VerdictRecorder}, реестр вызовов
+ * и {@link CallLifecycle}. Система телефонии заменена {@link SimulatedCall}, а экран вызова -
+ * подпиской на прореженный поток состояний на отдельном потоке, который играет роль главного.
+ *
+ * Порядок обработки повторяет Telecom: вызов появляется только после решения по номеру,
+ * отклонённый вызов не появляется совсем, а события, пришедшие во время проверки, применяются
+ * после решения. Если звонящий положил трубку до решения, вызов тоже не появляется.
+ *
+ * Измеряются время от звонка до решения (с ожиданием в очереди проверки), время решения самого
+ * конвейера, время от появления вызова до первого состояния на экране, доставка каждого состояния
+ * на экран и промежутки между сменами состояний. Один экземпляр воспроизводит одну трассу.
+ */
+public final class CallSimulator {
+
+    public static final String DECISION = "screening.decision";
+    public static final String BLOCKED = "screening.blocked";
+    public static final String ALLOWED = "screening.allowed";
+    public static final String FALLBACK = "screening.fallback";
+    public static final String CALLS_ADDED = "call.added";
+    public static final String ADDED_TO_UI = "call.added_to_ui";
+    public static final String STATE_GAP = "call.state_gap";
+
+    /**
+     * Время от события ring до решения, включая ожидание в очереди проверки
+     */
+    public static final String RING_TO_VERDICT = "simulation.ring_to_verdict";
+
+    /**
+     * Время от смены состояния вызова до его показа на экране
+     */
+    public static final String STATE_DELIVERY = "simulation.state_delivery";
+
+    /**
+     * Звонящий положил трубку до решения по номеру
+     */
+    public static final String ABANDONED = "simulation.abandoned";
+
+    /**
+     * Звонящий положил трубку, пока вызов звонил
+     */
+    public static final String MISSED = "simulation.missed";
+
+    /**
+     * Вызов появился во время разговора или удержания другого вызова
+     */
+    public static final String CALL_WAITING = "simulation.call_waiting";
+
+    /**
+     * Вызов появился, пока звонил другой вызов
+     */
+    public static final String OVERLAPPING_RINGS = "simulation.overlapping_rings";
+
+    /**
+     * Наибольшее количество вызовов в реестре одновременно
+     */
+    public static final String MAX_CONCURRENT = "simulation.max_concurrent";
+
+    /**
+     * События, неприменимые к состоянию показанного вызова, например снятие с удержания звонящего вызова
+     */
+    public static final String IGNORED_EVENTS = "simulation.ignored_events";
+
+    /**
+     * Звонки, не завершившиеся за время ожидания после последнего события
+     */
+    public static final String UNFINISHED = "simulation.unfinished";
+
+    /**
+     * Сколько ждать завершения звонков после последнего события трассы
+     */
+    private static final long DRAIN_TIMEOUT_MILLIS = 30_000;
+
+    private final ScreeningPipeline pipeline;
+    private final MetricsRegistry metrics;
+    private final VerdictRecorder recorder;
+    private final CallLifecycle lifecycle;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final LatencyHistogram ringToVerdict;
+    private final LatencyHistogram addedToUi;
+    private final LatencyHistogram stateDelivery;
+    private final Counter abandoned;
+    private final Counter missed;
+    private final Counter callWaiting;
+    private final Counter overlappingRings;
+    private final Counter ignoredEvents;
+
+    /**
+     * Вызовы, которые сейчас звонят, и вызовы в разговоре или на удержании
+     */
+    private final AtomicInteger ringing = new AtomicInteger();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    private ExecutorService uiExecutor;
+    private Scheduler uiScheduler;
+    private CountDownLatch finished;
+
+    /**
+     * @param metrics Реестр, в который пишутся метрики симулятора и учёта решений
+     * @param journal Журнал решений или null
+     * @param history История звонков или null
+     */
+    public CallSimulator(ScreeningPipeline pipeline, MetricsRegistry metrics, DecisionJournal journal,
+                         CallHistory history) {
+        this.pipeline = pipeline;
+        this.metrics = metrics;
+        this.recorder = new VerdictRecorder(metrics.histogram(DECISION), metrics.counter(BLOCKED),
+                metrics.counter(ALLOWED), metrics.counter(FALLBACK), journal, history);
+        this.lifecycle = new CallLifecycle(new CallRegistry(metrics.histogram(STATE_GAP)), new UiPresenter(),
+                metrics.counter(CALLS_ADDED));
+        ringToVerdict = metrics.histogram(RING_TO_VERDICT);
+        addedToUi = metrics.histogram(ADDED_TO_UI);
+        stateDelivery = metrics.histogram(STATE_DELIVERY);
+        abandoned = metrics.counter(ABANDONED);
+        missed = metrics.counter(MISSED);
+        callWaiting = metrics.counter(CALL_WAITING);
+        overlappingRings = metrics.counter(OVERLAPPING_RINGS);
+        ignoredEvents = metrics.counter(IGNORED_EVENTS);
+    }
+
+    /**
+     * Воспроизводит трассу и ждёт завершения всех звонков
+     * @param speed Во сколько раз воспроизведение быстрее времени трассы. При 0 события идут подряд без пауз:
+     *              это предельная нагрузка на проверку, но события звонка успевают прийти ещё до решения
+     *              по нему, и звонки, которые кто-то завершил, считаются брошенными
+     */
+    public SimulationReport run(CallTrace trace, double speed) throws InterruptedException {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Симулятор уже воспроизвёл трассу");
+        }
+        uiExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "simulation-ui"));
+        uiScheduler = Schedulers.from(uiExecutor);
+        finished = new CountDownLatch(trace.callCount());
+        SimulatedCall[] calls = new SimulatedCall[trace.callCount()];
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < trace.size(); i++) {
+                if (speed > 0) {
+                    long due = start + (long) (trace.time(i) * 1_000_000L / speed);
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                int index = trace.call(i);
+                if (trace.event(i) == CallTrace.RING) {
+                    calls[index] = new SimulatedCall(index, System.nanoTime());
+                    ring(calls[index], trace.number(index));
+                } else {
+                    event(calls[index], trace.event(i));
+                }
+            }
+            boolean drained = finished.await(DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            long wallNanos = System.nanoTime() - start;
+            if (!drained) {
+                metrics.counter(UNFINISHED).add(finished.getCount());
+            }
+
+            // Кадры, запланированные до завершения последних вызовов, попадают в отчёт
+            uiExecutor.submit(() -> { }).get();
+            metrics.counter(MAX_CONCURRENT).add(maxConcurrent.get());
+            return new SimulationReport(trace.callCount(), trace.size(), wallNanos, lifecycle.registry().size(),
+                    metrics.snapshot());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            uiExecutor.shutdownNow();
+        }
+    }
+
+    private void ring(SimulatedCall call, String number) {
+        pipeline.screen(number, new ScreeningPipeline.Callback() {
+            @Override
+            public void onVerdict(ScreeningResult result) {
+                ringToVerdict.record(System.nanoTime() - call.ringAt);
+                recorder.record(result, System.currentTimeMillis());
+                verdict(call, result.isBlocked());
+            }
+
+            @Override
+            public void onEnriched(ScreeningResult result) {
+            }
+        });
+    }
+
+    private void verdict(SimulatedCall call, boolean blocked) {
+        synchronized (call) {
+            call.screened = true;
+            if (blocked) {
+                finished.countDown();
+                return;
+            }
+            if (call.hungUpWhileScreening()) {
+                abandoned.increment();
+                finished.countDown();
+                return;
+            }
+
+            if (connected.get() > 0) {
+                callWaiting.increment();
+            }
+            if (ringing.get() > 0) {
+                overlappingRings.increment();
+            }
+            ringing.incrementAndGet();
+            lifecycle.callAdded(call, System.nanoTime());
+            int concurrent = lifecycle.registry().size();
+            for (int max = maxConcurrent.get(); concurrent > max; max = maxConcurrent.get()) {
+                if (maxConcurrent.compareAndSet(max, concurrent)) {
+                    break;
+                }
+            }
+            for (int i = 0; i < call.pendingCount(); i++) {
+                apply(call, call.pending(i));
+            }
+        }
+    }
+
+    private void event(SimulatedCall call, int event) {
+        synchronized (call) {
+            if (!call.screened) {
+                call.defer(event);
+            } else if (call.ui != null) {
+                apply(call, event);
+            }
+            // События отклонённого или брошенного во время проверки вызова не применяются: вызов не появлялся
+        }
+    }
+
+    /**
+     * Применяет событие к показанному вызову. Вызывается под блокировкой вызова
+     */
+    private void apply(SimulatedCall call, int event) {
+        int state = call.state();
+        switch (event) {
+            case CallTrace.ANSWER:
+                if (state == CallStates.RINGING) {
+                    ringing.decrementAndGet();
+                    connected.incrementAndGet();
+                    call.answer();
+                    return;
+                }
+                break;
+            case CallTrace.HOLD:
+                if (state == CallStates.ACTIVE) {
+                    call.setState(CallStates.HOLDING);
+                    return;
+                }
+                break;
+            case CallTrace.UNHOLD:
+                if (state == CallStates.HOLDING) {
+                    call.setState(CallStates.ACTIVE);
+                    return;
+                }
+                break;
+            case CallTrace.HANGUP:
+            case CallTrace.REMOTE_HANGUP:
+                if (state != CallStates.DISCONNECTED) {
+                    if (state == CallStates.RINGING) {
+                        ringing.decrementAndGet();
+                        if (event == CallTrace.REMOTE_HANGUP) {
+                            missed.increment();
+                        }
+                    } else {
+                        connected.decrementAndGet();
+                    }
+                    call.disconnect();
+                    lifecycle.callRemoved(call);
+                    finished.countDown();
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        ignoredEvents.increment();
+    }
+
+    /**
+     * Экран вызова: подписка на прореженный поток состояний на потоке интерфейса
+     */
+    private final class UiPresenter implements CallLifecycle.Presenter {
+
+        @Override
+        public void show(CallHandle handle, OngoingCall call, long addedAtNanos) {
+            SimulatedCall simulated = (SimulatedCall) handle;
+            call.coalescedState(uiScheduler).subscribe(new Observer<Integer>() {
+                private boolean first = true;
+
+                @Override
+                public void onSubscribe(Disposable d) {
+                    simulated.ui = d;
+                }
+
+                @Override
+                public void onNext(Integer state) {
+                    long now = System.nanoTime();
+                    if (first) {
+                        first = false;
+                        addedToUi.record(now - addedAtNanos);
+                    } else {
+                        stateDelivery.record(now - simulated.changedAt);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+        }
+
+        @Override
+        public void dismiss(CallHandle handle) {
+            ((SimulatedCall) handle).ui.dispose();
+        }
+    }
+
+    /**
+     * Генерирует трассу или читает её из файла, воспроизводит её через конвейер с базой из 10 тысяч
+     * номеров, кэшем результатов и детектором волн и печатает отчёт
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int calls = 10_000;
+        long seed = 1L;
+        double speed = 100_000;
+        File traceFile = null;
+        boolean json = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--calls":
+                        calls = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--speed":
+                        speed = Double.parseDouble(args[++i]);
+                        break;
+                    case "--trace":
+                        traceFile = new File(args[++i]);
+                        break;
+                    case "--json":
+                        json = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Использование: CallSimulator [--calls N] [--seed N] [--speed K] "
+                    + "[--trace трасса.csv] [--json]");
+            System.exit(2);
+        }
+
+        // Зерно базы отличается от зерна трассы, иначе случайные номера трассы совпадут с номерами базы
+        Random random = new Random(seed * 31 + 17);
+        long[] spamNumbers = new long[10_000];
+        SpamNumberIndex.Builder database = new SpamNumberIndex.Builder();
+        for (int i = 0; i < spamNumbers.length; i++) {
+            spamNumbers[i] = 79_000_000_000L + random.nextInt(1_000_000_000);
+            database.addNumber(spamNumbers[i]);
+        }
+        SpamNumberIndex index = database.build();
+
+        CallTrace trace;
+        if (traceFile != null) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(traceFile), Charset.forName("UTF-8")))) {
+                trace = CallTrace.read(reader);
+            }
+        } else {
+            trace = new CallTraceGenerator(spamNumbers, 60_000, seed).generate(calls);
+        }
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        ExecutorService lookupExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService enrichmentExecutor = Executors.newSingleThreadExecutor();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> index,
+                    new PhoneNumberNormalizer(DialingPlan.RUSSIA), lookupExecutor, enrichmentExecutor, timer,
+                    TimeUnit.MILLISECONDS.toNanos(500))
+                    .rules(ScreeningRules::defaults)
+                    .cache(new VerdictCache(512, TimeUnit.HOURS.toMillis(6), System::currentTimeMillis,
+                            metrics.counter("verdict_cache.hit"), metrics.counter("verdict_cache.miss"),
+                            metrics.counter("verdict_cache.eviction")))
+                    .flood(new FloodDetector(3, 10, TimeUnit.MINUTES.toMillis(10), TimeUnit.HOURS.toMillis(1),
+                            metrics.counter("flood.flagged")))
+                    .build();
+            SimulationReport report = new CallSimulator(pipeline, metrics, null, new CallHistory(4096))
+                    .run(trace, speed);
+            System.out.println(json ? report.toJson() : report.toString());
+        } finally {
+            lookupExecutor.shutdownNow();
+            enrichmentExecutor.shutdownNow();
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.dialertest.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Трасса звонков для симулятора: события по времени и номера звонков. События хранятся в массивах
+ * примитивов, поэтому трасса из миллиона событий занимает около 13 МБ и не нагружает сборщик мусора
+ * во время воспроизведения.
+ *
+ * Текстовый формат - CSV со строкой заголовка time_ms,call,event,number. Номер указывается только
+ * в строке ring, номер скрытого вызова - пустая строка. Пример:
+ * <pre>
+ * time_ms,call,event,number
+ * 0,0,ring,+79001234567
+ * 3500,0,answer,
+ * 61000,0,hangup,
+ * </pre>
+ */
+public final class CallTrace {
+
+    /**
+     * Входящий вызов: проверка номера и при пропуске - появление вызова
+     */
+    public static final int RING = 0;
+
+    /**
+     * Пользователь отвечает на вызов
+     */
+    public static final int ANSWER = 1;
+
+    /**
+     * Пользователь ставит вызов на удержание
+     */
+    public static final int HOLD = 2;
+
+    /**
+     * Пользователь снимает вызов с удержания
+     */
+    public static final int UNHOLD = 3;
+
+    /**
+     * Пользователь завершает вызов
+     */
+    public static final int HANGUP = 4;
+
+    /**
+     * Звонящий кладёт трубку
+     */
+    public static final int REMOTE_HANGUP = 5;
+
+    private static final String[] EVENT_NAMES = {"ring", "answer", "hold", "unhold", "hangup", "remote_hangup"};
+
+    private static final String HEADER = "time_ms,call,event,number";
+
+    private final long[] times;
+    private final int[] calls;
+    private final byte[] events;
+    private final String[] numbers;
+
+    private CallTrace(long[] times, int[] calls, byte[] events, String[] numbers) {
+        this.times = times;
+        this.calls = calls;
+        this.events = events;
+        this.numbers = numbers;
+    }
+
+    /**
+     * Количество событий
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Количество звонков. Звонки нумеруются с нуля в порядке их первого события ring
+     */
+    public int callCount() {
+        return numbers.length;
+    }
+
+    /**
+     * Время события от начала трассы, мс
+     */
+    public long time(int event) {
+        return times[event];
+    }
+
+    public int call(int event) {
+        return calls[event];
+    }
+
+    /**
+     * Тип события, одна из констант {@link #RING} ... {@link #REMOTE_HANGUP}
+     */
+    public int event(int event) {
+        return events[event];
+    }
+
+    /**
+     * Номер звонка в том виде, в каком он пришёл бы от системы, или null для скрытого номера
+     */
+    public String number(int call) {
+        return numbers[call];
+    }
+
+    /**
+     * Длительность трассы, мс
+     */
+    public long durationMillis() {
+        return times.length == 0 ? 0L : times[times.length - 1];
+    }
+
+    public static String eventName(int event) {
+        return EVENT_NAMES[event];
+    }
+
+    /**
+     * Записывает трассу в CSV
+     */
+    public void write(Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        writer.write(HEADER);
+        writer.write('\n');
+        for (int i = 0; i < times.length; i++) {
+            line.setLength(0);
+            line.append(times[i]).append(',').append(calls[i]).append(',').append(EVENT_NAMES[events[i]]).append(',');
+            if (events[i] == RING && numbers[calls[i]] != null) {
+                line.append(numbers[calls[i]]);
+            }
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * Читает трассу из CSV. Строка заголовка необязательна, пустые строки пропускаются
+     * @throws IllegalArgumentException Если строка некорректна, события идут не по времени
+     *                                  или у звонка нет события ring до остальных событий
+     */
+    public static CallTrace read(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || (lineNumber == 1 && line.equals(HEADER))) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Строка " + lineNumber + ": ожидается 4 поля: " + line);
+            }
+            int event = Arrays.asList(EVENT_NAMES).indexOf(fields[2]);
+            if (event < 0) {
+                throw new IllegalArgumentException("Строка " + lineNumber + ": неизвестное событие " + fields[2]);
+            }
+            try {
+                long time = Long.parseLong(fields[0]);
+                int call = Integer.parseInt(fields[1]);
+                if (event == RING) {
+                    builder.ring(time, call, fields[3].isEmpty() ? null : fields[3]);
+                } else {
+                    builder.add(time, call, event);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Строка " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Построитель трассы. События добавляются в порядке времени
+     */
+    public static final class Builder {
+
+        private long[] times = new long[256];
+        private int[] calls = new int[256];
+        private byte[] events = new byte[256];
+        private String[] numbers = new String[64];
+        private int size;
+        private int callCount;
+
+        /**
+         * Добавляет входящий вызов. Звонки нумеруются подряд с нуля
+         * @param number Номер или null для скрытого номера
+         */
+        public Builder ring(long timeMillis, int call, String number) {
+            if (call != callCount) {
+                throw new IllegalArgumentException("Ожидается звонок " + callCount + ", а не " + call);
+            }
+            if (callCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, callCount * 2);
+            }
+            numbers[callCount++] = number;
+            return append(timeMillis, call, RING);
+        }
+
+        /**
+         * Добавляет событие звонка, у которого уже было событие ring
+         */
+        public Builder add(long timeMillis, int call, int event) {
+            if (event <= RING || event > REMOTE_HANGUP) {
+                throw new IllegalArgumentException("Некорректное событие " + event);
+            }
+            if (call < 0 || call >= callCount) {
+                throw new IllegalArgumentException("Событие звонка " + call + " до его начала");
+            }
+            return append(timeMillis, call, event);
+        }
+
+        private Builder append(long timeMillis, int call, int event) {
+            if (timeMillis < 0 || (size > 0 && timeMillis < times[size - 1])) {
+                throw new IllegalArgumentException("Событие в " + timeMillis + " мс идёт не по времени");
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                calls = Arrays.copyOf(calls, size * 2);
+                events = Arrays.copyOf(events, size * 2);
+            }
+            times[size] = timeMillis;
+            calls[size] = call;
+            events[size] = (byte) event;
+            size++;
+            return this;
+        }
+
+        public CallTrace build() {
+            return new CallTrace(Arrays.copyOf(times, size), Arrays.copyOf(calls, size),
+                    Arrays.copyOf(events, size), Arrays.copyOf(numbers, callCount));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.dialertest.simulation;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Генератор синтетических трасс звонков. Звонки приходят с экспоненциальными промежутками и следуют
+ * одному из сценариев:
+ * <ul>
+ *     <li>обычный звонок: ответ через 2-10 с, разговор до 5 минут;</li>
+ *     <li>пропущенный звонок: звонящий кладёт трубку через 10-40 с;</li>
+ *     <li>отклонённый звонок: пользователь сбрасывает его через 1-5 с;</li>
+ *     <li>быстрый сброс: звонящий кладёт трубку через 20-800 мс, часто ещё до решения по номеру;</li>
+ *     <li>ожидание вызова: во время разговора приходит второй звонок, первый ставится на удержание,
+ *     после второго разговора снимается с него. Иногда второй звонящий не дожидается ответа;</li>
+ *     <li>серия звонков волны: 3-6 звонков в пределах 100 мс с соседних номеров одного блока.</li>
+ * </ul>
+ * Номера обычных звонков в части случаев берутся из списка нежелательных, повторяют уже звонившие
+ * номера или скрыты. Трасса определяется только зерном и параметрами генератора.
+ */
+public final class CallTraceGenerator {
+
+    private static final int NORMAL = 0;
+    private static final int MISSED = 1;
+    private static final int DECLINED = 2;
+    private static final int RAPID_HANGUP = 3;
+    private static final int CALL_WAITING = 4;
+    private static final int WAVE = 5;
+
+    /**
+     * Доли сценариев в процентах, в порядке констант
+     */
+    private static final int[] SCENARIO_PERCENT = {50, 15, 5, 10, 10, 10};
+
+    /**
+     * Количество блоков, из которых идут волны. Блоков мало, поэтому волны из одного блока
+     * повторяются и детектор волн успевает их заметить
+     */
+    private static final int WAVE_BLOCKS = 2;
+
+    private final long[] spamNumbers;
+    private final long meanGapMillis;
+    private final Random random;
+    private final long[] waveBlocks = new long[WAVE_BLOCKS];
+
+    /**
+     * Уже звонившие номера для повторных звонков
+     */
+    private final long[] recent = new long[64];
+    private int recentCount;
+
+    /**
+     * События до сортировки: ключ (время << 24 | порядковый номер), звонок и тип события
+     */
+    private long[] keys = new long[1024];
+    private int[] calls = new int[1024];
+    private byte[] events = new byte[1024];
+    private String[] numbers = new String[256];
+    private int size;
+    private int callCount;
+
+    /**
+     * @param spamNumbers Нормализованные номера из базы, которые звонят в части обычных сценариев.
+     *                    Может быть пустым
+     * @param meanGapMillis Средний промежуток между началами сценариев, мс
+     * @param seed Зерно генератора случайных чисел
+     */
+    public CallTraceGenerator(long[] spamNumbers, long meanGapMillis, long seed) {
+        if (meanGapMillis <= 0) {
+            throw new IllegalArgumentException("Некорректный промежуток между звонками: " + meanGapMillis);
+        }
+        this.spamNumbers = spamNumbers.clone();
+        this.meanGapMillis = meanGapMillis;
+        this.random = new Random(seed);
+        for (int i = 0; i < WAVE_BLOCKS; i++) {
+            waveBlocks[i] = 79_000_000L + random.nextInt(1_000_000);
+        }
+    }
+
+    /**
+     * Генерирует трассу не меньше чем из calls звонков. Последний сценарий дописывается целиком,
+     * поэтому звонков может оказаться на несколько больше
+     */
+    public CallTrace generate(int calls) {
+        size = 0;
+        callCount = 0;
+        long time = 0L;
+        while (callCount < calls) {
+            time += (long) (-Math.log(1.0 - random.nextDouble()) * meanGapMillis);
+            scenario(time, pickScenario());
+        }
+        return build();
+    }
+
+    private int pickScenario() {
+        int percent = random.nextInt(100);
+        for (int scenario = 0; scenario < SCENARIO_PERCENT.length; scenario++) {
+            percent -= SCENARIO_PERCENT[scenario];
+            if (percent < 0) {
+                return scenario;
+            }
+        }
+        return NORMAL;
+    }
+
+    private void scenario(long time, int scenario) {
+        switch (scenario) {
+            case MISSED:
+                add(time + between(10_000, 40_000), ring(time, callerNumber()), CallTrace.REMOTE_HANGUP);
+                break;
+            case DECLINED:
+                add(time + between(1_000, 5_000), ring(time, callerNumber()), CallTrace.HANGUP);
+                break;
+            case RAPID_HANGUP:
+                add(time + between(20, 800), ring(time, callerNumber()), CallTrace.REMOTE_HANGUP);
+                break;
+            case CALL_WAITING:
+                callWaiting(time);
+                break;
+            case WAVE:
+                wave(time);
+                break;
+            default:
+                conversation(ring(time, callerNumber()), time + between(2_000, 10_000), 10_000, 300_000);
+                break;
+        }
+    }
+
+    /**
+     * Ответ на звонок и разговор, который завершает одна из сторон
+     * @return Время завершения
+     */
+    private long conversation(int call, long answerAt, int minMillis, int maxMillis) {
+        add(answerAt, call, CallTrace.ANSWER);
+        long end = answerAt + between(minMillis, maxMillis);
+        add(end, call, random.nextBoolean() ? CallTrace.HANGUP : CallTrace.REMOTE_HANGUP);
+        return end;
+    }
+
+    private void callWaiting(long time) {
+        int first = ring(time, callerNumber());
+        long answered = time + between(2_000, 6_000);
+        add(answered, first, CallTrace.ANSWER);
+
+        long secondRing = answered + between(5_000, 60_000);
+        int second = ring(secondRing, callerNumber());
+        long resume;
+        if (random.nextInt(10) < 3) {
+            // Второй звонящий не дожидается ответа, разговор продолжается без удержания
+            resume = secondRing + between(5_000, 20_000);
+            add(resume, second, CallTrace.REMOTE_HANGUP);
+        } else {
+            long switchAt = secondRing + between(2_000, 6_000);
+            add(switchAt, first, CallTrace.HOLD);
+            long secondEnd = conversation(second, switchAt, 10_000, 120_000);
+            resume = secondEnd + between(500, 2_000);
+            add(resume, first, CallTrace.UNHOLD);
+        }
+        add(resume + between(5_000, 60_000), first, random.nextBoolean() ? CallTrace.HANGUP : CallTrace.REMOTE_HANGUP);
+    }
+
+    /**
+     * Серия почти одновременных звонков с соседних номеров. На один из них иногда отвечают
+     */
+    private void wave(long time) {
+        long block = waveBlocks[random.nextInt(WAVE_BLOCKS)];
+        int count = 3 + random.nextInt(4);
+        int answered = random.nextInt(4) == 0 ? random.nextInt(count) : -1;
+        long ringAt = time;
+        for (int i = 0; i < count; i++) {
+            String number = "+" + (block * 1000L + random.nextInt(1000));
+            int call = ring(ringAt, number);
+            if (i == answered) {
+                conversation(call, ringAt + between(1_000, 5_000), 5_000, 30_000);
+            } else {
+                add(ringAt + between(1_000, 20_000), call, CallTrace.REMOTE_HANGUP);
+            }
+            ringAt += random.nextInt(100 / count + 1);
+        }
+    }
+
+    /**
+     * Номер звонящего: 15% из базы, 10% повторных, 5% скрытых, остальные - случайные мобильные
+     * в одной из записей, встречающихся в Call.Details
+     */
+    private String callerNumber() {
+        int kind = random.nextInt(100);
+        long key;
+        if (kind < 15 && spamNumbers.length > 0) {
+            key = spamNumbers[random.nextInt(spamNumbers.length)];
+        } else if (kind < 25 && recentCount > 0) {
+            key = recent[random.nextInt(Math.min(recentCount, recent.length))];
+        } else if (kind < 30) {
+            return null;
+        } else {
+            key = 79_000_000_000L + random.nextInt(1_000_000_000);
+            recent[recentCount++ % recent.length] = key;
+        }
+        String digits = Long.toString(key);
+        return random.nextBoolean() || !digits.startsWith("7") ? "+" + digits : "8" + digits.substring(1);
+    }
+
+    private long between(int min, int max) {
+        return min + random.nextInt(max - min + 1);
+    }
+
+    private int ring(long time, String number) {
+        if (callCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, callCount * 2);
+        }
+        numbers[callCount] = number;
+        add(time, callCount, CallTrace.RING);
+        return callCount++;
+    }
+
+    private void add(long time, int call, int event) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            calls = Arrays.copyOf(calls, size * 2);
+            events = Arrays.copyOf(events, size * 2);
+        }
+        // Порядковый номер разделяет события с одинаковым временем в порядке их добавления
+        keys[size] = time << 24 | size;
+        calls[size] = call;
+        events[size] = (byte) event;
+        size++;
+    }
+
+    /**
+     * Сортирует события по времени и перенумеровывает звонки в порядке их начала
+     */
+    private CallTrace build() {
+        if (size > 1 << 24) {
+            throw new IllegalStateException("Слишком много событий: " + size);
+        }
+        long[] sorted = Arrays.copyOf(keys, size);
+        Arrays.sort(sorted);
+        int[] renumbered = new int[callCount];
+        int nextCall = 0;
+        CallTrace.Builder builder = new CallTrace.Builder();
+        for (long key : sorted) {
+            int index = (int) (key & ((1 << 24) - 1));
+            long time = key >>> 24;
+            int call = calls[index];
+            if (events[index] == CallTrace.RING) {
+                renumbered[call] = nextCall;
+                builder.ring(time, nextCall++, numbers[call]);
+            } else {
+                builder.add(time, renumbered[call], events[index]);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.dialertest.simulation;
+
+import com.example.dialertest.call.CallHandle;
+import com.example.dialertest.call.CallStates;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Вызов симулятора. Вместо системы телефонии состояние меняет поток воспроизведения трассы или колбэк
+ * конвейера проверки. Поля симулятора изменяются только под блокировкой объекта вызова
+ */
+final class SimulatedCall implements CallHandle {
+
+    private final String id;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile int state = CallStates.RINGING;
+
+    /**
+     * Время последней смены состояния по System.nanoTime(), по нему измеряется доставка состояния
+     */
+    volatile long changedAt;
+
+    /**
+     * Время события ring по System.nanoTime()
+     */
+    final long ringAt;
+
+    /**
+     * Решение по номеру получено
+     */
+    boolean screened;
+
+    /**
+     * События трассы, пришедшие до решения по номеру
+     */
+    private int[] pending = new int[4];
+    private int pendingCount;
+
+    /**
+     * Подписка экрана вызова на его состояние
+     */
+    Disposable ui;
+
+    SimulatedCall(int index, long ringAt) {
+        this.id = "sim-" + index;
+        this.ringAt = ringAt;
+        this.changedAt = ringAt;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public int state() {
+        return state;
+    }
+
+    @Override
+    public void answer() {
+        setState(CallStates.ACTIVE);
+    }
+
+    @Override
+    public void disconnect() {
+        setState(CallStates.DISCONNECTED);
+    }
+
+    @Override
+    public void registerListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unregisterListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    void setState(int newState) {
+        changedAt = System.nanoTime();
+        state = newState;
+        for (Listener listener : listeners) {
+            listener.onStateChanged(this, newState);
+        }
+    }
+
+    void defer(int event) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = event;
+    }
+
+    int pendingCount() {
+        return pendingCount;
+    }
+
+    int pending(int index) {
+        return pending[index];
+    }
+
+    /**
+     * Есть ли среди отложенных событий завершение вызова
+     */
+    boolean hungUpWhileScreening() {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pending[i] == CallTrace.HANGUP || pending[i] == CallTrace.REMOTE_HANGUP) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.dialertest.simulation;
+
+import com.example.dialertest.metrics.HistogramSnapshot;
+import com.example.dialertest.metrics.MetricsSnapshot;
+
+import java.util.Locale;
+
+/**
+ * Итоги воспроизведения трассы: пропускная способность, счётчики и распределения задержек
+ * симулятора и конвейера проверки
+ */
+public final class SimulationReport {
+
+    private final int calls;
+    private final int events;
+    private final long wallNanos;
+    private final int leftInRegistry;
+    private final MetricsSnapshot metrics;
+
+    SimulationReport(int calls, int events, long wallNanos, int leftInRegistry, MetricsSnapshot metrics) {
+        this.calls = calls;
+        this.events = events;
+        this.wallNanos = wallNanos;
+        this.leftInRegistry = leftInRegistry;
+        this.metrics = metrics;
+    }
+
+    public int calls() {
+        return calls;
+    }
+
+    public int events() {
+        return events;
+    }
+
+    /**
+     * Время воспроизведения от первого события до завершения последнего звонка, нс
+     */
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * Вызовы, оставшиеся в реестре после воспроизведения. У корректной трассы их нет
+     */
+    public int leftInRegistry() {
+        return leftInRegistry;
+    }
+
+    public double callsPerSecond() {
+        return calls * 1e9 / Math.max(1L, wallNanos);
+    }
+
+    public double eventsPerSecond() {
+        return events * 1e9 / Math.max(1L, wallNanos);
+    }
+
+    public MetricsSnapshot metrics() {
+        return metrics;
+    }
+
+    /**
+     * Значение счётчика или 0, если счётчик не создавался
+     */
+    public long counter(String name) {
+        Long value = metrics.counters().get(name);
+        return value == null ? 0L : value;
+    }
+
+    /**
+     * Снимок гистограммы или null, если в неё ничего не записывалось
+     */
+    public HistogramSnapshot histogram(String name) {
+        for (HistogramSnapshot histogram : metrics.histograms()) {
+            if (histogram.name().equals(name)) {
+                return histogram;
+            }
+        }
+        return null;
+    }
+
+    public String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"calls\":%d,\"events\":%d,\"wall_ms\":%.3f,\"calls_per_second\":%.1f,"
+                        + "\"events_per_second\":%.1f,\"left_in_registry\":%d,\"metrics\":%s}",
+                calls, events, wallNanos / 1e6, callsPerSecond(), eventsPerSecond(), leftInRegistry,
+                metrics.toJson());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Звонков: %d, событий: %d за %.1f мс (%.0f звонков/с, %.0f событий/с)\n"
+                        + "Осталось в реестре: %d\n\n",
+                calls, events, wallNanos / 1e6, callsPerSecond(), eventsPerSecond(), leftInRegistry) + metrics;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.dialertest.call;
+
+import com.example.dialertest.lifecycle.ResourceScope;
+import com.example.dialertest.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тысячи циклов вызова через {@link CallLifecycle} с экранами, которые подписываются на долгоживущий реестр
+ * и регистрируют слушатель, как CallActivity и окно с информацией о звонке. После всех циклов не должно остаться
+ * ни вызовов в реестре, ни слушателей, ни экранов в куче
+ */
+public class CallLifecycleLeakTest {
+
+    private static final int CYCLES = 5_000;
+
+    /**
+     * Размер экрана, чтобы утечка экранов была заметна по росту кучи
+     */
+    private static final int SCREEN_BYTES = 32 * 1024;
+
+    @Test
+    public void callCycles_releaseScreensListenersAndSubscriptions() throws InterruptedException {
+        Harness harness = new Harness(true);
+        harness.run(1_000);
+        long usedBefore = usedHeapAfterGc();
+        harness.run(CYCLES);
+        long growth = usedHeapAfterGc() - usedBefore;
+
+        assertEquals(0, harness.registry.size());
+        assertEquals(0, harness.phoneListeners.size());
+        assertEquals(0, harness.scopes.size());
+        assertTrue("область сервиса " + harness.serviceScope.size(), harness.serviceScope.size() <= 32);
+        for (FakeCallHandle call : harness.lastCalls) {
+            assertTrue(call.listeners.isEmpty());
+        }
+        assertEquals(0, harness.retainedScreens());
+        // Удержанные экраны заняли бы больше 150 МБ
+        assertTrue("рост кучи " + growth / 1024 + " КБ", growth < 16L * 1024 * 1024);
+    }
+
+    /**
+     * Проверка самого теста: если области экранов не закрываются, подписка на реестр удерживает экраны
+     */
+    @Test
+    public void unclosedScopes_retainScreens() throws InterruptedException {
+        Harness harness = new Harness(false);
+        harness.run(200);
+
+        assertEquals(0, harness.registry.size());
+        assertTrue(harness.retainedScreens() > 0);
+        assertFalse(harness.phoneListeners.isEmpty());
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Экран вызова: держит данные разметки и получает состояние вызова и список вызовов
+     */
+    private static final class Screen {
+        final byte[] views = new byte[SCREEN_BYTES];
+        int state;
+        int activeCalls;
+    }
+
+    private static final class Harness implements CallLifecycle.Presenter {
+
+        final CallRegistry registry = new CallRegistry();
+        final TestScheduler frames = new TestScheduler();
+
+        /**
+         * Слушатели системной службы, которая живёт дольше экранов, как TelephonyManager
+         */
+        final CopyOnWriteArrayList<Object> phoneListeners = new CopyOnWriteArrayList<>();
+
+        /**
+         * Область сервиса: в неё добавляется подписка на каждый вызов, которая завершается вместе с вызовом
+         */
+        final ResourceScope serviceScope = new ResourceScope("service");
+
+        final Map<String, ResourceScope> scopes = new HashMap<>();
+        final List<WeakReference<Screen>> sampledScreens = new ArrayList<>();
+        final List<FakeCallHandle> lastCalls = new ArrayList<>();
+        final CallLifecycle lifecycle = new CallLifecycle(registry, this, new MetricsRegistry().counter("added"));
+        private final boolean closeScopes;
+        private int nextId;
+
+        Harness(boolean closeScopes) {
+            this.closeScopes = closeScopes;
+        }
+
+        @Override
+        public void show(CallHandle handle, OngoingCall call, long addedAtNanos) {
+            Screen screen = new Screen();
+            ResourceScope scope = new ResourceScope(handle.id());
+            scope.add(call.coalescedState(frames).subscribe(state -> screen.state = state));
+            scope.add(registry.activeCalls().subscribe(calls -> screen.activeCalls = calls.size()));
+            Object phoneListener = new Object() {
+                @Override
+                public String toString() {
+                    return "слушатель экрана " + screen.state;
+                }
+            };
+            phoneListeners.add(phoneListener);
+            scope.onRelease(() -> phoneListeners.remove(phoneListener));
+            scopes.put(handle.id(), scope);
+
+            serviceScope.add(call.state().filter(state -> state == CallStates.DISCONNECTED).subscribe());
+            if (nextId % 50 == 0) {
+                sampledScreens.add(new WeakReference<>(screen));
+            }
+        }
+
+        @Override
+        public void dismiss(CallHandle handle) {
+            ResourceScope scope = scopes.remove(handle.id());
+            if (closeScopes) {
+                scope.close();
+            }
+        }
+
+        /**
+         * Циклы вызова. Каждый третий вызов приходит, пока предыдущий ещё идёт (ожидание вызова)
+         */
+        void run(int cycles) {
+            ArrayDeque<FakeCallHandle> ongoing = new ArrayDeque<>();
+            lastCalls.clear();
+            for (int i = 0; i < cycles; i++) {
+                FakeCallHandle call = new FakeCallHandle("c" + nextId, CallStates.RINGING);
+                lifecycle.callAdded(call, System.nanoTime());
+                nextId++;
+                ongoing.add(call);
+                frames.triggerActions();
+
+                call.setState(CallStates.ACTIVE);
+                if (i % 3 == 0) {
+                    call.setState(CallStates.HOLDING);
+                    frames.triggerActions();
+                    continue;
+                }
+                frames.triggerActions();
+                while (!ongoing.isEmpty()) {
+                    hangUp(ongoing.poll());
+                }
+            }
+            while (!ongoing.isEmpty()) {
+                hangUp(ongoing.poll());
+            }
+        }
+
+        private void hangUp(FakeCallHandle call) {
+            call.setState(CallStates.DISCONNECTED);
+            frames.triggerActions();
+            lifecycle.callRemoved(call);
+            if (lastCalls.size() < 16) {
+                lastCalls.add(call);
+            }
+        }
+
+        /**
+         * Количество отобранных экранов, которые остались в куче после сборки мусора
+         */
+        int retainedScreens() throws InterruptedException {
+            int retained = 0;
+            for (int attempt = 0; attempt < 10; attempt++) {
+                System.gc();
+                Thread.sleep(20);
+                retained = 0;
+                for (WeakReference<Screen> screen : sampledScreens) {
+                    if (screen.get() != null) {
+                        retained++;
+                    }
+                }
+                if (retained == 0) {
+                    return 0;
+                }
+            }
+            return retained;
+        }
+    }
+}
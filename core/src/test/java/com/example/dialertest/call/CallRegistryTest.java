@@ -0,0 +1,196 @@
+package com.example.dialertest.call;
+
+import com.example.dialertest.metrics.LatencyHistogram;
+import com.example.dialertest.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.*;
+
+public class CallRegistryTest {
+
+    @Test
+    public void add_givesEachCallItsOwnStateStream() {
+        CallRegistry registry = new CallRegistry();
+        FakeCallHandle first = new FakeCallHandle("1", CallStates.RINGING);
+        FakeCallHandle second = new FakeCallHandle("2", CallStates.RINGING);
+
+        TestObserver<Integer> firstStates = registry.add(first).state().test();
+        first.setState(CallStates.ACTIVE);
+        TestObserver<Integer> secondStates = registry.add(second).state().test();
+        second.setState(CallStates.DISCONNECTED);
+
+        firstStates.assertValues(CallStates.RINGING, CallStates.ACTIVE);
+        secondStates.assertValues(CallStates.RINGING, CallStates.DISCONNECTED);
+        assertEquals(CallStates.ACTIVE, registry.get("1").currentState());
+        assertEquals(CallStates.DISCONNECTED, registry.get("2").currentState());
+    }
+
+    @Test
+    public void answer_andHangup_goToTheRightCall() {
+        CallRegistry registry = new CallRegistry();
+        FakeCallHandle first = new FakeCallHandle("1", CallStates.HOLDING);
+        FakeCallHandle second = new FakeCallHandle("2", CallStates.RINGING);
+        registry.add(first);
+        registry.add(second);
+
+        registry.get("2").answer();
+        registry.get("1").hangup();
+
+        assertEquals(CallStates.DISCONNECTED, first.state());
+        assertEquals(CallStates.ACTIVE, second.state());
+    }
+
+    @Test
+    public void remove_unregistersCallbackAndCompletesStream() {
+        CallRegistry registry = new CallRegistry();
+        FakeCallHandle call = new FakeCallHandle("1", CallStates.RINGING);
+        TestObserver<Integer> states = registry.add(call).state().test();
+        assertEquals(1, call.listeners.size());
+
+        assertTrue(registry.remove(call));
+        call.setState(CallStates.ACTIVE);
+
+        assertTrue(call.listeners.isEmpty());
+        assertNull(registry.get("1"));
+        assertFalse(registry.remove(call));
+        states.assertValues(CallStates.RINGING);
+        states.assertComplete();
+    }
+
+    @Test
+    public void add_withSameId_replacesPreviousCall() {
+        CallRegistry registry = new CallRegistry();
+        FakeCallHandle stale = new FakeCallHandle("1", CallStates.RINGING);
+        FakeCallHandle fresh = new FakeCallHandle("1", CallStates.DIALING);
+        TestObserver<Integer> staleStates = registry.add(stale).state().test();
+        registry.add(fresh);
+
+        assertTrue(stale.listeners.isEmpty());
+        staleStates.assertComplete();
+        assertEquals(1, registry.size());
+
+        // Удаление прежнего вызова не должно затронуть новый с тем же идентификатором
+        assertFalse(registry.remove(stale));
+        assertEquals(CallStates.DIALING, registry.get("1").currentState());
+    }
+
+    @Test
+    public void add_keepsStateChangedWhileRegisteringCallback() {
+        CallRegistry registry = new CallRegistry();
+        FakeCallHandle call = new FakeCallHandle("1", CallStates.RINGING);
+        // Ответ приходит, когда колбэк реестра ещё не добавлен, поэтому о нём сообщает только call.state()
+        call.onRegister = () -> call.setState(CallStates.ACTIVE);
+
+        OngoingCall ongoingCall = registry.add(call);
+
+        assertEquals(CallStates.ACTIVE, ongoingCall.currentState());
+        ongoingCall.state().test().assertValue(CallStates.ACTIVE);
+    }
+
+    @Test
+    public void lifecycle_withSameId_dismissesPreviousCall() {
+        List<String> dismissed = new ArrayList<>();
+        CallLifecycle lifecycle = new CallLifecycle(new CallRegistry(), new CallLifecycle.Presenter() {
+            @Override
+            public void show(CallHandle handle, OngoingCall call, long addedAtNanos) {
+            }
+
+            @Override
+            public void dismiss(CallHandle handle) {
+                dismissed.add(handle.id() + "/" + handle.state());
+            }
+        }, new MetricsRegistry().counter("call.added"));
+        FakeCallHandle stale = new FakeCallHandle("1", CallStates.RINGING);
+        FakeCallHandle fresh = new FakeCallHandle("1", CallStates.DIALING);
+
+        lifecycle.callAdded(stale, 0L);
+        lifecycle.callAdded(fresh, 0L);
+
+        assertEquals(1, dismissed.size());
+        assertEquals("1/" + CallStates.RINGING, dismissed.get(0));
+        assertTrue(stale.listeners.isEmpty());
+        assertEquals(CallStates.DIALING, lifecycle.registry().get("1").currentState());
+    }
+
+    @Test
+    public void activeCalls_followsAddsAndRemovals() {
+        CallRegistry registry = new CallRegistry();
+        TestObserver<List<OngoingCall>> active = registry.activeCalls().test();
+        FakeCallHandle first = new FakeCallHandle("1", CallStates.ACTIVE);
+        FakeCallHandle second = new FakeCallHandle("2", CallStates.RINGING);
+
+        registry.add(first);
+        registry.add(second);
+        registry.remove(first);
+
+        active.assertValueCount(4);
+        assertEquals(0, active.values().get(0).size());
+        assertEquals(2, active.values().get(2).size());
+        assertEquals("1", active.values().get(2).get(0).id());
+        assertEquals(1, active.values().get(3).size());
+        assertEquals("2", active.values().get(3).get(0).id());
+    }
+
+    @Test
+    public void transitionGaps_areRecordedBetweenStateChanges() {
+        LatencyHistogram gaps = new MetricsRegistry().histogram("call.state_gap");
+        CallRegistry registry = new CallRegistry(gaps);
+        FakeCallHandle call = new FakeCallHandle("1", CallStates.DIALING);
+        registry.add(call);
+
+        call.setState(CallStates.ACTIVE);
+        call.setState(CallStates.ACTIVE);
+        call.setState(CallStates.DISCONNECTED);
+
+        // Первое состояние не образует промежутка, а повтор состояния не считается сменой
+        assertEquals(2, gaps.snapshot().count());
+    }
+
+    @Test
+    public void concurrentAddsAndRemovals_leaveNoCallbacksBehind() throws Exception {
+        CallRegistry registry = new CallRegistry();
+        int threads = 8;
+        int callsPerThread = 1_000;
+        FakeCallHandle[][] handles = new FakeCallHandle[threads][callsPerThread];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < callsPerThread; i++) {
+                    FakeCallHandle call = new FakeCallHandle(thread + "-" + i, CallStates.RINGING);
+                    handles[thread][i] = call;
+                    registry.add(call);
+                    call.setState(CallStates.ACTIVE);
+                    registry.remove(call);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, registry.size());
+        for (FakeCallHandle[] row : handles) {
+            for (FakeCallHandle call : row) {
+                assertTrue(call.listeners.isEmpty());
+            }
+        }
+        assertTrue(registry.activeCalls().blockingFirst().isEmpty());
+    }
+}
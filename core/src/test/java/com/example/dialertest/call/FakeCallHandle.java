@@ -0,0 +1,63 @@
+package com.example.dialertest.call;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Поддельный вызов для тестов: хранит состояние и зарегистрированные колбэки
+ */
+final class FakeCallHandle implements CallHandle {
+
+    private final String id;
+    private volatile int state;
+    final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Выполняется при регистрации колбэка до его добавления, например чтобы сменить состояние в этот момент
+     */
+    Runnable onRegister;
+
+    FakeCallHandle(String id, int state) {
+        this.id = id;
+        this.state = state;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public int state() {
+        return state;
+    }
+
+    @Override
+    public void answer() {
+        setState(CallStates.ACTIVE);
+    }
+
+    @Override
+    public void disconnect() {
+        setState(CallStates.DISCONNECTED);
+    }
+
+    @Override
+    public void registerListener(Listener listener) {
+        if (onRegister != null) {
+            onRegister.run();
+        }
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unregisterListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    void setState(int newState) {
+        state = newState;
+        for (Listener listener : listeners) {
+            listener.onStateChanged(this, newState);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.dialertest.call;
+
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.*;
+
+public class FrameCoalescerTest {
+
+    @Test
+    public void coalesce_emitsLatestValueOncePerFrame() {
+        TestScheduler frames = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestObserver<Integer> observer = FrameCoalescer.coalesce(source, frames).test();
+
+        source.onNext(CallStates.NEW);
+        source.onNext(CallStates.CONNECTING);
+        source.onNext(CallStates.RINGING);
+        observer.assertNoValues();
+
+        frames.triggerActions();
+        observer.assertValues(CallStates.RINGING);
+
+        source.onNext(CallStates.ACTIVE);
+        frames.triggerActions();
+        observer.assertValues(CallStates.RINGING, CallStates.ACTIVE);
+    }
+
+    @Test
+    public void coalesce_skipsFramesWithUnchangedValue() {
+        TestScheduler frames = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestObserver<Integer> observer = FrameCoalescer.coalesce(source, frames).test();
+
+        source.onNext(CallStates.RINGING);
+        frames.triggerActions();
+        // Смена состояния туда и обратно в пределах кадра не должна перерисовывать интерфейс
+        source.onNext(CallStates.ACTIVE);
+        source.onNext(CallStates.RINGING);
+        frames.triggerActions();
+        source.onNext(CallStates.RINGING);
+        frames.triggerActions();
+
+        observer.assertValues(CallStates.RINGING);
+    }
+
+    @Test
+    public void coalesce_deliversLastValueBeforeCompletion() {
+        TestScheduler frames = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestObserver<Integer> observer = FrameCoalescer.coalesce(source, frames).test();
+
+        source.onNext(CallStates.ACTIVE);
+        source.onNext(CallStates.DISCONNECTED);
+        source.onComplete();
+        observer.assertNotComplete();
+
+        frames.triggerActions();
+        observer.assertValues(CallStates.DISCONNECTED);
+        observer.assertComplete();
+    }
+
+    @Test
+    public void coalesce_stopsAfterDispose() {
+        TestScheduler frames = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestObserver<Integer> observer = FrameCoalescer.coalesce(source, frames).test();
+
+        source.onNext(CallStates.RINGING);
+        observer.dispose();
+        frames.triggerActions();
+
+        observer.assertNoValues();
+        assertFalse(source.hasObservers());
+    }
+
+    @Test
+    public void coalescedState_ofRegisteredCall_collapsesSetupChurn() {
+        TestScheduler frames = new TestScheduler();
+        CallRegistry registry = new CallRegistry();
+        FakeCallHandle call = new FakeCallHandle("1", CallStates.NEW);
+        TestObserver<Integer> observer = registry.add(call).coalescedState(frames).test();
+
+        for (int i = 0; i < 1_000; i++) {
+            call.setState(i % 2 == 0 ? CallStates.CONNECTING : CallStates.DIALING);
+        }
+        call.setState(CallStates.DIALING);
+        frames.triggerActions();
+        call.setState(CallStates.ACTIVE);
+        frames.triggerActions();
+
+        observer.assertValues(CallStates.DIALING, CallStates.ACTIVE);
+    }
+
+    @Test
+    public void state_ofRegisteredCall_skipsRepeatedStates() {
+        CallRegistry registry = new CallRegistry();
+        FakeCallHandle call = new FakeCallHandle("1", CallStates.RINGING);
+        TestObserver<Integer> observer = registry.add(call).state().test();
+
+        call.setState(CallStates.RINGING);
+        call.setState(CallStates.ACTIVE);
+        call.setState(CallStates.ACTIVE);
+
+        observer.assertValues(CallStates.RINGING, CallStates.ACTIVE);
+    }
+
+    @Test
+    public void masks_matchStateSets() {
+        assertTrue(CallStates.isIn(CallStates.RINGING, CallStates.ANSWERABLE));
+        assertFalse(CallStates.isIn(CallStates.ACTIVE, CallStates.ANSWERABLE));
+        assertTrue(CallStates.isIn(CallStates.DIALING, CallStates.ENDABLE));
+        assertTrue(CallStates.isIn(CallStates.ACTIVE, CallStates.ENDABLE));
+        assertFalse(CallStates.isIn(CallStates.HOLDING, CallStates.ENDABLE));
+        assertFalse(CallStates.isIn(-1, CallStates.ENDABLE));
+        assertFalse(CallStates.isIn(64, CallStates.ENDABLE));
+    }
+}
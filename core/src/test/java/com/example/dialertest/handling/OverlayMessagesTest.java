@@ -0,0 +1,88 @@
+package com.example.dialertest.handling;
+
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+import com.example.dialertest.screening.ScreeningPipeline;
+import com.example.dialertest.screening.ScreeningResult;
+import com.example.dialertest.screening.ScreeningRules;
+import com.example.dialertest.screening.ScreeningRulesParser;
+import com.example.dialertest.screening.SpamDatabase;
+import com.example.dialertest.screening.SpamNumberIndex;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OverlayMessagesTest {
+
+    private final ExecutorService lookupExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService enrichmentExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final SpamDatabase database = new SpamNumberIndex.Builder().addNumber(74951234567L).build();
+
+    @After
+    public void tearDown() {
+        lookupExecutor.shutdownNow();
+        enrichmentExecutor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Результаты получаются настоящим конвейером, так как конструктор результата закрыт
+     */
+    private ScreeningResult screen(ScreeningRules rules, String number) throws InterruptedException {
+        ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> database,
+                new PhoneNumberNormalizer(DialingPlan.RUSSIA), lookupExecutor, enrichmentExecutor, timer,
+                TimeUnit.SECONDS.toNanos(5))
+                .rules(() -> rules)
+                .build();
+        BlockingQueue<ScreeningResult> verdicts = new ArrayBlockingQueue<>(1);
+        pipeline.screen(number, new ScreeningPipeline.Callback() {
+            @Override
+            public void onVerdict(ScreeningResult result) {
+                verdicts.add(result);
+            }
+
+            @Override
+            public void onEnriched(ScreeningResult result) {
+            }
+        });
+        ScreeningResult result = verdicts.poll(5, TimeUnit.SECONDS);
+        assertNotNull(result);
+        return result;
+    }
+
+    @Test
+    public void build_spamNumberWithCallerName() throws InterruptedException {
+        ScreeningResult spam = screen(ScreeningRules.defaults(), "+7 495 123-45-67");
+
+        assertEquals("Звонок от номера +7 495 123-45-67 является нежелательным.", OverlayMessages.build(spam));
+        assertEquals("ООО Ромашка\nЗвонок от номера +7 495 123-45-67 является нежелательным.",
+                OverlayMessages.build(spam.withCallerName("ООО Ромашка")));
+    }
+
+    @Test
+    public void build_allowedNumberIsUseful() throws InterruptedException {
+        ScreeningResult useful = screen(ScreeningRules.defaults(), "+7 916 123-45-67");
+
+        assertEquals(OverlayMessages.USEFUL, OverlayMessages.build(useful));
+    }
+
+    @Test
+    public void build_hiddenNumberBlockedByRule() throws InterruptedException {
+        ScreeningRules rules = ScreeningRulesParser.parse("block,skip-notification when hidden\n");
+        ScreeningResult hidden = screen(rules, null);
+
+        assertTrue(hidden.isBlocked());
+        assertFalse(hidden.isSpam());
+        assertEquals(OverlayMessages.BLOCKED_BY_RULE, OverlayMessages.build(hidden));
+    }
+}
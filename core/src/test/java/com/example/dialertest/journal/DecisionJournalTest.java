@@ -0,0 +1,235 @@
+package com.example.dialertest.journal;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class DecisionJournalTest {
+
+    /**
+     * Периодический перенос в файл в тестах не срабатывает, записи переносятся явным flush
+     */
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void record_isReadBackInOrder() throws Exception {
+        File directory = folder.newFolder("journal");
+        DecisionJournal journal = new DecisionJournal(directory, executor, 64, 1 << 20, 4 << 20, NEVER);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(journal.record(1_000L + i, 74951234560L + i,
+                    i % 2 == 0 ? DecisionJournal.VERDICT_BLOCK : DecisionJournal.VERDICT_ALLOW, i, 2, 90, 1_500L * i));
+        }
+        journal.close();
+
+        try (DecisionJournalReader reader = new DecisionJournalReader(directory)) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(reader.next());
+                assertEquals(1_000L + i, reader.timestampMillis());
+                assertEquals(74951234560L + i, reader.numberKey());
+                assertEquals(i % 2 == 0 ? DecisionJournal.VERDICT_BLOCK : DecisionJournal.VERDICT_ALLOW, reader.verdict());
+                assertEquals(i, reader.rule());
+                assertEquals(2, reader.category());
+                assertEquals(90, reader.score());
+                assertEquals(1_500L * i, reader.latencyNanos());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void record_dropsWhenBufferIsFull() throws Exception {
+        File directory = folder.newFolder("journal");
+        DecisionJournal journal = new DecisionJournal(directory, executor, 8, 1 << 20, 4 << 20, NEVER);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(journal.record(i, 70000000000L + i, DecisionJournal.VERDICT_ALLOW, 0, 0, 0, 0L));
+        }
+        assertFalse(journal.record(8, 70000000008L, DecisionJournal.VERDICT_ALLOW, 0, 0, 0, 0L));
+        assertEquals(1, journal.droppedCount());
+
+        journal.flush().get();
+        assertTrue(journal.record(9, 70000000009L, DecisionJournal.VERDICT_ALLOW, 0, 0, 0, 0L));
+        journal.close();
+        assertEquals(9, count(directory));
+    }
+
+    @Test
+    public void failedWrite_retriesDrainedBatchInNewSegment() throws Exception {
+        File directory = folder.newFolder("journal");
+        // Прерванный поток закрывает канал при первой же записи, и она завершается ClosedByInterruptException
+        AtomicBoolean interruptNextTask = new AtomicBoolean();
+        ScheduledExecutorService failingExecutor = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                if (interruptNextTask.getAndSet(false)) {
+                    thread.interrupt();
+                }
+            }
+        };
+        try {
+            DecisionJournal journal = new DecisionJournal(directory, failingExecutor, 64, 1 << 20, 4 << 20, NEVER);
+            for (int i = 0; i < 15; i++) {
+                assertTrue(journal.record(i, 70000000000L + i, DecisionJournal.VERDICT_ALLOW, 0, 0, 0, 0L));
+                if (i == 4) {
+                    journal.flush().get();
+                } else if (i == 9) {
+                    interruptNextTask.set(true);
+                    try {
+                        journal.flush().get();
+                        fail("Запись в прерванном потоке должна завершиться ошибкой");
+                    } catch (ExecutionException expected) {
+                        assertTrue(expected.getCause() instanceof IOException);
+                    }
+                }
+            }
+            journal.close();
+        } finally {
+            failingExecutor.shutdownNow();
+        }
+
+        assertEquals(2, JournalFormat.listSegments(directory).length);
+        try (DecisionJournalReader reader = new DecisionJournalReader(directory)) {
+            for (int i = 0; i < 15; i++) {
+                assertTrue(reader.next());
+                assertEquals(i, reader.timestampMillis());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void concurrentProducers_loseNothingWhenBufferFits() throws Exception {
+        File directory = folder.newFolder("journal");
+        int threads = 4;
+        int perThread = 5_000;
+        DecisionJournal journal = new DecisionJournal(directory, executor, threads * perThread, 1 << 20, 8 << 20, NEVER);
+
+        ExecutorService producers = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            producers.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    journal.record(i, 70000000000L + thread * perThread + i, DecisionJournal.VERDICT_ALLOW, thread, 0, 0, i);
+                }
+            });
+        }
+        start.countDown();
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(30, TimeUnit.SECONDS));
+        journal.close();
+
+        boolean[] seen = new boolean[threads * perThread];
+        try (DecisionJournalReader reader = new DecisionJournalReader(directory)) {
+            while (reader.next()) {
+                int index = (int) (reader.numberKey() - 70000000000L);
+                assertFalse(seen[index]);
+                seen[index] = true;
+            }
+        }
+        for (boolean value : seen) {
+            assertTrue(value);
+        }
+        assertEquals(0, journal.droppedCount());
+    }
+
+    @Test
+    public void rotation_keepsDiskFootprintBounded() throws Exception {
+        File directory = folder.newFolder("journal");
+        long segmentBytes = JournalFormat.HEADER_SIZE + 10 * JournalFormat.RECORD_SIZE;
+        DecisionJournal journal = new DecisionJournal(directory, executor, 1024, segmentBytes, 3 * segmentBytes, NEVER);
+        for (int i = 0; i < 100; i++) {
+            journal.record(i, 70000000000L + i, DecisionJournal.VERDICT_BLOCK, 1, 0, 0, 0L);
+            if (i % 7 == 0) {
+                journal.flush().get();
+            }
+        }
+        journal.close();
+
+        File[] segments = JournalFormat.listSegments(directory);
+        assertEquals(3, segments.length);
+        long total = 0;
+        for (File segment : segments) {
+            assertTrue(segment.length() <= segmentBytes);
+            total += segment.length();
+        }
+        assertTrue(total <= 3 * segmentBytes);
+
+        // Остаются самые новые записи, последняя - сотая
+        long last = -1;
+        try (DecisionJournalReader reader = new DecisionJournalReader(directory)) {
+            while (reader.next()) {
+                assertTrue(reader.timestampMillis() > last);
+                last = reader.timestampMillis();
+            }
+        }
+        assertEquals(99, last);
+    }
+
+    @Test
+    public void reopen_startsNewSegmentAndReaderSkipsTornRecord() throws Exception {
+        File directory = folder.newFolder("journal");
+        DecisionJournal first = new DecisionJournal(directory, executor, 16, 1 << 20, 4 << 20, NEVER);
+        first.record(1, 70000000001L, DecisionJournal.VERDICT_ALLOW, 0, 0, 0, 0L);
+        first.record(2, 70000000002L, DecisionJournal.VERDICT_ALLOW, 0, 0, 0, 0L);
+        first.close();
+
+        // Имитируем аварийное завершение посреди записи: обрезаем последнюю запись
+        File segment = JournalFormat.listSegments(directory)[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        DecisionJournal second = new DecisionJournal(directory, executor, 16, 1 << 20, 4 << 20, NEVER);
+        second.record(3, 70000000003L, DecisionJournal.VERDICT_BLOCK, 0, 0, 0, 0L);
+        second.close();
+
+        assertEquals(2, JournalFormat.listSegments(directory).length);
+        try (DecisionJournalReader reader = new DecisionJournalReader(directory)) {
+            assertTrue(reader.next());
+            assertEquals(1, reader.timestampMillis());
+            assertTrue(reader.next());
+            assertEquals(3, reader.timestampMillis());
+            assertFalse(reader.next());
+        }
+    }
+
+    private static int count(File directory) throws Exception {
+        int count = 0;
+        try (DecisionJournalReader reader = new DecisionJournalReader(directory)) {
+            while (reader.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.dialertest.lifecycle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.*;
+
+public class ResourceScopeTest {
+
+    @Test
+    public void close_releasesInReverseOrderOnce() {
+        List<String> released = new ArrayList<>();
+        ResourceScope scope = new ResourceScope("test");
+        scope.onRelease(() -> released.add("listener"));
+        Disposable subscription = scope.add(Disposables.empty());
+        scope.onRelease(() -> released.add("view"));
+
+        scope.close();
+        scope.close();
+
+        assertEquals(2, released.size());
+        assertEquals("view", released.get(0));
+        assertEquals("listener", released.get(1));
+        assertTrue(subscription.isDisposed());
+        assertTrue(scope.isClosed());
+        assertEquals(0, scope.size());
+    }
+
+    @Test
+    public void clear_keepsScopeOpen() {
+        ResourceScope scope = new ResourceScope("test");
+        Disposable first = scope.add(Disposables.empty());
+        scope.clear();
+        Disposable second = scope.add(Disposables.empty());
+
+        assertTrue(first.isDisposed());
+        assertFalse(second.isDisposed());
+        assertFalse(scope.isClosed());
+        assertEquals(1, scope.size());
+    }
+
+    @Test
+    public void add_afterClose_releasesImmediately() {
+        int[] released = new int[1];
+        ResourceScope scope = new ResourceScope("test");
+        scope.close();
+
+        Disposable subscription = scope.add(Disposables.empty());
+        scope.onRelease(() -> released[0]++);
+
+        assertTrue(subscription.isDisposed());
+        assertEquals(1, released[0]);
+        assertEquals(0, scope.size());
+    }
+
+    @Test
+    public void remove_forgetsResourceWithoutReleasing() {
+        ResourceScope scope = new ResourceScope("test");
+        Disposable subscription = scope.add(Disposables.empty());
+
+        assertTrue(scope.remove(subscription));
+        scope.close();
+
+        assertFalse(subscription.isDisposed());
+    }
+
+    @Test
+    public void close_releasesEverythingAndRethrowsFirstFailure() {
+        ResourceScope scope = new ResourceScope("test");
+        Disposable subscription = scope.add(Disposables.empty());
+        scope.onRelease(() -> {
+            throw new IllegalStateException("первый");
+        });
+        scope.onRelease(() -> {
+            throw new IllegalArgumentException("второй");
+        });
+
+        try {
+            scope.close();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0] instanceof IllegalStateException);
+        }
+        assertTrue(subscription.isDisposed());
+        assertTrue(scope.isClosed());
+    }
+
+    @Test
+    public void add_prunesCompletedSubscriptions() {
+        ResourceScope scope = new ResourceScope("test");
+        Disposable live = scope.add(PublishSubject.create().subscribe());
+        for (int i = 0; i < 10_000; i++) {
+            PublishSubject<Integer> call = PublishSubject.create();
+            scope.add(call.subscribe());
+            call.onComplete();
+        }
+
+        assertTrue("размер области " + scope.size(), scope.size() <= 32);
+        scope.close();
+        assertTrue(live.isDisposed());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.dialertest.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverRangeWithoutGapsOrOverlaps() {
+        assertEquals(0L, LatencyHistogram.bucketLowerBound(0));
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT - 1; i++) {
+            assertEquals(LatencyHistogram.bucketUpperBound(i) + 1, LatencyHistogram.bucketLowerBound(i + 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.bucketLowerBound(i)));
+            assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.bucketUpperBound(i)));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE));
+    }
+
+    @Test
+    public void bucketWidth_staysWithinThreePercent() {
+        for (int i = LatencyHistogram.SUB_BUCKETS; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lower = LatencyHistogram.bucketLowerBound(i);
+            long upper = LatencyHistogram.bucketUpperBound(i);
+            assertTrue((double) (upper - lower + 1) / lower <= 1.0 / LatencyHistogram.SUB_BUCKETS);
+        }
+    }
+
+    @Test
+    public void percentiles_matchSortedValues() {
+        Random random = new Random(7);
+        long[] values = new long[100_000];
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram histogram = registry.histogram("test");
+        for (int i = 0; i < values.length; i++) {
+            // Логнормальное распределение вокруг 2 мс
+            values[i] = (long) (2_000_000 * Math.exp(random.nextGaussian()));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.count());
+        assertEquals(values[values.length - 1], snapshot.max());
+        for (double fraction : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long estimate = snapshot.percentile(fraction);
+            assertTrue(estimate >= exact);
+            assertTrue(estimate <= exact + exact / LatencyHistogram.SUB_BUCKETS + 1);
+        }
+    }
+
+    @Test
+    public void record_clampsOutOfRangeValues() {
+        LatencyHistogram histogram = new MetricsRegistry().histogram("test");
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.count());
+        assertEquals(0L, snapshot.percentile(0.5));
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.max());
+    }
+
+    @Test
+    public void record_fromManyThreads_countsEverything() throws Exception {
+        LatencyHistogram histogram = new MetricsRegistry().histogram("test");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 1; i <= 100_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(400_000, snapshot.count());
+        assertEquals(100_000, snapshot.max());
+        assertEquals(50_000.5, snapshot.mean(), 0.001);
+    }
+}
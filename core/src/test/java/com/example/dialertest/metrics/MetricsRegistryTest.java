@@ -0,0 +1,33 @@
+package com.example.dialertest.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void counterAndHistogram_areRegisteredOnce() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertSame(registry.counter("calls"), registry.counter("calls"));
+        assertSame(registry.histogram("decision"), registry.histogram("decision"));
+    }
+
+    @Test
+    public void snapshot_exportsSortedJson() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("screening.blocked").add(3);
+        registry.counter("screening.allowed").increment();
+        LatencyHistogram decision = registry.histogram("screening.decision");
+        decision.record(10);
+        decision.record(30);
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(Long.valueOf(3), snapshot.counters().get("screening.blocked"));
+        String json = snapshot.toJson();
+        assertTrue(json, json.contains("\"counters\":{\"screening.allowed\":1,\"screening.blocked\":3}"));
+        assertTrue(json, json.contains("\"screening.decision\":{\"count\":2,\"mean\":20,\"p50\":10,"));
+        assertTrue(json, json.endsWith("\"max\":30}}}"));
+        assertTrue(snapshot.toString().contains("screening.decision (2)"));
+    }
+}
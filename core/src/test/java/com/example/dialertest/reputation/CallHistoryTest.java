@@ -0,0 +1,97 @@
+package com.example.dialertest.reputation;
+
+import com.example.dialertest.journal.DecisionJournal;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CallHistoryTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long NOW = 20_000 * DAY + 12 * 3_600_000L;
+    private static final long NUMBER = 79001234567L;
+
+    /**
+     * Периодический перенос журнала в файл в тестах не срабатывает
+     */
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fill_countsDayAndWeek() {
+        CallHistory history = new CallHistory(16);
+        history.record(NOW - 8 * DAY, NUMBER, true);
+        history.record(NOW - 3 * DAY, NUMBER, true);
+        history.record(NOW - 1_000L, NUMBER, false);
+        history.record(NOW, NUMBER, false);
+
+        float[] features = new float[ReputationFeatures.COUNT];
+        history.fill(NUMBER, NOW, features);
+        assertEquals((float) Math.log1p(2), features[ReputationFeatures.CALLS_DAY], 1e-6f);
+        assertEquals((float) Math.log1p(3), features[ReputationFeatures.CALLS_WEEK], 1e-6f);
+        assertEquals(1f / 3f, features[ReputationFeatures.BLOCKED_RATIO], 1e-6f);
+
+        // Через неделю старые сутки выпадают из окна
+        assertEquals(0, history.calls(NUMBER, NOW + 7 * DAY));
+        assertEquals(2, history.calls(NUMBER, NOW + 6 * DAY));
+
+        history.fill(79009999999L, NOW, features);
+        assertEquals(0f, features[ReputationFeatures.CALLS_WEEK], 0f);
+        assertEquals(0f, features[ReputationFeatures.BLOCKED_RATIO], 0f);
+    }
+
+    @Test
+    public void record_reusesStaleBuckets() {
+        CallHistory history = new CallHistory(16);
+        history.record(NOW, NUMBER, false);
+        history.record(NOW + 7 * DAY, NUMBER, false);
+        assertEquals(1, history.calls(NUMBER, NOW + 7 * DAY));
+    }
+
+    @Test
+    public void record_evictsOldestNumberWhenFull() {
+        CallHistory history = new CallHistory(2);
+        history.record(NOW - 2 * DAY, 74950000001L, false);
+        history.record(NOW - DAY, 74950000002L, false);
+        history.record(NOW, 74950000003L, false);
+
+        assertEquals(2, history.size());
+        assertEquals(0, history.calls(74950000001L, NOW));
+        assertEquals(1, history.calls(74950000002L, NOW));
+        assertEquals(1, history.calls(74950000003L, NOW));
+    }
+
+    @Test
+    public void readJournal_countsRecentDecisions() throws Exception {
+        File directory = folder.newFolder("journal");
+        DecisionJournal journal = new DecisionJournal(directory, executor, 64, 1 << 20, 4 << 20, NEVER);
+        journal.record(NOW - 10 * DAY, NUMBER, DecisionJournal.VERDICT_BLOCK, 0, 0, 0, 0L);
+        journal.record(NOW - DAY, NUMBER, DecisionJournal.VERDICT_BLOCK, 0, 0, 0, 0L);
+        journal.record(NOW - 1_000L, NUMBER, DecisionJournal.VERDICT_ALLOW, 0, 0, 0, 0L);
+        journal.close();
+
+        CallHistory history = new CallHistory(16);
+        assertEquals(2, history.readJournal(directory, NOW));
+        float[] features = new float[ReputationFeatures.COUNT];
+        history.fill(NUMBER, NOW, features);
+        assertEquals(0.5f, features[ReputationFeatures.BLOCKED_RATIO], 0f);
+    }
+}
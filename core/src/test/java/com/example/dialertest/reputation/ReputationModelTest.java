@@ -0,0 +1,117 @@
+package com.example.dialertest.reputation;
+
+import com.example.dialertest.screening.NumberKeys;
+import com.example.dialertest.screening.SpamDatabase;
+import com.example.dialertest.screening.SpamEntry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReputationModelTest {
+
+    private static final String MODEL = ""
+            + "# Линейная часть\n"
+            + "bias -2\n"
+            + "weight calls_1d 1.5\n"
+            + "weight prefix_risk 1\n"
+            + "prefix +7900 0.5\n"
+            + "prefix +7900555 2\n"
+            + "tree\n"
+            + "node 0 sequential_run 4 1 2\n"
+            + "leaf 1 -0.5\n"
+            + "leaf 2 1\n"
+            + "tree\n"
+            + "leaf 0 0.25\n";
+
+    private static float sigmoid(double z) {
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    @Test
+    public void score_sumsLinearPartAndTrees() {
+        ReputationModel model = ReputationModel.parse(MODEL);
+        assertEquals(2, model.treeCount());
+        assertEquals(4, model.nodeCount());
+
+        float[] features = new float[ReputationFeatures.COUNT];
+        assertEquals(sigmoid(-2 - 0.5 + 0.25), model.score(features), 1e-6f);
+
+        features[ReputationFeatures.CALLS_DAY] = 2f;
+        features[ReputationFeatures.SEQUENTIAL_RUN] = 4f;
+        assertEquals(sigmoid(-2 + 3 + 1 + 0.25), model.score(features), 1e-6f);
+    }
+
+    @Test
+    public void prefixRisk_takesLongestPrefix() {
+        ReputationModel model = ReputationModel.parse(MODEL);
+        assertEquals(2f, model.prefixRisk(79005551234L), 0f);
+        assertEquals(0.5f, model.prefixRisk(79001234567L), 0f);
+        assertEquals(0f, model.prefixRisk(74951234567L), 0f);
+        assertEquals(0f, model.prefixRisk(NumberKeys.INVALID), 0f);
+    }
+
+    @Test
+    public void parse_reportsLineOfError() {
+        assertParseError("bias -2\nweight unknown 1\n", "Строка 2");
+        assertParseError("tree\nnode 0 length 10 0 1\nleaf 1 0\n", "Строка 2");
+        assertParseError("tree\nleaf 1 0\n", "Строка 2");
+        assertParseError("leaf 0 1\n", "Строка 1");
+        assertParseError("tree\nnode 0 length 10 1 2\nleaf 1 0\n", "нет потомка");
+        assertParseError("tree\ntree\n", "пустое дерево");
+        assertParseError("bias NaN\n", "Строка 1");
+    }
+
+    private static void assertParseError(String text, String message) {
+        try {
+            ReputationModel.parse(text);
+            fail("Ожидалась ошибка разбора: " + text);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    @Test
+    public void features_describeNumberShape() {
+        float[] features = new float[ReputationFeatures.COUNT];
+        int entry = SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 80);
+        ReputationFeatures.fill(79001234567L, entry, 23, 7, 79001234999L, features);
+
+        assertEquals(0f, features[ReputationFeatures.FOREIGN], 0f);
+        assertEquals(1f, features[ReputationFeatures.NIGHT], 0f);
+        assertEquals(8f, features[ReputationFeatures.SEQUENTIAL_RUN], 0f);
+        assertEquals(2f, features[ReputationFeatures.REPEATED_RUN], 0f);
+        assertEquals(9f, features[ReputationFeatures.DISTINCT_DIGITS], 0f);
+        assertEquals(11f, features[ReputationFeatures.LENGTH], 0f);
+        assertEquals(8f, features[ReputationFeatures.NEIGHBOR], 0f);
+        assertEquals(0.8f, features[ReputationFeatures.SPAM_SCORE], 1e-6f);
+        assertEquals(1f, features[ReputationFeatures.IN_DATABASE], 0f);
+
+        ReputationFeatures.fill(4420798765000L, SpamDatabase.NOT_FOUND, 12, 7, NumberKeys.INVALID, features);
+        assertEquals(1f, features[ReputationFeatures.FOREIGN], 0f);
+        assertEquals(0f, features[ReputationFeatures.NIGHT], 0f);
+        assertEquals(5f, features[ReputationFeatures.SEQUENTIAL_RUN], 0f);
+        assertEquals(3f, features[ReputationFeatures.REPEATED_RUN], 0f);
+        assertEquals(0f, features[ReputationFeatures.NEIGHBOR], 0f);
+        assertEquals(0f, features[ReputationFeatures.IN_DATABASE], 0f);
+    }
+
+    @Test
+    public void scorer_usesHistoryAndSkipsUnknownModel() {
+        ReputationModel model = ReputationModel.parse(MODEL);
+        CallHistory history = new CallHistory(16);
+        ReputationModel[] current = {null};
+        ModelReputationScorer scorer = new ModelReputationScorer(() -> current[0], history, 7, NumberKeys.INVALID);
+
+        long now = 1_700_000_000_000L;
+        assertTrue(Float.isNaN(scorer.score(74951234567L, SpamDatabase.NOT_FOUND, 12, now)));
+
+        current[0] = model;
+        float first = scorer.score(74951234567L, SpamDatabase.NOT_FOUND, 12, now);
+        history.record(now, 74951234567L, false);
+        history.record(now, 74951234567L, false);
+        float repeated = scorer.score(74951234567L, SpamDatabase.NOT_FOUND, 12, now);
+        assertTrue(repeated > first);
+        assertTrue(Float.isNaN(scorer.score(NumberKeys.INVALID, SpamDatabase.NOT_FOUND, 12, now)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.dialertest.screening;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ContactIndexTest {
+
+    private final FakeContactSource source = new FakeContactSource();
+    private final ContactIndex index = new ContactIndex(source, new PhoneNumberNormalizer(DialingPlan.RUSSIA));
+
+    @Test
+    public void sync_readsAllContactsFirstAndThenOnlyChanges() {
+        source.put(1L, "+7 (495) 123-45-67", "8 916 000-00-01");
+        source.put(2L, "*100#");
+        assertTrue(index.sync());
+        assertEquals(2, index.size());
+        assertTrue(index.contains(74951234567L));
+        assertTrue(index.contains(79160000001L));
+        assertFalse(index.contains(NumberKeys.INVALID));
+        assertEquals(2, source.changedContactsRead);
+
+        source.put(3L, "+7 495 765-43-21");
+        assertTrue(index.sync());
+        assertEquals(3, source.changedContactsRead);
+        assertTrue(index.contains(74957654321L));
+
+        assertFalse(index.sync());
+    }
+
+    @Test
+    public void sync_replacesNumbersOfChangedContact() {
+        source.put(1L, "+74951234567", "+79160000001");
+        index.sync();
+
+        source.put(1L, "+79160000001");
+        assertTrue(index.sync());
+        assertFalse(index.contains(74951234567L));
+        assertTrue(index.contains(79160000001L));
+
+        // Контакт без номеров
+        source.put(1L);
+        assertTrue(index.sync());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void sync_keepsNumberSharedByRemainingContact() {
+        source.put(1L, "+74951234567");
+        source.put(2L, "8 (495) 123-45-67");
+        index.sync();
+
+        source.delete(1L);
+        index.sync();
+        assertTrue(index.contains(74951234567L));
+
+        source.delete(2L);
+        assertTrue(index.sync());
+        assertFalse(index.contains(74951234567L));
+    }
+
+    @Test
+    public void rebuild_readsEverythingAgain() {
+        source.put(1L, "+74951234567");
+        index.sync();
+        int before = source.changedContactsRead;
+
+        index.rebuild();
+        assertEquals(before + 1, source.changedContactsRead);
+        assertTrue(index.contains(74951234567L));
+    }
+}
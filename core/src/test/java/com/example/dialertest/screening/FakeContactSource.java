@@ -0,0 +1,65 @@
+package com.example.dialertest.screening;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Контакты в памяти с отметками времени изменений, как в ContactsContract
+ */
+final class FakeContactSource implements ContactSource {
+
+    private static final class Contact {
+        final List<String> phones = new ArrayList<>();
+        long updatedAt;
+    }
+
+    private final Map<Long, Contact> contacts = new TreeMap<>();
+    private final Map<Long, Long> deletedAt = new TreeMap<>();
+    private long clock;
+    int reads;
+    int changedContactsRead;
+
+    void put(long contactId, String... phones) {
+        Contact contact = new Contact();
+        for (String phone : phones) {
+            contact.phones.add(phone);
+        }
+        contact.updatedAt = ++clock;
+        contacts.put(contactId, contact);
+        deletedAt.remove(contactId);
+    }
+
+    void delete(long contactId) {
+        contacts.remove(contactId);
+        deletedAt.put(contactId, ++clock);
+    }
+
+    @Override
+    public long readChanges(long since, Changes changes) {
+        reads++;
+        long latest = since;
+        for (Map.Entry<Long, Contact> entry : contacts.entrySet()) {
+            if (entry.getValue().updatedAt > since) {
+                changes.contactChanged(entry.getKey());
+                changedContactsRead++;
+                latest = Math.max(latest, entry.getValue().updatedAt);
+            }
+        }
+        for (Map.Entry<Long, Contact> entry : contacts.entrySet()) {
+            if (entry.getValue().updatedAt > since) {
+                for (String phone : entry.getValue().phones) {
+                    changes.phone(entry.getKey(), phone);
+                }
+            }
+        }
+        for (Map.Entry<Long, Long> entry : deletedAt.entrySet()) {
+            if (entry.getValue() > since) {
+                changes.contactDeleted(entry.getKey());
+                latest = Math.max(latest, entry.getValue());
+            }
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.dialertest.screening;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class FilteredSpamDatabaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void bloomFilter_hasNoFalseNegativesAndFewFalsePositives() {
+        Random random = new Random(11);
+        BloomFilter filter = new BloomFilter(100_000, 10);
+        long[] keys = new long[100_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 70000000000L + (long) (random.nextDouble() * 9999999999L);
+            filter.put(keys[i]);
+        }
+
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key));
+        }
+        int positives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(10000000000L + (long) (random.nextDouble() * 9999999999L))) {
+                positives++;
+            }
+        }
+        assertTrue("Доля ложноположительных ответов " + positives / 100_000.0, positives < 2_000);
+    }
+
+    @Test
+    public void filtered_agreesWithDatabaseAndReportsFalsePositiveRate() throws IOException {
+        Random random = new Random(5);
+        SpamDatabaseBuilder builder = new SpamDatabaseBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            builder.addNumber(70000000000L + (long) (random.nextDouble() * 9999999999L), 0);
+        }
+        builder.addPrefix(7800L, SpamEntry.pack(SpamEntry.CATEGORY_ROBOCALL, 100));
+        File file = folder.newFile("spam.db");
+        builder.writeTo(file, 1L);
+        MappedSpamDatabase database = MappedSpamDatabase.open(file);
+
+        FilteredSpamDatabase filtered = FilteredSpamDatabase.build(database, 10);
+
+        for (int i = 0; i < database.size(); i++) {
+            assertEquals(database.numberEntryAt(i), filtered.find(database.numberAt(i)));
+        }
+        assertEquals(database.find(78005553535L), filtered.find(78005553535L));
+        for (int i = 0; i < 50_000; i++) {
+            long probe = 70000000000L + (long) (random.nextDouble() * 9999999999L);
+            assertEquals(database.find(probe), filtered.find(probe));
+        }
+
+        assertTrue(filtered.measuredFalsePositiveRate() > 0.0);
+        assertTrue(filtered.measuredFalsePositiveRate() < 0.02);
+        assertTrue(filtered.observedFalsePositiveRate() < 0.02);
+        assertTrue(filtered.rejectedCount() > 45_000);
+    }
+
+    @Test
+    public void filtered_coversOverlayOfLayeredDatabase() throws IOException {
+        File file = folder.newFile("spam.db");
+        new SpamDatabaseBuilder().addNumber(74951234567L, 0).writeTo(file, 1L);
+        MappedSpamDatabase base = MappedSpamDatabase.open(file);
+
+        File deltaFile = folder.newFile("delta");
+        try (SpamDeltaWriter writer = new SpamDeltaWriter(new FileOutputStream(deltaFile), 1, 2, 2)) {
+            writer.add(73430000001L, 0).addPrefix(7900555L, 0);
+        }
+        SpamDeltaOverlay overlay;
+        try (SpamDeltaReader reader = new SpamDeltaReader(new FileInputStream(deltaFile))) {
+            overlay = SpamDeltaOverlay.EMPTY.apply(reader, base);
+        }
+
+        FilteredSpamDatabase filtered = FilteredSpamDatabase.build(new LayeredSpamDatabase(base, overlay, 2), 10);
+        assertTrue(filtered.isSpam(74951234567L));
+        assertTrue(filtered.isSpam(73430000001L));
+        assertTrue(filtered.isSpam(79005550000L));
+        assertEquals(2L, filtered.version());
+    }
+
+    @Test
+    public void tier_rebuildsFilterWhenDatabaseChanges() throws Exception {
+        File file = new File(folder.getRoot(), "spam.db");
+        new SpamDatabaseBuilder().addNumber(74951234567L, 0).writeTo(file, 1L);
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(file);
+
+        List<Runnable> pending = new ArrayList<>();
+        Executor executor = pending::add;
+        SpamFilterTier tier = new SpamFilterTier(holder, executor, 10);
+
+        // Пока фильтр не построен, поиск идёт напрямую по базе
+        assertSame(holder.get(), tier.get());
+        assertNull(tier.currentFilter());
+        tier.get();
+        assertEquals("Построение не должно запускаться повторно", 1, pending.size());
+
+        pending.remove(0).run();
+        assertNotNull(tier.currentFilter());
+        assertTrue(tier.get() instanceof FilteredSpamDatabase);
+        assertEquals(1L, tier.get().version());
+
+        File staged = holder.stagingFile();
+        new SpamDatabaseBuilder().addNumber(73430000001L, 0).writeTo(staged, 2L);
+        holder.install(staged);
+
+        SpamDatabase current = tier.get();
+        assertEquals(2L, current.version());
+        assertFalse(current instanceof FilteredSpamDatabase);
+        assertEquals(1, pending.size());
+
+        pending.remove(0).run();
+        assertTrue(tier.get() instanceof FilteredSpamDatabase);
+        assertTrue(tier.get().isSpam(73430000001L));
+        assertFalse(tier.get().isSpam(74951234567L));
+    }
+
+    @Test
+    public void tier_buildsFilterInBackground() throws Exception {
+        File file = new File(folder.getRoot(), "spam.db");
+        new SpamDatabaseBuilder().addNumber(74951234567L, 0).writeTo(file, 1L);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SpamFilterTier tier = new SpamFilterTier(SpamDatabaseHolder.open(file), executor, 10);
+            assertTrue(tier.get().isSpam(74951234567L));
+            executor.submit(() -> { }).get();
+            assertTrue(tier.get() instanceof FilteredSpamDatabase);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
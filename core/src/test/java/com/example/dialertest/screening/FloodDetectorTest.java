@@ -0,0 +1,92 @@
+package com.example.dialertest.screening;
+
+import com.example.dialertest.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FloodDetectorTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long WINDOW = 8 * MINUTE;
+    private static final long HOSTILE = 30 * MINUTE;
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    private FloodDetector newDetector(int threshold) {
+        return new FloodDetector(3, threshold, WINDOW, HOSTILE, metrics.counter("flagged"));
+    }
+
+    @Test
+    public void observe_flagsBlockOnceThresholdIsReached() {
+        FloodDetector detector = newDetector(5);
+        for (int i = 0; i < 4; i++) {
+            assertFalse(detector.observe(79005551000L + i * 7, NOW + i * 1_000L));
+        }
+        assertTrue(detector.observe(79005551999L, NOW + 5_000L));
+        assertEquals(1, metrics.counter("flagged").get());
+
+        // Весь блок +7 900 555 1xxx помечен, соседний блок - нет
+        assertTrue(detector.isHostile(79005551234L, NOW + 6_000L));
+        assertFalse(detector.isHostile(79005552234L, NOW + 6_000L));
+        assertFalse(detector.observe(79005552234L, NOW + 6_000L));
+    }
+
+    @Test
+    public void observe_forgetsCallsOutsideWindow() {
+        FloodDetector detector = newDetector(5);
+        for (int i = 0; i < 4; i++) {
+            detector.observe(79005551000L + i, NOW);
+        }
+        assertEquals(4, detector.estimate(79005551000L, NOW + MINUTE));
+        assertEquals(0, detector.estimate(79005551000L, NOW + WINDOW + MINUTE));
+        assertFalse(detector.observe(79005551500L, NOW + WINDOW + MINUTE));
+    }
+
+    @Test
+    public void hostileBlock_expires() {
+        FloodDetector detector = newDetector(2);
+        detector.observe(79005551000L, NOW);
+        assertTrue(detector.observe(79005551001L, NOW));
+        assertEquals(1, detector.hostileCount(NOW));
+
+        // Пометка держится и после того, как звонки волны вышли из окна
+        assertTrue(detector.observe(79005551003L, NOW + WINDOW + MINUTE));
+        assertTrue(detector.isHostile(79005551002L, NOW + HOSTILE - 1));
+        assertFalse(detector.isHostile(79005551002L, NOW + HOSTILE));
+        assertEquals(0, detector.hostileCount(NOW + HOSTILE));
+    }
+
+    @Test
+    public void estimate_neverUndercounts() {
+        FloodDetector detector = newDetector(Integer.MAX_VALUE);
+        Random random = new Random(5);
+        int[] exact = new int[5000];
+        for (int call = 0; call < 20000; call++) {
+            int block = random.nextInt(exact.length);
+            exact[block]++;
+            detector.observe((79000000L + block) * 1000L + random.nextInt(1000), NOW);
+        }
+
+        long overcount = 0L;
+        for (int block = 0; block < exact.length; block++) {
+            int estimate = detector.estimate((79000000L + block) * 1000L, NOW);
+            assertTrue(estimate >= exact[block]);
+            overcount += estimate - exact[block];
+        }
+        // 5000 блоков на 1024 столбца: коллизии есть, но в среднем завышение невелико
+        assertTrue("Завышение " + overcount, overcount / exact.length < 8);
+    }
+
+    @Test
+    public void observe_ignoresShortAndInvalidNumbers() {
+        FloodDetector detector = newDetector(1);
+        assertFalse(detector.observe(NumberKeys.INVALID, NOW));
+        assertFalse(detector.observe(112L, NOW));
+        assertEquals(0, metrics.counter("flagged").get());
+    }
+}
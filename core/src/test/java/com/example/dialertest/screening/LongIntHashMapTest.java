@@ -0,0 +1,41 @@
+package com.example.dialertest.screening;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void putGetRemove_agreeWithHashMap() {
+        Random random = new Random(3);
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> reference = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key) != null, map.remove(key));
+            } else {
+                map.put(key, i);
+                reference.put(key, i);
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        for (long key = 1; key <= 5_000; key++) {
+            Integer expected = reference.get(key);
+            assertEquals(expected == null ? -1 : expected, map.get(key, -1));
+            assertEquals(expected != null, map.containsKey(key));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_rejectsZeroKey() {
+        new LongIntHashMap(4).put(0L, 1);
+    }
+}
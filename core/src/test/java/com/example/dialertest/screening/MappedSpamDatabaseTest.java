@@ -0,0 +1,212 @@
+package com.example.dialertest.screening;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MappedSpamDatabaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void find_returnsCategoryAndScore() throws IOException {
+        File file = folder.newFile("spam.db");
+        new SpamDatabaseBuilder()
+                .addNumber(74951234567L, SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 90))
+                .addNumber(79161234567L, SpamEntry.pack(SpamEntry.CATEGORY_SURVEY, 40))
+                .addPrefix(7800L, SpamEntry.pack(SpamEntry.CATEGORY_TELEMARKETING, 70))
+                .writeTo(file, 5L);
+
+        MappedSpamDatabase database = MappedSpamDatabase.open(file);
+
+        assertEquals(5L, database.version());
+        assertEquals(2, database.size());
+        assertEquals(1, database.prefixRuleCount());
+
+        int entry = database.find(74951234567L);
+        assertEquals(SpamEntry.CATEGORY_FRAUD, SpamEntry.category(entry));
+        assertEquals(90, SpamEntry.score(entry));
+
+        entry = database.find(78005553535L);
+        assertEquals(SpamEntry.CATEGORY_TELEMARKETING, SpamEntry.category(entry));
+        assertEquals(70, SpamEntry.score(entry));
+
+        assertEquals(SpamDatabase.NOT_FOUND, database.find(74951234568L));
+        assertFalse(database.isSpam(NumberKeys.INVALID));
+    }
+
+    @Test
+    public void writeTo_keepsHighestScoreForDuplicates() throws IOException {
+        File file = folder.newFile("spam.db");
+        new SpamDatabaseBuilder()
+                .addNumber(74951234567L, SpamEntry.pack(SpamEntry.CATEGORY_SURVEY, 10))
+                .addNumber(74951234567L, SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 95))
+                .addNumber(74951234567L, SpamEntry.pack(SpamEntry.CATEGORY_ROBOCALL, 50))
+                .writeTo(file, 1L);
+
+        MappedSpamDatabase database = MappedSpamDatabase.open(file);
+        assertEquals(1, database.size());
+        assertEquals(SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 95), database.find(74951234567L));
+    }
+
+    @Test
+    public void find_agreesWithInMemoryIndexOnRandomData() throws IOException {
+        Random random = new Random(7);
+        SpamDatabaseBuilder builder = new SpamDatabaseBuilder();
+        SpamNumberIndex.Builder reference = new SpamNumberIndex.Builder();
+        for (int i = 0; i < 100_000; i++) {
+            long key = 70000000000L + (long) (random.nextDouble() * 9999999999L);
+            builder.addNumber(key, SpamEntry.pack(SpamEntry.CATEGORY_UNKNOWN, random.nextInt(101)));
+            reference.addNumber(key);
+        }
+        for (long prefix : new long[]{7800L, 7900555L, 1L}) {
+            builder.addPrefix(prefix, SpamEntry.pack(SpamEntry.CATEGORY_ROBOCALL, 100));
+            reference.addPrefix(prefix, NumberKeys.digitCount(prefix));
+        }
+        File file = folder.newFile("spam.db");
+        builder.writeTo(file, 1L);
+
+        MappedSpamDatabase database = MappedSpamDatabase.open(file);
+        SpamNumberIndex index = reference.build();
+        assertEquals(index.size(), database.size());
+        for (int i = 0; i < 100_000; i++) {
+            long probe = 10000000000L + (long) (random.nextDouble() * 89999999999L);
+            assertEquals(index.isSpam(probe), database.isSpam(probe));
+        }
+    }
+
+    @Test
+    public void open_rejectsCorruptedHeader() throws IOException {
+        File file = folder.newFile("spam.db");
+        new SpamDatabaseBuilder().addNumber(74951234567L, 0).writeTo(file, 1L);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(SpamDatabaseFormat.OFFSET_NUMBER_COUNT);
+            raf.writeInt(1_000_000);
+        }
+
+        try {
+            MappedSpamDatabase.open(file);
+            fail("Повреждённый заголовок должен быть отклонён");
+        } catch (IOException expected) {
+            // Ожидаемое поведение
+        }
+    }
+
+    @Test
+    public void open_rejectsTruncatedFile() throws IOException {
+        File file = folder.newFile("spam.db");
+        new SpamDatabaseBuilder().addNumber(74951234567L, 0).writeTo(file, 1L);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+
+        try {
+            MappedSpamDatabase.open(file);
+            fail("Обрезанный файл должен быть отклонён");
+        } catch (IOException expected) {
+            // Ожидаемое поведение
+        }
+    }
+
+    @Test
+    public void holder_rejectsCorruptedDirectoryAndKeepsCurrentDatabase() throws IOException {
+        File file = new File(folder.getRoot(), "spam.db");
+        new SpamDatabaseBuilder().addNumber(74951234567L, 0).writeTo(file, 1L);
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(file);
+
+        File staged = holder.stagingFile();
+        new SpamDatabaseBuilder()
+                .addNumber(74951234567L, 0)
+                .addPrefix(7800L, 0)
+                .writeTo(staged, 2L);
+        // Каталог не входит в контрольную сумму заголовка: группа префиксов длины 4 указывает за конец секции
+        try (RandomAccessFile raf = new RandomAccessFile(staged, "rw")) {
+            raf.seek(SpamDatabaseFormat.OFFSET_PREFIX_DIRECTORY);
+            int directory = raf.readInt();
+            raf.seek(directory + 4 * 5);
+            raf.writeInt(1_000_000);
+        }
+
+        try {
+            holder.install(staged);
+            fail("Повреждённый каталог должен быть отклонён при открытии");
+        } catch (IOException expected) {
+            // Ожидаемое поведение
+        }
+        assertEquals(1L, holder.get().version());
+        assertTrue(holder.get().isSpam(74951234567L));
+    }
+
+    @Test
+    public void feedConverter_parsesCsv() throws IOException {
+        String feed = "# тестовая лента\n"
+                + "+7 495 123-45-67,fraud,80\n"
+                + "+7800*,telemarketing\n"
+                + "79161234567\n"
+                + "not a number,fraud,10\n"
+                + "79161234568,fraud,200\n";
+        SpamDatabaseBuilder builder = new SpamDatabaseBuilder();
+        SpamFeedConverter converter = new SpamFeedConverter();
+
+        assertEquals(3, converter.read(new BufferedReader(new StringReader(feed)), builder));
+        assertEquals(2, converter.skippedLines());
+
+        File file = folder.newFile("spam.db");
+        builder.writeTo(file, 1L);
+        MappedSpamDatabase database = MappedSpamDatabase.open(file);
+        assertEquals(SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 80), database.find(74951234567L));
+        assertEquals(SpamEntry.pack(SpamEntry.CATEGORY_TELEMARKETING, 100), database.find(78001234567L));
+        assertEquals(SpamEntry.pack(SpamEntry.CATEGORY_UNKNOWN, 100), database.find(79161234567L));
+    }
+
+    @Test
+    public void holder_swapsDatabaseWhileLookupsAreRunning() throws Exception {
+        File file = new File(folder.getRoot(), "spam.db");
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(file);
+        assertEquals(0, holder.get().size());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    SpamDatabase database = holder.get();
+                    // Номер присутствует во всех версиях базы, кроме пустой начальной
+                    if (database.version() > 0 && !database.isSpam(74951234567L)) {
+                        throw new AssertionError("Номер пропал в версии " + database.version());
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+
+        for (long version = 1; version <= 20; version++) {
+            File staged = holder.stagingFile();
+            new SpamDatabaseBuilder()
+                    .addNumber(74951234567L, 0)
+                    .addNumber(70000000000L + version, 0)
+                    .writeTo(staged, version);
+            assertEquals(version, holder.install(staged).version());
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertFalse(holder.stagingFile().exists());
+        assertEquals(20L, SpamDatabaseHolder.open(file).get().version());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.dialertest.screening;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PhoneNumberNormalizerTest {
+
+    private final PhoneNumberNormalizer russia = new PhoneNumberNormalizer(DialingPlan.RUSSIA);
+
+    @Test
+    public void normalize_russianFormats() {
+        long expected = 74951234567L;
+        assertEquals(expected, russia.normalize("+7 (495) 123-45-67"));
+        assertEquals(expected, russia.normalize("84951234567"));
+        assertEquals(expected, russia.normalize("8 (495) 123 45 67"));
+        assertEquals(expected, russia.normalize("0074951234567"));
+        assertEquals(expected, russia.normalize("810 7 495 123-45-67"));
+        assertEquals(expected, russia.normalize("4951234567"));
+        assertEquals(expected, russia.normalize("74951234567"));
+        assertEquals(expected, russia.normalize("tel:+74951234567"));
+        assertEquals(expected, russia.normalize("%2B7%20495%20123-45-67"));
+        assertEquals(expected, russia.normalize("+74951234567;ext=12"));
+    }
+
+    @Test
+    public void normalize_foreignNumbersFromRussia() {
+        assertEquals(442071234567L, russia.normalize("+44 20 7123 4567"));
+        assertEquals(442071234567L, russia.normalize("00 44 20 7123 4567"));
+        assertEquals(12125550123L, russia.normalize("810 1 212 555 0123"));
+    }
+
+    @Test
+    public void normalize_otherDialingPlans() {
+        PhoneNumberNormalizer usa = new PhoneNumberNormalizer(DialingPlan.USA);
+        assertEquals(12125550123L, usa.normalize("(212) 555-0123"));
+        assertEquals(12125550123L, usa.normalize("1 212 555 0123"));
+        assertEquals(74951234567L, usa.normalize("011 7 495 123 45 67"));
+
+        PhoneNumberNormalizer uk = new PhoneNumberNormalizer(DialingPlan.UNITED_KINGDOM);
+        assertEquals(442071234567L, uk.normalize("020 7123 4567"));
+        assertEquals(74951234567L, uk.normalize("00 7 495 123 45 67"));
+
+        PhoneNumberNormalizer belarus = new PhoneNumberNormalizer(DialingPlan.BELARUS);
+        assertEquals(375291234567L, belarus.normalize("8 029 123-45-67"));
+    }
+
+    @Test
+    public void normalize_rejectsGarbage() {
+        assertEquals(NumberKeys.INVALID, russia.normalize(null));
+        assertEquals(NumberKeys.INVALID, russia.normalize(""));
+        assertEquals(NumberKeys.INVALID, russia.normalize("+"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("Неизвестный"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("+7 495 +123"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("%2"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("%ZZ123"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("+0123456789"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("0951234567"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("123"));
+        assertEquals(NumberKeys.INVALID, russia.normalize("1234567890123456789012"));
+    }
+
+    @Test
+    public void normalize_partOfSequence() {
+        String text = "Звонок: 8 495 123-45-67.";
+        assertEquals(74951234567L, russia.normalize(text, 8, text.length() - 1));
+    }
+
+    @Test
+    public void format_groupsDigits() {
+        assertEquals("+7 495 123-45-67", PhoneNumberNormalizer.format(74951234567L));
+        assertEquals("+1 212 555-0123", PhoneNumberNormalizer.format(12125550123L));
+        assertEquals("+442071234567", PhoneNumberNormalizer.format(442071234567L));
+        assertEquals("", PhoneNumberNormalizer.format(NumberKeys.INVALID));
+    }
+
+    @Test
+    public void forRegion_fallsBackForUnknownRegion() {
+        assertSame(DialingPlan.USA, DialingPlan.forRegion("us", DialingPlan.RUSSIA));
+        assertSame(DialingPlan.RUSSIA, DialingPlan.forRegion("zz", DialingPlan.RUSSIA));
+        assertSame(DialingPlan.RUSSIA, DialingPlan.forRegion(null, DialingPlan.RUSSIA));
+    }
+}
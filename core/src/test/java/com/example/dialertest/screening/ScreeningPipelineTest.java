@@ -0,0 +1,308 @@
+package com.example.dialertest.screening;
+
+import com.example.dialertest.metrics.MetricsRegistry;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ScreeningPipelineTest {
+
+    private static final long BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final ExecutorService lookupExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService enrichmentExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer(DialingPlan.RUSSIA);
+    private final SpamDatabase database = new SpamNumberIndex.Builder().addNumber(74951234567L).build();
+
+    @After
+    public void tearDown() {
+        lookupExecutor.shutdownNow();
+        enrichmentExecutor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Записывает все результаты и позволяет дождаться нужного их количества
+     */
+    private static final class RecordingCallback implements ScreeningPipeline.Callback {
+        final List<ScreeningResult> verdicts = new CopyOnWriteArrayList<>();
+        final List<ScreeningResult> enriched = new CopyOnWriteArrayList<>();
+        final CountDownLatch verdict = new CountDownLatch(1);
+        final CountDownLatch enrichment;
+        volatile long verdictAt;
+
+        RecordingCallback(int expectedEnrichments) {
+            enrichment = new CountDownLatch(expectedEnrichments);
+        }
+
+        @Override
+        public void onVerdict(ScreeningResult result) {
+            verdictAt = System.nanoTime();
+            verdicts.add(result);
+            verdict.countDown();
+        }
+
+        @Override
+        public void onEnriched(ScreeningResult result) {
+            enriched.add(result);
+            enrichment.countDown();
+        }
+    }
+
+    @Test
+    public void screen_sendsLocalVerdictAndThenEnrichment() throws Exception {
+        ScreeningEnricher callerName = result -> result.withCallerName("ООО Ромашка");
+        ScreeningEnricher nothing = result -> result;
+        ScreeningPipeline pipeline = new ScreeningPipeline(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS, Arrays.asList(callerName, nothing));
+
+        RecordingCallback callback = new RecordingCallback(1);
+        pipeline.screen("8 (495) 123-45-67", callback);
+
+        assertTrue(callback.verdict.await(1, TimeUnit.SECONDS));
+        assertTrue(callback.enrichment.await(1, TimeUnit.SECONDS));
+        enrichmentExecutor.submit(() -> { }).get();
+
+        ScreeningResult verdict = callback.verdicts.get(0);
+        assertFalse(verdict.isFallback());
+        assertTrue(verdict.isSpam());
+        assertEquals(74951234567L, verdict.numberKey());
+        assertEquals(ScreeningResult.RULE_NUMBER, verdict.rule());
+        assertTrue(verdict.isBlocked());
+        assertEquals(1.0f, verdict.reputation(), 0.0f);
+        assertTrue(verdict.verdictNanos() >= verdict.normalizeNanos() + verdict.lookupNanos());
+        assertNull(verdict.callerName());
+
+        assertEquals(1, callback.enriched.size());
+        assertEquals("ООО Ромашка", callback.enriched.get(0).callerName());
+        assertTrue(callback.enriched.get(0).isSpam());
+        assertTrue(callback.enriched.get(0).enrichmentNanos() > 0);
+    }
+
+    @Test
+    public void screen_appliesRulesWithContacts() throws Exception {
+        ScreeningRules rules = ScreeningRulesParser.parse("allow when contact\nreject,skip-log when spam\n");
+        ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS)
+                .rules(() -> rules)
+                .contacts(key -> key == 74951234567L)
+                .build();
+
+        RecordingCallback contact = new RecordingCallback(0);
+        pipeline.screen("+74951234567", contact);
+        assertTrue(contact.verdict.await(1, TimeUnit.SECONDS));
+        // Номер из контактов не ищется в базе
+        assertFalse(contact.verdicts.get(0).isSpam());
+        assertEquals(ScreeningResult.RULE_CONTACT, contact.verdicts.get(0).rule());
+        assertFalse(contact.verdicts.get(0).isBlocked());
+        assertEquals(0, contact.verdicts.get(0).ruleIndex());
+
+        ScreeningPipeline withoutContacts = new ScreeningPipeline.Builder(() -> database, normalizer,
+                lookupExecutor, enrichmentExecutor, timer, BUDGET_NANOS)
+                .rules(() -> rules)
+                .build();
+        RecordingCallback stranger = new RecordingCallback(0);
+        withoutContacts.screen("+74951234567", stranger);
+        assertTrue(stranger.verdict.await(1, TimeUnit.SECONDS));
+        assertEquals(ScreeningAction.DISALLOW | ScreeningAction.REJECT | ScreeningAction.SKIP_CALL_LOG,
+                stranger.verdicts.get(0).action());
+        assertEquals(1, stranger.verdicts.get(0).ruleIndex());
+    }
+
+    @Test
+    public void screen_repeatCallerIsServedFromCache() throws Exception {
+        AtomicInteger enrichments = new AtomicInteger();
+        ScreeningEnricher callerName = result -> {
+            enrichments.incrementAndGet();
+            return result.withCallerName("ООО Ромашка");
+        };
+        MetricsRegistry metrics = new MetricsRegistry();
+        VerdictCache cache = new VerdictCache(16, TimeUnit.HOURS.toMillis(1), System::currentTimeMillis,
+                metrics.counter("hits"), metrics.counter("misses"), metrics.counter("evictions"));
+        ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS)
+                .cache(cache)
+                .enrichers(Collections.singletonList(callerName))
+                .build();
+
+        RecordingCallback first = new RecordingCallback(1);
+        pipeline.screen("+74951234567", first);
+        assertTrue(first.enrichment.await(1, TimeUnit.SECONDS));
+        assertFalse(first.verdicts.get(0).isCached());
+
+        RecordingCallback second = new RecordingCallback(0);
+        pipeline.screen("8 495 123-45-67", second);
+        assertTrue(second.verdict.await(1, TimeUnit.SECONDS));
+        enrichmentExecutor.submit(() -> { }).get();
+
+        ScreeningResult verdict = second.verdicts.get(0);
+        assertTrue(verdict.isCached());
+        assertTrue(verdict.isBlocked());
+        assertEquals("ООО Ромашка", verdict.callerName());
+        assertEquals(1, enrichments.get());
+        assertEquals(1, metrics.counter("hits").get());
+    }
+
+    @Test
+    public void screen_rulesSeeReputationScore() throws Exception {
+        ScreeningRules rules = ScreeningRulesParser.parse("silence when reputation>=0.9\n");
+        ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS)
+                .rules(() -> rules)
+                .reputation((key, entry, hour, timeMillis) -> key == 79160000000L ? 0.95f : Float.NaN)
+                .build();
+
+        RecordingCallback suspicious = new RecordingCallback(0);
+        pipeline.screen("+7 916 000-00-00", suspicious);
+        assertTrue(suspicious.verdict.await(1, TimeUnit.SECONDS));
+        assertFalse(suspicious.verdicts.get(0).isSpam());
+        assertEquals(0.95f, suspicious.verdicts.get(0).reputation(), 0.0f);
+        assertEquals(ScreeningAction.SILENCE, suspicious.verdicts.get(0).action());
+
+        // Без оценки модели используется оценка из базы
+        RecordingCallback spam = new RecordingCallback(0);
+        pipeline.screen("+7 495 123-45-67", spam);
+        assertTrue(spam.verdict.await(1, TimeUnit.SECONDS));
+        assertEquals(1.0f, spam.verdicts.get(0).reputation(), 0.0f);
+        assertEquals(ScreeningAction.SILENCE, spam.verdicts.get(0).action());
+    }
+
+    @Test
+    public void screen_hourUsesSuppliedTimeZone() throws Exception {
+        AtomicReference<TimeZone> zone = new AtomicReference<>(TimeZone.getTimeZone("GMT"));
+        List<long[]> scored = new CopyOnWriteArrayList<>();
+        ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS)
+                .timeZone(zone::get)
+                .reputation((key, entry, hour, timeMillis) -> {
+                    scored.add(new long[]{hour, timeMillis});
+                    return Float.NaN;
+                })
+                .build();
+
+        RecordingCallback utc = new RecordingCallback(0);
+        pipeline.screen("+7 916 000-00-00", utc);
+        assertTrue(utc.verdict.await(1, TimeUnit.SECONDS));
+
+        // Смена пояса видна следующей проверке
+        zone.set(TimeZone.getTimeZone("GMT+12:00"));
+        RecordingCallback shifted = new RecordingCallback(0);
+        pipeline.screen("+7 916 000-00-00", shifted);
+        assertTrue(shifted.verdict.await(1, TimeUnit.SECONDS));
+
+        assertEquals(2, scored.size());
+        assertEquals(TimeUnit.MILLISECONDS.toHours(scored.get(0)[1]) % 24, scored.get(0)[0]);
+        assertEquals((TimeUnit.MILLISECONDS.toHours(scored.get(1)[1]) + 12) % 24, scored.get(1)[0]);
+    }
+
+    @Test
+    public void screen_floodFromOneBlockIsSilenced() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        FloodDetector flood = new FloodDetector(3, 3, TimeUnit.MINUTES.toMillis(8), TimeUnit.MINUTES.toMillis(30),
+                metrics.counter("flagged"));
+        ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS)
+                .rules(ScreeningRules::defaults)
+                .contacts(key -> key == 79005551003L)
+                .flood(flood)
+                .build();
+
+        List<ScreeningResult> verdicts = new CopyOnWriteArrayList<>();
+        for (String number : new String[]{"+79005551000", "+79005551001", "+79005551003", "+79005551002"}) {
+            RecordingCallback callback = new RecordingCallback(0);
+            pipeline.screen(number, callback);
+            assertTrue(callback.verdict.await(1, TimeUnit.SECONDS));
+            verdicts.add(callback.verdicts.get(0));
+        }
+
+        assertEquals(ScreeningAction.ALLOW, verdicts.get(0).action());
+        assertEquals(ScreeningAction.ALLOW, verdicts.get(1).action());
+        // Звонок из контактов не считается и не попадает под волну
+        assertEquals(ScreeningResult.RULE_CONTACT, verdicts.get(2).rule());
+        assertEquals(ScreeningAction.ALLOW, verdicts.get(2).action());
+        assertEquals(ScreeningResult.RULE_FLOOD, verdicts.get(3).rule());
+        assertEquals(ScreeningAction.SILENCE, verdicts.get(3).action());
+        assertEquals(1, metrics.counter("flagged").get());
+    }
+
+    @Test
+    public void screen_fallsBackWhenLookupMissesDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ScreeningPipeline pipeline = new ScreeningPipeline(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return database;
+        }, normalizer, lookupExecutor, enrichmentExecutor, timer, BUDGET_NANOS,
+                Collections.<ScreeningEnricher>emptyList());
+
+        RecordingCallback callback = new RecordingCallback(1);
+        long start = System.nanoTime();
+        pipeline.screen("+74951234567", callback);
+
+        assertTrue(callback.verdict.await(1, TimeUnit.SECONDS));
+        ScreeningResult verdict = callback.verdicts.get(0);
+        assertTrue(verdict.isFallback());
+        assertFalse(verdict.isSpam());
+        assertTrue(callback.verdictAt - start < BUDGET_NANOS + TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Опоздавшее решение приходит как дополнение, а не как второе решение
+        release.countDown();
+        assertTrue(callback.enrichment.await(1, TimeUnit.SECONDS));
+        assertEquals(1, callback.verdicts.size());
+        assertTrue(callback.enriched.get(0).isSpam());
+    }
+
+    @Test
+    public void screen_ignoresFailingEnricher() throws Exception {
+        ScreeningEnricher failing = result -> {
+            throw new IllegalStateException("Сервис репутации недоступен");
+        };
+        ScreeningEnricher reputation = result -> result.withReputation(0.25f);
+        ScreeningPipeline pipeline = new ScreeningPipeline(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS, Arrays.asList(failing, reputation));
+
+        RecordingCallback callback = new RecordingCallback(1);
+        pipeline.screen("+7 916 000-00-00", callback);
+
+        assertTrue(callback.enrichment.await(1, TimeUnit.SECONDS));
+        assertFalse(callback.verdicts.get(0).isSpam());
+        assertEquals(0.25f, callback.enriched.get(0).reputation(), 0.0f);
+    }
+
+    @Test
+    public void screen_hiddenNumberIsAllowedWithoutEnrichment() throws Exception {
+        ScreeningEnricher enricher = result -> {
+            fail("Скрытый номер не должен дообогащаться");
+            return result;
+        };
+        ScreeningPipeline pipeline = new ScreeningPipeline(() -> database, normalizer, lookupExecutor,
+                enrichmentExecutor, timer, BUDGET_NANOS, Collections.singletonList(enricher));
+
+        RecordingCallback callback = new RecordingCallback(0);
+        pipeline.screen(null, callback);
+
+        assertTrue(callback.verdict.await(1, TimeUnit.SECONDS));
+        enrichmentExecutor.submit(() -> { }).get();
+        assertFalse(callback.verdicts.get(0).isSpam());
+        assertEquals(NumberKeys.INVALID, callback.verdicts.get(0).numberKey());
+    }
+}
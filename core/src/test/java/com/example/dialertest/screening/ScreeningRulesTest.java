@@ -0,0 +1,212 @@
+package com.example.dialertest.screening;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ScreeningRulesTest {
+
+    private static final String RULES = ""
+            + "# Контакты пропускаются всегда\n"
+            + "allow when contact\n"
+            + "block,skip-notification when hidden and hour=22-7\n"
+            + "reject,skip-log when prefix=+7900555 unless contact\n"
+            + "silence when score>=0.7\n"
+            + "default allow\n";
+
+    private static final long MOSCOW = 74951234567L;
+    private static final long BLOCKED_PREFIX = 79005551234L;
+    private static final int FRAUD = SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 90);
+    private static final int SURVEY = SpamEntry.pack(SpamEntry.CATEGORY_SURVEY, 40);
+
+    @Test
+    public void evaluate_appliesFirstMatchingRule() {
+        ScreeningRules rules = ScreeningRulesParser.parse(RULES);
+        assertTrue(rules.isTabulated());
+
+        assertDecision(ScreeningAction.ALLOW, 0, rules.evaluate(BLOCKED_PREFIX, true, FRAUD, 12));
+        assertDecision(ScreeningAction.DISALLOW | ScreeningAction.SKIP_NOTIFICATION, 1,
+                rules.evaluate(NumberKeys.INVALID, false, SpamDatabase.NOT_FOUND, 23));
+        assertDecision(ScreeningAction.DISALLOW | ScreeningAction.REJECT | ScreeningAction.SKIP_CALL_LOG, 2,
+                rules.evaluate(BLOCKED_PREFIX, false, SpamDatabase.NOT_FOUND, 12));
+        assertDecision(ScreeningAction.SILENCE, 3, rules.evaluate(MOSCOW, false, FRAUD, 12));
+        assertDecision(ScreeningAction.ALLOW, ScreeningRules.NO_RULE, rules.evaluate(MOSCOW, false, SURVEY, 12));
+        assertDecision(ScreeningAction.ALLOW, ScreeningRules.NO_RULE,
+                rules.evaluate(NumberKeys.INVALID, false, SpamDatabase.NOT_FOUND, 12));
+    }
+
+    @Test
+    public void hours_wrapAroundMidnight() {
+        RuleCondition night = RuleCondition.hours(22, 7);
+        assertTrue(night.matches(MOSCOW, false, SpamDatabase.NOT_FOUND, 22, Float.NaN, false));
+        assertTrue(night.matches(MOSCOW, false, SpamDatabase.NOT_FOUND, 0, Float.NaN, false));
+        assertTrue(night.matches(MOSCOW, false, SpamDatabase.NOT_FOUND, 6, Float.NaN, false));
+        assertFalse(night.matches(MOSCOW, false, SpamDatabase.NOT_FOUND, 7, Float.NaN, false));
+        assertFalse(night.matches(MOSCOW, false, SpamDatabase.NOT_FOUND, 21, Float.NaN, false));
+    }
+
+    @Test
+    public void prefix_doesNotMatchShorterNumber() {
+        RuleCondition prefix = RuleCondition.prefix(7900555, 7);
+        assertTrue(prefix.matches(BLOCKED_PREFIX, false, SpamDatabase.NOT_FOUND, 0, Float.NaN, false));
+        assertFalse(prefix.matches(790055L, false, SpamDatabase.NOT_FOUND, 0, Float.NaN, false));
+        assertFalse(prefix.matches(NumberKeys.INVALID, false, SpamDatabase.NOT_FOUND, 0, Float.NaN, false));
+    }
+
+    @Test
+    public void rejectSpam_keepsPreviousBehaviour() {
+        ScreeningRules rules = ScreeningRules.rejectSpam();
+        assertDecision(ScreeningAction.DISALLOW | ScreeningAction.REJECT, 0, rules.evaluate(MOSCOW, false, SURVEY, 3));
+        assertDecision(ScreeningAction.ALLOW, ScreeningRules.NO_RULE,
+                rules.evaluate(MOSCOW, false, SpamDatabase.NOT_FOUND, 3));
+    }
+
+    @Test
+    public void parse_reportsLineOfError() {
+        assertParseError("allow when contact\nblock when prefix=+7x\n", "Строка 2");
+        assertParseError("explode when spam\n", "неизвестное действие");
+        assertParseError("block when (spam or hidden\n", "\")\"");
+        assertParseError("silence,skip-log when spam\n", "Строка 1");
+        assertParseError("block when category=weather\n", "категория");
+        assertParseError("default block\ndefault allow\n", "Строка 2");
+    }
+
+    @Test
+    public void parse_supportsParenthesesAndNegation() {
+        ScreeningRules rules = ScreeningRulesParser.parse(
+                "block when not contact and (category=fraud or category=robocall)\n");
+        int robocall = SpamEntry.pack(SpamEntry.CATEGORY_ROBOCALL, 10);
+        assertEquals(ScreeningAction.DISALLOW, ScreeningRules.action(rules.evaluate(MOSCOW, false, robocall, 0)));
+        assertEquals(ScreeningAction.ALLOW, ScreeningRules.action(rules.evaluate(MOSCOW, true, robocall, 0)));
+        assertEquals(ScreeningAction.ALLOW, ScreeningRules.action(rules.evaluate(MOSCOW, false, SURVEY, 0)));
+    }
+
+    @Test
+    public void compiledRules_matchConditionTree() {
+        Random random = new Random(13);
+        List<RuleCondition> atoms = Arrays.asList(
+                RuleCondition.hidden(), RuleCondition.contact(), RuleCondition.spam(),
+                RuleCondition.scoreAtLeast(70), RuleCondition.category(SpamEntry.CATEGORY_FRAUD),
+                RuleCondition.hours(22, 7), RuleCondition.hours(9, 18),
+                RuleCondition.prefix(7900, 4), RuleCondition.prefix(7900555, 7), RuleCondition.prefix(7495, 4),
+                RuleCondition.reputationAtLeast(80), RuleCondition.flood());
+
+        for (int round = 0; round < 50; round++) {
+            List<ScreeningRule> list = new ArrayList<>();
+            int count = 1 + random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                list.add(new ScreeningRule("rule" + i, randomCondition(random, atoms, 3),
+                        i % 2 == 0 ? ScreeningAction.DISALLOW : ScreeningAction.SILENCE));
+            }
+            ScreeningRules rules = ScreeningRules.compile(list, ScreeningAction.ALLOW);
+
+            for (int call = 0; call < 200; call++) {
+                long key = randomKey(random);
+                boolean contact = random.nextBoolean();
+                int entry = random.nextInt(3) == 0
+                        ? SpamDatabase.NOT_FOUND
+                        : SpamEntry.pack(random.nextInt(6), random.nextInt(SpamEntry.MAX_SCORE + 1));
+                int hour = random.nextInt(24);
+                float reputation = random.nextInt(4) == 0 ? Float.NaN : random.nextFloat();
+                boolean flood = random.nextInt(4) == 0;
+
+                int expected = ScreeningRules.NO_RULE;
+                for (int i = 0; i < list.size(); i++) {
+                    if (list.get(i).condition().matches(key, contact, entry, hour, reputation, flood)) {
+                        expected = i;
+                        break;
+                    }
+                }
+                assertEquals(list.toString(), expected,
+                        ScreeningRules.ruleIndex(rules.evaluate(key, contact, entry, hour, reputation, flood)));
+            }
+        }
+    }
+
+    @Test
+    public void reputation_unknownScoreDoesNotPassThreshold() {
+        ScreeningRules rules = ScreeningRulesParser.parse("silence when reputation>=0.8\n");
+        assertEquals(ScreeningAction.SILENCE,
+                ScreeningRules.action(rules.evaluate(MOSCOW, false, SpamDatabase.NOT_FOUND, 12, 0.8f, false)));
+        assertEquals(ScreeningAction.ALLOW,
+                ScreeningRules.action(rules.evaluate(MOSCOW, false, SpamDatabase.NOT_FOUND, 12, 0.79f, false)));
+        assertEquals(ScreeningAction.ALLOW,
+                ScreeningRules.action(rules.evaluate(MOSCOW, false, SpamDatabase.NOT_FOUND, 12, Float.NaN, false)));
+    }
+
+    @Test
+    public void defaults_silenceFloodAndRejectSpam() {
+        ScreeningRules rules = ScreeningRules.defaults();
+        int spam = SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 90);
+        assertEquals(ScreeningAction.SILENCE,
+                ScreeningRules.action(rules.evaluate(MOSCOW, false, SpamDatabase.NOT_FOUND, 12, Float.NaN, true)));
+        assertEquals(ScreeningAction.DISALLOW | ScreeningAction.REJECT,
+                ScreeningRules.action(rules.evaluate(MOSCOW, false, spam, 12, Float.NaN, true)));
+        assertEquals(ScreeningAction.ALLOW,
+                ScreeningRules.action(rules.evaluate(MOSCOW, false, SpamDatabase.NOT_FOUND, 12, Float.NaN, false)));
+        assertEquals("flood", ScreeningRulesParser.parse("silence when flood\n").rules().get(0).condition().toString());
+    }
+
+    @Test
+    public void manyAtoms_fallBackToScan() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append("block when prefix=+7").append(900 + i).append('\n');
+        }
+        ScreeningRules rules = ScreeningRulesParser.parse(text.toString());
+        assertFalse(rules.isTabulated());
+        assertEquals(20, rules.atomCount());
+        assertEquals(19, ScreeningRules.ruleIndex(rules.evaluate(79191234567L, false, SpamDatabase.NOT_FOUND, 0)));
+        assertEquals(ScreeningRules.NO_RULE,
+                ScreeningRules.ruleIndex(rules.evaluate(79201234567L, false, SpamDatabase.NOT_FOUND, 0)));
+    }
+
+    private static RuleCondition randomCondition(Random random, List<RuleCondition> atoms, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            RuleCondition atom = atoms.get(random.nextInt(atoms.size()));
+            return random.nextBoolean() ? atom : RuleCondition.not(atom);
+        }
+        RuleCondition left = randomCondition(random, atoms, depth - 1);
+        RuleCondition right = randomCondition(random, atoms, depth - 1);
+        switch (random.nextInt(3)) {
+            case 0:
+                return RuleCondition.allOf(left, right);
+            case 1:
+                return RuleCondition.anyOf(left, right);
+            default:
+                return RuleCondition.not(RuleCondition.allOf(left, right));
+        }
+    }
+
+    private static long randomKey(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return NumberKeys.INVALID;
+            case 1:
+                return 79005550000L + random.nextInt(10000);
+            case 2:
+                return 79000000000L + random.nextInt(10000000);
+            default:
+                return 74950000000L + random.nextInt(10000000);
+        }
+    }
+
+    private static void assertDecision(int action, int rule, int decision) {
+        assertEquals(ScreeningAction.toString(action), ScreeningAction.toString(ScreeningRules.action(decision)));
+        assertEquals(rule, ScreeningRules.ruleIndex(decision));
+    }
+
+    private static void assertParseError(String text, String message) {
+        try {
+            ScreeningRulesParser.parse(text);
+            fail("Ожидалась ошибка разбора: " + text);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
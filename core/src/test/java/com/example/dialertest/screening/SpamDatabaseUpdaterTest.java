@@ -0,0 +1,232 @@
+package com.example.dialertest.screening;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class SpamDatabaseUpdaterTest {
+
+    private static final int FRAUD_90 = SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 90);
+    private static final int SURVEY_40 = SpamEntry.pack(SpamEntry.CATEGORY_SURVEY, 40);
+    private static final int ROBOCALL_100 = SpamEntry.pack(SpamEntry.CATEGORY_ROBOCALL, 100);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+    private File databaseFile;
+    private File deltas;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newSingleThreadExecutor();
+        databaseFile = new File(folder.getRoot(), "spam.db");
+        deltas = folder.newFolder("deltas");
+        new SpamDatabaseBuilder()
+                .addNumber(74951234567L, FRAUD_90)
+                .addNumber(79161234567L, SURVEY_40)
+                .addPrefix(7800L, ROBOCALL_100)
+                .writeTo(databaseFile, 1L);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void writeDelta(long from, long to, DeltaBody body, int recordCount) throws IOException {
+        try (SpamDeltaWriter writer = new SpamDeltaWriter(
+                new FileOutputStream(new File(deltas, FileSpamDeltaSource.fileName(from))), from, to, recordCount)) {
+            body.write(writer);
+        }
+    }
+
+    private interface DeltaBody {
+        void write(SpamDeltaWriter writer) throws IOException;
+    }
+
+    @Test
+    public void update_appliesDeltasWithoutRebuildingBaseFile() throws Exception {
+        writeDelta(1, 2, writer -> writer
+                .add(73430000001L, SURVEY_40)
+                .remove(79161234567L)
+                .setScore(74951234567L, 50), 3);
+        writeDelta(2, 3, writer -> writer
+                .removePrefix(7800L)
+                .addPrefix(7900555L, ROBOCALL_100)
+                .setScore(70000000000L + 1, 10), 3);
+
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(databaseFile);
+        long modified = databaseFile.lastModified();
+        SpamDatabaseUpdater updater = new SpamDatabaseUpdater(
+                holder, new FileSpamDeltaSource(deltas), executor, Integer.MAX_VALUE);
+
+        assertEquals(3L, (long) updater.update().get());
+
+        SpamDatabase database = holder.get();
+        assertTrue(database instanceof LayeredSpamDatabase);
+        assertEquals(SURVEY_40, database.find(73430000001L));
+        assertEquals(SpamDatabase.NOT_FOUND, database.find(79161234567L));
+        assertEquals(SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 50), database.find(74951234567L));
+        assertEquals(SpamDatabase.NOT_FOUND, database.find(78005553535L));
+        assertEquals(ROBOCALL_100, database.find(79005550101L));
+        // Изменение оценки отсутствующего номера игнорируется
+        assertEquals(SpamDatabase.NOT_FOUND, database.find(70000000001L));
+        assertEquals(2, database.size());
+        assertEquals(1, database.prefixRuleCount());
+        assertEquals(modified, databaseFile.lastModified());
+    }
+
+    @Test
+    public void compact_mergesOverlayIntoNewFile() throws Exception {
+        writeDelta(1, 2, writer -> writer
+                .add(73430000001L, SURVEY_40)
+                .remove(79161234567L)
+                .addPrefix(7900555L, ROBOCALL_100), 3);
+
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(databaseFile);
+        SpamDatabaseUpdater updater = new SpamDatabaseUpdater(
+                holder, new FileSpamDeltaSource(deltas), executor, 1);
+        updater.update().get();
+
+        SpamDatabase database = holder.get();
+        assertTrue(database instanceof MappedSpamDatabase);
+        assertEquals(2L, database.version());
+        assertEquals(2, database.size());
+        assertEquals(2, database.prefixRuleCount());
+
+        MappedSpamDatabase reopened = MappedSpamDatabase.open(databaseFile);
+        assertEquals(2L, reopened.version());
+        assertEquals(SURVEY_40, reopened.find(73430000001L));
+        assertEquals(FRAUD_90, reopened.find(74951234567L));
+        assertEquals(SpamDatabase.NOT_FOUND, reopened.find(79161234567L));
+        assertEquals(ROBOCALL_100, reopened.find(78005553535L));
+        assertEquals(ROBOCALL_100, reopened.find(79005550101L));
+    }
+
+    @Test
+    public void compact_prunesDeltasIncludedInBaseFile() throws Exception {
+        writeDelta(1, 2, writer -> writer.add(73430000001L, SURVEY_40), 1);
+        writeDelta(2, 3, writer -> writer.add(73430000002L, SURVEY_40), 1);
+        File unrelated = new File(deltas, "delta-notes.txt");
+        assertTrue(unrelated.createNewFile());
+
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(databaseFile);
+        SpamDatabaseUpdater updater = new SpamDatabaseUpdater(
+                holder, new FileSpamDeltaSource(deltas), executor, Integer.MAX_VALUE);
+        assertEquals(3L, (long) updater.update().get());
+        // Пока слой не уплотнён, дельты нужны для восстановления версии после перезапуска
+        assertTrue(new File(deltas, FileSpamDeltaSource.fileName(1)).exists());
+
+        // Дельта от версии 3 загружена, но ещё не применена
+        writeDelta(3, 4, writer -> writer.add(73430000003L, SURVEY_40), 1);
+        assertEquals(3L, (long) updater.compact().get());
+
+        assertFalse(new File(deltas, FileSpamDeltaSource.fileName(1)).exists());
+        assertFalse(new File(deltas, FileSpamDeltaSource.fileName(2)).exists());
+        assertTrue(new File(deltas, FileSpamDeltaSource.fileName(3)).exists());
+        assertTrue(unrelated.exists());
+
+        assertEquals(4L, (long) updater.update().get());
+        assertTrue(holder.get().isSpam(73430000001L));
+        assertTrue(holder.get().isSpam(73430000003L));
+    }
+
+    @Test
+    public void update_rejectsCorruptedDelta() throws Exception {
+        writeDelta(1, 2, writer -> writer.add(73430000001L, SURVEY_40), 1);
+        File file = new File(deltas, FileSpamDeltaSource.fileName(1));
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file.toPath(), bytes);
+
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(databaseFile);
+        SpamDatabase before = holder.get();
+        SpamDatabaseUpdater updater = new SpamDatabaseUpdater(
+                holder, new FileSpamDeltaSource(deltas), executor, Integer.MAX_VALUE);
+
+        try {
+            updater.update().get();
+            fail("Повреждённая дельта должна быть отклонена");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertSame(before, holder.get());
+        assertFalse(holder.get().isSpam(73430000001L));
+    }
+
+    @Test
+    public void update_downloadsDeltasOverHttp() throws Exception {
+        Map<String, byte[]> responses = new HashMap<>();
+        for (long version = 1; version <= 5; version++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (SpamDeltaWriter writer = new SpamDeltaWriter(bytes, version, version + 1, 1)) {
+                writer.add(73430000000L + version, SURVEY_40);
+            }
+            responses.put("from=" + version, bytes.toByteArray());
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/deltas", exchange -> {
+            byte[] body = responses.get(exchange.getRequestURI().getQuery());
+            if (body == null) {
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            SpamDatabaseHolder holder = SpamDatabaseHolder.open(databaseFile);
+            SpamDatabaseUpdater updater = new SpamDatabaseUpdater(holder,
+                    new HttpSpamDeltaSource("http://127.0.0.1:" + server.getAddress().getPort() + "/deltas"),
+                    executor, Integer.MAX_VALUE);
+
+            assertEquals(6L, (long) updater.update().get());
+            for (long version = 1; version <= 5; version++) {
+                assertTrue(holder.get().isSpam(73430000000L + version));
+            }
+            assertEquals(7, holder.get().size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void overlay_lastRecordWinsForSameNumber() throws Exception {
+        writeDelta(1, 2, writer -> writer
+                .add(73430000001L, SURVEY_40)
+                .remove(73430000001L)
+                .add(73430000001L, FRAUD_90)
+                .setScore(73430000001L, 15), 4);
+
+        SpamDatabaseHolder holder = SpamDatabaseHolder.open(databaseFile);
+        new SpamDatabaseUpdater(holder, new FileSpamDeltaSource(deltas), executor, Integer.MAX_VALUE)
+                .update().get();
+
+        assertEquals(SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 15), holder.get().find(73430000001L));
+    }
+}
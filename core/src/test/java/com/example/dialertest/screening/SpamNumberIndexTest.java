@@ -0,0 +1,96 @@
+package com.example.dialertest.screening;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpamNumberIndexTest {
+
+    @Test
+    public void fromDigits_ignoresFormatting() {
+        assertEquals(74951234567L, NumberKeys.fromDigits("+7 (495) 123-45-67"));
+        assertEquals(74951234567L, NumberKeys.fromDigits("74951234567"));
+        assertEquals(NumberKeys.INVALID, NumberKeys.fromDigits(""));
+        assertEquals(NumberKeys.INVALID, NumberKeys.fromDigits("+7 495 abc"));
+        assertEquals(NumberKeys.INVALID, NumberKeys.fromDigits("1234567890123456"));
+    }
+
+    @Test
+    public void digitCount_isCorrect() {
+        assertEquals(1, NumberKeys.digitCount(7));
+        assertEquals(4, NumberKeys.digitCount(7800));
+        assertEquals(11, NumberKeys.digitCount(74951234567L));
+        assertEquals(15, NumberKeys.digitCount(999999999999999L));
+    }
+
+    @Test
+    public void isSpam_findsExactNumbers() {
+        SpamNumberIndex index = new SpamNumberIndex.Builder()
+                .addNumber(74951234567L)
+                .addNumber(79161234567L)
+                .addNumber(74951234567L)
+                .build();
+
+        assertEquals(2, index.size());
+        assertTrue(index.isSpam("+7 (495) 123-45-67"));
+        assertTrue(index.isSpam(79161234567L));
+        assertFalse(index.isSpam("+7 (495) 123-45-68"));
+        assertFalse(index.isSpam("not a number"));
+    }
+
+    @Test
+    public void isSpam_matchesPrefixRules() {
+        SpamNumberIndex.Builder builder = new SpamNumberIndex.Builder();
+        assertTrue(builder.add("+7 800*"));
+        assertTrue(builder.add("+7 900 555*"));
+        assertFalse(builder.add("garbage*"));
+        SpamNumberIndex index = builder.build();
+
+        assertEquals(2, index.prefixRuleCount());
+        assertTrue(index.isSpam("+7 800 555-35-35"));
+        assertTrue(index.isSpam("+7 900 555-00-01"));
+        assertFalse(index.isSpam("+7 900 556-00-01"));
+        // Номер короче префикса не должен совпадать с ним
+        assertFalse(index.isSpam("+7 80"));
+    }
+
+    @Test
+    public void isSpam_agreesWithLinearScanOnRandomData() {
+        Random random = new Random(42);
+        long[] keys = new long[10_000];
+        SpamNumberIndex.Builder builder = new SpamNumberIndex.Builder();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 70000000000L + (long) (random.nextDouble() * 9999999999L);
+            builder.addNumber(keys[i]);
+        }
+        SpamNumberIndex index = builder.build();
+
+        for (long key : keys) {
+            assertTrue(index.contains(key));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long probe = 70000000000L + (long) (random.nextDouble() * 9999999999L);
+            boolean expected = false;
+            for (long key : keys) {
+                if (key == probe) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals(expected, index.contains(probe));
+        }
+    }
+
+    @Test
+    public void empty_containsNothing() {
+        assertEquals(0, SpamNumberIndex.empty().size());
+        assertFalse(SpamNumberIndex.empty().isSpam("+7 800 555-35-35"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addPrefix_rejectsLengthMismatch() {
+        new SpamNumberIndex.Builder().addPrefix(7800, 5);
+    }
+}
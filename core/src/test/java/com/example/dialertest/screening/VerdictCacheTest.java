@@ -0,0 +1,184 @@
+package com.example.dialertest.screening;
+
+import com.example.dialertest.metrics.MetricsRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class VerdictCacheTest {
+
+    private static final long TTL = 60_000L;
+    private static final long VERSION = 7L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    private VerdictCache newCache(int maxEntries) {
+        return new VerdictCache(maxEntries, TTL, now::get,
+                metrics.counter("hits"), metrics.counter("misses"), metrics.counter("evictions"));
+    }
+
+    private static ScreeningResult result(long key, String callerName) {
+        return new ScreeningResult(key, SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 80), ScreeningResult.RULE_NUMBER,
+                0, false, false, callerName, 0.8f, 0L, 0L, 0L, 0L, 0L);
+    }
+
+    private long counter(String name) {
+        return metrics.counter(name).get();
+    }
+
+    @Test
+    public void get_returnsStoredResultAndCountsHitsAndMisses() {
+        VerdictCache cache = newCache(4);
+        assertNull(cache.get(74951234567L, VERSION));
+
+        ScreeningResult stored = result(74951234567L, null);
+        cache.put(74951234567L, VERSION, stored);
+        assertSame(stored, cache.get(74951234567L, VERSION));
+
+        assertEquals(1, counter("hits"));
+        assertEquals(1, counter("misses"));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        VerdictCache cache = newCache(2);
+        cache.put(1L, VERSION, result(1L, null));
+        cache.put(2L, VERSION, result(2L, null));
+        // Обращение делает запись 1 недавно использованной, вытесняться должна запись 2
+        assertNotNull(cache.get(1L, VERSION));
+        cache.put(3L, VERSION, result(3L, null));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(1L, VERSION));
+        assertNull(cache.get(2L, VERSION));
+        assertNotNull(cache.get(3L, VERSION));
+        assertEquals(1, counter("evictions"));
+    }
+
+    @Test
+    public void get_dropsExpiredEntries() {
+        VerdictCache cache = newCache(4);
+        cache.put(1L, VERSION, result(1L, null));
+        now.addAndGet(TTL - 1);
+        assertNotNull(cache.get(1L, VERSION));
+        now.addAndGet(1);
+        assertNull(cache.get(1L, VERSION));
+        assertEquals(0, cache.size());
+        assertEquals(1, counter("evictions"));
+    }
+
+    @Test
+    public void update_keepsExpiryTime() {
+        VerdictCache cache = newCache(4);
+        cache.put(1L, VERSION, result(1L, null));
+        now.addAndGet(TTL / 2);
+        cache.update(1L, result(1L, "ООО Ромашка"));
+        cache.update(2L, result(2L, "Нет в кэше"));
+
+        assertEquals("ООО Ромашка", cache.get(1L, VERSION).callerName());
+        assertEquals(1, cache.size());
+        now.addAndGet(TTL / 2);
+        assertNull(cache.get(1L, VERSION));
+    }
+
+    @Test
+    public void get_clearsCacheWhenDatabaseVersionChanges() {
+        VerdictCache cache = newCache(4);
+        cache.put(1L, VERSION, result(1L, null));
+        cache.put(2L, VERSION, result(2L, null));
+
+        assertNull(cache.get(1L, VERSION + 1));
+        assertEquals(0, cache.size());
+        assertEquals(2, counter("evictions"));
+    }
+
+    @Test
+    public void saveAndLoad_restoreEntriesAndOrder() throws IOException {
+        File file = new File(folder.getRoot(), "verdicts.bin");
+        VerdictCache cache = newCache(3);
+        cache.put(1L, VERSION, result(1L, "Первый"));
+        cache.put(2L, VERSION, result(2L, null));
+        now.addAndGet(TTL - 10);
+        cache.put(3L, VERSION, result(3L, null));
+        assertTrue(cache.isModified());
+        cache.save(file);
+        assertFalse(cache.isModified());
+
+        VerdictCache restored = newCache(3);
+        assertEquals(3, restored.load(file));
+        ScreeningResult first = restored.get(1L, VERSION);
+        assertEquals("Первый", first.callerName());
+        assertEquals(SpamEntry.pack(SpamEntry.CATEGORY_FRAUD, 80), first.entry());
+        assertEquals(ScreeningResult.RULE_NUMBER, first.rule());
+        assertTrue(first.isCached());
+
+        // Записи 1 и 2 сохранены раньше и устаревают по исходному времени, а не по времени загрузки
+        now.addAndGet(10);
+        VerdictCache late = newCache(3);
+        assertEquals(1, late.load(file));
+        assertNotNull(late.get(3L, VERSION));
+    }
+
+    @Test
+    public void save_runsConcurrentlyWithLookups() throws Exception {
+        File file = new File(folder.getRoot(), "verdicts.bin");
+        VerdictCache cache = newCache(1_000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Сохранение на своём потоке, как периодическое сохранение на исполнителе журнала
+        Thread saver = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    cache.save(file);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        saver.start();
+        for (long key = 1; key <= 20_000; key++) {
+            cache.put(key, VERSION, result(key, key % 2 == 0 ? "Абонент " + key : null));
+            assertNotNull(cache.get(key, VERSION));
+        }
+        running.set(false);
+        saver.join();
+        assertNull(failure.get());
+
+        cache.save(file);
+        assertFalse(cache.isModified());
+        VerdictCache restored = newCache(1_000);
+        assertEquals(1_000, restored.load(file));
+        assertEquals("Абонент 20000", restored.get(20_000L, VERSION).callerName());
+        assertNull(restored.get(19_000L, VERSION));
+    }
+
+    @Test
+    public void load_rejectsCorruptFile() throws IOException {
+        File file = new File(folder.getRoot(), "verdicts.bin");
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        VerdictCache cache = newCache(2);
+        cache.put(1L, VERSION, result(1L, null));
+        try {
+            cache.load(file);
+            fail("Повреждённый файл должен отвергаться");
+        } catch (IOException expected) {
+            assertEquals(0, cache.size());
+        }
+    }
+}
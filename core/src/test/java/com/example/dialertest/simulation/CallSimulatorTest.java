@@ -0,0 +1,128 @@
+package com.example.dialertest.simulation;
+
+import com.example.dialertest.metrics.MetricsRegistry;
+import com.example.dialertest.screening.DialingPlan;
+import com.example.dialertest.screening.PhoneNumberNormalizer;
+import com.example.dialertest.screening.ScreeningPipeline;
+import com.example.dialertest.screening.ScreeningRules;
+import com.example.dialertest.screening.SpamNumberIndex;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CallSimulatorTest {
+
+    private static final long[] SPAM = {79001112233L, 79004445566L, 79007778899L};
+
+    private final ExecutorService lookupExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService enrichmentExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    @After
+    public void tearDown() {
+        lookupExecutor.shutdownNow();
+        enrichmentExecutor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    private CallSimulator newSimulator() {
+        SpamNumberIndex.Builder database = new SpamNumberIndex.Builder();
+        for (long number : SPAM) {
+            database.addNumber(number);
+        }
+        SpamNumberIndex index = database.build();
+        ScreeningPipeline pipeline = new ScreeningPipeline.Builder(() -> index,
+                new PhoneNumberNormalizer(DialingPlan.RUSSIA), lookupExecutor, enrichmentExecutor, timer,
+                TimeUnit.SECONDS.toNanos(5))
+                .rules(ScreeningRules::rejectSpam)
+                .build();
+        return new CallSimulator(pipeline, metrics, null, null);
+    }
+
+    @Test
+    public void run_replaysThousandsOfCallsAndLeavesRegistryEmpty() throws Exception {
+        // Около 12 часов звонков за секунду с небольшим: звонки трассы перекрываются так же, как в реальном времени
+        CallTrace trace = new CallTraceGenerator(SPAM, 20_000, 7).generate(2000);
+        SimulationReport report = newSimulator().run(trace, 40_000);
+
+        assertTrue(report.calls() >= 2000);
+        assertEquals(0, report.leftInRegistry());
+        assertEquals(0, report.counter(CallSimulator.UNFINISHED));
+        assertEquals(report.calls(), report.counter(CallSimulator.BLOCKED) + report.counter(CallSimulator.ALLOWED)
+                + report.counter(CallSimulator.FALLBACK));
+        // Каждый пропущенный вызов либо появился, либо был брошен во время проверки
+        assertEquals(report.counter(CallSimulator.ALLOWED) + report.counter(CallSimulator.FALLBACK),
+                report.counter(CallSimulator.CALLS_ADDED) + report.counter(CallSimulator.ABANDONED));
+        assertTrue(report.counter(CallSimulator.BLOCKED) > 0);
+        assertTrue(report.counter(CallSimulator.CALL_WAITING) > 0);
+        assertTrue(report.counter(CallSimulator.OVERLAPPING_RINGS) > 0);
+        assertTrue(report.counter(CallSimulator.MAX_CONCURRENT) >= 2);
+
+        assertEquals(report.calls(), report.histogram(CallSimulator.RING_TO_VERDICT).count());
+        // Вызов, завершённый в пределах кадра, убирается с экрана до первого кадра
+        assertTrue(report.histogram(CallSimulator.ADDED_TO_UI).count() <= report.counter(CallSimulator.CALLS_ADDED));
+        assertTrue(report.histogram(CallSimulator.ADDED_TO_UI).count() > 0);
+        assertTrue(report.callsPerSecond() > 0);
+    }
+
+    @Test
+    public void run_appliesEventsThatArriveDuringScreening() throws Exception {
+        CallTrace trace = new CallTrace.Builder()
+                .ring(0, 0, "+79001234567")
+                .add(10, 0, CallTrace.ANSWER)
+                .ring(20, 1, "89001234568")
+                .add(30, 0, CallTrace.HOLD)
+                .add(30, 1, CallTrace.ANSWER)
+                .add(40, 1, CallTrace.HANGUP)
+                .add(50, 0, CallTrace.UNHOLD)
+                .ring(60, 2, "+79001112233")
+                .add(70, 2, CallTrace.REMOTE_HANGUP)
+                .ring(80, 3, null)
+                .add(90, 3, CallTrace.REMOTE_HANGUP)
+                .add(100, 0, CallTrace.REMOTE_HANGUP)
+                .build();
+        SimulationReport report = newSimulator().run(trace, 0);
+
+        assertEquals(0, report.leftInRegistry());
+        assertEquals(1, report.counter(CallSimulator.BLOCKED));
+        // События, пришедшие во время проверки, применяются после решения
+        assertEquals(0, report.counter(CallSimulator.IGNORED_EVENTS));
+        assertEquals(3, report.counter(CallSimulator.CALLS_ADDED) + report.counter(CallSimulator.ABANDONED));
+        assertEquals(0, report.counter(CallSimulator.UNFINISHED));
+    }
+
+    @Test
+    public void trace_roundTripsThroughCsv() throws Exception {
+        CallTrace trace = new CallTraceGenerator(SPAM, 5_000, 3).generate(200);
+        StringWriter csv = new StringWriter();
+        trace.write(csv);
+        CallTrace read = CallTrace.read(new BufferedReader(new StringReader(csv.toString())));
+
+        assertEquals(trace.size(), read.size());
+        assertEquals(trace.callCount(), read.callCount());
+        for (int i = 0; i < trace.size(); i++) {
+            assertEquals(trace.time(i), read.time(i));
+            assertEquals(trace.call(i), read.call(i));
+            assertEquals(trace.event(i), read.event(i));
+        }
+        for (int call = 0; call < trace.callCount(); call++) {
+            assertEquals(trace.number(call), read.number(call));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trace_rejectsEventBeforeRing() throws Exception {
+        CallTrace.read(new BufferedReader(new StringReader("0,0,ring,+79001234567\n5,1,answer,\n")));
+    }
+}
@@ -0,0 +1,63 @@
+#!/usr/bin/env bash
+# Замер времени от CallService.onCallAdded до первого кадра CallActivity на эмуляторе,
+# по образцу StartupTimingMetric из Macrobenchmark: несколько итераций, медиана и перцентили.
+#
+# Приложение должно быть установлено и назначено приложением для звонков по умолчанию.
+# Использование: scripts/incoming-call-startup.sh [итераций=10] [cold|warm] [номер]
+#   cold - перед каждым звонком процесс приложения останавливается (am force-stop)
+#   warm - процесс остаётся запущенным между звонками
+# Трассировку тех же итераций можно снять параллельно через Perfetto: секции IncomingCall,
+# CallService.onCallAdded, CallScreens.prewarm, CallScreen.inflate и CallActivity.onCreate.
+set -euo pipefail
+
+ITERATIONS=${1:-10}
+MODE=${2:-cold}
+NUMBER=${3:-79991234567}
+PACKAGE=com.example.dialertest
+TIMEOUT_SECONDS=15
+
+if [[ "$MODE" != cold && "$MODE" != warm ]]; then
+    echo "Режим должен быть cold или warm" >&2
+    exit 1
+fi
+
+results=()
+for ((i = 1; i <= ITERATIONS; i++)); do
+    if [[ "$MODE" == cold ]]; then
+        adb shell am force-stop "$PACKAGE"
+        sleep 1
+    fi
+    adb logcat -c
+    adb emu gsm call "$NUMBER" > /dev/null
+
+    value=""
+    for ((t = 0; t < TIMEOUT_SECONDS * 10; t++)); do
+        value=$(adb logcat -d -s CallStartup:I | sed -n 's/.*first_frame_ms=\([0-9]*\).*/\1/p' | head -n 1)
+        [[ -n "$value" ]] && break
+        sleep 0.1
+    done
+
+    adb emu gsm cancel "$NUMBER" > /dev/null
+    sleep 2
+
+    if [[ -z "$value" ]]; then
+        echo "Итерация $i: экран вызова не появился за $TIMEOUT_SECONDS с" >&2
+        continue
+    fi
+    echo "Итерация $i: $value мс"
+    results+=("$value")
+done
+
+if [[ ${#results[@]} -eq 0 ]]; then
+    echo "Нет результатов" >&2
+    exit 1
+fi
+
+printf '%s\n' "${results[@]}" | sort -n | awk -v mode="$MODE" '
+    { v[NR] = $1 }
+    END {
+        p50 = v[int((NR - 1) * 0.5) + 1]
+        p90 = v[int((NR - 1) * 0.9) + 1]
+        printf "{\"metric\":\"onCallAddedToFirstFrameMs\",\"mode\":\"%s\",\"iterations\":%d,\"min\":%d,\"median\":%d,\"p90\":%d,\"max\":%d}\n",
+            mode, NR, v[1], p50, p90, v[NR]
+    }'